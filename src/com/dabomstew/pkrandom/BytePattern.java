@@ -0,0 +1,212 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  BytePattern.java - a byte sequence, optionally with wildcards, that	--*/
+/*--                    can be searched for quickly in ROM data.        --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled search pattern. Wildcard positions match any byte, so code
+ * signatures can skip over pointers or other bytes that differ between
+ * versions of a game.
+ *
+ * If the pattern has a run of at least MIN_SKIP_LENGTH fixed bytes, the
+ * longest such run is found with Boyer-Moore-Horspool, which looks at the
+ * byte under the run's end and usually jumps the whole run length ahead.
+ * Otherwise the search scans for the least common-looking fixed byte
+ * (anything but 00 or FF, which fill most of a ROM). Either way the rest of
+ * the pattern is only compared where the cheap test passes.
+ *
+ * Matches are reported left to right without overlapping, same as the KMP
+ * search this replaces.
+ */
+public class BytePattern {
+
+	private static final int MIN_SKIP_LENGTH = 4;
+
+	private byte[] bytes;
+	// false for wildcard positions
+	private boolean[] fixed;
+	private int length;
+	// position of the byte to scan for in short patterns, -1 if all wildcards
+	private int anchor;
+	// longest run of fixed bytes, searched with Horspool if long enough
+	private int runStart, runLength;
+	// Horspool shift for each value of the byte under the run's end
+	private int[] shifts;
+
+	public BytePattern(byte[] bytes) {
+		this(bytes, null);
+	}
+
+	/**
+	 * fixed[i] == false makes position i a wildcard; null means no
+	 * wildcards.
+	 */
+	public BytePattern(byte[] bytes, boolean[] fixed) {
+		this.bytes = bytes.clone();
+		this.length = bytes.length;
+		this.fixed = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			this.fixed[i] = fixed == null || fixed[i];
+		}
+		anchor = -1;
+		for (int i = length - 1; i >= 0; i--) {
+			if (this.fixed[i]) {
+				if (anchor == -1 || isCommonByte(bytes[anchor])
+						&& !isCommonByte(bytes[i])) {
+					anchor = i;
+				}
+			}
+		}
+		int current = 0;
+		for (int i = 0; i < length; i++) {
+			current = this.fixed[i] ? current + 1 : 0;
+			if (current > runLength) {
+				runLength = current;
+				runStart = i - current + 1;
+			}
+		}
+		if (runLength >= MIN_SKIP_LENGTH) {
+			buildShifts();
+		}
+	}
+
+	/**
+	 * Parse a pattern from hex, two digits per byte, with "??" for a
+	 * wildcard byte, e.g. "4A08??????0847".
+	 */
+	public static BytePattern fromHex(String hex) {
+		if (hex.length() % 2 != 0) {
+			throw new IllegalArgumentException("odd length hex pattern: "
+					+ hex);
+		}
+		byte[] bytes = new byte[hex.length() / 2];
+		boolean[] fixed = new boolean[bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			String digits = hex.substring(i * 2, i * 2 + 2);
+			if (digits.equals("??")) {
+				fixed[i] = false;
+			} else {
+				bytes[i] = (byte) Integer.parseInt(digits, 16);
+				fixed[i] = true;
+			}
+		}
+		return new BytePattern(bytes, fixed);
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public boolean matchesAt(byte[] haystack, int offset) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (fixed[i] && haystack[offset + i] != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int findFirst(byte[] haystack) {
+		return findFirst(haystack, 0, haystack.length);
+	}
+
+	/**
+	 * Offset of the first match lying entirely within [begin, end), or -1.
+	 */
+	public int findFirst(byte[] haystack, int begin, int end) {
+		if (length == 0 || begin < 0 || end - begin < length) {
+			return -1;
+		}
+		if (anchor == -1) {
+			return begin;
+		}
+		if (shifts != null) {
+			return horspool(haystack, begin, end);
+		}
+		return anchorScan(haystack, begin, end);
+	}
+
+	public List<Integer> findAll(byte[] haystack) {
+		return findAll(haystack, 0, haystack.length);
+	}
+
+	public List<Integer> findAll(byte[] haystack, int begin, int end) {
+		List<Integer> results = new ArrayList<Integer>();
+		int found = findFirst(haystack, begin, end);
+		while (found >= 0) {
+			results.add(found);
+			found = findFirst(haystack, found + length, end);
+		}
+		return results;
+	}
+
+	private int horspool(byte[] haystack, int begin, int end) {
+		// pos is where the whole pattern would start
+		int last = runStart + runLength - 1;
+		byte lastByte = bytes[last];
+		int[] shifts = this.shifts;
+		int pos = begin;
+		int limit = end - length;
+		while (pos <= limit) {
+			byte b = haystack[pos + last];
+			if (b == lastByte && matchesAt(haystack, pos)) {
+				return pos;
+			}
+			pos += shifts[b & 0xFF];
+		}
+		return -1;
+	}
+
+	private int anchorScan(byte[] haystack, int begin, int end) {
+		byte anchorByte = bytes[anchor];
+		int i = begin + anchor;
+		int limit = end - length + anchor;
+		while (i <= limit) {
+			if (haystack[i] == anchorByte && matchesAt(haystack, i - anchor)) {
+				return i - anchor;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	private void buildShifts() {
+		shifts = new int[256];
+		for (int v = 0; v < 256; v++) {
+			shifts[v] = runLength;
+		}
+		int last = runStart + runLength - 1;
+		for (int i = runStart; i < last; i++) {
+			shifts[bytes[i] & 0xFF] = last - i;
+		}
+	}
+
+	private static boolean isCommonByte(byte b) {
+		return b == 0x00 || b == (byte) 0xFF;
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  Checksums.java - CRC helpers for config files, settings               --*/
+/*--                   data and ROM images.                                 --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+
+public class Checksums {
+
+	public static int crc32(byte[] data) {
+		return crc32(data, 0, data.length);
+	}
+
+	public static int crc32(byte[] data, int offset, int length) {
+		CRC32 checksum = new CRC32();
+		checksum.update(data, offset, length);
+		return (int) checksum.getValue();
+	}
+
+	/**
+	 * CRC32 of a text config file, ignoring line endings, surrounding
+	 * whitespace and blank lines. This is what quick settings strings record
+	 * for the custom names files. 0 if the file can't be read.
+	 */
+	public static int configFileChecksum(String filename) {
+		try {
+			return configFileChecksum(FileFunctions.openConfig(filename));
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	public static int configFileChecksum(InputStream stream) {
+		try {
+			Scanner sc = new Scanner(stream, "UTF-8");
+			CRC32 checksum = new CRC32();
+			while (sc.hasNextLine()) {
+				String line = sc.nextLine().trim();
+				if (!line.isEmpty()) {
+					checksum.update(line.getBytes("UTF-8"));
+				}
+			}
+			sc.close();
+			return (int) checksum.getValue();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+}
@@ -9,7 +9,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import com.dabomstew.pkrandom.delta.IPSPatch;
+import com.dabomstew.pkrandom.delta.PatchResult;
 
 public class FileFunctions {
 
@@ -77,10 +82,18 @@ public class FileFunctions {
 		InputStream is = FileFunctions.class
 				.getResourceAsStream("/com/dabomstew/pkrandom/patches/"
 						+ filename);
-		byte[] buf = new byte[is.available()];
-		is.read(buf);
+		if (is == null) {
+			throw new FileNotFoundException(filename);
+		}
+		// available() is only a guess for resources inside a jar
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int count;
+		while ((count = is.read(buf)) != -1) {
+			out.write(buf, 0, count);
+		}
 		is.close();
-		return buf;
+		return out.toByteArray();
 	}
 
 	public static byte[] downloadFile(String url) throws IOException {
@@ -97,81 +110,24 @@ public class FileFunctions {
 		return output;
 	}
 
-	public static void applyPatch(byte[] rom, String patchName)
-			throws IOException {
-		byte[] patch = getCodeTweakFile(patchName + ".ips");
-		// check sig
-		int patchlen = patch.length;
-		if (patchlen < 8 || patch[0] != 'P' || patch[1] != 'A'
-				|| patch[2] != 'T' || patch[3] != 'C' || patch[4] != 'H') {
-			System.out.println("not a valid IPS file");
-			return;
-		}
+	// code tweak patches, parsed the first time each is used
+	private static final Map<String, IPSPatch> codeTweakPatches = new HashMap<String, IPSPatch>();
 
-		// records
-		int offset = 5;
-		while (offset + 2 < patchlen) {
-			int writeOffset = readIPSOffset(patch, offset);
-			if (writeOffset == 0x454f46) {
-				// eof, done
-				System.out.println("patch successful");
-				return;
-			}
-			offset += 3;
-			if (offset + 1 >= patchlen) {
-				// error
-				System.out.println("abrupt ending to IPS file, entry cut off before size");
-				return;
-			}
-			int size = readIPSSize(patch, offset);
-			offset += 2;
-			if (size == 0) {
-				// RLE
-				if (offset + 1 >= patchlen) {
-					// error
-					System.out.println("abrupt ending to IPS file, entry cut off before RLE size");
-					return;
-				}
-				int rleSize = readIPSSize(patch, offset);
-				if(writeOffset + rleSize > rom.length) {
-					// error
-					System.out.println("trying to patch data past the end of the ROM file");
-					return;
-				}
-				offset += 2;
-				if (offset >= patchlen) {
-					// error
-					System.out.println("abrupt ending to IPS file, entry cut off before RLE byte");
-					return;
-				}
-				byte rleByte = patch[offset++];
-				for (int i = writeOffset; i < writeOffset + rleSize; i++) {
-					rom[i] = rleByte;
-				}
-			} else {
-				if (offset + size > patchlen) {
-					// error
-					System.out.println("abrupt ending to IPS file, entry cut off before end of data block");
-					return;
-				}
-				if(writeOffset + size > rom.length) {
-					// error
-					System.out.println("trying to patch data past the end of the ROM file");
-					return;
-				}
-				System.arraycopy(patch, offset, rom, writeOffset, size);
-				offset += size;
+	/**
+	 * Apply the code tweak patch patchName (an IPS file in the patches
+	 * folder) to rom in place. A patch that's damaged or doesn't fit the ROM
+	 * leaves it untouched and says why in the result.
+	 */
+	public static PatchResult applyPatch(byte[] rom, String patchName)
+			throws IOException {
+		IPSPatch patch;
+		synchronized (codeTweakPatches) {
+			patch = codeTweakPatches.get(patchName);
+			if (patch == null) {
+				patch = new IPSPatch(getCodeTweakFile(patchName + ".ips"));
+				codeTweakPatches.put(patchName, patch);
 			}
 		}
-		System.out.println("improperly terminated IPS file");
-	}
-
-	private static int readIPSOffset(byte[] data, int offset) {
-		return ((data[offset] & 0xFF) << 16) | ((data[offset + 1] & 0xFF) << 8)
-				| (data[offset + 2] & 0xFF);
-	}
-
-	private static int readIPSSize(byte[] data, int offset) {
-		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+		return patch.applyTo(rom);
 	}
 }
@@ -0,0 +1,145 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  FreeSpaceAllocator.java - hands out blocks of free space in a ROM,    --*/
+/*--                           tracking what has already been used.         --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Indexes the runs of free bytes in a ROM with one pass, then allocates
+ * from that index instead of searching the ROM again for every block.
+ *
+ * Placement follows RomFunctions.freeSpaceFinder: a block goes in the first
+ * run that can hold it, starting 2 bytes in (or at the next 4-aligned offset
+ * at least 2 bytes in), so terminators at the end of whatever precedes it are
+ * left alone. Space handed out is never given out again unless it is freed.
+ */
+public class FreeSpaceAllocator {
+
+	// runs shorter than this are too small to be worth tracking
+	private static final int MIN_RUN = 8;
+
+	private byte[] rom;
+	private byte freeSpace;
+	// start => end (exclusive) of each run of free bytes
+	private TreeMap<Integer, Integer> runs = new TreeMap<Integer, Integer>();
+
+	public FreeSpaceAllocator(byte[] rom, byte freeSpace, int start) {
+		this(rom, freeSpace, start, rom.length);
+	}
+
+	public FreeSpaceAllocator(byte[] rom, byte freeSpace, int start, int end) {
+		this.rom = rom;
+		this.freeSpace = freeSpace;
+		index(start, end);
+	}
+
+	public int allocate(int amount) {
+		// by default align to 4 bytes to make sure things don't break
+		return allocate(amount, true);
+	}
+
+	/**
+	 * Reserve amount bytes, returning their offset, or -1 if no run of free
+	 * space is big enough.
+	 */
+	public int allocate(int amount, boolean longAligned) {
+		int needed = amount + (longAligned ? 5 : 2);
+		Map.Entry<Integer, Integer> run = runs.firstEntry();
+		while (run != null) {
+			int runStart = run.getKey();
+			int runEnd = run.getValue();
+			if (runEnd - runStart < needed) {
+				run = runs.higherEntry(runStart);
+				continue;
+			}
+			int offset = longAligned ? (runStart + 5) & ~3 : runStart + 2;
+			runs.remove(runStart);
+			if (isFree(runStart, offset + amount)) {
+				if (runEnd - (offset + amount) >= MIN_RUN) {
+					runs.put(offset + amount, runEnd);
+				}
+				return offset;
+			}
+			// something else wrote here since we indexed it
+			index(runStart, runEnd);
+			run = runs.ceilingEntry(runStart);
+		}
+		return -1;
+	}
+
+	/**
+	 * Give back a block that is no longer referenced (e.g. data that has just
+	 * been repointed elsewhere). It is overwritten with free bytes.
+	 */
+	public void free(int offset, int length) {
+		Arrays.fill(rom, offset, offset + length, freeSpace);
+		int start = offset;
+		int end = offset + length;
+		Map.Entry<Integer, Integer> before = runs.floorEntry(start);
+		if (before != null && before.getValue() >= start) {
+			start = before.getKey();
+			end = Math.max(end, before.getValue());
+			runs.remove(start);
+		}
+		Map.Entry<Integer, Integer> after = runs.ceilingEntry(start);
+		while (after != null && after.getKey() <= end) {
+			end = Math.max(end, after.getValue());
+			runs.remove(after.getKey());
+			after = runs.ceilingEntry(start);
+		}
+		if (end - start >= MIN_RUN) {
+			runs.put(start, end);
+		}
+	}
+
+	private boolean isFree(int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (rom[i] != freeSpace) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void index(int start, int end) {
+		int i = start;
+		while (i < end) {
+			if (rom[i] != freeSpace) {
+				i++;
+				continue;
+			}
+			int runStart = i;
+			while (i < end && rom[i] == freeSpace) {
+				i++;
+			}
+			if (i - runStart >= MIN_RUN) {
+				runs.put(runStart, i);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,281 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  JobExecutor.java - runs jobs made of file I/O and CPU steps           --*/
+/*--                     on separately sized thread pools.                  --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A job is a chain of steps, each marked as mostly file I/O (loading or
+ * saving a ROM) or mostly CPU (randomizing, compressing). I/O steps run on
+ * their own pool, which can be much bigger than the machine's core count
+ * since its threads spend most of their time blocked in reads and writes;
+ * CPU steps run on a pool sized to the cores. A thread only ever holds a
+ * job for one step, and nothing blocks waiting for a step to finish, so a
+ * few hundred jobs in flight need no more threads than the two pools.
+ * 
+ * At most maxJobs jobs are in flight at once; submit() turns away any more
+ * so the caller can push back on whoever is asking.
+ */
+public class JobExecutor {
+
+	public enum Phase {
+		IO, CPU
+	}
+
+	/**
+	 * One step of a job.
+	 */
+	public static abstract class Step {
+		private final Phase phase;
+
+		protected Step(Phase phase) {
+			this.phase = phase;
+		}
+
+		public Phase getPhase() {
+			return phase;
+		}
+
+		/**
+		 * Do this step's work.
+		 * 
+		 * @return the job's next step, or null if this was the last one
+		 */
+		protected abstract Step run() throws Exception;
+	}
+
+	/**
+	 * Told how a job ended: failure is null if every step ran, a
+	 * CancellationException if it was cancelled, or whatever a step threw.
+	 */
+	public interface Completion {
+		void completed(Throwable failure);
+	}
+
+	/**
+	 * A submitted job.
+	 */
+	public class Handle {
+		private final Completion completion;
+		private Thread runner;
+		private boolean cancelled, done;
+		private Throwable failure;
+
+		private Handle(Completion completion) {
+			this.completion = completion;
+		}
+
+		/**
+		 * Stop the job: a step that's running is interrupted and no more of
+		 * its steps start. False if the job had already ended.
+		 */
+		public synchronized boolean cancel() {
+			if (done) {
+				return false;
+			}
+			cancelled = true;
+			if (runner != null) {
+				runner.interrupt();
+			}
+			return true;
+		}
+
+		public synchronized boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * Wait for the job to end.
+		 * 
+		 * @return the same as Completion gets
+		 */
+		public synchronized Throwable await() throws InterruptedException {
+			while (!done) {
+				wait();
+			}
+			return failure;
+		}
+
+		private void schedule(final Step step) {
+			ExecutorService pool = step.getPhase() == Phase.IO ? ioPool
+					: cpuPool;
+			try {
+				pool.execute(new Runnable() {
+					@Override
+					public void run() {
+						runStep(step);
+					}
+				});
+			} catch (RejectedExecutionException ex) {
+				// shut down
+				end(new CancellationException("job executor shut down"));
+			}
+		}
+
+		private void runStep(Step step) {
+			boolean wasCancelled;
+			synchronized (this) {
+				wasCancelled = cancelled;
+				if (!wasCancelled) {
+					runner = Thread.currentThread();
+				}
+			}
+			if (wasCancelled) {
+				end(new CancellationException("job cancelled"));
+				return;
+			}
+			Step next = null;
+			Throwable failure = null;
+			try {
+				next = step.run();
+			} catch (Throwable ex) {
+				failure = ex;
+			}
+			synchronized (this) {
+				runner = null;
+				wasCancelled = cancelled;
+			}
+			// a cancel that came as the step finished mustn't hit whatever
+			// this thread runs next
+			Thread.interrupted();
+			if (wasCancelled) {
+				end(new CancellationException("job cancelled"));
+			} else if (failure != null) {
+				end(failure);
+			} else if (next != null) {
+				schedule(next);
+			} else {
+				end(null);
+			}
+		}
+
+		private void end(Throwable failure) {
+			synchronized (this) {
+				if (done) {
+					return;
+				}
+				done = true;
+				this.failure = failure;
+				notifyAll();
+			}
+			active.remove(this);
+			slots.release();
+			if (completion != null) {
+				completion.completed(failure);
+			}
+		}
+	}
+
+	private final ThreadPoolExecutor ioPool;
+	private final ThreadPoolExecutor cpuPool;
+	private final Semaphore slots;
+	private final Set<Handle> active = Collections
+			.newSetFromMap(new ConcurrentHashMap<Handle, Boolean>());
+
+	public JobExecutor(int ioThreads, int cpuThreads, int maxJobs) {
+		if (ioThreads < 1 || cpuThreads < 1 || maxJobs < 1) {
+			throw new IllegalArgumentException(
+					"need at least one thread of each kind and one job");
+		}
+		this.ioPool = newPool("job-io", ioThreads);
+		this.cpuPool = newPool("job-cpu", cpuThreads);
+		this.slots = new Semaphore(maxJobs);
+	}
+
+	/**
+	 * A CPU pool with a thread per core, an I/O pool four times that, and
+	 * room for maxJobs jobs.
+	 */
+	public static JobExecutor forThisMachine(int maxJobs) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		return new JobExecutor(cores * 4, cores, maxJobs);
+	}
+
+	/**
+	 * Start a job at first.
+	 * 
+	 * @param completion
+	 *            told when the job ends, on the thread that ended it; may be
+	 *            null
+	 * @return the job, or null if maxJobs jobs are already in flight
+	 */
+	public Handle submit(Step first, Completion completion) {
+		if (!slots.tryAcquire()) {
+			return null;
+		}
+		Handle handle = new Handle(completion);
+		active.add(handle);
+		handle.schedule(first);
+		return handle;
+	}
+
+	/**
+	 * Jobs submitted and not yet ended.
+	 */
+	public int activeJobs() {
+		return active.size();
+	}
+
+	/**
+	 * Cancel every job in flight and stop the pools once their last steps
+	 * have wound up.
+	 */
+	public void shutdown() {
+		for (Handle handle : active) {
+			handle.cancel();
+		}
+		ioPool.shutdown();
+		cpuPool.shutdown();
+	}
+
+	private static ThreadPoolExecutor newPool(final String name, int threads) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+				30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private int count;
+
+					@Override
+					public synchronized Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, name + "-" + (++count));
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		// idle pools shouldn't keep threads around
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+}
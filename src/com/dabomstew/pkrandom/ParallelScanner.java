@@ -0,0 +1,201 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  ParallelScanner.java - searches big buffers for BytePatterns on all   --*/
+/*--                        available cores.                                --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits a buffer into chunks, searches the chunks on a fork-join pool and
+ * stitches the results back into exactly what a single left-to-right
+ * BytePattern.findAll would give, non-overlapping matches included.
+ *
+ * Each chunk runs its own greedy search from the chunk start. When a match
+ * from the previous chunk runs over the boundary, the merge rescans from the
+ * end of that match until it lands on a match the chunk also found, after
+ * which the two agree for the rest of the chunk.
+ *
+ * Buffers under PARALLEL_THRESHOLD bytes are searched on the calling thread,
+ * since that's quicker than handing them to the pool.
+ */
+public class ParallelScanner {
+
+	private static final int PARALLEL_THRESHOLD = 512 * 1024;
+	private static final int MIN_CHUNK_SIZE = 128 * 1024;
+
+	private static ForkJoinPool pool;
+
+	private static synchronized ForkJoinPool pool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+		return pool;
+	}
+
+	/**
+	 * Every match of every pattern in data, one list per pattern in the
+	 * order given. Each chunk is searched for the patterns one after another,
+	 * so it's walked once per pattern, but the chunks are searched side by
+	 * side.
+	 */
+	public static List<List<Integer>> findAll(byte[] data,
+			BytePattern... patterns) {
+		List<List<Integer>> results = new ArrayList<List<Integer>>();
+		if (data.length < PARALLEL_THRESHOLD) {
+			for (BytePattern pattern : patterns) {
+				results.add(pattern.findAll(data));
+			}
+			return results;
+		}
+		int chunkCount = Math.max(2, Math.min(data.length / MIN_CHUNK_SIZE,
+				Runtime.getRuntime().availableProcessors() * 4));
+		int chunkSize = (data.length + chunkCount - 1) / chunkCount;
+		int[] chunkStarts = new int[chunkCount + 1];
+		for (int i = 0; i < chunkCount; i++) {
+			chunkStarts[i] = Math.min(data.length, i * chunkSize);
+		}
+		chunkStarts[chunkCount] = data.length;
+		List<List<Integer>>[] chunkResults = pool().invoke(
+				new ChunkTask(data, patterns, chunkStarts, 0, chunkCount));
+		for (int p = 0; p < patterns.length; p++) {
+			results.add(merge(data, patterns[p], chunkStarts, chunkResults, p));
+		}
+		return results;
+	}
+
+	public static List<Integer> findAll(byte[] data, BytePattern pattern) {
+		return findAll(data, new BytePattern[] { pattern }).get(0);
+	}
+
+	/**
+	 * The offset of the only match of pattern in data, -1 if there is none,
+	 * or -2 if there is more than one.
+	 */
+	public static int findUnique(byte[] data, BytePattern pattern) {
+		List<Integer> found = findAll(data, pattern);
+		if (found.size() == 0) {
+			return -1;
+		} else if (found.size() > 1) {
+			return -2;
+		} else {
+			return found.get(0);
+		}
+	}
+
+	private static List<Integer> merge(byte[] data, BytePattern pattern,
+			int[] chunkStarts, List<List<Integer>>[] chunkResults, int p) {
+		List<Integer> merged = new ArrayList<Integer>();
+		int length = pattern.length();
+		int next = 0;
+		for (int c = 0; c < chunkResults.length; c++) {
+			int chunkEnd = chunkStarts[c + 1];
+			List<Integer> local = chunkResults[c].get(p);
+			int idx = 0;
+			while (next < chunkEnd) {
+				while (idx < local.size() && local.get(idx) < next) {
+					idx++;
+				}
+				if (idx == 0 || local.get(idx - 1) + length <= next) {
+					// in step with the chunk's own search from here on
+					for (; idx < local.size(); idx++) {
+						merged.add(local.get(idx));
+					}
+					if (!local.isEmpty()) {
+						next = Math.max(next, local.get(local.size() - 1)
+								+ length);
+					}
+					next = Math.max(next, chunkEnd);
+					break;
+				}
+				int found = pattern.findFirst(data, next, data.length);
+				if (found < 0) {
+					return merged;
+				}
+				if (found >= chunkEnd) {
+					next = found;
+					break;
+				}
+				merged.add(found);
+				next = found + length;
+			}
+		}
+		return merged;
+	}
+
+	private static class ChunkTask extends RecursiveTask<List<List<Integer>>[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private byte[] data;
+		private BytePattern[] patterns;
+		private int[] chunkStarts;
+		private int first, last;
+
+		ChunkTask(byte[] data, BytePattern[] patterns, int[] chunkStarts,
+				int first, int last) {
+			this.data = data;
+			this.patterns = patterns;
+			this.chunkStarts = chunkStarts;
+			this.first = first;
+			this.last = last;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		protected List<List<Integer>>[] compute() {
+			List<List<Integer>>[] results = new List[last - first];
+			if (last - first == 1) {
+				results[0] = scanChunk(chunkStarts[first],
+						chunkStarts[first + 1]);
+				return results;
+			}
+			int middle = (first + last) >>> 1;
+			ChunkTask left = new ChunkTask(data, patterns, chunkStarts, first,
+					middle);
+			ChunkTask right = new ChunkTask(data, patterns, chunkStarts,
+					middle, last);
+			left.fork();
+			List<List<Integer>>[] rightResults = right.compute();
+			List<List<Integer>>[] leftResults = left.join();
+			System.arraycopy(leftResults, 0, results, 0, leftResults.length);
+			System.arraycopy(rightResults, 0, results, leftResults.length,
+					rightResults.length);
+			return results;
+		}
+
+		// greedy matches starting in [begin, end), which may run past end
+		private List<List<Integer>> scanChunk(int begin, int end) {
+			List<List<Integer>> found = new ArrayList<List<Integer>>();
+			for (BytePattern pattern : patterns) {
+				int limit = Math.min(data.length, end + pattern.length() - 1);
+				found.add(pattern.findAll(data, begin, limit));
+			}
+			return found;
+		}
+	}
+
+}
@@ -1,7 +1,6 @@
-package com.dabomstew.pkrandom.gui;
+package com.dabomstew.pkrandom;
 
 import java.nio.ByteBuffer;
-import java.util.zip.CRC32;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -148,12 +147,10 @@ public class QuickSettingsUpdater {
 		}
 
 		// fix checksum
-		CRC32 checksum = new CRC32();
-		checksum.update(dataBlock, 0, actualDataLength - 16);
-
 		// convert crc32 to int bytes
 		byte[] crcBuf = ByteBuffer.allocate(4)
-				.putInt((int) checksum.getValue()).array();
+				.putInt(Checksums.crc32(dataBlock, 0, actualDataLength - 16))
+				.array();
 		System.arraycopy(crcBuf, 0, dataBlock, actualDataLength - 16, 4);
 
 		// have to make a new byte array to convert to base64
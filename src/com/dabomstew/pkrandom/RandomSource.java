@@ -27,66 +27,113 @@ package com.dabomstew.pkrandom;
 
 import java.security.SecureRandom;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RandomSource {
 
 	private static Random source = new Random();
-	private static int calls = 0;
+	private static AtomicInteger calls = new AtomicInteger();
 	private static Random instance = new RandomSourceInstance();
+	private static ThreadLocal<Stream> streams = new ThreadLocal<Stream>();
 
 	public static void reset() {
 		source = new Random();
-		calls = 0;
+		calls.set(0);
 	}
 
 	public static void seed(long seed) {
 		source.setSeed(seed);
-		calls = 0;
+		calls.set(0);
+	}
+
+	/**
+	 * Make the current thread draw from its own stream, seeded with seed,
+	 * instead of the shared one until endStream is called. This is how
+	 * randomization stages running side by side each get a sequence that
+	 * doesn't depend on what the others draw.
+	 */
+	public static void beginStream(long seed) {
+		beginStream(new SplitRandom(seed));
+	}
+
+	/**
+	 * Same, with a stream from subStream, e.g. for a sub-task handed to
+	 * another thread.
+	 */
+	public static void beginStream(SplitRandom random) {
+		streams.set(new Stream(random));
+	}
+
+	/**
+	 * A stream for the part of the current work named key, derived from
+	 * this thread's stream without drawing from it, so it doesn't depend
+	 * on what else the stage has drawn or in what order its parts ran. On
+	 * the shared source, where the order of draws matters anyway, it's
+	 * seeded with one draw.
+	 */
+	public static SplitRandom subStream(String key) {
+		Stream stream = streams.get();
+		if (stream != null) {
+			return stream.random.forKey(key);
+		}
+		return new SplitRandom(SplitRandom.keyedSeed(nextLong(), key));
+	}
+
+	/**
+	 * Go back to the shared source on this thread.
+	 * 
+	 * @return how many numbers were drawn from the thread's stream
+	 */
+	public static int endStream() {
+		Stream stream = streams.get();
+		streams.remove();
+		return stream == null ? 0 : stream.calls;
+	}
+
+	private static Random source() {
+		Stream stream = streams.get();
+		if (stream != null) {
+			stream.calls++;
+			return stream.random;
+		}
+		calls.incrementAndGet();
+		return source;
 	}
 
 	public static double random() {
-		calls++;
-		return source.nextDouble();
+		return source().nextDouble();
 	}
 
 	public static int nextInt(int size) {
-		calls++;
-		return source.nextInt(size);
+		return source().nextInt(size);
 	}
 
 	public static void nextBytes(byte[] bytes) {
-		calls++;
-		source.nextBytes(bytes);
+		source().nextBytes(bytes);
 	}
 
 	public static int nextInt() {
-		calls++;
-		return source.nextInt();
+		return source().nextInt();
 	}
 
 	public static long nextLong() {
-		calls++;
-		return source.nextLong();
+		return source().nextLong();
 	}
 
 	public static boolean nextBoolean() {
-		calls++;
-		return source.nextBoolean();
+		return source().nextBoolean();
 	}
 
 	public static float nextFloat() {
-		calls++;
-		return source.nextFloat();
+		return source().nextFloat();
 	}
 
 	public static double nextDouble() {
-		calls++;
-		return source.nextDouble();
+		return source().nextDouble();
 	}
 
-	public static synchronized double nextGaussian() {
-		calls++;
-		return source.nextGaussian();
+	public static double nextGaussian() {
+		return source().nextGaussian();
 	}
 
 	public static long pickSeed() {
@@ -102,8 +149,21 @@ public class RandomSource {
 		return instance;
 	}
 
+	/**
+	 * Numbers drawn from the shared source since it was last seeded (not
+	 * counting any drawn from per-thread streams).
+	 */
 	public static int callsSinceSeed() {
-		return calls;
+		return calls.get();
+	}
+
+	private static class Stream {
+		private SplitRandom random;
+		private int calls;
+
+		private Stream(SplitRandom random) {
+			this.random = random;
+		}
 	}
 
 	private static class RandomSourceInstance extends Random {
@@ -154,7 +214,7 @@ public class RandomSource {
 		}
 
 		@Override
-		public synchronized double nextGaussian() {
+		public double nextGaussian() {
 			return RandomSource.nextGaussian();
 		}
 
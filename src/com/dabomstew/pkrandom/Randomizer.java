@@ -0,0 +1,134 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  Randomizer.java - applies Settings to a loaded ROM.                   --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.dabomstew.pkrandom.log.LogSink;
+import com.dabomstew.pkrandom.log.SpoilerWriter;
+import com.dabomstew.pkrandom.pipeline.Pipeline;
+import com.dabomstew.pkrandom.pipeline.RandomizationContext;
+import com.dabomstew.pkrandom.pipeline.SpoilerExport;
+import com.dabomstew.pkrandom.pipeline.StageMetrics;
+import com.dabomstew.pkrandom.pipeline.StandardStages;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * Runs a whole randomization of a loaded ROM from a Settings, without any
+ * GUI. The random number source should already be seeded.
+ */
+public class Randomizer {
+
+	private Settings settings;
+	private RomHandler romHandler;
+	private Pipeline pipeline;
+	private List<StageMetrics> stageMetrics;
+	private int threads;
+	private long streamSeed;
+
+	public Randomizer(Settings settings, RomHandler romHandler) {
+		this.settings = settings;
+		this.romHandler = romHandler;
+		this.pipeline = new Pipeline(StandardStages.create());
+	}
+
+	/**
+	 * The stages this will run, which can be disabled or reordered before
+	 * calling randomize.
+	 */
+	public Pipeline getPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Give every stage its own random stream derived from seed, and run
+	 * stages that share no data side by side on up to threads threads. A
+	 * seed still always gives the same ROM, but not the one a normal
+	 * (sequential, RandomSource-seeded) run would give, so this is off
+	 * unless asked for. With one thread the stages run on the thread that
+	 * calls randomize.
+	 */
+	public void useStageStreams(long seed, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("need at least one thread");
+		}
+		this.streamSeed = seed;
+		this.threads = threads;
+	}
+
+	/**
+	 * Stream structured spoiler records to out as the run goes (see
+	 * SpoilerExport). out is left open.
+	 */
+	public void exportSpoiler(SpoilerWriter out) {
+		pipeline.setTableListener(new SpoilerExport(out));
+	}
+
+	/**
+	 * Randomize the ROM in memory (saving it is up to the caller).
+	 * 
+	 * @param log
+	 *            where the verbose log goes
+	 * @param trainerClasses
+	 *            custom trainer class names file, or null for the built-in
+	 *            one; same for trainerNames and nicknames
+	 * @return the race mode check value
+	 */
+	public int randomize(LogSink log, byte[] trainerClasses,
+			byte[] trainerNames, byte[] nicknames) {
+		RandomizationContext context = new RandomizationContext(romHandler,
+				settings, log, trainerClasses, trainerNames, nicknames);
+		// the handler logs here for this run only; log stays the caller's
+		romHandler.setLogSink(log);
+		try {
+			if (threads == 0) {
+				stageMetrics = pipeline.run(context);
+			} else if (threads == 1) {
+				stageMetrics = pipeline.runWithStreams(context, streamSeed);
+			} else {
+				ExecutorService executor = Executors
+						.newFixedThreadPool(threads);
+				try {
+					stageMetrics = pipeline.runConcurrently(context,
+							streamSeed, executor);
+				} finally {
+					executor.shutdown();
+				}
+			}
+		} finally {
+			romHandler.setLogSink(null);
+		}
+		return context.getCheckValue();
+	}
+
+	/**
+	 * Timings for each stage of the last randomize call, in pipeline order.
+	 */
+	public List<StageMetrics> getStageMetrics() {
+		return stageMetrics;
+	}
+
+}
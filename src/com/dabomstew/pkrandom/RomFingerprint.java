@@ -0,0 +1,127 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  RomFingerprint.java - per-block CRC32s of a ROM image, to find the    --*/
+/*--                        blocks changed since it was loaded.             --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import com.dabomstew.pkrandom.delta.ImageWriter;
+
+/**
+ * The CRC32 of each BLOCK_SIZE block of a ROM image, and its length.
+ * Comparing them with the ones taken when the ROM was loaded shows which
+ * blocks have changed since, without keeping a copy of the loaded image
+ * around.
+ */
+public class RomFingerprint {
+
+	public static final int BLOCK_SIZE = 64 * 1024;
+
+	// unchanged runs shorter than this are folded into the changes around
+	// them, as a patch record costs about this much
+	private static final int PATCH_MERGE_GAP = 8;
+
+	private int[] blockCRCs;
+	private int length;
+
+	public RomFingerprint(byte[] rom) {
+		int blocks = (rom.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blockCRCs = new int[blocks];
+		length = rom.length;
+		CRC32 checksum = new CRC32();
+		for (int b = 0; b < blocks; b++) {
+			int start = b * BLOCK_SIZE;
+			checksum.reset();
+			checksum.update(rom, start, Math.min(BLOCK_SIZE, rom.length - start));
+			blockCRCs[b] = (int) checksum.getValue();
+		}
+	}
+
+	public int[] blockCRCs() {
+		return blockCRCs.clone();
+	}
+
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Give patch image as copies of filename plus the bytes that differ from
+	 * it. filename must still hold the bytes this fingerprint was taken of;
+	 * only blocks whose CRC has changed since are read back from it and
+	 * compared. patch isn't finished, so the caller can still add to it.
+	 */
+	public void writeChanges(byte[] image, String filename, ImageWriter patch)
+			throws IOException {
+		int[] imageCRCs = new RomFingerprint(image).blockCRCs;
+		int shared = Math.min(image.length, length);
+		byte[] original = new byte[BLOCK_SIZE];
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			// start of the unchanged bytes not yet given to patch
+			int unchangedFrom = 0;
+			for (int b = 0; b < imageCRCs.length; b++) {
+				int start = b * BLOCK_SIZE;
+				int blockLength = Math.min(BLOCK_SIZE, image.length - start);
+				int originalLength = Math.max(0,
+						Math.min(blockLength, length - start));
+				if (originalLength == blockLength && b < blockCRCs.length
+						&& blockCRCs[b] == imageCRCs[b]) {
+					continue;
+				}
+				file.seek(start);
+				file.readFully(original, 0, originalLength);
+				int i = 0;
+				while (i < blockLength) {
+					if (i < originalLength && original[i] == image[start + i]) {
+						i++;
+						continue;
+					}
+					int runEnd = i + 1;
+					for (int j = i + 1; j < blockLength
+							&& j < runEnd + PATCH_MERGE_GAP; j++) {
+						if (j >= originalLength
+								|| original[j] != image[start + j]) {
+							runEnd = j + 1;
+						}
+					}
+					if (start + i > unchangedFrom) {
+						patch.copy(unchangedFrom, unchangedFrom, start + i
+								- unchangedFrom);
+					}
+					patch.write(start + i, image, start + i, runEnd - i);
+					unchangedFrom = start + runEnd;
+					i = runEnd;
+				}
+			}
+			if (shared > unchangedFrom) {
+				patch.copy(unchangedFrom, unchangedFrom, shared - unchangedFrom);
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+}
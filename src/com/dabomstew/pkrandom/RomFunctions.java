@@ -23,7 +23,6 @@ package com.dabomstew.pkrandom;
 /*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
 /*----------------------------------------------------------------------------*/
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -168,22 +167,29 @@ public class RomFunctions {
 			// Find 2 more than necessary and return 2 into it,
 			// to preserve stuff like FF terminators for strings
 			// 161: and FFFF terminators for movesets
-			byte[] searchNeedle = new byte[amount + 2];
-			for (int i = 0; i < amount + 2; i++) {
-				searchNeedle[i] = freeSpace;
-			}
-			return searchForFirst(rom, offset, searchNeedle) + 2;
+			return findRun(rom, freeSpace, amount + 2, offset) + 2;
 		} else {
 			// Find 5 more than necessary and return into it as necessary for
 			// 4-alignment,
 			// to preserve stuff like FF terminators for strings
 			// 161: and FFFF terminators for movesets
-			byte[] searchNeedle = new byte[amount + 5];
-			for (int i = 0; i < amount + 5; i++) {
-				searchNeedle[i] = freeSpace;
+			return (findRun(rom, freeSpace, amount + 5, offset) + 5) & ~3;
+		}
+	}
+
+	// Start of the first run of at least length copies of value at or after
+	// offset, or -1. A plain run count beats a pattern search here because
+	// a needle of one repeated byte defeats any skip table.
+	private static int findRun(byte[] rom, byte value, int length, int offset) {
+		int runStart = offset;
+		for (int i = offset; i < rom.length; i++) {
+			if (rom[i] != value) {
+				runStart = i + 1;
+			} else if (i - runStart + 1 >= length) {
+				return runStart;
 			}
-			return (searchForFirst(rom, offset, searchNeedle) + 5) & ~3;
 		}
+		return -1;
 	}
 
 	public static List<Integer> search(byte[] haystack, byte[] needle) {
@@ -197,105 +203,14 @@ public class RomFunctions {
 
 	public static List<Integer> search(byte[] haystack, int beginOffset,
 			int endOffset, byte[] needle) {
-		int currentMatchStart = beginOffset;
-		int currentCharacterPosition = 0;
-
-		int docSize = endOffset;
-		int needleSize = needle.length;
-
-		int[] toFillTable = buildKMPSearchTable(needle);
-		List<Integer> results = new ArrayList<Integer>();
-
-		while ((currentMatchStart + currentCharacterPosition) < docSize) {
-
-			if (needle[currentCharacterPosition] == (haystack[currentCharacterPosition
-					+ currentMatchStart])) {
-				currentCharacterPosition = currentCharacterPosition + 1;
-
-				if (currentCharacterPosition == (needleSize)) {
-					results.add(currentMatchStart);
-					currentCharacterPosition = 0;
-					currentMatchStart = currentMatchStart + needleSize;
-
-				}
-
-			} else {
-				currentMatchStart = currentMatchStart
-						+ currentCharacterPosition
-						- toFillTable[currentCharacterPosition];
-
-				if (toFillTable[currentCharacterPosition] > -1) {
-					currentCharacterPosition = toFillTable[currentCharacterPosition];
-				}
-
-				else {
-					currentCharacterPosition = 0;
-
-				}
-
-			}
-		}
-		return results;
+		return new BytePattern(needle).findAll(haystack, beginOffset,
+				endOffset);
 	}
 
 	public static int searchForFirst(byte[] haystack, int beginOffset,
 			byte[] needle) {
-		int currentMatchStart = beginOffset;
-		int currentCharacterPosition = 0;
-
-		int docSize = haystack.length;
-		int needleSize = needle.length;
-
-		int[] toFillTable = buildKMPSearchTable(needle);
-
-		while ((currentMatchStart + currentCharacterPosition) < docSize) {
-
-			if (needle[currentCharacterPosition] == (haystack[currentCharacterPosition
-					+ currentMatchStart])) {
-				currentCharacterPosition = currentCharacterPosition + 1;
-
-				if (currentCharacterPosition == (needleSize)) {
-					return currentMatchStart;
-				}
-
-			} else {
-				currentMatchStart = currentMatchStart
-						+ currentCharacterPosition
-						- toFillTable[currentCharacterPosition];
-
-				if (toFillTable[currentCharacterPosition] > -1) {
-					currentCharacterPosition = toFillTable[currentCharacterPosition];
-				}
-
-				else {
-					currentCharacterPosition = 0;
-
-				}
-
-			}
-		}
-		return -1;
-	}
-
-	private static int[] buildKMPSearchTable(byte[] needle) {
-		int[] stable = new int[needle.length];
-		int pos = 2;
-		int j = 0;
-		stable[0] = -1;
-		stable[1] = 0;
-		while (pos < needle.length) {
-			if (needle[pos - 1] == needle[j]) {
-				stable[pos] = j + 1;
-				pos++;
-				j++;
-			} else if (j > 0) {
-				j = stable[j];
-			} else {
-				stable[pos] = 0;
-				pos++;
-			}
-		}
-		return stable;
+		return new BytePattern(needle).findFirst(haystack, beginOffset,
+				haystack.length);
 	}
 
 	public static String rewriteDescriptionForNewLineSize(String moveDesc,
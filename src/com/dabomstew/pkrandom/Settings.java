@@ -0,0 +1,534 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  Settings.java - randomizer options and their quick-                   --*/
+/*--                  settings binary format.                               --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.nio.charset.Charset;
+
+import javax.xml.bind.DatatypeConverter;
+
+import com.dabomstew.pkrandom.pokemon.GenRestrictions;
+
+/**
+ * Everything a randomization run is configured with, as plain typed fields,
+ * plus the binary format quick-settings strings and preset files use for it.
+ * 
+ * Nothing here touches Swing, so a settings string can be decoded on any
+ * thread; the GUI is just one producer and consumer of these. The byte layout
+ * is the one the GUI has always written, so existing strings keep working.
+ */
+public class Settings {
+
+	/**
+	 * Version of the binary format. Settings from older versions are
+	 * migrated by QuickSettingsUpdater.
+	 */
+	public static final int VERSION = 163;
+
+	// 28 bytes of options, 1 byte of ROM name length, 4 checksums
+	public static final int MIN_LENGTH = 45;
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	public enum BaseStatisticsMod {
+		UNCHANGED, SHUFFLE, RANDOM_FOLLOW_EVOLUTIONS, RANDOM_COMPLETELY
+	}
+
+	public enum AbilitiesMod {
+		UNCHANGED, RANDOMIZE
+	}
+
+	public enum TypesMod {
+		UNCHANGED, RANDOM_FOLLOW_EVOLUTIONS, COMPLETELY_RANDOM
+	}
+
+	public enum StartersMod {
+		UNCHANGED, CUSTOM, COMPLETELY_RANDOM, RANDOM_WITH_TWO_EVOLUTIONS
+	}
+
+	public enum MovesetsMod {
+		UNCHANGED, RANDOM_PREFER_SAME_TYPE, COMPLETELY_RANDOM, METRONOME_ONLY
+	}
+
+	public enum TrainersMod {
+		UNCHANGED, RANDOM, TYPE_THEMED
+	}
+
+	public enum WildPokemonMod {
+		UNCHANGED, RANDOM, AREA_MAPPING, GLOBAL_MAPPING
+	}
+
+	public enum WildPokemonRestrictionMod {
+		NONE, SIMILAR_STRENGTH, CATCH_EM_ALL, TYPE_THEME_AREAS
+	}
+
+	public enum StaticPokemonMod {
+		UNCHANGED, RANDOM_MATCHING, COMPLETELY_RANDOM
+	}
+
+	public enum MovesMod {
+		UNCHANGED, RANDOM
+	}
+
+	public enum CompatibilityMod {
+		UNCHANGED, RANDOM_PREFER_TYPE, COMPLETELY_RANDOM, FULL
+	}
+
+	public enum InGameTradesMod {
+		UNCHANGED, RANDOMIZE_GIVEN_ONLY, RANDOMIZE_GIVEN_AND_REQUESTED
+	}
+
+	public enum FieldItemsMod {
+		UNCHANGED, SHUFFLE, RANDOM
+	}
+
+	// general options
+	public boolean lowerCasePokemonNames;
+	public boolean nationalDexAtStart;
+	public boolean removeTradeEvolutions;
+	public boolean updateMoves;
+	public boolean updateMovesLegacy;
+	public boolean updateTypeEffectiveness;
+	public boolean makeEvolutionsEasier;
+	public boolean randomizeTrainerNames;
+	public boolean randomizeTrainerClassNames;
+	public boolean useCodeTweaks;
+	public boolean raceMode;
+	public boolean randomizeHiddenHollows;
+	public boolean blockBrokenMoves;
+	public boolean limitPokemon;
+
+	// base stats, abilities & types
+	public BaseStatisticsMod baseStatisticsMod = BaseStatisticsMod.UNCHANGED;
+	public boolean standardizeEXPCurves;
+	public AbilitiesMod abilitiesMod = AbilitiesMod.UNCHANGED;
+	public boolean allowWonderGuard;
+	public TypesMod typesMod = TypesMod.UNCHANGED;
+
+	// starters
+	public StartersMod startersMod = StartersMod.UNCHANGED;
+	// indexes into the custom starter choices, not Pokemon numbers
+	public int[] customStarters = new int[3];
+	public boolean randomizeStartersHeldItems;
+
+	// movesets
+	public MovesetsMod movesetsMod = MovesetsMod.UNCHANGED;
+	public boolean startWithFourMoves;
+
+	// trainers
+	public TrainersMod trainersMod = TrainersMod.UNCHANGED;
+	public boolean rivalCarriesStarterThroughout;
+	public boolean trainersUsePokemonOfSimilarStrength;
+	public boolean trainersMatchTypingDistribution;
+	public boolean trainersBlockLegendaries;
+	public boolean trainersBlockEarlyWonderGuard;
+
+	// wild pokemon
+	public WildPokemonMod wildPokemonMod = WildPokemonMod.UNCHANGED;
+	public WildPokemonRestrictionMod wildPokemonRestrictionMod = WildPokemonRestrictionMod.NONE;
+	public boolean useTimeBasedEncounters;
+	public boolean useMinimumCatchRate;
+	public boolean blockWildLegendaries;
+	public boolean randomizeWildPokemonHeldItems;
+
+	// static pokemon
+	public StaticPokemonMod staticPokemonMod = StaticPokemonMod.UNCHANGED;
+
+	// TMs & HMs
+	public MovesMod tmsMod = MovesMod.UNCHANGED;
+	public boolean tmLevelUpMoveSanity;
+	public boolean keepFieldMoveTMs;
+	public CompatibilityMod tmsHmsCompatibilityMod = CompatibilityMod.UNCHANGED;
+
+	// move tutors
+	public MovesMod moveTutorMovesMod = MovesMod.UNCHANGED;
+	public boolean tutorLevelUpMoveSanity;
+	public boolean keepFieldMoveTutors;
+	public CompatibilityMod moveTutorsCompatibilityMod = CompatibilityMod.UNCHANGED;
+
+	// in-game trades
+	public InGameTradesMod inGameTradesMod = InGameTradesMod.UNCHANGED;
+	public boolean randomizeInGameTradesItems;
+	public boolean randomizeInGameTradesIVs;
+	public boolean randomizeInGameTradesNicknames;
+	public boolean randomizeInGameTradesOTs;
+
+	// field items
+	public FieldItemsMod fieldItemsMod = FieldItemsMod.UNCHANGED;
+
+	// null when the Pokemon pool isn't limited
+	public GenRestrictions currentRestrictions;
+	public int currentCodeTweaks;
+
+	public String romName = "";
+
+	// checksums of the supplement files the settings were made with, only
+	// filled in when decoding
+	public int trainerClassesChecksum;
+	public int trainerNamesChecksum;
+	public int nicknamesChecksum;
+
+	/**
+	 * Decode a settings string from the current version.
+	 * 
+	 * @return the settings, or null if the string is corrupt
+	 */
+	public static Settings fromString(String settingsString) {
+		return fromBytes(DatatypeConverter.parseBase64Binary(settingsString));
+	}
+
+	/**
+	 * Decode a settings string written by the given version, migrating it
+	 * first if it's older than this one.
+	 * 
+	 * @return the settings, or null if the string is corrupt or newer than
+	 *         this version
+	 */
+	public static Settings fromString(int version, String settingsString) {
+		if (version > VERSION) {
+			return null;
+		}
+		if (version < VERSION) {
+			settingsString = new QuickSettingsUpdater().update(version,
+					settingsString);
+		}
+		return fromString(settingsString);
+	}
+
+	/**
+	 * Decode the binary form of some settings.
+	 * 
+	 * @return the settings, or null if the data is the wrong length or fails
+	 *         its checksum
+	 */
+	public static Settings fromBytes(byte[] data) {
+		if (data.length < MIN_LENGTH) {
+			return null;
+		}
+		int nameLength = data[28] & 0xFF;
+		if (data.length != MIN_LENGTH + nameLength) {
+			return null;
+		}
+		int crcOffset = data.length - 16;
+		if (Checksums.crc32(data, 0, crcOffset) != readInt(data, crcOffset)) {
+			return null;
+		}
+
+		Settings settings = new Settings();
+		settings.lowerCasePokemonNames = bit(data[0], 0);
+		settings.nationalDexAtStart = bit(data[0], 1);
+		settings.removeTradeEvolutions = bit(data[0], 2);
+		settings.updateMoves = bit(data[0], 3);
+		settings.updateMovesLegacy = bit(data[0], 4);
+		settings.updateTypeEffectiveness = bit(data[0], 5);
+		settings.randomizeTrainerNames = bit(data[0], 6);
+		settings.randomizeTrainerClassNames = bit(data[0], 7);
+
+		settings.baseStatisticsMod = pick(data[1],
+				BaseStatisticsMod.UNCHANGED, 0,
+				BaseStatisticsMod.RANDOM_FOLLOW_EVOLUTIONS,
+				BaseStatisticsMod.RANDOM_COMPLETELY,
+				BaseStatisticsMod.SHUFFLE, BaseStatisticsMod.UNCHANGED);
+		settings.abilitiesMod = pick(data[1], AbilitiesMod.UNCHANGED, 4,
+				AbilitiesMod.UNCHANGED, AbilitiesMod.RANDOMIZE);
+		settings.allowWonderGuard = bit(data[1], 6);
+		settings.standardizeEXPCurves = bit(data[1], 7);
+
+		settings.typesMod = pick(data[2], TypesMod.UNCHANGED, 0,
+				TypesMod.RANDOM_FOLLOW_EVOLUTIONS, TypesMod.COMPLETELY_RANDOM,
+				TypesMod.UNCHANGED);
+		settings.useCodeTweaks = bit(data[2], 3);
+		settings.raceMode = bit(data[2], 4);
+		settings.randomizeHiddenHollows = bit(data[2], 5);
+		settings.blockBrokenMoves = bit(data[2], 6);
+		settings.limitPokemon = bit(data[2], 7);
+
+		settings.makeEvolutionsEasier = bit(data[3], 0);
+
+		settings.startersMod = pick(data[4], StartersMod.UNCHANGED, 0,
+				StartersMod.CUSTOM, StartersMod.COMPLETELY_RANDOM,
+				StartersMod.UNCHANGED, StartersMod.RANDOM_WITH_TWO_EVOLUTIONS);
+		settings.randomizeStartersHeldItems = bit(data[4], 4);
+		for (int i = 0; i < 3; i++) {
+			settings.customStarters[i] = (data[5 + i * 2] & 0xFF)
+					| ((data[6 + i * 2] & 0xFF) << 8);
+		}
+
+		settings.movesetsMod = pick(data[11], MovesetsMod.UNCHANGED, 0,
+				MovesetsMod.COMPLETELY_RANDOM,
+				MovesetsMod.RANDOM_PREFER_SAME_TYPE, MovesetsMod.UNCHANGED,
+				MovesetsMod.METRONOME_ONLY);
+		settings.startWithFourMoves = bit(data[11], 4);
+
+		settings.trainersUsePokemonOfSimilarStrength = bit(data[12], 0);
+		settings.trainersMod = pick(data[12], TrainersMod.UNCHANGED, 1,
+				TrainersMod.RANDOM, null, TrainersMod.TYPE_THEMED, null,
+				TrainersMod.UNCHANGED);
+		settings.rivalCarriesStarterThroughout = bit(data[12], 2);
+		settings.trainersMatchTypingDistribution = bit(data[12], 4);
+		settings.trainersBlockLegendaries = bit(data[12], 6);
+		settings.trainersBlockEarlyWonderGuard = bit(data[12], 7);
+
+		settings.wildPokemonRestrictionMod = pick(data[13],
+				WildPokemonRestrictionMod.NONE, 0,
+				WildPokemonRestrictionMod.CATCH_EM_ALL, null,
+				WildPokemonRestrictionMod.NONE,
+				WildPokemonRestrictionMod.TYPE_THEME_AREAS);
+		settings.wildPokemonMod = pick(data[13], WildPokemonMod.UNCHANGED, 1,
+				WildPokemonMod.AREA_MAPPING, null, null,
+				WildPokemonMod.GLOBAL_MAPPING, WildPokemonMod.RANDOM,
+				WildPokemonMod.UNCHANGED);
+		settings.useTimeBasedEncounters = bit(data[13], 7);
+
+		settings.useMinimumCatchRate = bit(data[14], 0);
+		settings.blockWildLegendaries = bit(data[14], 1);
+		if (bit(data[14], 2)) {
+			settings.wildPokemonRestrictionMod = WildPokemonRestrictionMod.SIMILAR_STRENGTH;
+		}
+		settings.randomizeWildPokemonHeldItems = bit(data[14], 3);
+
+		settings.staticPokemonMod = pick(data[15],
+				StaticPokemonMod.UNCHANGED, 0, StaticPokemonMod.UNCHANGED,
+				StaticPokemonMod.RANDOM_MATCHING,
+				StaticPokemonMod.COMPLETELY_RANDOM);
+
+		settings.tmsHmsCompatibilityMod = readCompatibility(data[16]);
+		settings.tmsMod = pick(data[16], MovesMod.UNCHANGED, 3,
+				MovesMod.RANDOM, MovesMod.UNCHANGED);
+		settings.tmLevelUpMoveSanity = bit(data[16], 5);
+		settings.keepFieldMoveTMs = bit(data[16], 6);
+
+		settings.moveTutorsCompatibilityMod = readCompatibility(data[17]);
+		settings.moveTutorMovesMod = pick(data[17], MovesMod.UNCHANGED, 3,
+				MovesMod.RANDOM, MovesMod.UNCHANGED);
+		settings.tutorLevelUpMoveSanity = bit(data[17], 5);
+		settings.keepFieldMoveTutors = bit(data[17], 6);
+
+		settings.inGameTradesMod = pick(data[18], InGameTradesMod.UNCHANGED,
+				0, InGameTradesMod.RANDOMIZE_GIVEN_AND_REQUESTED,
+				InGameTradesMod.RANDOMIZE_GIVEN_ONLY, null, null, null, null,
+				InGameTradesMod.UNCHANGED);
+		settings.randomizeInGameTradesItems = bit(data[18], 2);
+		settings.randomizeInGameTradesIVs = bit(data[18], 3);
+		settings.randomizeInGameTradesNicknames = bit(data[18], 4);
+		settings.randomizeInGameTradesOTs = bit(data[18], 5);
+
+		settings.fieldItemsMod = pick(data[19], FieldItemsMod.UNCHANGED, 0,
+				FieldItemsMod.RANDOM, FieldItemsMod.SHUFFLE,
+				FieldItemsMod.UNCHANGED);
+
+		int restrictions = readInt(data, 20);
+		if (restrictions != 0) {
+			settings.currentRestrictions = new GenRestrictions(restrictions);
+		}
+		settings.currentCodeTweaks = readInt(data, 24);
+
+		settings.romName = new String(data, 29, nameLength, ASCII);
+
+		settings.trainerClassesChecksum = readInt(data, data.length - 12);
+		settings.trainerNamesChecksum = readInt(data, data.length - 8);
+		settings.nicknamesChecksum = readInt(data, data.length - 4);
+		return settings;
+	}
+
+	/**
+	 * The binary form of these settings. The trailing checksums cover the
+	 * options themselves and the supplement files as they are right now.
+	 */
+	public byte[] toBytes() {
+		byte[] romNameBytes = romName == null ? new byte[0] : romName
+				.getBytes(ASCII);
+		int nameLength = Math.min(romNameBytes.length, 0xFF);
+		byte[] data = new byte[MIN_LENGTH + nameLength];
+
+		data[0] = bits(lowerCasePokemonNames, nationalDexAtStart,
+				removeTradeEvolutions, updateMoves, updateMovesLegacy,
+				updateTypeEffectiveness, randomizeTrainerNames,
+				randomizeTrainerClassNames);
+
+		data[1] = bits(
+				baseStatisticsMod == BaseStatisticsMod.RANDOM_FOLLOW_EVOLUTIONS,
+				baseStatisticsMod == BaseStatisticsMod.RANDOM_COMPLETELY,
+				baseStatisticsMod == BaseStatisticsMod.SHUFFLE,
+				baseStatisticsMod == BaseStatisticsMod.UNCHANGED,
+				abilitiesMod == AbilitiesMod.UNCHANGED,
+				abilitiesMod == AbilitiesMod.RANDOMIZE, allowWonderGuard,
+				standardizeEXPCurves);
+
+		data[2] = bits(typesMod == TypesMod.RANDOM_FOLLOW_EVOLUTIONS,
+				typesMod == TypesMod.COMPLETELY_RANDOM,
+				typesMod == TypesMod.UNCHANGED, useCodeTweaks, raceMode,
+				randomizeHiddenHollows, blockBrokenMoves, limitPokemon);
+
+		data[3] = bits(makeEvolutionsEasier);
+
+		data[4] = bits(startersMod == StartersMod.CUSTOM,
+				startersMod == StartersMod.COMPLETELY_RANDOM,
+				startersMod == StartersMod.UNCHANGED,
+				startersMod == StartersMod.RANDOM_WITH_TWO_EVOLUTIONS,
+				randomizeStartersHeldItems);
+
+		for (int i = 0; i < 3; i++) {
+			data[5 + i * 2] = (byte) customStarters[i];
+			data[6 + i * 2] = (byte) (customStarters[i] >> 8);
+		}
+
+		data[11] = bits(movesetsMod == MovesetsMod.COMPLETELY_RANDOM,
+				movesetsMod == MovesetsMod.RANDOM_PREFER_SAME_TYPE,
+				movesetsMod == MovesetsMod.UNCHANGED,
+				movesetsMod == MovesetsMod.METRONOME_ONLY, startWithFourMoves);
+
+		data[12] = bits(trainersUsePokemonOfSimilarStrength,
+				trainersMod == TrainersMod.RANDOM,
+				rivalCarriesStarterThroughout,
+				trainersMod == TrainersMod.TYPE_THEMED,
+				trainersMatchTypingDistribution,
+				trainersMod == TrainersMod.UNCHANGED, trainersBlockLegendaries,
+				trainersBlockEarlyWonderGuard);
+
+		data[13] = bits(
+				wildPokemonRestrictionMod == WildPokemonRestrictionMod.CATCH_EM_ALL,
+				wildPokemonMod == WildPokemonMod.AREA_MAPPING,
+				wildPokemonRestrictionMod == WildPokemonRestrictionMod.NONE,
+				wildPokemonRestrictionMod == WildPokemonRestrictionMod.TYPE_THEME_AREAS,
+				wildPokemonMod == WildPokemonMod.GLOBAL_MAPPING,
+				wildPokemonMod == WildPokemonMod.RANDOM,
+				wildPokemonMod == WildPokemonMod.UNCHANGED,
+				useTimeBasedEncounters);
+
+		data[14] = bits(
+				useMinimumCatchRate,
+				blockWildLegendaries,
+				wildPokemonRestrictionMod == WildPokemonRestrictionMod.SIMILAR_STRENGTH,
+				randomizeWildPokemonHeldItems);
+
+		data[15] = bits(staticPokemonMod == StaticPokemonMod.UNCHANGED,
+				staticPokemonMod == StaticPokemonMod.RANDOM_MATCHING,
+				staticPokemonMod == StaticPokemonMod.COMPLETELY_RANDOM);
+
+		data[16] = movesBits(tmsHmsCompatibilityMod, tmsMod,
+				tmLevelUpMoveSanity, keepFieldMoveTMs);
+		data[17] = movesBits(moveTutorsCompatibilityMod, moveTutorMovesMod,
+				tutorLevelUpMoveSanity, keepFieldMoveTutors);
+
+		data[18] = bits(
+				inGameTradesMod == InGameTradesMod.RANDOMIZE_GIVEN_AND_REQUESTED,
+				inGameTradesMod == InGameTradesMod.RANDOMIZE_GIVEN_ONLY,
+				randomizeInGameTradesItems, randomizeInGameTradesIVs,
+				randomizeInGameTradesNicknames, randomizeInGameTradesOTs,
+				inGameTradesMod == InGameTradesMod.UNCHANGED);
+
+		data[19] = bits(fieldItemsMod == FieldItemsMod.RANDOM,
+				fieldItemsMod == FieldItemsMod.SHUFFLE,
+				fieldItemsMod == FieldItemsMod.UNCHANGED);
+
+		writeInt(data, 20, currentRestrictions == null ? 0
+				: currentRestrictions.toInt());
+		writeInt(data, 24, currentCodeTweaks);
+
+		data[28] = (byte) nameLength;
+		System.arraycopy(romNameBytes, 0, data, 29, nameLength);
+
+		int crcOffset = data.length - 16;
+		writeInt(data, crcOffset, Checksums.crc32(data, 0, crcOffset));
+		writeInt(data, crcOffset + 4,
+				Checksums.configFileChecksum("trainerclasses.txt"));
+		writeInt(data, crcOffset + 8,
+				Checksums.configFileChecksum("trainernames.txt"));
+		writeInt(data, crcOffset + 12,
+				Checksums.configFileChecksum("nicknames.txt"));
+		return data;
+	}
+
+	/**
+	 * The settings string for these settings: toBytes() in base64.
+	 */
+	@Override
+	public String toString() {
+		return DatatypeConverter.printBase64Binary(toBytes());
+	}
+
+	private static CompatibilityMod readCompatibility(byte b) {
+		CompatibilityMod mod = pick(b, CompatibilityMod.UNCHANGED, 0,
+				CompatibilityMod.COMPLETELY_RANDOM,
+				CompatibilityMod.RANDOM_PREFER_TYPE,
+				CompatibilityMod.UNCHANGED);
+		return bit(b, 7) ? CompatibilityMod.FULL : mod;
+	}
+
+	private static byte movesBits(CompatibilityMod compatibility,
+			MovesMod moves, boolean levelUpMoveSanity, boolean keepFieldMoves) {
+		return bits(compatibility == CompatibilityMod.COMPLETELY_RANDOM,
+				compatibility == CompatibilityMod.RANDOM_PREFER_TYPE,
+				compatibility == CompatibilityMod.UNCHANGED,
+				moves == MovesMod.RANDOM, moves == MovesMod.UNCHANGED,
+				levelUpMoveSanity, keepFieldMoves,
+				compatibility == CompatibilityMod.FULL);
+	}
+
+	private static boolean bit(byte b, int index) {
+		return ((b >> index) & 1) != 0;
+	}
+
+	/**
+	 * Which of a group of options (bits firstBit, firstBit+1, ... of b, null
+	 * for bits belonging to something else) is set. If several are, the last
+	 * one wins, same as selecting radio buttons in that order would.
+	 */
+	// options is only read, and every caller passes enum constants
+	@SuppressWarnings("unchecked")
+	private static <T> T pick(byte b, T none, int firstBit, T... options) {
+		T chosen = none;
+		for (int i = 0; i < options.length; i++) {
+			if (options[i] != null && bit(b, firstBit + i)) {
+				chosen = options[i];
+			}
+		}
+		return chosen;
+	}
+
+	private static byte bits(boolean... switches) {
+		int value = 0;
+		for (int i = 0; i < switches.length; i++) {
+			if (switches[i]) {
+				value |= 1 << i;
+			}
+		}
+		return (byte) value;
+	}
+
+	private static int readInt(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 24)
+				| ((data[offset + 1] & 0xFF) << 16)
+				| ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+	}
+
+	private static void writeInt(byte[] data, int offset, int value) {
+		data[offset] = (byte) (value >>> 24);
+		data[offset + 1] = (byte) (value >>> 16);
+		data[offset + 2] = (byte) (value >>> 8);
+		data[offset + 3] = (byte) value;
+	}
+
+}
@@ -0,0 +1,195 @@
+package com.dabomstew.pkrandom;
+
+/*----------------------------------------------------------------------------*/
+/*--  SplitRandom.java - SplitMix64 random streams keyed by                 --*/
+/*--                     stage and sub-task.                                --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.Random;
+
+/**
+ * A fast, unsynchronized generator for per-stage random streams: the
+ * SplitMix64 algorithm (the one behind Java 8's SplittableRandom), as a
+ * java.util.Random so it can go wherever one is expected. From the same
+ * seed, nextInt, nextInt(bound), nextLong, nextDouble, nextBoolean and
+ * nextBytes give the same values as SplittableRandom. nextGaussian, which
+ * SplittableRandom doesn't have, uses Random's polar method.
+ * 
+ * Streams are derived from a seed and a key (a stage name, or a sub-task's
+ * name within a stage) by hashing, not by drawing from a parent, so a
+ * stream only depends on its seed and its keys. Adding, removing or
+ * reordering other stages, or drawing more numbers elsewhere, doesn't
+ * change it.
+ * 
+ * Not thread safe: each stream belongs to one thread at a time.
+ */
+public class SplitRandom extends Random {
+
+	private static final long serialVersionUID = 3907349052463592391L;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	// the seed this stream started from, which forKey derives from
+	private long origin;
+	private long seed;
+	private long gamma;
+	private double nextNextGaussian;
+	private boolean haveNextNextGaussian;
+
+	public SplitRandom(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private SplitRandom(long seed, long gamma) {
+		this.origin = seed;
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * The seed of the stream for key under seed.
+	 */
+	public static long keyedSeed(long seed, String key) {
+		// 64-bit FNV-1a of the key, so it's stable between runs and Java
+		// versions unlike some hashCodes, then mixed in with the seed
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+		}
+		return mix64(seed + GOLDEN_GAMMA * (mix64(hash) | 1));
+	}
+
+	/**
+	 * The stream for key under this one, e.g. for a sub-task of a stage.
+	 * It's the same however many numbers this stream has drawn.
+	 */
+	public SplitRandom forKey(String key) {
+		long childSeed = keyedSeed(origin, key);
+		return new SplitRandom(childSeed, mixGamma(childSeed + GOLDEN_GAMMA));
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		// also called by Random's constructor, before ours has run
+		this.origin = seed;
+		this.seed = seed;
+		this.gamma = GOLDEN_GAMMA;
+		this.haveNextNextGaussian = false;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return mix32(nextSeed()) >>> (32 - bits);
+	}
+
+	@Override
+	public int nextInt() {
+		return mix32(nextSeed());
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		// SplittableRandom's reduction, not Random's: mask powers of two,
+		// otherwise take the remainder of the top 31 bits and reject the
+		// few candidates that would favour the low values
+		int r = mix32(nextSeed());
+		int m = bound - 1;
+		if ((bound & m) == 0) {
+			return r & m;
+		}
+		int u = r >>> 1;
+		while (u + m - (r = u % bound) < 0) {
+			u = mix32(nextSeed()) >>> 1;
+		}
+		return r;
+	}
+
+	@Override
+	public void nextBytes(byte[] bytes) {
+		// eight bytes per long, low byte first, like SplittableRandom
+		int i = 0;
+		while (i < bytes.length) {
+			long rnd = nextLong();
+			for (int n = Math.min(bytes.length - i, 8); n > 0; n--) {
+				bytes[i++] = (byte) rnd;
+				rnd >>>= 8;
+			}
+		}
+	}
+
+	@Override
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	@Override
+	public double nextDouble() {
+		return (mix64(nextSeed()) >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public double nextGaussian() {
+		// same polar method as Random, without its lock
+		if (haveNextNextGaussian) {
+			haveNextNextGaussian = false;
+			return nextNextGaussian;
+		}
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		nextNextGaussian = v2 * multiplier;
+		haveNextNextGaussian = true;
+		return v1 * multiplier;
+	}
+
+	private long nextSeed() {
+		return seed += gamma;
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+		return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+	}
+
+	// an odd gamma with enough bit transitions to give a good sequence
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int transitions = Long.bitCount(z ^ (z >>> 1));
+		return transitions < 24 ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+	}
+
+}
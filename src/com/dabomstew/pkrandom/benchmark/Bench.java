@@ -0,0 +1,141 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  Bench.java - runs operations in warmup and timed                      --*/
+/*--               rounds, reporting throughput and                         --*/
+/*--               allocation per call.                                     --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A small measuring loop for the benchmark mains, in the spirit of JMH: each
+ * operation is run for a number of warmup rounds and then timed rounds of a
+ * fixed length, and the report gives throughput and bytes allocated per call
+ * averaged over the timed rounds. Allocation comes from the JVM's per-thread
+ * counters and shows as "n/a" where those aren't available.
+ *
+ * Operations return their result so the JIT can't drop the work; results are
+ * folded into a sink that is never printed in practice.
+ */
+public class Bench {
+
+	public interface Operation {
+		Object run() throws Exception;
+	}
+
+	private static final ThreadMXBean threads = ManagementFactory
+			.getThreadMXBean();
+
+	private int warmupRounds;
+	private int timedRounds;
+	private long roundNanos;
+	private String[] filters;
+	private int sink;
+
+	/**
+	 * Only operations whose name contains one of filters are run; no filters
+	 * runs everything.
+	 */
+	public Bench(int warmupRounds, int timedRounds, long roundMillis,
+			String[] filters) {
+		if (warmupRounds < 0 || timedRounds < 1 || roundMillis < 1) {
+			throw new IllegalArgumentException("bad round settings");
+		}
+		this.warmupRounds = warmupRounds;
+		this.timedRounds = timedRounds;
+		this.roundNanos = roundMillis * 1000000L;
+		this.filters = filters;
+	}
+
+	public Bench(String[] filters) {
+		this(3, 5, 500, filters);
+	}
+
+	public void header(String title) {
+		System.out.printf("%s%n", title);
+		System.out.printf("  %-40s %14s %14s%n", "operation", "ops/s",
+				"bytes/op");
+	}
+
+	public void measure(String name, Operation operation) throws Exception {
+		if (!wanted(name)) {
+			return;
+		}
+		long ops = 0, nanos = 0, bytes = 0;
+		boolean bytesKnown = true;
+		for (int round = 0; round < warmupRounds + timedRounds; round++) {
+			long bytesBefore = allocatedBytes();
+			long start = System.nanoTime();
+			long elapsed;
+			int roundOps = 0;
+			do {
+				Object result = operation.run();
+				sink += result == null ? 0 : result.hashCode();
+				roundOps++;
+				elapsed = System.nanoTime() - start;
+			} while (elapsed < roundNanos);
+			long bytesAfter = allocatedBytes();
+			if (round >= warmupRounds) {
+				ops += roundOps;
+				nanos += elapsed;
+				if (bytesBefore < 0) {
+					bytesKnown = false;
+				} else {
+					bytes += bytesAfter - bytesBefore;
+				}
+			}
+		}
+		System.out.printf("  %-40s %14.1f %14s%n", name, ops * 1e9 / nanos,
+				bytesKnown ? String.format("%.0f", (double) bytes / ops)
+						: "n/a");
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	private boolean wanted(String name) {
+		if (filters == null || filters.length == 0) {
+			return true;
+		}
+		for (String filter : filters) {
+			if (name.contains(filter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported()
+					&& sunThreads.isThreadAllocatedMemoryEnabled()) {
+				return sunThreads.getThreadAllocatedBytes(Thread
+						.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+}
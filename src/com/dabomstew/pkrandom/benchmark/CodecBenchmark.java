@@ -0,0 +1,223 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  CodecBenchmark.java - times the NARC, text, BLZ and LZ11              --*/
+/*--                        codecs and ROM searches on synthetic input.     --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.dabomstew.pkrandom.RomFunctions;
+import com.dabomstew.pkrandom.romhandlers.AbstractDSRomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen5RomHandler;
+import com.dabomstew.pkrandom.romhandlers.NARCContents;
+
+import cuecompressors.BLZCoder;
+import dsdecmp.HexInputStream;
+import dsdecmp.JavaDSDecmp;
+import pptxt.PPTxtHandler;
+import thenewpoketext.PokeTextData;
+import thenewpoketext.TextToPoke;
+
+/**
+ * Run with "java com.dabomstew.pkrandom.benchmark.CodecBenchmark [filter...]"
+ * from a directory where the config files can be found; filters pick
+ * operations by name. Inputs come from SyntheticData with a fixed seed so
+ * runs are comparable, and every codec is checked to round-trip its input
+ * before it is timed.
+ */
+public class CodecBenchmark {
+
+	private static final long SEED = 0x5EEDL;
+	private static final int NARC_FILES = 650;
+	private static final int TEXT_LINES = 400;
+	private static final int ARM9_SIZE = 512 << 10;
+	private static final int SEARCH_SIZE = 4 << 20;
+
+	public static void main(String[] args) throws Exception {
+		Bench bench = new Bench(args);
+		Random random = new Random(SEED);
+		// the coder prints its banner when it is made, so get that out of the
+		// way before the table starts
+		BLZCoder coder = new BLZCoder(null);
+		bench.header("Codecs");
+		narcs(bench, random);
+		gen5Text(bench, random);
+		gen4Text(bench, random);
+		blz(bench, random, coder);
+		lz11(bench, random);
+		search(bench, random);
+	}
+
+	private static void narcs(Bench bench, Random random) throws Exception {
+		final NARCContents narc = SyntheticData.narc(random, NARC_FILES, 40,
+				500);
+		final AbstractDSRomHandler handler = new Gen5RomHandler();
+		final byte[] packed = handler.buildNARC(narc);
+		NARCContents unpacked = handler.parseNARC(packed);
+		for (int i = 0; i < NARC_FILES; i++) {
+			if (!Arrays.equals(narc.files.get(i), unpacked.files.get(i))) {
+				throw new IllegalStateException("NARC mismatch at file " + i);
+			}
+		}
+		bench.measure("narc.build " + NARC_FILES + " files",
+				new Bench.Operation() {
+					public Object run() throws Exception {
+						return handler.buildNARC(narc);
+					}
+				});
+		bench.measure("narc.parse " + NARC_FILES + " files",
+				new Bench.Operation() {
+					public Object run() throws Exception {
+						return handler.parseNARC(packed);
+					}
+				});
+	}
+
+	private static void gen5Text(Bench bench, Random random) throws Exception {
+		final List<String> lines = SyntheticData.textBank(random, TEXT_LINES,
+				"\\xFFFE");
+		final byte[] empty = SyntheticData.emptyGen5TextFile(random,
+				TEXT_LINES);
+		final byte[] encoded = PPTxtHandler.saveEntry(empty,
+				new ArrayList<String>(lines));
+		if (!lines.equals(PPTxtHandler.readTexts(encoded))) {
+			throw new IllegalStateException("gen 5 text mismatch");
+		}
+		bench.measure("pptxt.readTexts " + TEXT_LINES + " lines",
+				new Bench.Operation() {
+					public Object run() {
+						return PPTxtHandler.readTexts(encoded);
+					}
+				});
+		bench.measure("pptxt.saveEntry " + TEXT_LINES + " lines",
+				new Bench.Operation() {
+					public Object run() {
+						// saveEntry rewrites the list it is given
+						return PPTxtHandler.saveEntry(encoded,
+								new ArrayList<String>(lines));
+					}
+				});
+	}
+
+	private static void gen4Text(Bench bench, Random random) throws Exception {
+		final List<String> lines = SyntheticData.textBank(random, TEXT_LINES,
+				"\\n");
+		final byte[] encrypted = encryptGen4(lines);
+		PokeTextData check = new PokeTextData(encrypted);
+		check.decrypt();
+		if (!lines.equals(check.strlist)) {
+			throw new IllegalStateException("gen 4 text mismatch");
+		}
+		bench.measure("poketext.decrypt " + TEXT_LINES + " lines",
+				new Bench.Operation() {
+					public Object run() {
+						PokeTextData text = new PokeTextData(encrypted);
+						text.decrypt();
+						return text.strlist;
+					}
+				});
+		bench.measure("poketext.encrypt " + TEXT_LINES + " lines",
+				new Bench.Operation() {
+					public Object run() {
+						return encryptGen4(lines);
+					}
+				});
+	}
+
+	// the same steps as Gen4RomHandler.setStrings
+	private static byte[] encryptGen4(List<String> lines) {
+		PokeTextData text = new PokeTextData(TextToPoke.MakeFile(lines, false));
+		text.SetKey(0xD00E);
+		text.encrypt();
+		return text.get();
+	}
+
+	private static void blz(Bench bench, Random random, final BLZCoder coder)
+			throws Exception {
+		final byte[] arm9 = SyntheticData.arm9Blob(random, ARM9_SIZE);
+		final byte[] compressed = coder.BLZ_EncodeBytes(arm9, true, false);
+		if (!Arrays.equals(arm9, BLZCoder.BLZ_DecodeBytes(compressed))) {
+			throw new IllegalStateException("BLZ mismatch");
+		}
+		String size = (ARM9_SIZE >> 10) + "KB";
+		bench.measure("blz.encode " + size, new Bench.Operation() {
+			public Object run() {
+				return coder.BLZ_EncodeBytes(arm9, true, false);
+			}
+		});
+		bench.measure("blz.encode best " + size, new Bench.Operation() {
+			public Object run() {
+				return coder.BLZ_EncodeBytes(arm9, true, true);
+			}
+		});
+		bench.measure("blz.decode " + size, new Bench.Operation() {
+			public Object run() {
+				return BLZCoder.BLZ_DecodeBytes(compressed);
+			}
+		});
+	}
+
+	private static void lz11(Bench bench, Random random) throws Exception {
+		byte[] sprite = SyntheticData.sprite(random);
+		final byte[] compressed = SyntheticData.compressLZ11(sprite);
+		int[] decompressed = decompressLZ11(compressed);
+		boolean same = decompressed.length == sprite.length;
+		for (int i = 0; same && i < sprite.length; i++) {
+			same = decompressed[i] == (sprite[i] & 0xFF);
+		}
+		if (!same) {
+			throw new IllegalStateException("LZ11 mismatch");
+		}
+		bench.measure("lz11.decompress sprite", new Bench.Operation() {
+			public Object run() throws Exception {
+				return decompressLZ11(compressed);
+			}
+		});
+	}
+
+	private static int[] decompressLZ11(byte[] compressed) throws IOException {
+		return JavaDSDecmp.Decompress(new HexInputStream(
+				new ByteArrayInputStream(compressed)));
+	}
+
+	private static void search(Bench bench, Random random) throws Exception {
+		final byte[] haystack = SyntheticData.arm9Blob(random, SEARCH_SIZE);
+		int offset = SEARCH_SIZE - 4096 - random.nextInt(4096);
+		final byte[] needle = Arrays.copyOfRange(haystack, offset, offset + 12);
+		if (!RomFunctions.search(haystack, needle).contains(offset)) {
+			throw new IllegalStateException("search missed the needle");
+		}
+		bench.measure("romfunctions.search " + (SEARCH_SIZE >> 20) + "MB",
+				new Bench.Operation() {
+					public Object run() {
+						return RomFunctions.search(haystack, needle);
+					}
+				});
+	}
+
+}
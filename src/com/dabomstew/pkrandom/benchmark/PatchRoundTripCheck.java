@@ -0,0 +1,547 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  PatchRoundTripCheck.java - checks IPS and BPS patches of built        --*/
+/*--                             images apply back to the same bytes.       --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.dabomstew.pkrandom.RandomSource;
+import com.dabomstew.pkrandom.Randomizer;
+import com.dabomstew.pkrandom.RomFingerprint;
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.Settings.BaseStatisticsMod;
+import com.dabomstew.pkrandom.Settings.StartersMod;
+import com.dabomstew.pkrandom.Settings.TrainersMod;
+import com.dabomstew.pkrandom.Settings.WildPokemonMod;
+import com.dabomstew.pkrandom.delta.BPSWriter;
+import com.dabomstew.pkrandom.delta.DeltaFormat;
+import com.dabomstew.pkrandom.delta.IPSWriter;
+import com.dabomstew.pkrandom.delta.ImageWriter;
+import com.dabomstew.pkrandom.delta.PatchApplier;
+import com.dabomstew.pkrandom.delta.PatchResult;
+import com.dabomstew.pkrandom.log.NullLogSink;
+import com.dabomstew.pkrandom.newnds.MemoryExtractionStore;
+import com.dabomstew.pkrandom.newnds.NDSRom;
+import com.dabomstew.pkrandom.romhandlers.Gen1RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen2RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen3RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen4RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen5RomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomIdentifier;
+
+/**
+ * Run with "java com.dabomstew.pkrandom.benchmark.PatchRoundTripCheck
+ * [rom...]". Builds target images out of ranges of a random source file and
+ * blocks of new data, the way the handlers hand them to an ImageWriter,
+ * writes each as an IPS patch (when it only copies in place) and as a BPS
+ * patch, applies the patches to the source with PatchApplier and checks the
+ * result is the image byte for byte. There are fixed cases for the awkward
+ * spots, IPS's 0x454F46 offset (which would read as EOF) among them, and
+ * then random layouts from a fixed seed.
+ * 
+ * Then it checks the two ways a handler turns its ROM into a patch give what
+ * saveRom would have written: a Game Boy image diffed against the fingerprint
+ * of the file, header touch-ups from detecting included, and a synthetic DS
+ * ROM laid out once by saveTo and once into a BPS patch. Each ROM named on
+ * the command line is loaded, randomized and saved both ways as well.
+ */
+public class PatchRoundTripCheck {
+
+	private static final long SEED = 0x5EEDL;
+	// long enough to reach past the IPS EOF offset
+	private static final int SOURCE_LENGTH = 6 << 20;
+	private static final int EOF_OFFSET = 0x454F46;
+	private static final int RANDOM_LAYOUTS = 100;
+
+	/**
+	 * A target image as a list of pieces; anything between them is zeros.
+	 */
+	private static class Layout {
+		final String name;
+		final List<int[]> copies = new ArrayList<int[]>();
+		final Map<Integer, byte[]> writes = new TreeMap<Integer, byte[]>();
+		int targetLength;
+		boolean moves;
+
+		Layout(String name, int targetLength) {
+			this.name = name;
+			this.targetLength = targetLength;
+		}
+
+		Layout copy(int sourceOffset, int targetOffset, int length) {
+			copies.add(new int[] { sourceOffset, targetOffset, length });
+			moves |= sourceOffset != targetOffset;
+			return this;
+		}
+
+		Layout write(int targetOffset, byte[] data) {
+			writes.put(targetOffset, data);
+			return this;
+		}
+
+		byte[] image(byte[] source) {
+			byte[] image = new byte[targetLength];
+			for (int[] copy : copies) {
+				System.arraycopy(source, copy[0], image, copy[1], copy[2]);
+			}
+			for (Map.Entry<Integer, byte[]> write : writes.entrySet()) {
+				byte[] data = write.getValue();
+				System.arraycopy(data, 0, image, write.getKey(), data.length);
+			}
+			return image;
+		}
+
+		void writeTo(ImageWriter out) throws IOException {
+			for (int[] copy : copies) {
+				out.copy(copy[0], copy[1], copy[2]);
+			}
+			for (Map.Entry<Integer, byte[]> write : writes.entrySet()) {
+				byte[] data = write.getValue();
+				out.write(write.getKey(), data, 0, data.length);
+			}
+			out.finish(targetLength);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Random random = new Random(SEED);
+		byte[] source = new byte[SOURCE_LENGTH];
+		random.nextBytes(source);
+		File sourceFile = File.createTempFile("roundtrip", ".bin");
+		sourceFile.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(sourceFile);
+		try {
+			fos.write(source);
+		} finally {
+			fos.close();
+		}
+		String sourceFilename = sourceFile.getAbsolutePath();
+
+		List<Layout> layouts = fixedLayouts(random);
+		for (int i = 0; i < RANDOM_LAYOUTS; i++) {
+			layouts.add(randomLayout(random, i));
+		}
+		int ips = 0, bps = 0;
+		for (Layout layout : layouts) {
+			byte[] expected = layout.image(source);
+			if (!layout.moves) {
+				check(layout, "IPS", source, expected, patch(layout, true,
+						sourceFilename));
+				ips++;
+			} else if (!ipsRefuses(layout, sourceFilename)) {
+				throw new IllegalStateException(layout.name
+						+ ": IPS writer took a moved copy");
+			}
+			check(layout, "BPS", source, expected, patch(layout, false,
+					sourceFilename));
+			bps++;
+		}
+		System.out.printf("%d layouts: %d IPS and %d BPS patches"
+				+ " round-trip%n", layouts.size(), ips, bps);
+
+		int fingerprinted = checkFingerprintPatches(random, source,
+				sourceFilename);
+		System.out.printf("%d fingerprinted images: patches match the"
+				+ " image%n", fingerprinted);
+		sourceFile.delete();
+
+		int nds = checkNDSPatches(random);
+		System.out.printf("%d DS ROMs: patches match saveTo%n", nds);
+
+		for (String rom : args) {
+			checkRom(rom);
+			System.out.printf("%s: patch matches saveRom%n", rom);
+		}
+	}
+
+	private static List<Layout> fixedLayouts(Random random) {
+		List<Layout> layouts = new ArrayList<Layout>();
+		layouts.add(new Layout("unchanged", SOURCE_LENGTH).copy(0, 0,
+				SOURCE_LENGTH));
+		layouts.add(new Layout("all zeros", SOURCE_LENGTH));
+		layouts.add(new Layout("scattered writes", SOURCE_LENGTH)
+				.copy(0, 0, 0x1000).write(0x1000, data(random, 16))
+				.copy(0x1010, 0x1010, 0x7FF0).write(0x9000, data(random, 1))
+				.copy(0x9001, 0x9001, SOURCE_LENGTH - 0x9001));
+		layouts.add(new Layout("data across EOF offset", SOURCE_LENGTH)
+				.copy(0, 0, EOF_OFFSET - 10)
+				.write(EOF_OFFSET - 10, data(random, 20))
+				.copy(EOF_OFFSET + 10, EOF_OFFSET + 10,
+						SOURCE_LENGTH - EOF_OFFSET - 10));
+		layouts.add(new Layout("data from EOF offset", SOURCE_LENGTH)
+				.copy(0, 0, EOF_OFFSET).write(EOF_OFFSET, data(random, 5))
+				.copy(EOF_OFFSET + 5, EOF_OFFSET + 5,
+						SOURCE_LENGTH - EOF_OFFSET - 5));
+		layouts.add(new Layout("data either side of EOF offset",
+				SOURCE_LENGTH).copy(0, 0, EOF_OFFSET - 1)
+				.write(EOF_OFFSET - 1, data(random, 1))
+				.write(EOF_OFFSET, data(random, 1))
+				.copy(EOF_OFFSET + 1, EOF_OFFSET + 1,
+						SOURCE_LENGTH - EOF_OFFSET - 1));
+		layouts.add(new Layout("gap before data at EOF offset", SOURCE_LENGTH)
+				.copy(0, 0, EOF_OFFSET - 1).write(EOF_OFFSET, data(random, 3))
+				.copy(EOF_OFFSET + 3, EOF_OFFSET + 3,
+						SOURCE_LENGTH - EOF_OFFSET - 3));
+		layouts.add(new Layout("zeros across EOF offset", SOURCE_LENGTH)
+				.copy(0, 0, EOF_OFFSET - 3).copy(EOF_OFFSET + 3,
+						EOF_OFFSET + 3, SOURCE_LENGTH - EOF_OFFSET - 3));
+		layouts.add(new Layout("records over 64K", SOURCE_LENGTH)
+				.write(0, data(random, 200000))
+				.copy(500000, 500000, SOURCE_LENGTH - 500000));
+		layouts.add(new Layout("truncated", SOURCE_LENGTH / 3).copy(0, 0,
+				0x10000).write(0x10000, data(random, 300)));
+		layouts.add(new Layout("extended", SOURCE_LENGTH + 0x30000)
+				.copy(0, 0, SOURCE_LENGTH)
+				.write(SOURCE_LENGTH + 0x100, data(random, 0x2000)));
+		layouts.add(new Layout("moved ranges", SOURCE_LENGTH + 0x200)
+				.copy(0, 0, 0x4000).write(0x4000, data(random, 0x200))
+				.copy(0x4000, 0x4200, SOURCE_LENGTH - 0x4000));
+		return layouts;
+	}
+
+	// pieces of random kinds and sizes laid end to end; some start just
+	// short of the EOF offset so it gets hit from every kind of piece
+	private static Layout randomLayout(Random random, int number) {
+		boolean moves = random.nextInt(4) == 0;
+		int targetLength = SOURCE_LENGTH - (1 << 20)
+				+ random.nextInt(2 << 20);
+		Layout layout = new Layout("random layout " + number, targetLength);
+		int pos = random.nextBoolean() ? 0 : EOF_OFFSET
+				- random.nextInt(0x20000);
+		if (pos > 0) {
+			layout.copy(0, 0, pos);
+		}
+		while (pos < targetLength) {
+			int length = Math.min(targetLength - pos,
+					1 + random.nextInt(random.nextBoolean() ? 16 : 0x20000));
+			int kind = random.nextInt(moves ? 4 : 3);
+			if (kind == 0 && pos + length <= SOURCE_LENGTH) {
+				layout.copy(pos, pos, length);
+			} else if (kind == 1) {
+				layout.write(pos, data(random, length));
+			} else if (kind == 3) {
+				int from = random.nextInt(SOURCE_LENGTH - length + 1);
+				layout.copy(from, pos, length);
+			}
+			// anything else is left as a gap
+			pos += length;
+		}
+		return layout;
+	}
+
+	private static byte[] data(Random random, int length) {
+		byte[] data = new byte[length];
+		random.nextBytes(data);
+		return data;
+	}
+
+	private static byte[] patch(Layout layout, boolean ips,
+			String sourceFilename) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ImageWriter writer = ips ? new IPSWriter(sourceFilename, bytes)
+				: new BPSWriter(sourceFilename, bytes);
+		try {
+			layout.writeTo(writer);
+		} finally {
+			writer.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static boolean ipsRefuses(Layout layout, String sourceFilename)
+			throws IOException {
+		IPSWriter writer = new IPSWriter(sourceFilename,
+				new ByteArrayOutputStream());
+		try {
+			layout.writeTo(writer);
+			return false;
+		} catch (IllegalArgumentException ex) {
+			return true;
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void check(Layout layout, String format, byte[] source,
+			byte[] expected, byte[] patch) {
+		check(layout.name, format, source, expected, patch);
+	}
+
+	private static void check(String name, String format, byte[] source,
+			byte[] expected, byte[] patch) {
+		PatchResult result = PatchApplier.apply(source, patch);
+		if (!result.succeeded()) {
+			throw new IllegalStateException(name + ": " + format
+					+ " patch failed to apply: " + result);
+		}
+		if (!Arrays.equals(expected, result.image)) {
+			throw new IllegalStateException(name + ": " + format
+					+ " patch gives a different image");
+		}
+	}
+
+	/**
+	 * Change copies of source the way a Game Boy handler changes its rom[]
+	 * and check the patch RomFingerprint.writeChanges gives against the file
+	 * rebuilds them. Every case starts with the header touch-up Gen 3 makes
+	 * while detecting some ROMs, which leaves the rest of block 0 alone.
+	 */
+	private static int checkFingerprintPatches(Random random, byte[] source,
+			String sourceFilename) throws IOException {
+		RomFingerprint fingerprint = new RomFingerprint(source);
+		Map<String, byte[]> images = new TreeMap<String, byte[]>();
+		images.put("header touch-up", touchUpHeader(source.clone()));
+
+		byte[] scattered = touchUpHeader(source.clone());
+		for (int i = 0; i < 200; i++) {
+			byte[] data = data(random, 1 + random.nextInt(40));
+			System.arraycopy(data, 0, scattered,
+					random.nextInt(source.length - data.length), data.length);
+		}
+		images.put("touch-up and scattered writes", scattered);
+
+		byte[] blockEdges = touchUpHeader(source.clone());
+		for (int b = 1; b < 8; b++) {
+			int edge = b * RomFingerprint.BLOCK_SIZE;
+			byte[] data = data(random, 6);
+			System.arraycopy(data, 0, blockEdges, edge - 3, data.length);
+		}
+		images.put("touch-up and writes across blocks", blockEdges);
+
+		byte[] truncated = touchUpHeader(Arrays.copyOf(source,
+				source.length / 2 + 123));
+		truncated[truncated.length - 1] ^= 1;
+		images.put("touch-up and truncated", truncated);
+
+		byte[] extended = touchUpHeader(Arrays.copyOf(source, source.length
+				+ RomFingerprint.BLOCK_SIZE + 77));
+		System.arraycopy(data(random, 0x1000), 0, extended,
+				source.length + 0x100, 0x1000);
+		images.put("touch-up and extended", extended);
+
+		for (Map.Entry<String, byte[]> image : images.entrySet()) {
+			byte[] expected = image.getValue();
+			DeltaFormat format = DeltaFormat.forImage(expected.length, false);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ImageWriter writer = format.newWriter(sourceFilename, bytes);
+			try {
+				fingerprint.writeChanges(expected, sourceFilename, writer);
+				writer.finish(expected.length);
+			} finally {
+				writer.close();
+			}
+			check(image.getKey(), format.name(), source, expected,
+					bytes.toByteArray());
+		}
+		return images.size();
+	}
+
+	// what Gen3RomHandler does to "YJencrypted" ROMs
+	private static byte[] touchUpHeader(byte[] image) {
+		image[0xAC] = 'B';
+		image[0xAD] = 'P';
+		image[0xAE] = 'E';
+		image[0xAF] = 'T';
+		image[0xBD] = 0x66;
+		return image;
+	}
+
+	/**
+	 * Open a synthetic DS ROM twice, make the same changes to both and check
+	 * the BPS patch one saves applies to the file to give what saveTo writes
+	 * for the other.
+	 */
+	private static int checkNDSPatches(Random random) throws IOException {
+		byte[] source = ndsImage(random);
+		File sourceFile = File.createTempFile("roundtrip", ".nds");
+		sourceFile.deleteOnExit();
+		File targetFile = File.createTempFile("roundtrip", ".nds");
+		targetFile.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(sourceFile);
+		try {
+			fos.write(source);
+		} finally {
+			fos.close();
+		}
+		String sourceFilename = sourceFile.getAbsolutePath();
+		byte[] bigger = data(random, 0x1234);
+		byte[] smaller = data(random, 0x10);
+		byte[] arm9Edit = data(random, 0x20);
+		String[] names = { "unchanged DS ROM", "DS ROM with resized files",
+				"DS ROM with resized files and ARM9" };
+		for (int changes = 0; changes < names.length; changes++) {
+			NDSRom saved = new NDSRom(sourceFilename,
+					new MemoryExtractionStore());
+			NDSRom patched = new NDSRom(sourceFilename,
+					new MemoryExtractionStore());
+			try {
+				for (NDSRom rom : new NDSRom[] { saved, patched }) {
+					if (changes > 0) {
+						rom.writeFile("a", bigger);
+						rom.writeFile("c", smaller);
+					}
+					if (changes > 1) {
+						byte[] arm9 = rom.getARM9().clone();
+						System.arraycopy(arm9Edit, 0, arm9, 0x100,
+								arm9Edit.length);
+						rom.writeARM9(arm9);
+					}
+				}
+				saved.saveTo(targetFile.getAbsolutePath());
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ImageWriter writer = new BPSWriter(sourceFilename, bytes);
+				try {
+					patched.save(writer);
+				} finally {
+					writer.close();
+				}
+				check(names[changes], "BPS", source, readFile(targetFile),
+						bytes.toByteArray());
+			} finally {
+				saved.dispose();
+				patched.dispose();
+			}
+		}
+		sourceFile.delete();
+		targetFile.delete();
+		return names.length;
+	}
+
+	/**
+	 * The smallest DS ROM NDSRom will open: a header, an ARM9 with no
+	 * footer, an ARM7, and a root directory holding files a, b and c, with
+	 * random bytes everywhere the tables don't point.
+	 */
+	private static byte[] ndsImage(Random random) {
+		byte[] image = data(random, 0xC200);
+		Arrays.fill(image, 0, 0x4000, (byte) 0);
+		put(image, 0x84, 0x4000); // header size
+		put(image, 0x20, 0x4000); // arm9 offset and size
+		put(image, 0x2C, 0x1000);
+		put(image, 0x30, 0x6000); // arm7 offset and size
+		put(image, 0x3C, 0x800);
+		put(image, 0x58, 0x6800); // no arm7 overlays
+		put(image, 0x5C, 0);
+		put(image, 0x68, 0x7000); // banner
+		put(image, 0x50, 0x9100); // no arm9 overlays
+		put(image, 0x54, 0);
+
+		int fnt = 0x8000;
+		Arrays.fill(image, fnt, fnt + 0x20, (byte) 0);
+		// the root's entries start at 8, its first file is ID 0 and it's
+		// the only directory
+		put(image, fnt, 8);
+		image[fnt + 6] = 1;
+		int pos = fnt + 8;
+		for (char name = 'a'; name <= 'c'; name++) {
+			image[pos++] = 1;
+			image[pos++] = (byte) name;
+		}
+		image[pos++] = 0;
+		put(image, 0x40, fnt);
+		put(image, 0x44, pos - fnt);
+
+		int fat = 0x9000;
+		int[] starts = { 0xA000, 0xB000, 0xC000 };
+		int[] lengths = { 0x300, 0x700, 0x123 };
+		for (int i = 0; i < starts.length; i++) {
+			put(image, fat + i * 8, starts[i]);
+			put(image, fat + i * 8 + 4, starts[i] + lengths[i]);
+		}
+		put(image, 0x48, fat);
+		put(image, 0x4C, starts.length * 8);
+		return image;
+	}
+
+	private static void put(byte[] data, int offset, int value) {
+		for (int i = 0; i < 4; i++) {
+			data[offset + i] = (byte) (value >> (i * 8));
+		}
+	}
+
+	/**
+	 * Load rom with whichever handler takes it, randomize it, and check that
+	 * savePatch applied to the file gives what saveRom writes.
+	 */
+	private static void checkRom(String rom) throws IOException {
+		RomHandler handler = RomIdentifier.identify(rom, new RomHandler[] {
+				new Gen1RomHandler(), new Gen2RomHandler(),
+				new Gen3RomHandler(), new Gen4RomHandler(),
+				new Gen5RomHandler() });
+		if (handler == null || !handler.loadRom(rom)) {
+			throw new IllegalStateException(rom + ": not a supported ROM");
+		}
+		Settings settings = new Settings();
+		settings.baseStatisticsMod = BaseStatisticsMod.RANDOM_FOLLOW_EVOLUTIONS;
+		settings.startersMod = StartersMod.COMPLETELY_RANDOM;
+		settings.trainersMod = TrainersMod.RANDOM;
+		settings.wildPokemonMod = WildPokemonMod.RANDOM;
+		RandomSource.seed(SEED);
+		new Randomizer(settings, handler).randomize(new NullLogSink(), null,
+				null, null);
+
+		File saved = File.createTempFile("roundtrip", ".rom");
+		saved.deleteOnExit();
+		File patch = File.createTempFile("roundtrip", ".patch");
+		patch.deleteOnExit();
+		if (!handler.saveRom(saved.getAbsolutePath())
+				|| !handler.savePatch(patch.getAbsolutePath())) {
+			throw new IllegalStateException(rom + ": couldn't save");
+		}
+		check(rom, handler.patchFormat().name(), readFile(new File(rom)),
+				readFile(saved), readFile(patch));
+		saved.delete();
+		patch.delete();
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			byte[] contents = new byte[(int) file.length()];
+			int read = 0;
+			while (read < contents.length) {
+				int n = fis.read(contents, read, contents.length - read);
+				if (n < 0) {
+					throw new IOException(file + " got shorter");
+				}
+				read += n;
+			}
+			return contents;
+		} finally {
+			fis.close();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  RandomizerBenchmark.java - times the AbstractRomHandler               --*/
+/*--                             randomizers on synthetic tables.           --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import com.dabomstew.pkrandom.RandomSource;
+
+/**
+ * Run with "java com.dabomstew.pkrandom.benchmark.RandomizerBenchmark
+ * [filter...]"; filters pick operations by name. Times the randomizers in
+ * AbstractRomHandler against a SyntheticRomHandler, so what is measured is
+ * the randomization itself and not reading or writing a ROM. Each call
+ * randomizes the tables the previous call left behind, which keeps them the
+ * same size and shape.
+ */
+public class RandomizerBenchmark {
+
+	private static final long SEED = 0x5EEDL;
+
+	public static void main(String[] args) throws Exception {
+		Bench bench = new Bench(args);
+		final SyntheticRomHandler handler = new SyntheticRomHandler(SEED);
+		RandomSource.seed(SEED);
+		bench.header("Randomizers (" + SyntheticRomHandler.POKEMON_COUNT
+				+ " Pokemon, " + handler.getTrainers().size() + " trainers, "
+				+ handler.getEncounters(false).size() + " encounter areas)");
+		bench.measure("pokemon stats", new Bench.Operation() {
+			public Object run() {
+				handler.restoreStats();
+				handler.randomizePokemonStats(true);
+				return null;
+			}
+		});
+		bench.measure("pokemon types", new Bench.Operation() {
+			public Object run() {
+				handler.randomizePokemonTypes(true);
+				return null;
+			}
+		});
+		bench.measure("abilities", new Bench.Operation() {
+			public Object run() {
+				handler.randomizeAbilities(false);
+				return null;
+			}
+		});
+		bench.measure("wild encounters", new Bench.Operation() {
+			public Object run() {
+				handler.randomEncounters(false, false, false, false, false);
+				return null;
+			}
+		});
+		bench.measure("wild encounters power levels", new Bench.Operation() {
+			public Object run() {
+				handler.randomEncounters(false, false, false, true, false);
+				return null;
+			}
+		});
+		bench.measure("wild encounters area 1:1", new Bench.Operation() {
+			public Object run() {
+				handler.area1to1Encounters(false, false, false, true, false);
+				return null;
+			}
+		});
+		bench.measure("wild encounters game 1:1", new Bench.Operation() {
+			public Object run() {
+				handler.game1to1Encounters(false, true, false);
+				return null;
+			}
+		});
+		bench.measure("trainer pokemon", new Bench.Operation() {
+			public Object run() {
+				handler.randomizeTrainerPokes(false, false, false, false);
+				return null;
+			}
+		});
+		bench.measure("trainer pokemon power levels", new Bench.Operation() {
+			public Object run() {
+				handler.randomizeTrainerPokes(false, true, false, true);
+				return null;
+			}
+		});
+		bench.measure("trainer pokemon type themed", new Bench.Operation() {
+			public Object run() {
+				handler.typeThemeTrainerPokes(false, true, false, false, true);
+				return null;
+			}
+		});
+		bench.measure("movesets", new Bench.Operation() {
+			public Object run() {
+				handler.randomizeMovesLearnt(true, true, false);
+				return null;
+			}
+		});
+		bench.measure("TM/HM compatibility", new Bench.Operation() {
+			public Object run() {
+				handler.randomizeTMHMCompatibility(true);
+				return null;
+			}
+		});
+		bench.measure("static pokemon", new Bench.Operation() {
+			public Object run() {
+				handler.randomizeStaticPokemon(true);
+				return null;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  SearchBenchmark.java - times BytePattern against a plain byte-by-byte --*/
+/*--                        scan on large ROM-sized buffers.                --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.dabomstew.pkrandom.BytePattern;
+import com.dabomstew.pkrandom.ParallelScanner;
+
+/**
+ * Run with "java com.dabomstew.pkrandom.benchmark.SearchBenchmark". Buffers
+ * are filled from a fixed seed so runs are comparable: mostly random bytes
+ * with long stretches of 00 and FF padding, like a real cartridge image.
+ * Every result is checked against the plain scan before it is timed.
+ */
+public class SearchBenchmark {
+
+	private static final int[] SIZES = { 32 << 20, 128 << 20 };
+	private static final String[] PATTERNS = { "2C0C", "8119AA",
+			"0A4B1B68??????08", "4B1C0021002000F0????4A1C",
+			"00000000000000000000000000000000" };
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int TIMED_ROUNDS = 5;
+
+	public static void main(String[] args) {
+		for (int size : SIZES) {
+			byte[] buffer = makeBuffer(size);
+			System.out.printf("%d MB buffer%n", size >> 20);
+			for (String hex : PATTERNS) {
+				BytePattern pattern = BytePattern.fromHex(hex);
+				List<Integer> expected = plainSearch(buffer, hex);
+				if (!expected.equals(pattern.findAll(buffer))
+						|| !expected.equals(ParallelScanner.findAll(buffer,
+								pattern))) {
+					throw new IllegalStateException("mismatch for " + hex);
+				}
+				long plain = time(buffer, hex, null, false);
+				long fast = time(buffer, hex, pattern, false);
+				long parallel = time(buffer, hex, pattern, true);
+				System.out.printf("  %-34s %6d hits  plain %7.1f ms"
+						+ "  pattern %7.1f ms  parallel %7.1f ms%n", hex,
+						expected.size(), plain / 1e6, fast / 1e6,
+						parallel / 1e6);
+			}
+		}
+	}
+
+	private static byte[] makeBuffer(int size) {
+		Random random = new Random(0x5EEDL);
+		byte[] buffer = new byte[size];
+		random.nextBytes(buffer);
+		int pos = 0;
+		while (pos < size) {
+			pos += 4096 + random.nextInt(65536);
+			int padding = Math.min(size - Math.min(pos, size),
+					256 + random.nextInt(16384));
+			byte fill = random.nextBoolean() ? 0 : (byte) 0xFF;
+			for (int i = 0; i < padding; i++) {
+				buffer[pos + i] = fill;
+			}
+			pos += padding;
+		}
+		return buffer;
+	}
+
+	private static long time(byte[] buffer, String hex, BytePattern pattern,
+			boolean parallel) {
+		long best = Long.MAX_VALUE;
+		int sink = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+			long start = System.nanoTime();
+			List<Integer> found;
+			if (pattern == null) {
+				found = plainSearch(buffer, hex);
+			} else if (parallel) {
+				found = ParallelScanner.findAll(buffer, pattern);
+			} else {
+				found = pattern.findAll(buffer);
+			}
+			long elapsed = System.nanoTime() - start;
+			sink += found.size();
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, elapsed);
+			}
+		}
+		if (sink < 0) {
+			System.out.println(sink);
+		}
+		return best;
+	}
+
+	// byte-by-byte reference, same non-overlapping results as BytePattern
+	private static List<Integer> plainSearch(byte[] buffer, String hex) {
+		int length = hex.length() / 2;
+		byte[] bytes = new byte[length];
+		boolean[] fixed = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			String digits = hex.substring(i * 2, i * 2 + 2);
+			fixed[i] = !digits.equals("??");
+			if (fixed[i]) {
+				bytes[i] = (byte) Integer.parseInt(digits, 16);
+			}
+		}
+		List<Integer> results = new ArrayList<Integer>();
+		int pos = 0;
+		while (pos <= buffer.length - length) {
+			int i = 0;
+			while (i < length && (!fixed[i] || buffer[pos + i] == bytes[i])) {
+				i++;
+			}
+			if (i == length) {
+				results.add(pos);
+				pos += length;
+			} else {
+				pos++;
+			}
+		}
+		return results;
+	}
+
+}
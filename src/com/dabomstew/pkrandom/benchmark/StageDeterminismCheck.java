@@ -0,0 +1,197 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  StageDeterminismCheck.java - checks stage streams give the same ROM   --*/
+/*--                               on one thread and on several.            --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dabomstew.pkrandom.Randomizer;
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.Settings.AbilitiesMod;
+import com.dabomstew.pkrandom.Settings.BaseStatisticsMod;
+import com.dabomstew.pkrandom.Settings.CompatibilityMod;
+import com.dabomstew.pkrandom.Settings.FieldItemsMod;
+import com.dabomstew.pkrandom.Settings.InGameTradesMod;
+import com.dabomstew.pkrandom.Settings.MovesMod;
+import com.dabomstew.pkrandom.Settings.MovesetsMod;
+import com.dabomstew.pkrandom.Settings.StartersMod;
+import com.dabomstew.pkrandom.Settings.StaticPokemonMod;
+import com.dabomstew.pkrandom.Settings.TrainersMod;
+import com.dabomstew.pkrandom.Settings.TypesMod;
+import com.dabomstew.pkrandom.Settings.WildPokemonMod;
+import com.dabomstew.pkrandom.Settings.WildPokemonRestrictionMod;
+import com.dabomstew.pkrandom.log.JsonLinesSpoilerWriter;
+import com.dabomstew.pkrandom.log.NullLogSink;
+
+/**
+ * Run with "java com.dabomstew.pkrandom.benchmark.StageDeterminismCheck
+ * [threads [seeds]]". Randomizes a SyntheticRomHandler with stage streams on
+ * one thread and then on several, for a spread of settings and seeds, and
+ * checks the spoilers match. A stage that writes something its declared
+ * tables don't cover shows up here as an occasional mismatch, so every seed
+ * is run a few times over.
+ */
+public class StageDeterminismCheck {
+
+	private static final long ROM_SEED = 0x5EEDL;
+	private static final int REPEATS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int seeds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		Map<String, Settings> profiles = profiles();
+		int failures = 0;
+		for (Map.Entry<String, Settings> profile : profiles.entrySet()) {
+			int profileFailures = 0;
+			for (int i = 0; i < seeds; i++) {
+				// 12345 first, it used to catch baseStats racing types
+				long seed = 12345L + i * 0x9E3779B97F4A7C15L;
+				List<String> expected = spoiler(profile.getValue(), seed, 1);
+				for (int r = 0; r < REPEATS; r++) {
+					List<String> actual = spoiler(profile.getValue(), seed,
+							threads);
+					if (!expected.equals(actual)) {
+						System.out.printf("  %s: seed %d differs on %d"
+								+ " threads: %s%n", profile.getKey(), seed,
+								threads, firstDifference(expected, actual));
+						profileFailures++;
+						break;
+					}
+				}
+			}
+			System.out.printf("%-28s %d/%d seeds match%n", profile.getKey(),
+					seeds - profileFailures, seeds);
+			failures += profileFailures;
+		}
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static Map<String, Settings> profiles() {
+		Map<String, Settings> profiles = new LinkedHashMap<String, Settings>();
+
+		Settings evolutions = new Settings();
+		evolutions.baseStatisticsMod = BaseStatisticsMod.RANDOM_FOLLOW_EVOLUTIONS;
+		evolutions.typesMod = TypesMod.RANDOM_FOLLOW_EVOLUTIONS;
+		evolutions.abilitiesMod = AbilitiesMod.RANDOMIZE;
+		evolutions.standardizeEXPCurves = true;
+		profiles.put("follow evolutions", evolutions);
+
+		Settings completely = new Settings();
+		completely.baseStatisticsMod = BaseStatisticsMod.RANDOM_COMPLETELY;
+		completely.typesMod = TypesMod.COMPLETELY_RANDOM;
+		completely.abilitiesMod = AbilitiesMod.RANDOMIZE;
+		completely.allowWonderGuard = true;
+		completely.startersMod = StartersMod.COMPLETELY_RANDOM;
+		completely.movesetsMod = MovesetsMod.COMPLETELY_RANDOM;
+		completely.trainersMod = TrainersMod.RANDOM;
+		completely.wildPokemonMod = WildPokemonMod.RANDOM;
+		completely.staticPokemonMod = StaticPokemonMod.COMPLETELY_RANDOM;
+		completely.tmsMod = MovesMod.RANDOM;
+		completely.tmsHmsCompatibilityMod = CompatibilityMod.COMPLETELY_RANDOM;
+		completely.moveTutorMovesMod = MovesMod.RANDOM;
+		completely.moveTutorsCompatibilityMod = CompatibilityMod.COMPLETELY_RANDOM;
+		completely.fieldItemsMod = FieldItemsMod.RANDOM;
+		profiles.put("completely random", completely);
+
+		Settings everything = new Settings();
+		everything.baseStatisticsMod = BaseStatisticsMod.RANDOM_FOLLOW_EVOLUTIONS;
+		everything.typesMod = TypesMod.RANDOM_FOLLOW_EVOLUTIONS;
+		everything.abilitiesMod = AbilitiesMod.RANDOMIZE;
+		everything.standardizeEXPCurves = true;
+		everything.makeEvolutionsEasier = true;
+		everything.startersMod = StartersMod.RANDOM_WITH_TWO_EVOLUTIONS;
+		everything.randomizeStartersHeldItems = true;
+		everything.movesetsMod = MovesetsMod.RANDOM_PREFER_SAME_TYPE;
+		everything.startWithFourMoves = true;
+		everything.trainersMod = TrainersMod.TYPE_THEMED;
+		everything.rivalCarriesStarterThroughout = true;
+		everything.trainersUsePokemonOfSimilarStrength = true;
+		everything.trainersBlockEarlyWonderGuard = true;
+		everything.wildPokemonMod = WildPokemonMod.AREA_MAPPING;
+		everything.wildPokemonRestrictionMod = WildPokemonRestrictionMod.SIMILAR_STRENGTH;
+		everything.useMinimumCatchRate = true;
+		everything.randomizeWildPokemonHeldItems = true;
+		everything.staticPokemonMod = StaticPokemonMod.RANDOM_MATCHING;
+		everything.tmsMod = MovesMod.RANDOM;
+		everything.tmLevelUpMoveSanity = true;
+		everything.tmsHmsCompatibilityMod = CompatibilityMod.RANDOM_PREFER_TYPE;
+		everything.moveTutorMovesMod = MovesMod.RANDOM;
+		everything.tutorLevelUpMoveSanity = true;
+		everything.moveTutorsCompatibilityMod = CompatibilityMod.RANDOM_PREFER_TYPE;
+		everything.inGameTradesMod = InGameTradesMod.RANDOMIZE_GIVEN_AND_REQUESTED;
+		everything.fieldItemsMod = FieldItemsMod.SHUFFLE;
+		profiles.put("everything, with sanity", everything);
+
+		Settings metronome = new Settings();
+		metronome.baseStatisticsMod = BaseStatisticsMod.SHUFFLE;
+		metronome.movesetsMod = MovesetsMod.METRONOME_ONLY;
+		metronome.trainersMod = TrainersMod.TYPE_THEMED;
+		metronome.wildPokemonMod = WildPokemonMod.GLOBAL_MAPPING;
+		metronome.wildPokemonRestrictionMod = WildPokemonRestrictionMod.TYPE_THEME_AREAS;
+		profiles.put("metronome only", metronome);
+		return profiles;
+	}
+
+	/**
+	 * The spoiler lines of one run, sorted: with several threads tables
+	 * finish in whatever order they happen to, so only the set of records
+	 * has to match.
+	 */
+	private static List<String> spoiler(Settings settings, long seed,
+			int threads) throws IOException {
+		Randomizer randomizer = new Randomizer(settings,
+				new SyntheticRomHandler(ROM_SEED));
+		randomizer.useStageStreams(seed, threads);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonLinesSpoilerWriter out = new JsonLinesSpoilerWriter(bytes);
+		randomizer.exportSpoiler(out);
+		randomizer.randomize(new NullLogSink(), null, null, null);
+		out.close();
+		List<String> lines = new ArrayList<String>(Arrays.asList(bytes
+				.toString("UTF-8").split("\n")));
+		Collections.sort(lines);
+		return lines;
+	}
+
+	private static String firstDifference(List<String> expected,
+			List<String> actual) {
+		for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+			if (!expected.get(i).equals(actual.get(i))) {
+				String line = expected.get(i);
+				return line.substring(0, Math.min(line.length(), 60));
+			}
+		}
+		return expected.size() + " records against " + actual.size();
+	}
+
+}
@@ -0,0 +1,251 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  SyntheticData.java - seeded stand-ins for NARCs, text                 --*/
+/*--                       banks, ARM9 code and sprites.                    --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.dabomstew.pkrandom.romhandlers.NARCContents;
+
+/**
+ * Seeded generators for the inputs the codec benchmarks run on. None of them
+ * copy anything out of a real game; they only try to look like it where that
+ * matters for speed: file sizes, how compressible the bytes are and how long
+ * the strings run.
+ */
+public class SyntheticData {
+
+	private static final String[] SYLLABLES = { "ka", "po", "mi", "ne", "ra",
+			"to", "chu", "zu", "ble", "do", "ri", "sa", "go", "an", "el",
+			"ter", "mon", "la", "vi", "sh" };
+	private static final String[] PUNCTUATION = { ".", "!", "?", ",", "..." };
+
+	/**
+	 * A NARC of count files between minSize and maxSize bytes, no filenames,
+	 * filled like table records: small numbers with plenty of zeroes.
+	 */
+	public static NARCContents narc(Random random, int count, int minSize,
+			int maxSize) {
+		NARCContents narc = new NARCContents();
+		for (int i = 0; i < count; i++) {
+			byte[] file = new byte[minSize
+					+ random.nextInt(maxSize - minSize + 1)];
+			for (int j = 0; j < file.length; j++) {
+				if (random.nextInt(3) != 0) {
+					file[j] = (byte) random.nextInt(random.nextBoolean() ? 16
+							: 256);
+				}
+			}
+			narc.files.add(file);
+			narc.filenames.add(null);
+		}
+		return narc;
+	}
+
+	/**
+	 * count lines of dialogue-like text: words, punctuation and the odd
+	 * lineBreak (which is spelled differently in each generation's text
+	 * codec), averaging around 60 characters.
+	 */
+	public static List<String> textBank(Random random, int count,
+			String lineBreak) {
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder line = new StringBuilder();
+			int words = 2 + random.nextInt(18);
+			for (int w = 0; w < words; w++) {
+				if (w > 0) {
+					line.append(random.nextInt(8) == 0 ? lineBreak : " ");
+				}
+				int syllables = 1 + random.nextInt(3);
+				for (int s = 0; s < syllables; s++) {
+					String syllable = SYLLABLES[random
+							.nextInt(SYLLABLES.length)];
+					if (w == 0 && s == 0) {
+						syllable = Character.toUpperCase(syllable.charAt(0))
+								+ syllable.substring(1);
+					}
+					line.append(syllable);
+				}
+			}
+			line.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * A Gen 5 text file holding count empty entries, which
+	 * PPTxtHandler.saveEntry can then fill in. Each entry is a lone
+	 * terminator encrypted under its own key.
+	 */
+	public static byte[] emptyGen5TextFile(Random random, int count) {
+		int sectionSize = 4 + count * 10;
+		sectionSize += sectionSize % 4;
+		byte[] file = new byte[0x10 + sectionSize];
+		writeWord(file, 0, 1);
+		writeWord(file, 2, count);
+		writeLong(file, 4, sectionSize);
+		writeLong(file, 0x0C, 0x10);
+		writeLong(file, 0x10, sectionSize);
+		for (int i = 0; i < count; i++) {
+			int entry = 0x14 + i * 8;
+			writeLong(file, entry, 4 + count * 8 + i * 2);
+			writeWord(file, entry + 4, 1);
+			writeWord(file, 0x10 + 4 + count * 8 + i * 2,
+					random.nextInt(0x10000));
+		}
+		return file;
+	}
+
+	/**
+	 * size bytes shaped like an ARM9 binary: runs of 16 and 32-bit
+	 * instructions drawn from a limited vocabulary so sequences repeat, word
+	 * tables of pointers into the image, and zero padding between sections.
+	 */
+	public static byte[] arm9Blob(Random random, int size) {
+		byte[] blob = new byte[size];
+		int[] vocabulary = new int[512];
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = random.nextInt();
+		}
+		int pos = 0;
+		while (pos < size - 4) {
+			int kind = random.nextInt(10);
+			int length = Math.min(size - pos, 64 + random.nextInt(2048)) & ~3;
+			if (kind < 6) {
+				// code, mostly from the vocabulary with repeats of recent bits
+				for (int i = 0; i < length; i += 4) {
+					int word = vocabulary[random.nextInt(random.nextInt(4) == 0
+							? vocabulary.length : 32)];
+					if (i >= 16 && random.nextInt(3) == 0) {
+						System.arraycopy(blob, pos + i - 16, blob, pos + i, 4);
+					} else {
+						writeLong(blob, pos + i, word);
+					}
+				}
+			} else if (kind < 9) {
+				// pointer table
+				for (int i = 0; i < length; i += 4) {
+					writeLong(blob, pos + i,
+							0x02000000 + (random.nextInt(size) & ~3));
+				}
+			}
+			// else padding, already zero
+			pos += Math.max(length, 4);
+		}
+		return blob;
+	}
+
+	/**
+	 * An 80x80 4bpp sprite-like image: horizontal runs of a few colours.
+	 */
+	public static byte[] sprite(Random random) {
+		byte[] image = new byte[80 * 80 / 2];
+		int colour = 0;
+		for (int i = 0; i < image.length; i++) {
+			if (random.nextInt(6) == 0) {
+				colour = random.nextInt(16);
+			}
+			int second = random.nextInt(8) == 0 ? random.nextInt(16) : colour;
+			image[i] = (byte) (colour | (second << 4));
+		}
+		return image;
+	}
+
+	/**
+	 * Compress data in the LZ11 format JavaDSDecmp reads, with a plain greedy
+	 * search of the last 4KB. Slow, but only used to set up inputs.
+	 */
+	public static byte[] compressLZ11(byte[] data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(0x11);
+		out.write(data.length & 0xFF);
+		out.write((data.length >> 8) & 0xFF);
+		out.write((data.length >> 16) & 0xFF);
+		byte[] block = new byte[1 + 8 * 4];
+		int pos = 0;
+		while (pos < data.length) {
+			int flags = 0;
+			int blockLength = 1;
+			for (int i = 0; i < 8 && pos < data.length; i++) {
+				int bestLength = 0, bestDistance = 0;
+				int maxLength = Math.min(0x10110, data.length - pos);
+				for (int from = Math.max(0, pos - 0x1000); from < pos; from++) {
+					int length = 0;
+					while (length < maxLength
+							&& data[from + length] == data[pos + length]) {
+						length++;
+					}
+					if (length > bestLength) {
+						bestLength = length;
+						bestDistance = pos - from;
+					}
+				}
+				if (bestLength < 3) {
+					block[blockLength++] = data[pos++];
+					continue;
+				}
+				flags |= 0x80 >> i;
+				int disp = bestDistance - 1;
+				if (bestLength <= 0x10) {
+					block[blockLength++] = (byte) (((bestLength - 1) << 4)
+							| (disp >> 8));
+				} else if (bestLength <= 0x110) {
+					int len = bestLength - 0x11;
+					block[blockLength++] = (byte) (len >> 4);
+					block[blockLength++] = (byte) (((len & 0x0F) << 4)
+							| (disp >> 8));
+				} else {
+					int len = bestLength - 0x111;
+					block[blockLength++] = (byte) (0x10 | (len >> 12));
+					block[blockLength++] = (byte) (len >> 4);
+					block[blockLength++] = (byte) (((len & 0x0F) << 4)
+							| (disp >> 8));
+				}
+				block[blockLength++] = (byte) disp;
+				pos += bestLength;
+			}
+			block[0] = (byte) flags;
+			out.write(block, 0, blockLength);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeWord(byte[] data, int offset, int value) {
+		data[offset] = (byte) (value & 0xFF);
+		data[offset + 1] = (byte) ((value >> 8) & 0xFF);
+	}
+
+	private static void writeLong(byte[] data, int offset, int value) {
+		data[offset] = (byte) (value & 0xFF);
+		data[offset + 1] = (byte) ((value >> 8) & 0xFF);
+		data[offset + 2] = (byte) ((value >> 16) & 0xFF);
+		data[offset + 3] = (byte) ((value >> 24) & 0xFF);
+	}
+
+}
@@ -0,0 +1,625 @@
+package com.dabomstew.pkrandom.benchmark;
+
+/*----------------------------------------------------------------------------*/
+/*--  SyntheticRomHandler.java - generated Gen 5 sized tables               --*/
+/*--                             behind the RomHandler interface.           --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.dabomstew.pkrandom.delta.DeltaFormat;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
+import com.dabomstew.pkrandom.pokemon.Encounter;
+import com.dabomstew.pkrandom.pokemon.EncounterSet;
+import com.dabomstew.pkrandom.pokemon.Evolution;
+import com.dabomstew.pkrandom.pokemon.EvolutionType;
+import com.dabomstew.pkrandom.pokemon.ExpCurve;
+import com.dabomstew.pkrandom.pokemon.IngameTrade;
+import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
+import com.dabomstew.pkrandom.pokemon.Move;
+import com.dabomstew.pkrandom.pokemon.Pokemon;
+import com.dabomstew.pkrandom.pokemon.Trainer;
+import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
+import com.dabomstew.pkrandom.pokemon.Type;
+import com.dabomstew.pkrandom.romhandlers.AbstractRomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomHeader;
+
+/**
+ * A RomHandler with no ROM behind it: Gen 5 sized Pokemon, move, learnset,
+ * evolution, encounter and trainer tables generated from a fixed seed, so the
+ * randomizers in AbstractRomHandler can be timed on their own. Getters hand
+ * out the live tables and setters replace them, so repeated randomization
+ * keeps working on realistic data (see restoreStats for the one exception).
+ * Everything that would touch a ROM file reports that it can't.
+ */
+public class SyntheticRomHandler extends AbstractRomHandler {
+
+	public static final int POKEMON_COUNT = 649;
+	public static final int MOVE_COUNT = 559;
+	public static final int ABILITY_COUNT = 164;
+	public static final int ITEM_COUNT = 638;
+	public static final int TM_COUNT = 95;
+	public static final int HM_COUNT = 6;
+
+	private static final int ENCOUNTER_AREAS = 150;
+	private static final int ENCOUNTERS_PER_AREA = 12;
+	private static final int TRAINER_COUNT = 600;
+
+	// the 17 types the real games use, so typeInGame holds for all of them
+	private static final Type[] TYPES = Arrays.copyOf(Type.values(), 17);
+
+	private List<Pokemon> pokemon;
+	private int[] generatedStats;
+	private List<Move> moves;
+	private Learnsets movesets;
+	private List<Evolution> evolutions;
+	private List<EncounterSet> encounters;
+	private List<Trainer> trainers;
+	private List<Pokemon> starters;
+	private List<Pokemon> staticPokemon;
+	private List<Integer> tmMoves;
+	private List<Integer> hmMoves;
+	private CompatibilityMatrix tmhmCompatibility;
+	private ItemList allowedItems;
+	private String[] itemNames;
+
+	public SyntheticRomHandler(long seed) {
+		Random random = new Random(seed);
+		makeMoves(random);
+		makePokemon(random);
+		makeEvolutions(random);
+		makeMovesets(random);
+		makeEncounters(random);
+		makeTrainers(random);
+		starters = new ArrayList<Pokemon>();
+		staticPokemon = new ArrayList<Pokemon>();
+		for (int i = 0; i < 3; i++) {
+			starters.add(pokemon.get(1 + i * 3));
+		}
+		for (int i = 0; i < 20; i++) {
+			staticPokemon.add(pokemon.get(1 + random.nextInt(POKEMON_COUNT)));
+		}
+		tmMoves = new ArrayList<Integer>();
+		for (int i = 0; i < TM_COUNT; i++) {
+			tmMoves.add(1 + random.nextInt(MOVE_COUNT));
+		}
+		hmMoves = Arrays.asList(15, 19, 57, 70, 127, 291);
+		tmhmCompatibility = new CompatibilityMatrix(POKEMON_COUNT, TM_COUNT
+				+ HM_COUNT);
+		for (int pk = 1; pk <= POKEMON_COUNT; pk++) {
+			for (int col = 1; col <= TM_COUNT + HM_COUNT; col++) {
+				tmhmCompatibility.set(pk, col, random.nextInt(3) == 0);
+			}
+		}
+		allowedItems = new ItemList(ITEM_COUNT);
+		allowedItems.banRange(0, 1);
+		allowedItems.tmRange(328, TM_COUNT);
+		itemNames = new String[ITEM_COUNT + 1];
+		for (int i = 0; i <= ITEM_COUNT; i++) {
+			itemNames[i] = String.format("ITEM%03d", i);
+		}
+	}
+
+	private void makeMoves(Random random) {
+		moves = new ArrayList<Move>();
+		moves.add(null);
+		for (int i = 1; i <= MOVE_COUNT; i++) {
+			Move move = new Move();
+			move.name = String.format("MOVE%03d", i);
+			move.number = i;
+			move.internalId = i;
+			move.power = random.nextInt(4) == 0 ? 0 : 20 + random
+					.nextInt(26) * 5;
+			move.pp = 5 + random.nextInt(8) * 5;
+			move.hitratio = 50 + random.nextInt(11) * 5;
+			move.type = TYPES[random.nextInt(TYPES.length)];
+			move.effectIndex = random.nextInt(256);
+			moves.add(move);
+		}
+	}
+
+	private void makePokemon(Random random) {
+		ExpCurve[] curves = ExpCurve.values();
+		pokemon = new ArrayList<Pokemon>();
+		pokemon.add(null);
+		for (int i = 1; i <= POKEMON_COUNT; i++) {
+			Pokemon pk = new Pokemon();
+			pk.name = String.format("PKMN%03d", i);
+			pk.number = i;
+			pk.primaryType = TYPES[random.nextInt(TYPES.length)];
+			if (random.nextInt(5) < 2) {
+				do {
+					pk.secondaryType = TYPES[random.nextInt(TYPES.length)];
+				} while (pk.secondaryType == pk.primaryType);
+			}
+			// totals of 180 to 660, the range real Pokemon cover
+			pk.hp = 30 + random.nextInt(81);
+			pk.attack = 30 + random.nextInt(81);
+			pk.defense = 30 + random.nextInt(81);
+			pk.spatk = 30 + random.nextInt(81);
+			pk.spdef = 30 + random.nextInt(81);
+			pk.speed = 30 + random.nextInt(81);
+			pk.ability1 = 1 + random.nextInt(ABILITY_COUNT);
+			pk.ability2 = random.nextBoolean() ? 0 : 1 + random
+					.nextInt(ABILITY_COUNT);
+			pk.ability3 = 1 + random.nextInt(ABILITY_COUNT);
+			pk.catchRate = pk.isLegendary() ? 3 : 45 + random.nextInt(211);
+			pk.growthCurve = curves[random.nextInt(curves.length)];
+			pokemon.add(pk);
+		}
+		generatedStats = new int[(POKEMON_COUNT + 1) * 6];
+		for (int i = 1; i <= POKEMON_COUNT; i++) {
+			Pokemon pk = pokemon.get(i);
+			int base = i * 6;
+			generatedStats[base] = pk.hp;
+			generatedStats[base + 1] = pk.attack;
+			generatedStats[base + 2] = pk.defense;
+			generatedStats[base + 3] = pk.spatk;
+			generatedStats[base + 4] = pk.spdef;
+			generatedStats[base + 5] = pk.speed;
+		}
+	}
+
+	/**
+	 * Put every Pokemon's base stats back to the generated ones. Randomizing
+	 * stats with evolution sanity over and over lets the totals creep upwards
+	 * until rerolls can't find stats that fit in a byte, so a benchmark
+	 * should call this before each stats randomization.
+	 */
+	public void restoreStats() {
+		for (int i = 1; i <= POKEMON_COUNT; i++) {
+			Pokemon pk = pokemon.get(i);
+			int base = i * 6;
+			pk.hp = generatedStats[base];
+			pk.attack = generatedStats[base + 1];
+			pk.defense = generatedStats[base + 2];
+			pk.spatk = generatedStats[base + 3];
+			pk.spdef = generatedStats[base + 4];
+			pk.speed = generatedStats[base + 5];
+			pk.statsChanged();
+		}
+	}
+
+	// chains of one to three stages, legendaries stay single
+	private void makeEvolutions(Random random) {
+		evolutions = new ArrayList<Evolution>();
+		int pk = 1;
+		while (pk <= POKEMON_COUNT) {
+			int stages = 1 + random.nextInt(3);
+			int level = 10 + random.nextInt(15);
+			for (int s = 1; s < stages && pk + 1 <= POKEMON_COUNT; s++) {
+				if (pokemon.get(pk).isLegendary()
+						|| pokemon.get(pk + 1).isLegendary()) {
+					break;
+				}
+				evolutions.add(new Evolution(pk, pk + 1, true,
+						EvolutionType.LEVEL, level));
+				level += 10 + random.nextInt(15);
+				pk++;
+			}
+			pk++;
+		}
+	}
+
+	private void makeMovesets(Random random) {
+		movesets = new Learnsets(POKEMON_COUNT, POKEMON_COUNT * 16);
+		for (int pk = 1; pk <= POKEMON_COUNT; pk++) {
+			movesets.startSet(pk);
+			int startMoves = 1 + random.nextInt(3);
+			int count = startMoves + 8 + random.nextInt(10);
+			int level = 1;
+			for (int i = 0; i < count; i++) {
+				if (i >= startMoves) {
+					level += 1 + random.nextInt(5);
+				}
+				movesets.add(pk, 1 + random.nextInt(MOVE_COUNT), level);
+			}
+		}
+	}
+
+	private void makeEncounters(Random random) {
+		encounters = new ArrayList<EncounterSet>();
+		for (int a = 0; a < ENCOUNTER_AREAS; a++) {
+			EncounterSet area = new EncounterSet();
+			area.displayName = "Area " + a;
+			area.rate = 10 + random.nextInt(20);
+			int level = 2 + random.nextInt(60);
+			for (int i = 0; i < ENCOUNTERS_PER_AREA; i++) {
+				Encounter enc = new Encounter();
+				enc.level = level;
+				enc.maxLevel = level + random.nextInt(3);
+				enc.pokemon = pokemon.get(1 + random.nextInt(POKEMON_COUNT));
+				area.encounters.add(enc);
+			}
+			encounters.add(area);
+		}
+	}
+
+	private void makeTrainers(Random random) {
+		trainers = new ArrayList<Trainer>();
+		for (int t = 0; t < TRAINER_COUNT; t++) {
+			Trainer tr = new Trainer();
+			tr.offset = t;
+			tr.trainerclass = random.nextInt(80);
+			tr.name = "TRAINER" + t;
+			int level = 3 + t * 70 / TRAINER_COUNT;
+			int count = 1 + random.nextInt(6);
+			for (int i = 0; i < count; i++) {
+				TrainerPokemon tp = new TrainerPokemon();
+				tp.pokemon = pokemon.get(1 + random.nextInt(POKEMON_COUNT));
+				tp.level = level + random.nextInt(4);
+				tp.AILevel = random.nextInt(256);
+				tr.pokemon.add(tp);
+			}
+			trainers.add(tr);
+		}
+	}
+
+	@Override
+	public boolean detectRom(String filename) {
+		return false;
+	}
+
+	@Override
+	public boolean detectRom(RomHeader header) {
+		return false;
+	}
+
+	@Override
+	public boolean loadRom(String filename) {
+		return false;
+	}
+
+	@Override
+	public boolean saveRom(String filename) {
+		return false;
+	}
+
+	@Override
+	public DeltaFormat patchFormat() {
+		return null;
+	}
+
+	@Override
+	public boolean savePatch(String filename) {
+		return false;
+	}
+
+	@Override
+	public String loadedFilename() {
+		return "";
+	}
+
+	@Override
+	public boolean isInGame(Pokemon pkmn) {
+		return isInGame(pkmn.number);
+	}
+
+	@Override
+	public boolean isInGame(int pokemonNumber) {
+		return pokemonNumber >= 1 && pokemonNumber <= POKEMON_COUNT;
+	}
+
+	@Override
+	public List<Pokemon> getPokemon() {
+		return pokemon;
+	}
+
+	@Override
+	public void removeEvosForPokemonPool() {
+	}
+
+	@Override
+	public List<Pokemon> getStarters() {
+		return starters;
+	}
+
+	@Override
+	public boolean setStarters(List<Pokemon> newStarters) {
+		starters = newStarters;
+		return true;
+	}
+
+	@Override
+	public void shufflePokemonStats() {
+		for (int i = 1; i <= POKEMON_COUNT; i++) {
+			pokemon.get(i).shuffleStats();
+		}
+	}
+
+	@Override
+	public List<Move> getMoves() {
+		return moves;
+	}
+
+	@Override
+	public List<EncounterSet> getEncounters(boolean useTimeOfDay) {
+		return encounters;
+	}
+
+	@Override
+	public void setEncounters(boolean useTimeOfDay,
+			List<EncounterSet> encounters) {
+		this.encounters = encounters;
+	}
+
+	@Override
+	public List<Trainer> getTrainers() {
+		return trainers;
+	}
+
+	@Override
+	public void setTrainers(List<Trainer> trainerData) {
+		trainers = trainerData;
+	}
+
+	@Override
+	public Learnsets getMovesLearnt() {
+		return movesets;
+	}
+
+	@Override
+	public void setMovesLearnt(Learnsets movesets) {
+		this.movesets = movesets;
+	}
+
+	@Override
+	public boolean supportsFourStartingMoves() {
+		return true;
+	}
+
+	@Override
+	public List<Pokemon> getStaticPokemon() {
+		return staticPokemon;
+	}
+
+	@Override
+	public boolean setStaticPokemon(List<Pokemon> staticPokemon) {
+		this.staticPokemon = staticPokemon;
+		return true;
+	}
+
+	@Override
+	public boolean canChangeStaticPokemon() {
+		return true;
+	}
+
+	@Override
+	public List<Integer> getTMMoves() {
+		return tmMoves;
+	}
+
+	@Override
+	public List<Integer> getHMMoves() {
+		return hmMoves;
+	}
+
+	@Override
+	public void setTMMoves(List<Integer> moveIndexes) {
+		tmMoves = moveIndexes;
+	}
+
+	@Override
+	public int getTMCount() {
+		return TM_COUNT;
+	}
+
+	@Override
+	public int getHMCount() {
+		return HM_COUNT;
+	}
+
+	@Override
+	public CompatibilityMatrix getTMHMCompatibility() {
+		return tmhmCompatibility;
+	}
+
+	@Override
+	public void setTMHMCompatibility(CompatibilityMatrix compatData) {
+		tmhmCompatibility = compatData;
+	}
+
+	@Override
+	public boolean hasMoveTutors() {
+		return false;
+	}
+
+	@Override
+	public List<Integer> getMoveTutorMoves() {
+		return new ArrayList<Integer>();
+	}
+
+	@Override
+	public void setMoveTutorMoves(List<Integer> moves) {
+	}
+
+	@Override
+	public CompatibilityMatrix getMoveTutorCompatibility() {
+		return new CompatibilityMatrix(POKEMON_COUNT, 0);
+	}
+
+	@Override
+	public void setMoveTutorCompatibility(CompatibilityMatrix compatData) {
+	}
+
+	@Override
+	public List<String> getTrainerNames() {
+		return new ArrayList<String>();
+	}
+
+	@Override
+	public void setTrainerNames(List<String> trainerNames) {
+	}
+
+	@Override
+	public TrainerNameMode trainerNameMode() {
+		return TrainerNameMode.MAX_LENGTH;
+	}
+
+	@Override
+	public List<Integer> getTCNameLengthsByTrainer() {
+		return new ArrayList<Integer>();
+	}
+
+	@Override
+	public List<String> getTrainerClassNames() {
+		return new ArrayList<String>();
+	}
+
+	@Override
+	public void setTrainerClassNames(List<String> trainerClassNames) {
+	}
+
+	@Override
+	public boolean fixedTrainerClassNamesLength() {
+		return false;
+	}
+
+	@Override
+	public int abilitiesPerPokemon() {
+		return 3;
+	}
+
+	@Override
+	public int highestAbilityIndex() {
+		return ABILITY_COUNT;
+	}
+
+	@Override
+	public ItemList getAllowedItems() {
+		return allowedItems;
+	}
+
+	@Override
+	public String[] getItemNames() {
+		return itemNames;
+	}
+
+	@Override
+	public List<Integer> getStarterHeldItems() {
+		return new ArrayList<Integer>();
+	}
+
+	@Override
+	public void setStarterHeldItems(List<Integer> items) {
+	}
+
+	@Override
+	public List<Integer> getRequiredFieldTMs() {
+		return new ArrayList<Integer>();
+	}
+
+	@Override
+	public List<Integer> getCurrentFieldTMs() {
+		return new ArrayList<Integer>();
+	}
+
+	@Override
+	public void setFieldTMs(List<Integer> fieldTMs) {
+	}
+
+	@Override
+	public List<Integer> getRegularFieldItems() {
+		return new ArrayList<Integer>();
+	}
+
+	@Override
+	public void setRegularFieldItems(List<Integer> items) {
+	}
+
+	@Override
+	public List<IngameTrade> getIngameTrades() {
+		return new ArrayList<IngameTrade>();
+	}
+
+	@Override
+	public void setIngameTrades(List<IngameTrade> trades) {
+	}
+
+	@Override
+	public boolean hasDVs() {
+		return false;
+	}
+
+	@Override
+	public List<Evolution> getEvolutions() {
+		return evolutions;
+	}
+
+	@Override
+	public void setEvolutions(List<Evolution> evos) {
+		evolutions = evos;
+	}
+
+	@Override
+	public void removeTradeEvolutions(boolean changeMoveEvos) {
+	}
+
+	@Override
+	public List<Integer> getFieldMoves() {
+		return Arrays.asList(15, 19, 57, 70, 148, 91, 100, 127, 230, 291);
+	}
+
+	@Override
+	public List<Integer> getEarlyRequiredHMMoves() {
+		return new ArrayList<Integer>();
+	}
+
+	@Override
+	public String getROMName() {
+		return "Synthetic tables";
+	}
+
+	@Override
+	public String getROMCode() {
+		return "SYNT";
+	}
+
+	@Override
+	public String getSupportLevel() {
+		return "Benchmark only";
+	}
+
+	@Override
+	public String getDefaultExtension() {
+		return "";
+	}
+
+	@Override
+	public int internalStringLength(String string) {
+		return string.length();
+	}
+
+	@Override
+	public void applySignature() {
+	}
+
+	@Override
+	public int generationOfPokemon() {
+		return 5;
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.dabomstew.pkrandom.daemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  DaemonClient.java - sends one command to a running                    --*/
+/*--                      RandomizerDaemon.                                 --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Usage: DaemonClient [-p port] COMMAND [args...]
+ * 
+ * The arguments are sent as one RandomizerDaemon command and the reply is
+ * printed. RUN seed settings rom output [option...] is SUBMIT followed by
+ * WAIT, so it returns once the job has finished; if the daemon is busy it
+ * retries every second until the job is taken.
+ */
+public class DaemonClient {
+
+	private static final long BUSY_RETRY_MILLIS = 1000;
+
+	private final Socket socket;
+	private final BufferedReader in;
+	private final Writer out;
+
+	public DaemonClient(int port) throws IOException {
+		socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+		in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+				"UTF-8"));
+		out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+	}
+
+	/**
+	 * Send one command and return the reply line.
+	 */
+	public String send(String... command) throws IOException {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < command.length; i++) {
+			if (i > 0) {
+				line.append('\t');
+			}
+			line.append(command[i]);
+		}
+		out.write(line.append('\n').toString());
+		out.flush();
+		String reply = in.readLine();
+		if (reply == null) {
+			throw new IOException("daemon closed the connection");
+		}
+		return reply;
+	}
+
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = RandomizerDaemon.DEFAULT_PORT;
+		int first = 0;
+		if (args.length >= 2 && args[0].equals("-p")) {
+			port = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if (args.length <= first) {
+			System.err.println("Usage: DaemonClient [-p port] COMMAND [args...]");
+			System.exit(2);
+		}
+		String[] command = new String[args.length - first];
+		System.arraycopy(args, first, command, 0, command.length);
+		DaemonClient client = new DaemonClient(port);
+		try {
+			String reply;
+			if (command[0].equalsIgnoreCase("RUN")) {
+				command[0] = "SUBMIT";
+				while ((reply = client.send(command)).startsWith("BUSY")) {
+					Thread.sleep(BUSY_RETRY_MILLIS);
+				}
+				if (reply.startsWith("OK\t")) {
+					reply = client.send("WAIT", reply.substring(3));
+				}
+			} else {
+				reply = client.send(command);
+			}
+			System.out.println(reply);
+			if (reply.startsWith("ERROR") || reply.startsWith("FAILED")) {
+				System.exit(1);
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.dabomstew.pkrandom.daemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  Job.java - one randomization the daemon has been asked                --*/
+/*--             to do, and how it went.                                    --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import com.dabomstew.pkrandom.log.LogFormat;
+import com.dabomstew.pkrandom.log.SpoilerFormat;
+
+/**
+ * Jobs are created by JobQueue.submit and only ever move forward from
+ * QUEUED, through RUNNING, to one of the finished states.
+ */
+public class Job {
+
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+
+		public boolean isFinished() {
+			return this == DONE || this == FAILED || this == CANCELLED;
+		}
+	}
+
+	public final long id;
+	public final String romFilename;
+	public final String settingsString;
+	public final long seed;
+	// a name ending in the ROM's patch extension saves a patch instead
+	public final String outputFilename;
+	// the verbose log goes next to the output in this format, or nowhere if
+	// it's null
+	public final LogFormat logFormat;
+	// likewise the structured spoiler (see SpoilerExport)
+	public final SpoilerFormat spoilerFormat;
+
+	private State state = State.QUEUED;
+	private int checkValue;
+	private String error;
+	private long queuedAt, startedAt, finishedAt;
+
+	Job(long id, String romFilename, String settingsString, long seed,
+			String outputFilename, LogFormat logFormat,
+			SpoilerFormat spoilerFormat) {
+		this.id = id;
+		this.romFilename = romFilename;
+		this.settingsString = settingsString;
+		this.seed = seed;
+		this.outputFilename = outputFilename;
+		this.logFormat = logFormat;
+		this.spoilerFormat = spoilerFormat;
+		this.queuedAt = System.currentTimeMillis();
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Move from QUEUED to RUNNING. False if the job was cancelled first.
+	 */
+	synchronized boolean start() {
+		if (state != State.QUEUED) {
+			return false;
+		}
+		state = State.RUNNING;
+		startedAt = System.currentTimeMillis();
+		return true;
+	}
+
+	synchronized void finish(State state, int checkValue, String error) {
+		if (this.state.isFinished()) {
+			return;
+		}
+		this.state = state;
+		this.checkValue = checkValue;
+		this.error = error;
+		this.finishedAt = System.currentTimeMillis();
+		notifyAll();
+	}
+
+	/**
+	 * Wait until the job has finished, however it turned out.
+	 */
+	public synchronized void await() throws InterruptedException {
+		while (!state.isFinished()) {
+			wait();
+		}
+	}
+
+	/**
+	 * The state, plus the check value and timings of a finished job or the
+	 * reason a job failed, tab separated.
+	 */
+	public synchronized String describe() {
+		switch (state) {
+		case DONE:
+			return String.format("DONE\t%d\tqueued=%dms\trun=%dms",
+					checkValue, startedAt - queuedAt, finishedAt - startedAt);
+		case FAILED:
+			return "FAILED\t" + error;
+		default:
+			return state.toString();
+		}
+	}
+
+}
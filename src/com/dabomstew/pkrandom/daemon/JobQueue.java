@@ -0,0 +1,312 @@
+package com.dabomstew.pkrandom.daemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  JobQueue.java - runs the daemon's jobs on a fixed set of              --*/
+/*--                  worker threads.                                       --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dabomstew.pkrandom.JobExecutor;
+import com.dabomstew.pkrandom.Randomizer;
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.log.LogFormat;
+import com.dabomstew.pkrandom.log.LogSink;
+import com.dabomstew.pkrandom.log.NullLogSink;
+import com.dabomstew.pkrandom.log.SpoilerFormat;
+import com.dabomstew.pkrandom.log.SpoilerWriter;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * Each job is three steps on a JobExecutor: loading the ROM (I/O),
+ * randomizing it (CPU) and saving it (I/O), so loads and saves waiting on
+ * the disk don't hold up the CPU threads. At most maxJobs jobs are taken
+ * at once; submit() turns any more away rather than letting the backlog
+ * grow without limit, so clients know to back off and retry. Cancelling a
+ * job that hasn't started drops it, and cancelling a running one interrupts
+ * its current step, which stops a randomization at the next stage.
+ *
+ * Jobs always use per-stage random streams (see Randomizer.useStageStreams),
+ * which is what keeps jobs running side by side out of each other's random
+ * numbers. The same ROM, settings and seed always give the same result from
+ * the daemon, but not the one the GUI gives for that seed. With
+ * stageThreads above one, each job also runs its independent stages side by
+ * side on that many threads of its own, which doesn't change the result.
+ *
+ * A job given a log or spoiler format writes its verbose log or structured
+ * spoiler next to its output, named after it (game.gbc.log or
+ * game.gbc.spoiler.jsonl, say); one that can't be written fails the job.
+ */
+public class JobQueue {
+
+	// finished jobs kept around for STATUS before the oldest are forgotten
+	private static final int FINISHED_KEPT = 1000;
+
+	private final JobExecutor executor;
+	private final RomCache roms;
+	private final int stageThreads;
+	private final AtomicLong nextID = new AtomicLong(1);
+	private final Map<Long, Job> jobs = new ConcurrentHashMap<Long, Job>();
+	// guarded by itself, together with each Run's done flag
+	private final Map<Long, JobExecutor.Handle> handles = new HashMap<Long, JobExecutor.Handle>();
+	private final Queue<Long> finished = new ConcurrentLinkedQueue<Long>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger finishedCount = new AtomicInteger();
+
+	public JobQueue(JobExecutor executor, RomCache roms, int stageThreads) {
+		if (stageThreads < 1) {
+			throw new IllegalArgumentException("need at least one thread");
+		}
+		this.executor = executor;
+		this.roms = roms;
+		this.stageThreads = stageThreads;
+	}
+
+	/**
+	 * Queue a job, or return null if the queue is full.
+	 * 
+	 * @param logFormat
+	 *            how to write the job's verbose log, or null for no log
+	 * @param spoilerFormat
+	 *            how to write its structured spoiler, or null for none
+	 */
+	public Job submit(String romFilename, String settingsString, long seed,
+			String outputFilename, LogFormat logFormat,
+			SpoilerFormat spoilerFormat) {
+		final Job job = new Job(nextID.getAndIncrement(), romFilename,
+				settingsString, seed, outputFilename, logFormat,
+				spoilerFormat);
+		final Run run = new Run(job);
+		jobs.put(job.id, job);
+		queued.incrementAndGet();
+		JobExecutor.Handle handle = executor.submit(run.load(),
+				new JobExecutor.Completion() {
+					@Override
+					public void completed(Throwable failure) {
+						run.completed(failure);
+					}
+				});
+		if (handle == null) {
+			queued.decrementAndGet();
+			jobs.remove(job.id);
+			return null;
+		}
+		synchronized (handles) {
+			// it may already have run to completion on another thread, in
+			// which case there's nothing left to cancel
+			if (!run.done) {
+				handles.put(job.id, handle);
+			}
+		}
+		return job;
+	}
+
+	public Job get(long id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * Cancel a job that hasn't finished. False if it has, or there's no such
+	 * job.
+	 */
+	public boolean cancel(long id) {
+		Job job = jobs.get(id);
+		JobExecutor.Handle handle;
+		synchronized (handles) {
+			handle = handles.get(id);
+		}
+		if (job == null || job.getState().isFinished() || handle == null
+				|| !handle.cancel()) {
+			return false;
+		}
+		if (job.start()) {
+			// it never got going, so it's finished as of now
+			queued.decrementAndGet();
+			job.finish(Job.State.CANCELLED, 0, null);
+		}
+		return true;
+	}
+
+	public int queued() {
+		return queued.get();
+	}
+
+	public int running() {
+		return executor.activeJobs() - queued.get();
+	}
+
+	public int finishedCount() {
+		return finishedCount.get();
+	}
+
+	/**
+	 * Stop taking jobs and cancel the ones in flight.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * One job's way through its steps.
+	 */
+	private class Run {
+		private final Job job;
+		private Settings settings;
+		private RomHandler handler;
+		private int checkValue;
+		// guarded by handles
+		private boolean done;
+
+		Run(Job job) {
+			this.job = job;
+		}
+
+		JobExecutor.Step load() {
+			return new JobExecutor.Step(JobExecutor.Phase.IO) {
+				@Override
+				protected JobExecutor.Step run() throws Exception {
+					if (!job.start()) {
+						throw new CancellationException();
+					}
+					queued.decrementAndGet();
+					settings = Settings.fromString(job.settingsString);
+					if (settings == null) {
+						job.finish(Job.State.FAILED, 0, "bad settings string");
+						return null;
+					}
+					handler = roms.load(job.romFilename);
+					if (Thread.currentThread().isInterrupted()) {
+						throw new CancellationException();
+					}
+					if (handler == null) {
+						job.finish(Job.State.FAILED, 0,
+								"not a supported ROM: " + job.romFilename);
+						return null;
+					}
+					return randomize();
+				}
+			};
+		}
+
+		JobExecutor.Step randomize() {
+			return new JobExecutor.Step(JobExecutor.Phase.CPU) {
+				@Override
+				protected JobExecutor.Step run() throws IOException {
+					Randomizer randomizer = new Randomizer(settings, handler);
+					randomizer.useStageStreams(job.seed, stageThreads);
+					LogSink log = new NullLogSink();
+					File logFile = null;
+					SpoilerWriter spoiler = null;
+					File spoilerFile = null;
+					try {
+						if (job.logFormat != null) {
+							logFile = new File(job.outputFilename + "."
+									+ job.logFormat.extension());
+							log = job.logFormat.newSink(logFile);
+						}
+						if (job.spoilerFormat != null) {
+							spoilerFile = new File(job.outputFilename + "."
+									+ job.spoilerFormat.extension());
+							spoiler = job.spoilerFormat.newWriter(spoilerFile);
+							randomizer.exportSpoiler(spoiler);
+						}
+						checkValue = randomizer.randomize(log, null, null,
+								null);
+					} finally {
+						log.close();
+						if (spoiler != null) {
+							spoiler.close();
+						}
+					}
+					if (log.checkError()) {
+						job.finish(Job.State.FAILED, 0, "couldn't write "
+								+ logFile);
+						return null;
+					}
+					if (spoiler != null && spoiler.checkError()) {
+						job.finish(Job.State.FAILED, 0, "couldn't write "
+								+ spoilerFile);
+						return null;
+					}
+					return save();
+				}
+			};
+		}
+
+		JobExecutor.Step save() {
+			return new JobExecutor.Step(JobExecutor.Phase.IO) {
+				@Override
+				protected JobExecutor.Step run() {
+					String patchExtension = "."
+							+ handler.patchFormat().extension();
+					boolean saved;
+					if (job.outputFilename.toLowerCase().endsWith(
+							patchExtension)) {
+						saved = handler.savePatch(job.outputFilename);
+					} else {
+						saved = handler.saveRom(job.outputFilename);
+					}
+					if (saved) {
+						job.finish(Job.State.DONE, checkValue, null);
+					} else {
+						job.finish(Job.State.FAILED, 0, "couldn't write "
+								+ job.outputFilename);
+					}
+					return null;
+				}
+			};
+		}
+
+		void completed(Throwable failure) {
+			if (handler != null) {
+				roms.release(handler);
+			}
+			if (failure instanceof CancellationException) {
+				job.finish(Job.State.CANCELLED, 0, null);
+			} else if (failure != null) {
+				job.finish(Job.State.FAILED, 0, failure.toString());
+			}
+			synchronized (handles) {
+				done = true;
+				handles.remove(job.id);
+			}
+			finished.add(job.id);
+			finishedCount.incrementAndGet();
+			while (finished.size() > FINISHED_KEPT) {
+				Long oldest = finished.poll();
+				if (oldest != null) {
+					jobs.remove(oldest);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.dabomstew.pkrandom.daemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  RandomizerDaemon.java - keeps ROMs loaded and takes randomization     --*/
+/*--                          jobs from local clients.                      --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+import com.dabomstew.pkrandom.JobExecutor;
+import com.dabomstew.pkrandom.log.LogFormat;
+import com.dabomstew.pkrandom.log.SpoilerFormat;
+
+/**
+ * Listens on a loopback port and speaks one line per command and one line
+ * per reply, fields separated by tabs:
+ * 
+ * <pre>
+ * SUBMIT seed settings rom output [option...]
+ *                                  ->  OK id | BUSY queued | ERROR reason
+ * STATUS id                        ->  QUEUED | RUNNING | CANCELLED
+ *                                      | DONE checkValue timings
+ *                                      | FAILED reason
+ * WAIT id                          ->  same as STATUS, once the job finishes
+ * CANCEL id                        ->  OK | ERROR reason
+ * STATS                            ->  OK queued running finished rom-cache
+ * SHUTDOWN                         ->  OK
+ * </pre>
+ * 
+ * The settings are a settings string as the GUI shows it; the ROM and
+ * output are filenames as the daemon sees them. BUSY means the job queue
+ * is full and the job wasn't taken, so try again later. A connection can
+ * send any number of commands.
+ * 
+ * SUBMIT options, each a field of its own:
+ * 
+ * <pre>
+ * log=text        write the verbose log next to the output, as output.log
+ * log=json        the same as JSON lines, as output.log.jsonl
+ * spoiler=json    write the structured spoiler (see SpoilerExport) next
+ *                 to the output as JSON lines, as output.spoiler.jsonl
+ * spoiler=binary  the same in its compact binary form, as output.spoiler.bin
+ * </pre>
+ */
+public class RandomizerDaemon {
+
+	public static final int DEFAULT_PORT = 8715;
+	private static final long ROM_CACHE_BUDGET = 256L << 20;
+
+	private final ServerSocket server;
+	private final JobQueue jobs;
+	private final RomCache roms;
+	private volatile boolean stopping;
+
+	public RandomizerDaemon(int port, JobExecutor executor, int stageThreads)
+			throws IOException {
+		this.server = new ServerSocket(port, 50,
+				InetAddress.getByName("127.0.0.1"));
+		this.roms = new RomCache(ROM_CACHE_BUDGET);
+		this.jobs = new JobQueue(executor, roms, stageThreads);
+	}
+
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Accept connections until SHUTDOWN or stop().
+	 */
+	public void serve() throws IOException {
+		try {
+			while (!stopping) {
+				final Socket socket;
+				try {
+					socket = server.accept();
+				} catch (SocketException ex) {
+					if (stopping) {
+						break;
+					}
+					throw ex;
+				}
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						converse(socket);
+					}
+				}, "randomizer-connection");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		} finally {
+			jobs.shutdown();
+		}
+	}
+
+	public void stop() {
+		stopping = true;
+		try {
+			server.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+
+	private void converse(Socket socket) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					socket.getInputStream(), "UTF-8"));
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(
+					socket.getOutputStream(), "UTF-8"), true);
+			String line;
+			while ((line = in.readLine()) != null) {
+				out.print(handle(line.split("\t", -1)) + "\n");
+				out.flush();
+			}
+		} catch (IOException ex) {
+			// the client went away
+		} catch (InterruptedException ex) {
+			// shutting down mid-WAIT
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing more to say anyway
+			}
+		}
+	}
+
+	String handle(String[] command) throws InterruptedException {
+		String verb = command[0].trim().toUpperCase();
+		if (verb.equals("SUBMIT")) {
+			if (command.length < 5) {
+				return "ERROR\tSUBMIT needs seed, settings, rom and output";
+			}
+			long seed;
+			try {
+				seed = Long.parseLong(command[1].trim());
+			} catch (NumberFormatException ex) {
+				return "ERROR\tbad seed " + command[1];
+			}
+			LogFormat logFormat = null;
+			SpoilerFormat spoilerFormat = null;
+			for (int i = 5; i < command.length; i++) {
+				String option = command[i].trim();
+				int equals = option.indexOf('=');
+				String name = equals < 0 ? option : option.substring(0, equals);
+				String value = equals < 0 ? "" : option.substring(equals + 1);
+				if (name.equalsIgnoreCase("log")) {
+					logFormat = LogFormat.forKey(value);
+					if (logFormat == null) {
+						return "ERROR\tunknown log format " + value;
+					}
+				} else if (name.equalsIgnoreCase("spoiler")) {
+					spoilerFormat = SpoilerFormat.forKey(value);
+					if (spoilerFormat == null) {
+						return "ERROR\tunknown spoiler format " + value;
+					}
+				} else {
+					return "ERROR\tunknown option " + option;
+				}
+			}
+			Job job = jobs.submit(command[3], command[2].trim(), seed,
+					command[4], logFormat, spoilerFormat);
+			if (job == null) {
+				return "BUSY\t" + jobs.queued();
+			}
+			return "OK\t" + job.id;
+		} else if (verb.equals("STATUS") || verb.equals("WAIT")
+				|| verb.equals("CANCEL")) {
+			Job job = null;
+			if (command.length == 2) {
+				try {
+					job = jobs.get(Long.parseLong(command[1].trim()));
+				} catch (NumberFormatException ex) {
+					// unknown like any other bad id
+				}
+			}
+			if (job == null) {
+				return "ERROR\tno such job";
+			}
+			if (verb.equals("CANCEL")) {
+				return jobs.cancel(job.id) ? "OK" : "ERROR\talready finished";
+			}
+			if (verb.equals("WAIT")) {
+				job.await();
+			}
+			return job.describe();
+		} else if (verb.equals("STATS")) {
+			return String.format("OK\tqueued=%d\trunning=%d\tfinished=%d\t%s",
+					jobs.queued(), jobs.running(), jobs.finishedCount(),
+					roms.stats());
+		} else if (verb.equals("SHUTDOWN")) {
+			stop();
+			return "OK";
+		}
+		return "ERROR\tunknown command " + command[0];
+	}
+
+	/**
+	 * Usage: RandomizerDaemon [port [cpuThreads [ioThreads [maxJobs
+	 * [stageThreads]]]]]
+	 * 
+	 * Every job in flight holds its own copy of its ROM, so maxJobs is what
+	 * bounds the daemon's memory use. stageThreads (default 1) is how many
+	 * threads each job spreads its stages over; more than one only helps
+	 * when there are fewer jobs than CPU threads.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int cpuThreads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		int ioThreads = args.length > 2 ? Integer.parseInt(args[2])
+				: cpuThreads * 4;
+		int maxJobs = args.length > 3 ? Integer.parseInt(args[3])
+				: cpuThreads * 8;
+		int stageThreads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+		RandomizerDaemon daemon = new RandomizerDaemon(port, new JobExecutor(
+				ioThreads, cpuThreads, maxJobs), stageThreads);
+		System.out.printf("listening on 127.0.0.1:%d, %d CPU threads, "
+				+ "%d I/O threads, up to %d jobs, %d stage threads per job%n",
+				daemon.getPort(), cpuThreads, ioThreads, maxJobs,
+				stageThreads);
+		daemon.serve();
+	}
+
+}
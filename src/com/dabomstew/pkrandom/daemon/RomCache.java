@@ -0,0 +1,237 @@
+package com.dabomstew.pkrandom.daemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  RomCache.java - keeps the ROMs the daemon has seen identified         --*/
+/*--                  and in memory between jobs.                           --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.dabomstew.pkrandom.newnds.MemoryExtractionStore;
+import com.dabomstew.pkrandom.newnds.NDSRom;
+import com.dabomstew.pkrandom.romhandlers.AbstractDSRomHandler;
+import com.dabomstew.pkrandom.romhandlers.AbstractGBRomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen1RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen2RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen3RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen4RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen5RomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomHeader;
+import com.dabomstew.pkrandom.romhandlers.RomIdentifier;
+
+/**
+ * A snapshot remembers which handler a ROM file needs and, for the Game Boy
+ * generations, the whole file, so a job on a ROM that's been used before
+ * skips reading and identifying it. For DS ROMs it keeps the parsed file
+ * tables and the decoded ARM9 instead, and the rest is read from the file
+ * as it's needed. A snapshot is dropped when the file's length or
+ * modification time changes, and the least recently used ones go once what
+ * they hold adds up to more than the byte budget.
+ *
+ * Each load gives a new handler with its own copy of the ROM, and handlers
+ * keep nothing shared between copies, so loads and jobs on the same ROM can
+ * run side by side.
+ */
+public class RomCache {
+
+	private static class Snapshot {
+		long length, modified;
+		RomHeader header;
+		boolean gameBoy;
+		// the file, for GB ROMs while it fits the budget
+		byte[] contents;
+		// for DS ROMs, opened once and never changed, to copy from
+		NDSRom nds;
+		// bytes of contents or of the ARM9 in nds, counted in held
+		long size;
+	}
+
+	private final long budget;
+	private long held;
+	private int hits, misses;
+	private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>(
+			16, 0.75f, true);
+
+	public RomCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * A new handler with filename loaded, or null if it isn't a ROM any
+	 * handler supports or can't be read.
+	 */
+	public RomHandler load(String filename) throws IOException {
+		String path = new File(filename).getAbsolutePath();
+		Snapshot snapshot = snapshot(path);
+		if (snapshot == null) {
+			return null;
+		}
+		RomHandler handler = RomIdentifier.identify(snapshot.header,
+				newHandlers());
+		if (handler == null) {
+			return null;
+		}
+		byte[] contents;
+		NDSRom nds;
+		synchronized (this) {
+			// trim() may drop them from under us otherwise
+			contents = snapshot.contents;
+			nds = snapshot.nds;
+		}
+		boolean loaded;
+		if (contents != null) {
+			loaded = ((AbstractGBRomHandler) handler).loadRom(path, contents);
+		} else if (nds != null) {
+			loaded = ((AbstractDSRomHandler) handler).loadRom(path, nds);
+		} else {
+			loaded = handler.loadRom(path);
+		}
+		return loaded ? handler : null;
+	}
+
+	/**
+	 * Let go of a handler from load once its job is done with it.
+	 */
+	public void release(RomHandler handler) {
+		if (handler instanceof AbstractDSRomHandler) {
+			try {
+				((AbstractDSRomHandler) handler).disposeInnerRom();
+			} catch (IOException e) {
+				// only temporary files left behind
+			}
+		}
+	}
+
+	// the reading and identifying happen outside the lock, so one slow file
+	// doesn't hold up jobs on the others
+	private Snapshot snapshot(String path) throws IOException {
+		File file = new File(path);
+		long length = file.length();
+		long modified = file.lastModified();
+		Snapshot snapshot;
+		synchronized (this) {
+			snapshot = snapshots.get(path);
+			if (snapshot != null && snapshot.length == length
+					&& snapshot.modified == modified) {
+				hits++;
+				if (snapshot.contents != null || snapshot.nds != null
+						|| (snapshot.gameBoy && length > budget)) {
+					return snapshot;
+				}
+			} else {
+				misses++;
+				forget(path);
+				snapshot = null;
+			}
+		}
+		if (snapshot == null) {
+			snapshot = new Snapshot();
+			snapshot.length = length;
+			snapshot.modified = modified;
+			snapshot.header = RomHeader.read(path);
+			if (snapshot.header == null) {
+				return null;
+			}
+			RomHandler handler = RomIdentifier.identify(snapshot.header,
+					newHandlers());
+			if (handler == null) {
+				return null;
+			}
+			snapshot.gameBoy = handler instanceof AbstractGBRomHandler;
+		}
+		byte[] contents = null;
+		NDSRom nds = null;
+		long size = 0;
+		if (!snapshot.gameBoy) {
+			nds = new NDSRom(path, new MemoryExtractionStore());
+			size = nds.getARM9().length;
+			nds.closeROM();
+		} else if (length <= budget) {
+			contents = readFile(file);
+			size = contents.length;
+		}
+		synchronized (this) {
+			if (snapshots.get(path) != snapshot) {
+				forget(path);
+				snapshots.put(path, snapshot);
+			}
+			if (size > 0 && snapshot.size == 0) {
+				snapshot.contents = contents;
+				snapshot.nds = nds;
+				snapshot.size = size;
+				held += size;
+				trim();
+			}
+		}
+		return snapshot;
+	}
+
+	private void forget(String path) {
+		Snapshot old = snapshots.remove(path);
+		if (old != null) {
+			held -= old.size;
+		}
+	}
+
+	// drop least recently used files until what's held fits the budget
+	private void trim() {
+		Iterator<Map.Entry<String, Snapshot>> it = snapshots.entrySet()
+				.iterator();
+		while (held > budget && it.hasNext()) {
+			Snapshot snapshot = it.next().getValue();
+			held -= snapshot.size;
+			snapshot.contents = null;
+			snapshot.nds = null;
+			snapshot.size = 0;
+		}
+	}
+
+	public synchronized String stats() {
+		return String.format("roms=%d held=%d hits=%d misses=%d",
+				snapshots.size(), held, hits, misses);
+	}
+
+	private static RomHandler[] newHandlers() {
+		return new RomHandler[] { new Gen1RomHandler(), new Gen2RomHandler(),
+				new Gen3RomHandler(), new Gen4RomHandler(),
+				new Gen5RomHandler() };
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			byte[] contents = new byte[(int) fis.getChannel().size()];
+			new DataInputStream(fis).readFully(contents);
+			return contents;
+		} finally {
+			fis.close();
+		}
+	}
+
+}
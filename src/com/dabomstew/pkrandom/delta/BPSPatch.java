@@ -0,0 +1,324 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  BPSPatch.java - a parsed and checked BPS patch.                       --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.dabomstew.pkrandom.delta.PatchResult.Status;
+
+/**
+ * The patch's own CRC32 and every action's bounds are checked when it's
+ * read, so applying it can only fail on the source: a different size or
+ * CRC32 from the one the patch was made against.
+ *
+ * BPS always builds a new image from the source, so the in-place methods
+ * build it and copy it back, and only when its length hasn't changed.
+ */
+public class BPSPatch {
+
+	private static final int SOURCE_READ = 0, TARGET_READ = 1,
+			SOURCE_COPY = 2;
+
+	private final byte[] data;
+	private long sourceLength, targetLength;
+	private int sourceCRC, targetCRC;
+	// where the actions start and the 12-byte footer begins
+	private int actionsStart, footer;
+	private int count;
+	private PatchResult problem;
+
+	public BPSPatch(byte[] data) {
+		this.data = data;
+		this.problem = parse();
+	}
+
+	public static boolean isBPS(byte[] data) {
+		return data.length >= 4 && data[0] == 'B' && data[1] == 'P'
+				&& data[2] == 'S' && data[3] == '1';
+	}
+
+	private PatchResult parse() {
+		if (!isBPS(data)) {
+			return PatchResult.failed(Status.NOT_A_PATCH, "no BPS signature",
+					0);
+		}
+		if (data.length < 4 + 3 + 12) {
+			return PatchResult.failed(Status.CORRUPT, "too short", 4);
+		}
+		footer = data.length - 12;
+		if (readInt(footer + 8) != crc32(data, 0, footer + 8)) {
+			return PatchResult.failed(Status.CORRUPT,
+					"patch checksum doesn't match", footer + 8);
+		}
+		sourceCRC = readInt(footer);
+		targetCRC = readInt(footer + 4);
+		int[] pos = new int[] { 4 };
+		sourceLength = readNumber(pos);
+		targetLength = readNumber(pos);
+		long metadataLength = readNumber(pos);
+		if (sourceLength < 0 || sourceLength > Integer.MAX_VALUE
+				|| targetLength < 0 || targetLength > Integer.MAX_VALUE
+				|| metadataLength < 0 || metadataLength > footer - pos[0]) {
+			return PatchResult.failed(Status.CORRUPT, "bad header", 4);
+		}
+		actionsStart = pos[0] + (int) metadataLength;
+		pos[0] = actionsStart;
+		long output = 0, sourceRelative = 0, targetRelative = 0;
+		while (pos[0] < footer) {
+			int actionStart = pos[0];
+			long action = readNumber(pos);
+			if (action < 0 || (action >>> 2) >= targetLength - output) {
+				return PatchResult.failed(Status.CORRUPT,
+						"action runs past the end of the target", actionStart);
+			}
+			long length = (action >>> 2) + 1;
+			int command = (int) (action & 3);
+			if (command == SOURCE_READ) {
+				if (output + length > sourceLength) {
+					return PatchResult.failed(Status.CORRUPT,
+							"SourceRead past the end of the source",
+							actionStart);
+				}
+			} else if (command == TARGET_READ) {
+				if (pos[0] + length > footer) {
+					return PatchResult.failed(Status.CORRUPT,
+							"TargetRead data cut off", actionStart);
+				}
+				pos[0] += (int) length;
+			} else {
+				long move = readRelative(pos);
+				if (move == Long.MIN_VALUE) {
+					return PatchResult.failed(Status.CORRUPT,
+							"copy offset cut off", actionStart);
+				}
+				if (command == SOURCE_COPY) {
+					long from = sourceRelative + move;
+					if (from < 0 || from + length > sourceLength) {
+						return PatchResult.failed(Status.CORRUPT,
+								"SourceCopy outside the source", actionStart);
+					}
+					sourceRelative = from + length;
+				} else {
+					long from = targetRelative + move;
+					if (from < 0 || from >= output) {
+						return PatchResult.failed(Status.CORRUPT,
+								"TargetCopy from outside what's been written",
+								actionStart);
+					}
+					targetRelative = from + length;
+				}
+			}
+			output += length;
+			count++;
+		}
+		if (output != targetLength) {
+			return PatchResult.failed(Status.CORRUPT,
+					"actions don't fill the target", footer);
+		}
+		return null;
+	}
+
+	public boolean isValid() {
+		return problem == null;
+	}
+
+	public int actionCount() {
+		return count;
+	}
+
+	public int sourceLength() {
+		return (int) sourceLength;
+	}
+
+	public int targetLength() {
+		return (int) targetLength;
+	}
+
+	/**
+	 * Whether source is what the patch was made against.
+	 */
+	public PatchResult check(byte[] source) {
+		if (problem != null) {
+			return problem;
+		}
+		if (source.length != sourceLength) {
+			return PatchResult.failed(Status.WRONG_SOURCE, String.format(
+					"source is 0x%X bytes, patch wants 0x%X", source.length,
+					sourceLength), -1);
+		}
+		if (crc32(source, 0, source.length) != sourceCRC) {
+			return PatchResult.failed(Status.WRONG_SOURCE,
+					"source checksum doesn't match", -1);
+		}
+		return PatchResult.ok(count, null);
+	}
+
+	/**
+	 * Make the patched image from source.
+	 */
+	public PatchResult apply(byte[] source) {
+		PatchResult result = check(source);
+		if (!result.succeeded()) {
+			return result;
+		}
+		byte[] image = new byte[(int) targetLength];
+		int[] pos = new int[] { actionsStart };
+		int output = 0, sourceRelative = 0, targetRelative = 0;
+		while (pos[0] < footer) {
+			long action = readNumber(pos);
+			int length = (int) (action >>> 2) + 1;
+			switch ((int) (action & 3)) {
+			case SOURCE_READ:
+				System.arraycopy(source, output, image, output, length);
+				break;
+			case TARGET_READ:
+				System.arraycopy(data, pos[0], image, output, length);
+				pos[0] += length;
+				break;
+			case SOURCE_COPY:
+				sourceRelative += (int) readRelative(pos);
+				System.arraycopy(source, sourceRelative, image, output, length);
+				sourceRelative += length;
+				break;
+			default:
+				targetRelative += (int) readRelative(pos);
+				targetCopy(image, targetRelative, output, length);
+				targetRelative += length;
+				break;
+			}
+			output += length;
+		}
+		if (crc32(image, 0, image.length) != targetCRC) {
+			return PatchResult.failed(Status.CORRUPT,
+					"patched image checksum doesn't match", footer + 4);
+		}
+		return PatchResult.ok(count, image);
+	}
+
+	/**
+	 * Patch target in place, if the patch doesn't change its length. Nothing
+	 * is written unless the result is OK.
+	 */
+	public PatchResult applyTo(byte[] target) {
+		if (problem == null && targetLength != target.length) {
+			return lengthChange();
+		}
+		PatchResult result = apply(target);
+		if (result.succeeded()) {
+			System.arraycopy(result.image, 0, target, 0, target.length);
+		}
+		return result;
+	}
+
+	/**
+	 * The same for the bytes from 0 to target's limit. target's position and
+	 * mark aren't changed.
+	 */
+	public PatchResult applyTo(ByteBuffer target) {
+		if (problem != null) {
+			return problem;
+		}
+		if (targetLength != target.limit()) {
+			return lengthChange();
+		}
+		ByteBuffer view = target.duplicate();
+		view.position(0);
+		byte[] source = new byte[view.limit()];
+		view.get(source);
+		PatchResult result = apply(source);
+		if (result.succeeded()) {
+			view.position(0);
+			view.put(result.image);
+		}
+		return result;
+	}
+
+	private PatchResult lengthChange() {
+		return PatchResult.failed(Status.WRONG_LENGTH, String.format(
+				"patch changes the length from 0x%X to 0x%X", sourceLength,
+				targetLength), -1);
+	}
+
+	/**
+	 * Copy length bytes from earlier in the image, where the ranges can
+	 * overlap and the copy then repeats what it has just written.
+	 */
+	private static void targetCopy(byte[] image, int from, int to, int length) {
+		int distance = to - from;
+		if (distance == 1) {
+			Arrays.fill(image, to, to + length, image[from]);
+			return;
+		}
+		while (length > 0) {
+			int chunk = Math.min(length, distance);
+			System.arraycopy(image, from, image, to, chunk);
+			from += chunk;
+			to += chunk;
+			length -= chunk;
+		}
+	}
+
+	private int readInt(int pos) {
+		return (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8)
+				| ((data[pos + 2] & 0xFF) << 16) | ((data[pos + 3] & 0xFF) << 24);
+	}
+
+	private static int crc32(byte[] data, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Read a BPS number at pos[0], moving pos[0] past it. -1 if it runs into
+	 * the footer or is too big to be an offset or length.
+	 */
+	private long readNumber(int[] pos) {
+		long value = 0, shift = 1;
+		while (pos[0] < footer) {
+			int x = data[pos[0]++] & 0xFF;
+			value += (x & 0x7F) * shift;
+			if ((x & 0x80) != 0) {
+				return value;
+			}
+			shift <<= 7;
+			value += shift;
+			if (shift > (1L << 42)) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private long readRelative(int[] pos) {
+		long number = readNumber(pos);
+		if (number < 0) {
+			return Long.MIN_VALUE;
+		}
+		return (number & 1) != 0 ? -(number >>> 1) : number >>> 1;
+	}
+
+}
@@ -0,0 +1,171 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  BPSWriter.java - writes an image as a BPS patch.                      --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * BPS copies source ranges from anywhere (SourceRead when the range hasn't
+ * moved, SourceCopy when it has), so a DS image whose files have shifted
+ * still patches compactly. New data goes in as TargetRead, and gaps are one
+ * zero byte followed by a TargetCopy of it. The source, image and patch
+ * CRC32s are worked out as the patch is written.
+ */
+public class BPSWriter extends PatchWriter {
+
+	private static final int SOURCE_READ = 0, TARGET_READ = 1,
+			SOURCE_COPY = 2, TARGET_COPY = 3;
+
+	private CheckedOutputStream patch;
+	private CRC32 imageCRC = new CRC32();
+	private byte[] buffer = new byte[256 * 1024];
+	private int outputOffset, sourceRelative, targetRelative;
+
+	public BPSWriter(String sourceFilename, OutputStream out)
+			throws IOException {
+		super(sourceFilename, out);
+	}
+
+	@Override
+	protected void writePatch(List<Piece> pieces, int targetLength)
+			throws IOException {
+		patch = new CheckedOutputStream(out, new CRC32());
+		patch.write(new byte[] { 'B', 'P', 'S', '1' });
+		writeNumber(sourceLength);
+		writeNumber(targetLength);
+		// no metadata
+		writeNumber(0);
+		for (Piece piece : pieces) {
+			if (piece.targetOffset > outputOffset) {
+				writeZeros(piece.targetOffset - outputOffset);
+			}
+			if (!piece.fromSource()) {
+				writeAction(TARGET_READ, piece.length);
+				patch.write(piece.data, piece.dataOffset, piece.length);
+				imageCRC.update(piece.data, piece.dataOffset, piece.length);
+			} else {
+				if (piece.sourceOffset == outputOffset) {
+					writeAction(SOURCE_READ, piece.length);
+				} else {
+					writeAction(SOURCE_COPY, piece.length);
+					writeRelative(piece.sourceOffset - sourceRelative);
+					sourceRelative = piece.sourceOffset + piece.length;
+				}
+				addSourceToCRC(piece.sourceOffset, piece.length);
+			}
+			outputOffset += piece.length;
+		}
+		if (targetLength > outputOffset) {
+			writeZeros(targetLength - outputOffset);
+		}
+		writeInt((int) sourceCRC());
+		writeInt((int) imageCRC.getValue());
+		writeInt((int) patch.getChecksum().getValue());
+	}
+
+	private void writeZeros(int length) throws IOException {
+		writeAction(TARGET_READ, 1);
+		patch.write(0);
+		imageCRC.update(0);
+		outputOffset++;
+		if (length > 1) {
+			// copying the zero just written repeats it
+			writeAction(TARGET_COPY, length - 1);
+			writeRelative(outputOffset - 1 - targetRelative);
+			targetRelative = outputOffset - 1 + length - 1;
+			updateCRCWithZeros(length - 1);
+			outputOffset += length - 1;
+		}
+	}
+
+	private void updateCRCWithZeros(int length) {
+		byte[] zeros = new byte[Math.min(length, buffer.length)];
+		while (length > 0) {
+			int chunk = Math.min(length, zeros.length);
+			imageCRC.update(zeros, 0, chunk);
+			length -= chunk;
+		}
+	}
+
+	private void addSourceToCRC(int offset, int length) throws IOException {
+		source.seek(offset);
+		while (length > 0) {
+			int chunk = Math.min(length, buffer.length);
+			source.readFully(buffer, 0, chunk);
+			imageCRC.update(buffer, 0, chunk);
+			length -= chunk;
+		}
+	}
+
+	private long sourceCRC() throws IOException {
+		CRC32 crc = new CRC32();
+		source.seek(0);
+		int length = sourceLength;
+		while (length > 0) {
+			int chunk = Math.min(length, buffer.length);
+			source.readFully(buffer, 0, chunk);
+			crc.update(buffer, 0, chunk);
+			length -= chunk;
+		}
+		return crc.getValue();
+	}
+
+	private void writeAction(int command, int length) throws IOException {
+		writeNumber(((long) (length - 1) << 2) | command);
+	}
+
+	private void writeRelative(int offset) throws IOException {
+		writeNumber(((long) Math.abs(offset) << 1) | (offset < 0 ? 1 : 0));
+	}
+
+	/**
+	 * BPS's variable-length numbers: 7 bits a byte, low bits first, top bit
+	 * set on the last byte, and one taken off each continuation so every
+	 * number has exactly one encoding.
+	 */
+	private void writeNumber(long value) throws IOException {
+		while (true) {
+			int low = (int) (value & 0x7F);
+			value >>>= 7;
+			if (value == 0) {
+				patch.write(0x80 | low);
+				return;
+			}
+			patch.write(low);
+			value--;
+		}
+	}
+
+	private void writeInt(int value) throws IOException {
+		patch.write(value);
+		patch.write(value >>> 8);
+		patch.write(value >>> 16);
+		patch.write(value >>> 24);
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  DeltaFormat.java - the patch formats a randomized ROM can be          --*/
+/*--                     saved as.                                          --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public enum DeltaFormat {
+
+	IPS("ips") {
+		@Override
+		public ImageWriter newWriter(String sourceFilename, OutputStream out)
+				throws IOException {
+			return new IPSWriter(sourceFilename, out);
+		}
+	},
+	BPS("bps") {
+		@Override
+		public ImageWriter newWriter(String sourceFilename, OutputStream out)
+				throws IOException {
+			return new BPSWriter(sourceFilename, out);
+		}
+	};
+
+	private final String extension;
+
+	private DeltaFormat(String extension) {
+		this.extension = extension;
+	}
+
+	public String extension() {
+		return extension;
+	}
+
+	/**
+	 * IPS where the image fits in its 24-bit offsets and nothing has to move,
+	 * BPS otherwise.
+	 */
+	public static DeltaFormat forImage(int targetLength, boolean movesData) {
+		return targetLength <= IPSWriter.MAX_LENGTH && !movesData ? IPS : BPS;
+	}
+
+	/**
+	 * A writer that sends a patch from sourceFilename to the image it's given
+	 * to out, once it's finished. out isn't closed.
+	 */
+	public abstract ImageWriter newWriter(String sourceFilename,
+			OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,84 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  FileImageWriter.java - writes an image straight to a new file.        --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class FileImageWriter implements ImageWriter {
+
+	private RandomAccessFile source, target;
+	private byte[] copyBuffer;
+
+	public FileImageWriter(String sourceFilename, String targetFilename)
+			throws IOException {
+		this.source = new RandomAccessFile(sourceFilename, "r");
+		try {
+			this.target = new RandomAccessFile(targetFilename, "rw");
+			// anything left over from an old file would show through the gaps
+			this.target.setLength(0);
+		} catch (IOException ex) {
+			source.close();
+			throw ex;
+		}
+	}
+
+	@Override
+	public void copy(int sourceOffset, int targetOffset, int length)
+			throws IOException {
+		if (copyBuffer == null) {
+			copyBuffer = new byte[256 * 1024];
+		}
+		source.seek(sourceOffset);
+		target.seek(targetOffset);
+		while (length > 0) {
+			int chunk = Math.min(length, copyBuffer.length);
+			source.readFully(copyBuffer, 0, chunk);
+			target.write(copyBuffer, 0, chunk);
+			length -= chunk;
+		}
+	}
+
+	@Override
+	public void write(int targetOffset, byte[] data, int offset, int length)
+			throws IOException {
+		target.seek(targetOffset);
+		target.write(data, offset, length);
+	}
+
+	@Override
+	public void finish(int targetLength) throws IOException {
+		target.setLength(targetLength);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			target.close();
+		} finally {
+			source.close();
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  IPSPatch.java - a parsed and checked IPS patch.                       --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.dabomstew.pkrandom.delta.PatchResult.Status;
+
+/**
+ * The whole patch is read into a table of records up front, so problems are
+ * found before anything is written and a patch can be applied any number of
+ * times without parsing it again. Records are applied with
+ * System.arraycopy, and run-length records with Arrays.fill.
+ *
+ * Patching in place (applyTo) can't grow or shrink the target, so records
+ * past its end are an error; apply() makes a new image that can.
+ */
+public class IPSPatch {
+
+	private static final int EOF_MARKER = 0x454F46;
+
+	private final byte[] data;
+	private int count;
+	// target offset and length of each record, where its bytes are in data
+	// (for a run, where the fill byte is) and whether it's a run
+	private int[] offsets = new int[16], sizes = new int[16],
+			positions = new int[16];
+	private boolean[] runs = new boolean[16];
+	// one past the last byte any record writes
+	private int end;
+	// from the optional truncation length after EOF, -1 if none
+	private int truncateLength = -1;
+	// why the patch can't be used, null if it's fine
+	private PatchResult problem;
+
+	public IPSPatch(byte[] data) {
+		this.data = data;
+		this.problem = parse();
+	}
+
+	public static boolean isIPS(byte[] data) {
+		return data.length >= 5 && data[0] == 'P' && data[1] == 'A'
+				&& data[2] == 'T' && data[3] == 'C' && data[4] == 'H';
+	}
+
+	private PatchResult parse() {
+		if (!isIPS(data)) {
+			return PatchResult.failed(Status.NOT_A_PATCH, "no IPS signature",
+					0);
+		}
+		int pos = 5;
+		while (true) {
+			if (pos + 3 > data.length) {
+				return PatchResult.failed(Status.CORRUPT, "no EOF marker", pos);
+			}
+			int offset = read24(pos);
+			if (offset == EOF_MARKER) {
+				break;
+			}
+			if (pos + 5 > data.length) {
+				return PatchResult.failed(Status.CORRUPT,
+						"record cut off before its size", pos);
+			}
+			int size = read16(pos + 3);
+			if (size == 0) {
+				if (pos + 8 > data.length) {
+					return PatchResult.failed(Status.CORRUPT,
+							"run cut off before its length and byte", pos);
+				}
+				add(offset, read16(pos + 5), pos + 7, true);
+				pos += 8;
+			} else {
+				if (pos + 5 + size > data.length) {
+					return PatchResult.failed(Status.CORRUPT,
+							"record cut off before the end of its data", pos);
+				}
+				add(offset, size, pos + 5, false);
+				pos += 5 + size;
+			}
+		}
+		pos += 3;
+		if (pos + 3 <= data.length) {
+			truncateLength = read24(pos);
+		}
+		return null;
+	}
+
+	private void add(int offset, int size, int position, boolean run) {
+		if (count == offsets.length) {
+			int capacity = count * 2;
+			offsets = Arrays.copyOf(offsets, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			runs = Arrays.copyOf(runs, capacity);
+		}
+		offsets[count] = offset;
+		sizes[count] = size;
+		positions[count] = position;
+		runs[count] = run;
+		count++;
+		end = Math.max(end, offset + size);
+	}
+
+	public boolean isValid() {
+		return problem == null;
+	}
+
+	public int recordCount() {
+		return count;
+	}
+
+	/**
+	 * The length something sourceLength bytes long is once patched.
+	 */
+	public int patchedLength(int sourceLength) {
+		if (truncateLength >= 0) {
+			return truncateLength;
+		}
+		return Math.max(sourceLength, end);
+	}
+
+	/**
+	 * Whether the patch can be applied in place to something targetLength
+	 * bytes long.
+	 */
+	public PatchResult check(int targetLength) {
+		if (problem != null) {
+			return problem;
+		}
+		if (end > targetLength) {
+			for (int i = 0; i < count; i++) {
+				if (offsets[i] + sizes[i] > targetLength) {
+					return PatchResult.failed(Status.PAST_END, String.format(
+							"record writes 0x%X-0x%X, past the end (0x%X)",
+							offsets[i], offsets[i] + sizes[i], targetLength),
+							positions[i] - (runs[i] ? 7 : 5));
+				}
+			}
+		}
+		if (truncateLength >= 0 && truncateLength != targetLength) {
+			return PatchResult.failed(Status.WRONG_LENGTH, String.format(
+					"patch truncates to 0x%X", truncateLength), -1);
+		}
+		return PatchResult.ok(count, null);
+	}
+
+	/**
+	 * Patch target in place. Either every record is applied or, if the
+	 * result isn't OK, none are.
+	 */
+	public PatchResult applyTo(byte[] target) {
+		PatchResult result = check(target.length);
+		if (result.succeeded()) {
+			applyRecords(target, target.length);
+		}
+		return result;
+	}
+
+	/**
+	 * Patch the bytes from 0 to target's limit (a mapped file, say) in
+	 * place. target's position and mark aren't changed.
+	 */
+	public PatchResult applyTo(ByteBuffer target) {
+		PatchResult result = check(target.limit());
+		if (!result.succeeded()) {
+			return result;
+		}
+		ByteBuffer view = target.duplicate();
+		byte[] fill = null;
+		for (int i = 0; i < count; i++) {
+			view.position(offsets[i]);
+			if (!runs[i]) {
+				view.put(data, positions[i], sizes[i]);
+				continue;
+			}
+			if (fill == null || fill.length < sizes[i]) {
+				fill = new byte[sizes[i]];
+			}
+			Arrays.fill(fill, 0, sizes[i], data[positions[i]]);
+			view.put(fill, 0, sizes[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Make a patched copy of source, which can be longer or shorter.
+	 */
+	public PatchResult apply(byte[] source) {
+		if (problem != null) {
+			return problem;
+		}
+		int length = patchedLength(source.length);
+		byte[] image = Arrays.copyOf(source, length);
+		applyRecords(image, length);
+		return PatchResult.ok(count, image);
+	}
+
+	private void applyRecords(byte[] image, int length) {
+		for (int i = 0; i < count; i++) {
+			int offset = offsets[i];
+			int size = Math.min(sizes[i], length - offset);
+			if (size <= 0) {
+				continue;
+			}
+			if (runs[i]) {
+				Arrays.fill(image, offset, offset + size, data[positions[i]]);
+			} else {
+				System.arraycopy(data, positions[i], image, offset, size);
+			}
+		}
+	}
+
+	private int read24(int pos) {
+		return ((data[pos] & 0xFF) << 16) | ((data[pos + 1] & 0xFF) << 8)
+				| (data[pos + 2] & 0xFF);
+	}
+
+	private int read16(int pos) {
+		return ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  IPSWriter.java - writes an image as an IPS patch.                     --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * IPS can only overwrite bytes in place, so copies have to come from the same
+ * offset in the source (they cost nothing), and its 24-bit offsets limit
+ * images to MAX_LENGTH. Gaps are filled with run-length encoded zeros. An
+ * image shorter than the source gets the 3-byte truncation length after EOF
+ * that most patchers understand.
+ */
+public class IPSWriter extends PatchWriter {
+
+	public static final int MAX_LENGTH = 0x1000000;
+
+	// a record starting here would read as the end marker
+	private static final int EOF_OFFSET = 0x454F46;
+	private static final int MAX_RECORD = 0xFFFF;
+
+	private List<Piece> pieces;
+
+	public IPSWriter(String sourceFilename, OutputStream out)
+			throws IOException {
+		super(sourceFilename, out);
+	}
+
+	@Override
+	public void copy(int sourceOffset, int targetOffset, int length)
+			throws IOException {
+		if (sourceOffset != targetOffset) {
+			throw new IllegalArgumentException("IPS patches can't move data");
+		}
+		super.copy(sourceOffset, targetOffset, length);
+	}
+
+	@Override
+	protected void writePatch(List<Piece> pieces, int targetLength)
+			throws IOException {
+		this.pieces = pieces;
+		out.write(new byte[] { 'P', 'A', 'T', 'C', 'H' });
+		int pos = 0;
+		for (Piece piece : pieces) {
+			if (piece.targetOffset > pos) {
+				writeZeros(pos, piece.targetOffset - pos);
+			}
+			if (!piece.fromSource()) {
+				writeData(piece.targetOffset, piece.data, piece.dataOffset,
+						piece.length);
+			}
+			pos = piece.end();
+		}
+		if (targetLength > pos) {
+			writeZeros(pos, targetLength - pos);
+		}
+		out.write(new byte[] { 'E', 'O', 'F' });
+		if (targetLength < sourceLength) {
+			write24(targetLength);
+		}
+	}
+
+	private void writeData(int offset, byte[] data, int start, int length)
+			throws IOException {
+		while (length > 0) {
+			if (offset == EOF_OFFSET) {
+				writeEarlyStart(data[start]);
+				offset++;
+				start++;
+				length--;
+				continue;
+			}
+			int chunk = Math.min(length, MAX_RECORD);
+			writeRecordHeader(offset, chunk);
+			out.write(data, start, chunk);
+			offset += chunk;
+			start += chunk;
+			length -= chunk;
+		}
+	}
+
+	private void writeZeros(int offset, int length) throws IOException {
+		while (length > 0) {
+			if (offset == EOF_OFFSET) {
+				writeEarlyStart((byte) 0);
+				offset++;
+				length--;
+				continue;
+			}
+			int chunk = Math.min(length, MAX_RECORD);
+			writeRecordHeader(offset, 0);
+			write16(chunk);
+			out.write(0);
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * Write the byte at EOF_OFFSET as a two byte record starting one byte
+	 * earlier, repeating whatever the image has there.
+	 */
+	private void writeEarlyStart(byte value) throws IOException {
+		writeRecordHeader(EOF_OFFSET - 1, 2);
+		out.write(imageByte(EOF_OFFSET - 1));
+		out.write(value);
+	}
+
+	private int imageByte(int offset) throws IOException {
+		for (Piece piece : pieces) {
+			if (piece.targetOffset <= offset && offset < piece.end()) {
+				int within = offset - piece.targetOffset;
+				if (!piece.fromSource()) {
+					return piece.data[piece.dataOffset + within] & 0xFF;
+				}
+				byte[] one = new byte[1];
+				readSource(piece.sourceOffset + within, one, 1);
+				return one[0] & 0xFF;
+			}
+		}
+		return 0;
+	}
+
+	private void writeRecordHeader(int offset, int size) throws IOException {
+		if (offset >= MAX_LENGTH) {
+			throw new IllegalArgumentException(
+					"IPS patches can't reach offset 0x"
+							+ Integer.toHexString(offset));
+		}
+		write24(offset);
+		write16(size);
+	}
+
+	private void write24(int value) throws IOException {
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private void write16(int value) throws IOException {
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  ImageWriter.java - somewhere to put a ROM image built from            --*/
+/*--                     pieces of an original ROM and new data.            --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A ROM image is saved as a series of pieces: ranges copied from the original
+ * ROM (the source) and blocks of new data. The pieces may come in any order
+ * but mustn't overlap, and any part of the image that no piece covers is
+ * zeros. finish() gives the image's final length.
+ *
+ * FileImageWriter writes the image out in full; the patch writers only
+ * record how to get from the source to it.
+ */
+public interface ImageWriter extends Closeable {
+
+	/**
+	 * Fill length bytes of the image at targetOffset with the source's bytes
+	 * from sourceOffset.
+	 */
+	public void copy(int sourceOffset, int targetOffset, int length)
+			throws IOException;
+
+	/**
+	 * Put length bytes of data from offset into the image at targetOffset.
+	 * Writers may hold on to data until finish(), so it mustn't be changed
+	 * before then.
+	 */
+	public void write(int targetOffset, byte[] data, int offset, int length)
+			throws IOException;
+
+	public void finish(int targetLength) throws IOException;
+
+}
@@ -0,0 +1,75 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  PatchApplier.java - applies IPS and BPS patches, picking the          --*/
+/*--                      format from the patch's signature.                --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.nio.ByteBuffer;
+
+import com.dabomstew.pkrandom.delta.PatchResult.Status;
+
+/**
+ * One-off patching. Code that applies the same patch again and again can
+ * keep the IPSPatch or BPSPatch instead, so it's only parsed once.
+ */
+public class PatchApplier {
+
+	/**
+	 * A patched copy of source, in the result's image.
+	 */
+	public static PatchResult apply(byte[] source, byte[] patch) {
+		if (IPSPatch.isIPS(patch)) {
+			return new IPSPatch(patch).apply(source);
+		} else if (BPSPatch.isBPS(patch)) {
+			return new BPSPatch(patch).apply(source);
+		}
+		return notAPatch();
+	}
+
+	/**
+	 * Patch target in place, all or nothing.
+	 */
+	public static PatchResult applyInPlace(byte[] target, byte[] patch) {
+		if (IPSPatch.isIPS(patch)) {
+			return new IPSPatch(patch).applyTo(target);
+		} else if (BPSPatch.isBPS(patch)) {
+			return new BPSPatch(patch).applyTo(target);
+		}
+		return notAPatch();
+	}
+
+	public static PatchResult applyInPlace(ByteBuffer target, byte[] patch) {
+		if (IPSPatch.isIPS(patch)) {
+			return new IPSPatch(patch).applyTo(target);
+		} else if (BPSPatch.isBPS(patch)) {
+			return new BPSPatch(patch).applyTo(target);
+		}
+		return notAPatch();
+	}
+
+	private static PatchResult notAPatch() {
+		return PatchResult.failed(Status.NOT_A_PATCH,
+				"no IPS or BPS signature", 0);
+	}
+
+}
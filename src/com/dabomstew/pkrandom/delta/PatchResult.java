@@ -0,0 +1,87 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  PatchResult.java - what happened when a patch was checked or          --*/
+/*--                     applied.                                           --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+/**
+ * A failed result means nothing was changed: patches are checked in full
+ * before anything is written. patchOffset is where in the patch the problem
+ * was found, or -1 when it isn't down to one spot (a wrong source, say).
+ */
+public class PatchResult {
+
+	public enum Status {
+		OK,
+		// no IPS or BPS signature
+		NOT_A_PATCH,
+		// cut off, or a record or action that doesn't make sense
+		CORRUPT,
+		// a BPS patch for a different source
+		WRONG_SOURCE,
+		// the patch would change the length of something patched in place
+		WRONG_LENGTH,
+		// an IPS record past the end of something patched in place
+		PAST_END
+	}
+
+	public final Status status;
+	public final String message;
+	public final int patchOffset;
+	// IPS records or BPS actions in the patch
+	public final int records;
+	// the new image, for the methods that make one
+	public final byte[] image;
+
+	PatchResult(Status status, String message, int patchOffset, int records,
+			byte[] image) {
+		this.status = status;
+		this.message = message;
+		this.patchOffset = patchOffset;
+		this.records = records;
+		this.image = image;
+	}
+
+	static PatchResult ok(int records, byte[] image) {
+		return new PatchResult(Status.OK, null, -1, records, image);
+	}
+
+	static PatchResult failed(Status status, String message, int patchOffset) {
+		return new PatchResult(status, message, patchOffset, 0, null);
+	}
+
+	public boolean succeeded() {
+		return status == Status.OK;
+	}
+
+	@Override
+	public String toString() {
+		if (succeeded()) {
+			return "patched (" + records + " records)";
+		}
+		return status + ": " + message
+				+ (patchOffset >= 0 ? " at patch offset 0x"
+						+ Integer.toHexString(patchOffset) : "");
+	}
+
+}
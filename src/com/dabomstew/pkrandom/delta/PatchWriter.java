@@ -0,0 +1,137 @@
+package com.dabomstew.pkrandom.delta;
+
+/*----------------------------------------------------------------------------*/
+/*--  PatchWriter.java - collects the pieces of an image so a patch         --*/
+/*--                     format can write them out in order.                --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+abstract class PatchWriter implements ImageWriter {
+
+	/**
+	 * One piece of the image: either source bytes (sourceOffset >= 0) or new
+	 * data.
+	 */
+	static class Piece {
+		final int targetOffset, length, sourceOffset;
+		final byte[] data;
+		final int dataOffset;
+
+		Piece(int targetOffset, int length, int sourceOffset, byte[] data,
+				int dataOffset) {
+			this.targetOffset = targetOffset;
+			this.length = length;
+			this.sourceOffset = sourceOffset;
+			this.data = data;
+			this.dataOffset = dataOffset;
+		}
+
+		int end() {
+			return targetOffset + length;
+		}
+
+		boolean fromSource() {
+			return sourceOffset >= 0;
+		}
+	}
+
+	protected final RandomAccessFile source;
+	protected final int sourceLength;
+	protected final OutputStream out;
+	private TreeMap<Integer, Piece> pieces = new TreeMap<Integer, Piece>();
+
+	PatchWriter(String sourceFilename, OutputStream out) throws IOException {
+		this.source = new RandomAccessFile(sourceFilename, "r");
+		this.sourceLength = (int) source.length();
+		this.out = new BufferedOutputStream(out);
+	}
+
+	@Override
+	public void copy(int sourceOffset, int targetOffset, int length)
+			throws IOException {
+		if (sourceOffset < 0 || sourceOffset + length > sourceLength) {
+			throw new IllegalArgumentException("copy from outside the source");
+		}
+		add(new Piece(targetOffset, length, sourceOffset, null, 0));
+	}
+
+	@Override
+	public void write(int targetOffset, byte[] data, int offset, int length)
+			throws IOException {
+		add(new Piece(targetOffset, length, -1, data, offset));
+	}
+
+	private void add(Piece piece) {
+		if (piece.length <= 0) {
+			return;
+		}
+		if (piece.targetOffset < 0) {
+			throw new IllegalArgumentException("negative target offset");
+		}
+		Map.Entry<Integer, Piece> before = pieces.floorEntry(piece.targetOffset);
+		Map.Entry<Integer, Piece> after = pieces.ceilingEntry(piece.targetOffset);
+		if ((before != null && before.getValue().end() > piece.targetOffset)
+				|| (after != null && after.getKey() < piece.end())) {
+			throw new IllegalArgumentException("overlapping pieces at 0x"
+					+ Integer.toHexString(piece.targetOffset));
+		}
+		pieces.put(piece.targetOffset, piece);
+	}
+
+	@Override
+	public void finish(int targetLength) throws IOException {
+		List<Piece> ordered = new ArrayList<Piece>(pieces.values());
+		if (!ordered.isEmpty()
+				&& ordered.get(ordered.size() - 1).end() > targetLength) {
+			throw new IllegalArgumentException("piece past the end of the image");
+		}
+		writePatch(ordered, targetLength);
+		out.flush();
+	}
+
+	/**
+	 * Write the patch for pieces (in target order, not overlapping, with
+	 * zeros in any gaps) to out.
+	 */
+	protected abstract void writePatch(List<Piece> pieces, int targetLength)
+			throws IOException;
+
+	protected void readSource(int offset, byte[] buf, int length)
+			throws IOException {
+		source.seek(offset);
+		source.readFully(buf, 0, length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+}
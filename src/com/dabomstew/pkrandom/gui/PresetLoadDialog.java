@@ -43,6 +43,7 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
 import com.dabomstew.pkrandom.romhandlers.RomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomIdentifier;
 
 /**
  * 
@@ -316,58 +317,71 @@ public class PresetLoadDialog extends javax.swing.JDialog {
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			final File fh = romFileChooser.getSelectedFile();
 			parentGUI.reinitHandlers();
-			for (RomHandler rh : parentGUI.checkHandlers) {
-				if (rh.detectRom(fh.getAbsolutePath())) {
-					final RomHandler checkHandler = rh;
-					final JDialog opDialog = new OperationDialog(
-							bundle.getString("RandomizerGUI.loadingText"),
-							this, true);
-					Thread t = new Thread() {
-						@Override
-						public void run() {
-							SwingUtilities.invokeLater(new Runnable() {
-								@Override
-								public void run() {
-									opDialog.setVisible(true);
-								}
-							});
-							try {
-								checkHandler.loadRom(fh.getAbsolutePath());
-							} catch (Exception ex) {
-								JOptionPane
-										.showMessageDialog(
-												PresetLoadDialog.this,
-												bundle.getString("RandomizerGUI.loadFailedNoLog"));
+			final RomHandler checkHandler = RomIdentifier.identify(
+					fh.getAbsolutePath(), parentGUI.checkHandlers);
+			if (checkHandler != null) {
+				final JDialog opDialog = new OperationDialog(
+						bundle.getString("RandomizerGUI.loadingText"),
+						this, true);
+				RandomizerGUI.runInBackground(new Runnable() {
+					@Override
+					public void run() {
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								opDialog.setVisible(true);
 							}
-							SwingUtilities.invokeLater(new Runnable() {
-								@Override
-								public void run() {
-									opDialog.setVisible(false);
-									if (checkHandler.getROMName().equals(
-											requiredName)) {
-										// Got it
-										romFileField.setText(fh
-												.getAbsolutePath());
-										currentROM = checkHandler;
-										acceptButton.setEnabled(true);
-										return;
-									} else {
+						});
+						boolean loaded = false;
+						boolean failed = false;
+						try {
+							loaded = checkHandler.loadRom(fh.getAbsolutePath());
+						} catch (Exception ex) {
+							failed = true;
+							JOptionPane
+									.showMessageDialog(
+											PresetLoadDialog.this,
+											bundle.getString("RandomizerGUI.loadFailedNoLog"));
+						}
+						final boolean romLoaded = loaded;
+						final boolean unsupported = !loaded && !failed;
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								opDialog.setVisible(false);
+								if (!romLoaded) {
+									if (unsupported) {
 										JOptionPane.showMessageDialog(
 												PresetLoadDialog.this,
 												String.format(
-														bundle.getString("PresetLoadDialog.notRequiredROM"),
-														requiredName,
-														checkHandler
-																.getROMName()));
-										return;
+														bundle.getString("RandomizerGUI.unsupportedRom"),
+														fh.getName()));
 									}
+									return;
 								}
-							});
-						}
-					};
-					t.start();
-					return;
-				}
+								if (checkHandler.getROMName().equals(
+										requiredName)) {
+									// Got it
+									romFileField.setText(fh
+											.getAbsolutePath());
+									currentROM = checkHandler;
+									acceptButton.setEnabled(true);
+									return;
+								} else {
+									JOptionPane.showMessageDialog(
+											PresetLoadDialog.this,
+											String.format(
+													bundle.getString("PresetLoadDialog.notRequiredROM"),
+													requiredName,
+													checkHandler
+															.getROMName()));
+									return;
+								}
+							}
+						});
+					}
+				});
+				return;
 			}
 			JOptionPane.showMessageDialog(this, String.format(
 					bundle.getString("RandomizerGUI.unsupportedRom"),
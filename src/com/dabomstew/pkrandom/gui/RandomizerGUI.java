@@ -28,25 +28,17 @@ package com.dabomstew.pkrandom.gui;
 /*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
 /*----------------------------------------------------------------------------*/
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
 import java.net.URL;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Scanner;
-import java.util.TreeMap;
-import java.util.zip.CRC32;
 
 import javax.swing.AbstractButton;
 import javax.swing.DefaultComboBoxModel;
@@ -55,20 +47,38 @@ import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileFilter;
 import javax.xml.bind.DatatypeConverter;
 
-import com.dabomstew.pkrandom.CodeTweaks;
+import com.dabomstew.pkrandom.Checksums;
 import com.dabomstew.pkrandom.FileFunctions;
+import com.dabomstew.pkrandom.JobExecutor;
+import com.dabomstew.pkrandom.QuickSettingsUpdater;
 import com.dabomstew.pkrandom.RandomSource;
-import com.dabomstew.pkrandom.pokemon.Encounter;
-import com.dabomstew.pkrandom.pokemon.EncounterSet;
+import com.dabomstew.pkrandom.Randomizer;
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.Settings.AbilitiesMod;
+import com.dabomstew.pkrandom.Settings.BaseStatisticsMod;
+import com.dabomstew.pkrandom.Settings.CompatibilityMod;
+import com.dabomstew.pkrandom.Settings.FieldItemsMod;
+import com.dabomstew.pkrandom.Settings.InGameTradesMod;
+import com.dabomstew.pkrandom.Settings.MovesMod;
+import com.dabomstew.pkrandom.Settings.MovesetsMod;
+import com.dabomstew.pkrandom.Settings.StartersMod;
+import com.dabomstew.pkrandom.Settings.StaticPokemonMod;
+import com.dabomstew.pkrandom.Settings.TrainersMod;
+import com.dabomstew.pkrandom.Settings.TypesMod;
+import com.dabomstew.pkrandom.Settings.WildPokemonMod;
+import com.dabomstew.pkrandom.Settings.WildPokemonRestrictionMod;
+import com.dabomstew.pkrandom.log.ConsoleLogSink;
+import com.dabomstew.pkrandom.log.FileLogSink;
+import com.dabomstew.pkrandom.log.LogSink;
+import com.dabomstew.pkrandom.log.NullLogSink;
+import com.dabomstew.pkrandom.log.SpoilerFormat;
+import com.dabomstew.pkrandom.log.SpoilerWriter;
+import com.dabomstew.pkrandom.pipeline.StageMetrics;
 import com.dabomstew.pkrandom.pokemon.GenRestrictions;
-import com.dabomstew.pkrandom.pokemon.IngameTrade;
-import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
-import com.dabomstew.pkrandom.pokemon.Trainer;
-import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
 import com.dabomstew.pkrandom.romhandlers.AbstractDSRomHandler;
 import com.dabomstew.pkrandom.romhandlers.Gen1RomHandler;
 import com.dabomstew.pkrandom.romhandlers.Gen2RomHandler;
@@ -76,6 +86,8 @@ import com.dabomstew.pkrandom.romhandlers.Gen3RomHandler;
 import com.dabomstew.pkrandom.romhandlers.Gen4RomHandler;
 import com.dabomstew.pkrandom.romhandlers.Gen5RomHandler;
 import com.dabomstew.pkrandom.romhandlers.RomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomHeader;
+import com.dabomstew.pkrandom.romhandlers.RomIdentifier;
 
 /**
  * 
@@ -89,11 +101,30 @@ public class RandomizerGUI extends javax.swing.JFrame {
 	private static final long serialVersionUID = 637989089525556154L;
 	private RomHandler romHandler;
 	protected RomHandler[] checkHandlers;
-	public static final int PRESET_FILE_VERSION = 163;
+	public static final int PRESET_FILE_VERSION = Settings.VERSION;
 
 	public static final int UPDATE_VERSION = 1630;
 
-	public static PrintStream verboseLog = System.out;
+	public static LogSink verboseLog = new ConsoleLogSink();
+
+	// loading and saving happen here rather than on the event thread
+	static final JobExecutor backgroundJobs = JobExecutor.forThisMachine(4);
+
+	// The pools only take a few jobs at once; if they're all busy the work
+	// gets a thread of its own, as it used to, rather than being dropped.
+	static void runInBackground(final Runnable work) {
+		JobExecutor.Handle handle = backgroundJobs.submit(
+				new JobExecutor.Step(JobExecutor.Phase.IO) {
+					@Override
+					protected JobExecutor.Step run() {
+						work.run();
+						return null;
+					}
+				}, null);
+		if (handle == null) {
+			new Thread(work).start();
+		}
+	}
 
 	private OperationDialog opDialog;
 	private boolean presetMode;
@@ -105,6 +136,8 @@ public class RandomizerGUI extends javax.swing.JFrame {
 	// Settings
 	private boolean autoUpdateEnabled;
 	private boolean haveCheckedCustomNames;
+	// null when no structured spoiler is written
+	private SpoilerFormat spoilerFormat;
 
 	java.util.ResourceBundle bundle;
 
@@ -204,7 +237,8 @@ public class RandomizerGUI extends javax.swing.JFrame {
 			File currentFile = new File(rootPath + cnamefiles[file]);
 			if (oldFile.exists() && oldFile.canRead() && !currentFile.exists()) {
 				try {
-					int crc = getFileChecksum(new FileInputStream(oldFile));
+					int crc = Checksums.configFileChecksum(new FileInputStream(
+							oldFile));
 					if (crc != defaultcsums[file]) {
 						foundCustom = true;
 						break;
@@ -276,6 +310,9 @@ public class RandomizerGUI extends javax.swing.JFrame {
 						} else if (key.equalsIgnoreCase("checkedcustomnames")) {
 							haveCheckedCustomNames = Boolean
 									.parseBoolean(tokens[1].trim());
+						} else if (key.equalsIgnoreCase("spoilerformat")) {
+							spoilerFormat = SpoilerFormat.forKey(tokens[1]
+									.trim());
 						}
 					}
 				}
@@ -297,6 +334,8 @@ public class RandomizerGUI extends javax.swing.JFrame {
 					"UTF-8");
 			ps.println("autoupdate=" + autoUpdateEnabled);
 			ps.println("checkedcustomnames=" + haveCheckedCustomNames);
+			ps.println("spoilerformat="
+					+ (spoilerFormat == null ? "none" : spoilerFormat.key()));
 			ps.close();
 			return true;
 		} catch (IOException e) {
@@ -335,6 +374,10 @@ public class RandomizerGUI extends javax.swing.JFrame {
 		initialFormState();
 		this.romOpenChooser.setCurrentDirectory(new File(rootPath));
 		this.romSaveChooser.setCurrentDirectory(new File(rootPath));
+		// adding a filter selects it, so put the ROM one back afterwards
+		FileFilter romFilter = this.romSaveChooser.getFileFilter();
+		this.romSaveChooser.addChoosableFileFilter(new PatchFileFilter());
+		this.romSaveChooser.setFileFilter(romFilter);
 		if (new File(rootPath + "settings/").exists()) {
 			this.qsOpenChooser.setCurrentDirectory(new File(rootPath
 					+ "settings/"));
@@ -562,107 +605,121 @@ public class RandomizerGUI extends javax.swing.JFrame {
 		int returnVal = romOpenChooser.showOpenDialog(this);
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			final File fh = romOpenChooser.getSelectedFile();
-			// first, check for common filetypes that aren't ROMs
-			// read first 10 bytes of the file to do this
-			try {
-				FileInputStream fis = new FileInputStream(fh);
-				byte[] sig = new byte[10];
-				int siglen = fis.read(sig);
-				fis.close();
-				if (siglen < 10) {
-					JOptionPane.showMessageDialog(this, String.format(
-							bundle.getString("RandomizerGUI.tooShortToBeARom"),
-							fh.getName()));
-					return;
-				}
-				if (sig[0] == 0x50 && sig[1] == 0x4b && sig[2] == 0x03
-						&& sig[3] == 0x04) {
-					JOptionPane.showMessageDialog(this, String.format(
-							bundle.getString("RandomizerGUI.openedZIPfile"),
-							fh.getName()));
-					return;
-				}
-				if (sig[0] == 0x52 && sig[1] == 0x61 && sig[2] == 0x72
-						&& sig[3] == 0x21 && sig[4] == 0x1A && sig[5] == 0x07) {
-					JOptionPane.showMessageDialog(this, String.format(
-							bundle.getString("RandomizerGUI.openedRARfile"),
-							fh.getName()));
-					return;
-				}
-				if (sig[0] == 'P' && sig[1] == 'A' && sig[2] == 'T'
-						&& sig[3] == 'C' && sig[4] == 'H') {
-					JOptionPane.showMessageDialog(this, String.format(
-							bundle.getString("RandomizerGUI.openedIPSfile"),
-							fh.getName()));
-					return;
-				}
-				// none of these? let's see if it's a valid ROM, then
-			} catch (IOException ex) {
+			// one read of the header is enough to identify the ROM, and to
+			// check for common filetypes that aren't ROMs first
+			final RomHeader header = RomHeader.read(fh.getAbsolutePath());
+			if (header == null) {
 				JOptionPane.showMessageDialog(this, String.format(
 						bundle.getString("RandomizerGUI.unreadableRom"),
 						fh.getName()));
 				return;
 			}
+			byte[] sig = header.data;
+			if (header.fileLength < 10) {
+				JOptionPane.showMessageDialog(this, String.format(
+						bundle.getString("RandomizerGUI.tooShortToBeARom"),
+						fh.getName()));
+				return;
+			}
+			if (sig[0] == 0x50 && sig[1] == 0x4b && sig[2] == 0x03
+					&& sig[3] == 0x04) {
+				JOptionPane.showMessageDialog(this, String.format(
+						bundle.getString("RandomizerGUI.openedZIPfile"),
+						fh.getName()));
+				return;
+			}
+			if (sig[0] == 0x52 && sig[1] == 0x61 && sig[2] == 0x72
+					&& sig[3] == 0x21 && sig[4] == 0x1A && sig[5] == 0x07) {
+				JOptionPane.showMessageDialog(this, String.format(
+						bundle.getString("RandomizerGUI.openedRARfile"),
+						fh.getName()));
+				return;
+			}
+			if (sig[0] == 'P' && sig[1] == 'A' && sig[2] == 'T'
+					&& sig[3] == 'C' && sig[4] == 'H') {
+				JOptionPane.showMessageDialog(this, String.format(
+						bundle.getString("RandomizerGUI.openedIPSfile"),
+						fh.getName()));
+				return;
+			}
+			// none of these? let's see if it's a valid ROM, then
 			reinitHandlers();
-			for (RomHandler rh : checkHandlers) {
-				if (rh.detectRom(fh.getAbsolutePath())) {
-					this.romHandler = rh;
-					opDialog = new OperationDialog(
-							bundle.getString("RandomizerGUI.loadingText"),
-							this, true);
-					Thread t = new Thread() {
-						@Override
-						public void run() {
-							SwingUtilities.invokeLater(new Runnable() {
-								@Override
-								public void run() {
-									opDialog.setVisible(true);
-								}
-							});
+			RomHandler rh = RomIdentifier.identify(header, checkHandlers);
+			if (rh != null) {
+				releaseRomHandler();
+				this.romHandler = rh;
+				opDialog = new OperationDialog(
+						bundle.getString("RandomizerGUI.loadingText"),
+						this, true);
+				runInBackground(new Runnable() {
+					@Override
+					public void run() {
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								opDialog.setVisible(true);
+							}
+						});
+						boolean loaded = false;
+						boolean failed = false;
+						try {
+							loaded = RandomizerGUI.this.romHandler.loadRom(fh
+									.getAbsolutePath());
+						} catch (Exception ex) {
+							failed = true;
+							long time = System.currentTimeMillis();
 							try {
-								RandomizerGUI.this.romHandler.loadRom(fh
-										.getAbsolutePath());
-							} catch (Exception ex) {
-								long time = System.currentTimeMillis();
-								try {
-									String errlog = "error_" + time + ".txt";
-									PrintStream ps = new PrintStream(
-											new FileOutputStream(errlog));
-									PrintStream e1 = System.err;
-									System.setErr(ps);
-									ex.printStackTrace();
-									verboseLog.close();
-									System.setErr(e1);
-									ps.close();
-									JOptionPane
-											.showMessageDialog(
-													RandomizerGUI.this,
-													String.format(
-															bundle.getString("RandomizerGUI.loadFailed"),
-															errlog));
-								} catch (Exception logex) {
-									JOptionPane
-											.showMessageDialog(
-													RandomizerGUI.this,
-													bundle.getString("RandomizerGUI.loadFailedNoLog"));
-									verboseLog.close();
-								}
+								String errlog = "error_" + time + ".txt";
+								PrintStream ps = new PrintStream(
+										new FileOutputStream(errlog));
+								PrintStream e1 = System.err;
+								System.setErr(ps);
+								ex.printStackTrace();
+								verboseLog.close();
+								System.setErr(e1);
+								ps.close();
+								JOptionPane
+										.showMessageDialog(
+												RandomizerGUI.this,
+												String.format(
+														bundle.getString("RandomizerGUI.loadFailed"),
+														errlog));
+							} catch (Exception logex) {
+								JOptionPane
+										.showMessageDialog(
+												RandomizerGUI.this,
+												bundle.getString("RandomizerGUI.loadFailedNoLog"));
+								verboseLog.close();
 							}
-							SwingUtilities.invokeLater(new Runnable() {
-								@Override
-								public void run() {
-									RandomizerGUI.this.opDialog
-											.setVisible(false);
-									RandomizerGUI.this.initialFormState();
+						}
+						final boolean romLoaded = loaded;
+						// identifying only looks at the header, so loading
+						// can still turn the ROM down
+						final boolean unsupported = !loaded && !failed;
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								RandomizerGUI.this.opDialog
+										.setVisible(false);
+								RandomizerGUI.this.initialFormState();
+								if (romLoaded) {
 									RandomizerGUI.this.romLoaded();
+									return;
 								}
-							});
-						}
-					};
-					t.start();
+								releaseRomHandler();
+								if (unsupported) {
+									JOptionPane.showMessageDialog(
+											RandomizerGUI.this,
+											String.format(
+													bundle.getString("RandomizerGUI.unsupportedRom"),
+													fh.getName()));
+								}
+							}
+						});
+					}
+				});
 
-					return;
-				}
+				return;
 			}
 			JOptionPane.showMessageDialog(this, String.format(
 					bundle.getString("RandomizerGUI.unsupportedRom"),
@@ -671,6 +728,18 @@ public class RandomizerGUI extends javax.swing.JFrame {
 
 	}
 
+	// Drop the current ROM, deleting anything a DS ROM extracted to disk.
+	private void releaseRomHandler() {
+		if (this.romHandler instanceof AbstractDSRomHandler) {
+			try {
+				((AbstractDSRomHandler) this.romHandler).disposeInnerRom();
+			} catch (IOException ex) {
+				// the shutdown hook will have another go
+			}
+		}
+		this.romHandler = null;
+	}
+
 	private void romLoaded() {
 		try {
 			this.currentRestrictions = null;
@@ -1093,13 +1162,7 @@ public class RandomizerGUI extends javax.swing.JFrame {
 		romSaveChooser.setSelectedFile(null);
 		int returnVal = romSaveChooser.showSaveDialog(this);
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
-			File fh = romSaveChooser.getSelectedFile();
-			// Fix or add extension
-			List<String> extensions = new ArrayList<String>(Arrays.asList(
-					"sgb", "gbc", "gba", "nds"));
-			extensions.remove(this.romHandler.getDefaultExtension());
-			fh = FileFunctions.fixFilename(fh,
-					this.romHandler.getDefaultExtension(), extensions);
+			File fh = fixSaveFilename(romSaveChooser.getSelectedFile());
 			boolean allowed = true;
 			if (this.romHandler instanceof AbstractDSRomHandler) {
 				String currentFN = this.romHandler.loadedFilename();
@@ -1122,234 +1185,227 @@ public class RandomizerGUI extends javax.swing.JFrame {
 	}
 
 	private String getConfigString() {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-		// 0: general options #1 + trainer/class names
-		baos.write(makeByteSelected(this.goLowerCaseNamesCheckBox,
-				this.goNationalDexCheckBox, this.goRemoveTradeEvosCheckBox,
-				this.goUpdateMovesCheckBox, this.goUpdateMovesLegacyCheckBox,
-				this.goUpdateTypesCheckBox, this.tnRandomizeCB,
-				this.tcnRandomizeCB));
-
-		// 1: pokemon base stats & abilities
-		baos.write(makeByteSelected(this.pbsChangesRandomEvosRB,
-				this.pbsChangesRandomTotalRB, this.pbsChangesShuffleRB,
-				this.pbsChangesUnchangedRB, this.paUnchangedRB,
-				this.paRandomizeRB, this.paWonderGuardCB,
-				this.pbsStandardEXPCurvesCB));
-
-		// 2: pokemon types & more general options
-		baos.write(makeByteSelected(this.ptRandomFollowEvosRB,
-				this.ptRandomTotalRB, this.ptUnchangedRB, this.codeTweaksCB,
-				this.raceModeCB, this.randomizeHollowsCB, this.brokenMovesCB,
-				this.pokeLimitCB));
-
-		// v162: 3: new general options byte added (the rest were full)
-
-		baos.write(makeByteSelected(this.goCondenseEvosCheckBox));
-
-		// 4: starter pokemon stuff
-
-		baos.write(makeByteSelected(this.spCustomRB, this.spRandomRB,
-				this.spUnchangedRB, this.spRandom2EvosRB, this.spHeldItemsCB));
-
-		// @5 dropdowns
-		writePokemonIndex(baos, this.spCustomPoke1Chooser);
-		writePokemonIndex(baos, this.spCustomPoke2Chooser);
-		writePokemonIndex(baos, this.spCustomPoke3Chooser);
-
-		// 11 movesets
-		baos.write(makeByteSelected(this.pmsRandomTotalRB,
-				this.pmsRandomTypeRB, this.pmsUnchangedRB,
-				this.pmsMetronomeOnlyRB, this.pms4MovesCB));
-
-		// 12 trainer pokemon
-		// changed 160
-		baos.write(makeByteSelected(this.tpPowerLevelsCB, this.tpRandomRB,
-				this.tpRivalCarriesStarterCB, this.tpTypeThemedRB,
-				this.tpTypeWeightingCB, this.tpUnchangedRB,
-				this.tpNoLegendariesCB, this.tpNoEarlyShedinjaCB));
-
-		// 13 wild pokemon
-		baos.write(makeByteSelected(this.wpARCatchEmAllRB, this.wpArea11RB,
-				this.wpARNoneRB, this.wpARTypeThemedRB, this.wpGlobalRB,
-				this.wpRandomRB, this.wpUnchangedRB, this.wpUseTimeCB));
-
-		// 14 wild pokemon 2
-		// bugfix 161
-		baos.write(makeByteSelected(this.wpCatchRateCB, this.wpNoLegendariesCB,
-				this.wpARSimilarStrengthRB, this.wpHeldItemsCB));
-
-		// 15 static pokemon
-		baos.write(makeByteSelected(this.stpUnchangedRB, this.stpRandomL4LRB,
-				this.stpRandomTotalRB));
-
-		// 16 tm randomization
-		// new stuff 162
-		baos.write(makeByteSelected(this.thcRandomTotalRB,
-				this.thcRandomTypeRB, this.thcUnchangedRB, this.tmmRandomRB,
-				this.tmmUnchangedRB, this.tmLearningSanityCB,
-				this.tmKeepFieldMovesCB, this.thcFullRB));
-
-		// 17 move tutor randomization
-		baos.write(makeByteSelected(this.mtcRandomTotalRB,
-				this.mtcRandomTypeRB, this.mtcUnchangedRB, this.mtmRandomRB,
-				this.mtmUnchangedRB, this.mtLearningSanityCB,
-				this.mtKeepFieldMovesCB, this.mtcFullRB));
-
-		// new 150
-		// 18 in game trades
-		baos.write(makeByteSelected(this.igtBothRB, this.igtGivenOnlyRB,
-				this.igtRandomItemCB, this.igtRandomIVsCB,
-				this.igtRandomNicknameCB, this.igtRandomOTCB,
-				this.igtUnchangedRB));
-
-		// 19 field items
-		baos.write(makeByteSelected(this.fiRandomRB, this.fiShuffleRB,
-				this.fiUnchangedRB));
-
-		// @ 20 pokemon restrictions
-		try {
-			if (currentRestrictions != null) {
-				writeFullInt(baos, currentRestrictions.toInt());
-			} else {
-				writeFullInt(baos, 0);
-			}
-		} catch (IOException e) {
+		return createSettingsFromState().toString();
+	}
+
+	/**
+	 * Snapshot the current state of the form.
+	 */
+	private Settings createSettingsFromState() {
+		Settings settings = new Settings();
+
+		settings.lowerCasePokemonNames = goLowerCaseNamesCheckBox.isSelected();
+		settings.nationalDexAtStart = goNationalDexCheckBox.isSelected();
+		settings.removeTradeEvolutions = goRemoveTradeEvosCheckBox.isSelected();
+		settings.updateMoves = goUpdateMovesCheckBox.isSelected();
+		settings.updateMovesLegacy = goUpdateMovesLegacyCheckBox.isSelected();
+		settings.updateTypeEffectiveness = goUpdateTypesCheckBox.isSelected();
+		settings.makeEvolutionsEasier = goCondenseEvosCheckBox.isSelected();
+		settings.randomizeTrainerNames = tnRandomizeCB.isSelected();
+		settings.randomizeTrainerClassNames = tcnRandomizeCB.isSelected();
+		settings.useCodeTweaks = codeTweaksCB.isSelected();
+		settings.raceMode = raceModeCB.isSelected();
+		settings.randomizeHiddenHollows = randomizeHollowsCB.isSelected();
+		settings.blockBrokenMoves = brokenMovesCB.isSelected();
+		settings.limitPokemon = pokeLimitCB.isSelected();
+
+		if (pbsChangesRandomEvosRB.isSelected()) {
+			settings.baseStatisticsMod = BaseStatisticsMod.RANDOM_FOLLOW_EVOLUTIONS;
+		} else if (pbsChangesRandomTotalRB.isSelected()) {
+			settings.baseStatisticsMod = BaseStatisticsMod.RANDOM_COMPLETELY;
+		} else if (pbsChangesShuffleRB.isSelected()) {
+			settings.baseStatisticsMod = BaseStatisticsMod.SHUFFLE;
+		}
+		settings.standardizeEXPCurves = pbsStandardEXPCurvesCB.isSelected();
+		if (paRandomizeRB.isSelected()) {
+			settings.abilitiesMod = AbilitiesMod.RANDOMIZE;
+		}
+		settings.allowWonderGuard = paWonderGuardCB.isSelected();
+		if (ptRandomFollowEvosRB.isSelected()) {
+			settings.typesMod = TypesMod.RANDOM_FOLLOW_EVOLUTIONS;
+		} else if (ptRandomTotalRB.isSelected()) {
+			settings.typesMod = TypesMod.COMPLETELY_RANDOM;
 		}
 
-		// @ 24 code tweaks
-		try {
-			writeFullInt(baos, currentCodeTweaks);
-		} catch (IOException e) {
+		if (spCustomRB.isSelected()) {
+			settings.startersMod = StartersMod.CUSTOM;
+		} else if (spRandomRB.isSelected()) {
+			settings.startersMod = StartersMod.COMPLETELY_RANDOM;
+		} else if (spRandom2EvosRB.isSelected()) {
+			settings.startersMod = StartersMod.RANDOM_WITH_TWO_EVOLUTIONS;
+		}
+		settings.customStarters = new int[] {
+				spCustomPoke1Chooser.getSelectedIndex(),
+				spCustomPoke2Chooser.getSelectedIndex(),
+				spCustomPoke3Chooser.getSelectedIndex() };
+		settings.randomizeStartersHeldItems = spHeldItemsCB.isSelected();
+
+		if (pmsRandomTotalRB.isSelected()) {
+			settings.movesetsMod = MovesetsMod.COMPLETELY_RANDOM;
+		} else if (pmsRandomTypeRB.isSelected()) {
+			settings.movesetsMod = MovesetsMod.RANDOM_PREFER_SAME_TYPE;
+		} else if (pmsMetronomeOnlyRB.isSelected()) {
+			settings.movesetsMod = MovesetsMod.METRONOME_ONLY;
+		}
+		settings.startWithFourMoves = pms4MovesCB.isSelected();
 
+		if (tpRandomRB.isSelected()) {
+			settings.trainersMod = TrainersMod.RANDOM;
+		} else if (tpTypeThemedRB.isSelected()) {
+			settings.trainersMod = TrainersMod.TYPE_THEMED;
+		}
+		settings.rivalCarriesStarterThroughout = tpRivalCarriesStarterCB
+				.isSelected();
+		settings.trainersUsePokemonOfSimilarStrength = tpPowerLevelsCB
+				.isSelected();
+		settings.trainersMatchTypingDistribution = tpTypeWeightingCB
+				.isSelected();
+		settings.trainersBlockLegendaries = tpNoLegendariesCB.isSelected();
+		settings.trainersBlockEarlyWonderGuard = tpNoEarlyShedinjaCB
+				.isSelected();
+
+		if (wpRandomRB.isSelected()) {
+			settings.wildPokemonMod = WildPokemonMod.RANDOM;
+		} else if (wpArea11RB.isSelected()) {
+			settings.wildPokemonMod = WildPokemonMod.AREA_MAPPING;
+		} else if (wpGlobalRB.isSelected()) {
+			settings.wildPokemonMod = WildPokemonMod.GLOBAL_MAPPING;
+		}
+		if (wpARSimilarStrengthRB.isSelected()) {
+			settings.wildPokemonRestrictionMod = WildPokemonRestrictionMod.SIMILAR_STRENGTH;
+		} else if (wpARCatchEmAllRB.isSelected()) {
+			settings.wildPokemonRestrictionMod = WildPokemonRestrictionMod.CATCH_EM_ALL;
+		} else if (wpARTypeThemedRB.isSelected()) {
+			settings.wildPokemonRestrictionMod = WildPokemonRestrictionMod.TYPE_THEME_AREAS;
+		}
+		settings.useTimeBasedEncounters = wpUseTimeCB.isSelected();
+		settings.useMinimumCatchRate = wpCatchRateCB.isSelected();
+		settings.blockWildLegendaries = wpNoLegendariesCB.isSelected();
+		settings.randomizeWildPokemonHeldItems = wpHeldItemsCB.isSelected();
+
+		if (stpRandomL4LRB.isSelected()) {
+			settings.staticPokemonMod = StaticPokemonMod.RANDOM_MATCHING;
+		} else if (stpRandomTotalRB.isSelected()) {
+			settings.staticPokemonMod = StaticPokemonMod.COMPLETELY_RANDOM;
 		}
 
-		try {
-			byte[] romName = romHandler.getROMName().getBytes("US-ASCII");
-			baos.write(romName.length);
-			baos.write(romName);
-		} catch (UnsupportedEncodingException e) {
-			baos.write(0);
-		} catch (IOException e) {
-			baos.write(0);
+		settings.tmsHmsCompatibilityMod = compatibilityMod(thcRandomTotalRB,
+				thcRandomTypeRB, thcFullRB);
+		if (tmmRandomRB.isSelected()) {
+			settings.tmsMod = MovesMod.RANDOM;
 		}
+		settings.tmLevelUpMoveSanity = tmLearningSanityCB.isSelected();
+		settings.keepFieldMoveTMs = tmKeepFieldMovesCB.isSelected();
 
-		byte[] current = baos.toByteArray();
-		CRC32 checksum = new CRC32();
-		checksum.update(current);
+		settings.moveTutorsCompatibilityMod = compatibilityMod(
+				mtcRandomTotalRB, mtcRandomTypeRB, mtcFullRB);
+		if (mtmRandomRB.isSelected()) {
+			settings.moveTutorMovesMod = MovesMod.RANDOM;
+		}
+		settings.tutorLevelUpMoveSanity = mtLearningSanityCB.isSelected();
+		settings.keepFieldMoveTutors = mtKeepFieldMovesCB.isSelected();
 
-		try {
-			writeFullInt(baos, (int) checksum.getValue());
-			writeFullInt(baos, getFileChecksum("trainerclasses.txt"));
-			writeFullInt(baos, getFileChecksum("trainernames.txt"));
-			writeFullInt(baos, getFileChecksum("nicknames.txt"));
-		} catch (IOException e) {
+		if (igtBothRB.isSelected()) {
+			settings.inGameTradesMod = InGameTradesMod.RANDOMIZE_GIVEN_AND_REQUESTED;
+		} else if (igtGivenOnlyRB.isSelected()) {
+			settings.inGameTradesMod = InGameTradesMod.RANDOMIZE_GIVEN_ONLY;
+		}
+		settings.randomizeInGameTradesItems = igtRandomItemCB.isSelected();
+		settings.randomizeInGameTradesIVs = igtRandomIVsCB.isSelected();
+		settings.randomizeInGameTradesNicknames = igtRandomNicknameCB
+				.isSelected();
+		settings.randomizeInGameTradesOTs = igtRandomOTCB.isSelected();
+
+		if (fiRandomRB.isSelected()) {
+			settings.fieldItemsMod = FieldItemsMod.RANDOM;
+		} else if (fiShuffleRB.isSelected()) {
+			settings.fieldItemsMod = FieldItemsMod.SHUFFLE;
 		}
 
-		return DatatypeConverter.printBase64Binary(baos.toByteArray());
-	}
+		settings.currentRestrictions = currentRestrictions;
+		settings.currentCodeTweaks = currentCodeTweaks;
+		settings.romName = romHandler.getROMName();
 
-	private static int getFileChecksum(String filename) {
-		try {
-			return getFileChecksum(FileFunctions.openConfig(filename));
-		} catch (IOException e) {
-			return 0;
-		}
+		return settings;
 	}
 
-	private static int getFileChecksum(InputStream stream) {
-		try {
-			Scanner sc = new Scanner(stream, "UTF-8");
-			CRC32 checksum = new CRC32();
-			while (sc.hasNextLine()) {
-				String line = sc.nextLine().trim();
-				if (!line.isEmpty()) {
-					checksum.update(line.getBytes("UTF-8"));
-				}
-			}
-			sc.close();
-			return (int) checksum.getValue();
-		} catch (IOException e) {
-			return 0;
+	private CompatibilityMod compatibilityMod(AbstractButton randomTotal,
+			AbstractButton randomType, AbstractButton full) {
+		if (randomTotal.isSelected()) {
+			return CompatibilityMod.COMPLETELY_RANDOM;
+		} else if (randomType.isSelected()) {
+			return CompatibilityMod.RANDOM_PREFER_TYPE;
+		} else if (full.isSelected()) {
+			return CompatibilityMod.FULL;
 		}
-
+		return CompatibilityMod.UNCHANGED;
 	}
 
 	public String getValidRequiredROMName(String config, byte[] trainerClasses,
 			byte[] trainerNames, byte[] nicknames)
-			throws UnsupportedEncodingException,
-			InvalidSupplementFilesException {
+			throws InvalidSupplementFilesException {
 		byte[] data = DatatypeConverter.parseBase64Binary(config);
 
-		if (data.length < 45) {
-			return null; // too short
-		}
-
-		// Check the checksum
-		ByteBuffer buf = ByteBuffer.allocate(4).put(data, data.length - 16, 4);
-		buf.rewind();
-		int crc = buf.getInt();
-
-		CRC32 checksum = new CRC32();
-		checksum.update(data, 0, data.length - 16);
-		if ((int) checksum.getValue() != crc) {
-			return null; // checksum failure
+		Settings settings = Settings.fromBytes(data);
+		if (settings == null) {
+			return null; // too short, wrong length or checksum failure
 		}
 
 		// Check the trainerclass & trainernames crc
 		if (trainerClasses == null
 				&& !checkOtherCRC(data, 0, 6, "trainerclasses.txt",
-						data.length - 12)) {
+						settings.trainerClassesChecksum)) {
 			JOptionPane.showMessageDialog(null,
 					bundle.getString("RandomizerGUI.presetFailTrainerClasses"));
 			throw new InvalidSupplementFilesException();
 		}
 		if (trainerNames == null
 				&& (!checkOtherCRC(data, 0, 5, "trainernames.txt",
-						data.length - 8) || !checkOtherCRC(data, 16, 5,
-						"trainernames.txt", data.length - 8))) {
+						settings.trainerNamesChecksum) || !checkOtherCRC(data,
+						16, 5, "trainernames.txt",
+						settings.trainerNamesChecksum))) {
 			JOptionPane.showMessageDialog(null,
 					bundle.getString("RandomizerGUI.presetFailTrainerNames"));
 			throw new InvalidSupplementFilesException();
 		}
 		if (nicknames == null
-				&& !checkOtherCRC(data, 16, 4, "nicknames.txt", data.length - 4)) {
+				&& !checkOtherCRC(data, 16, 4, "nicknames.txt",
+						settings.nicknamesChecksum)) {
 			JOptionPane.showMessageDialog(null,
 					bundle.getString("RandomizerGUI.presetFailNicknames"));
 			throw new InvalidSupplementFilesException();
 		}
 
-		int nameLength = data[28] & 0xFF;
-		if (data.length != 45 + nameLength) {
-			return null; // not valid length
-		}
-		String name = new String(data, 29, nameLength, "US-ASCII");
-		return name;
+		return settings.romName;
 	}
 
 	private boolean restoreFrom(String config) {
 		// Need to add enables
-		byte[] data = DatatypeConverter.parseBase64Binary(config);
-
-		// Check the checksum
-		ByteBuffer buf = ByteBuffer.allocate(4).put(data, data.length - 16, 4);
-		buf.rewind();
-		int crc = buf.getInt();
-
-		CRC32 checksum = new CRC32();
-		checksum.update(data, 0, data.length - 16);
-
-		if ((int) checksum.getValue() != crc) {
+		Settings settings = Settings.fromString(config);
+		if (settings == null) {
 			return false; // checksum failure
 		}
+		restoreStateFromSettings(settings);
+		return true;
+	}
 
-		// Restore the actual controls
-		restoreStates(data[0], this.goLowerCaseNamesCheckBox,
-				this.goNationalDexCheckBox, this.goRemoveTradeEvosCheckBox,
-				this.goUpdateMovesCheckBox, this.goUpdateMovesLegacyCheckBox,
-				this.goUpdateTypesCheckBox, this.tnRandomizeCB,
-				this.tcnRandomizeCB);
+	/**
+	 * Set the form up from some settings, dropping anything the loaded ROM
+	 * can't do.
+	 */
+	private void restoreStateFromSettings(Settings settings) {
+		this.goLowerCaseNamesCheckBox
+				.setSelected(settings.lowerCasePokemonNames);
+		this.goNationalDexCheckBox.setSelected(settings.nationalDexAtStart);
+		this.goRemoveTradeEvosCheckBox
+				.setSelected(settings.removeTradeEvolutions);
+		this.goUpdateMovesCheckBox.setSelected(settings.updateMoves);
+		this.goUpdateMovesLegacyCheckBox
+				.setSelected(settings.updateMovesLegacy);
+		this.goUpdateTypesCheckBox
+				.setSelected(settings.updateTypeEffectiveness);
+		this.tnRandomizeCB.setSelected(settings.randomizeTrainerNames);
+		this.tcnRandomizeCB.setSelected(settings.randomizeTrainerClassNames);
 
 		// sanity override
 		if (this.goUpdateMovesLegacyCheckBox.isSelected()
@@ -1359,74 +1415,154 @@ public class RandomizerGUI extends javax.swing.JFrame {
 			this.goUpdateMovesCheckBox.setSelected(false);
 		}
 
-		restoreStates(data[1], this.pbsChangesRandomEvosRB,
-				this.pbsChangesRandomTotalRB, this.pbsChangesShuffleRB,
-				this.pbsChangesUnchangedRB, this.paUnchangedRB,
-				this.paRandomizeRB, this.paWonderGuardCB,
-				this.pbsStandardEXPCurvesCB);
-
-		restoreStates(data[2], this.ptRandomFollowEvosRB, this.ptRandomTotalRB,
-				this.ptUnchangedRB, this.codeTweaksCB, this.raceModeCB,
-				this.randomizeHollowsCB, this.brokenMovesCB, this.pokeLimitCB);
-
-		restoreStates(data[3], this.goCondenseEvosCheckBox);
-
-		restoreStates(data[4], this.spCustomRB, this.spRandomRB,
-				this.spUnchangedRB, this.spRandom2EvosRB, this.spHeldItemsCB);
-
-		restoreSelectedIndex(data, 5, this.spCustomPoke1Chooser);
-		restoreSelectedIndex(data, 7, this.spCustomPoke2Chooser);
-		restoreSelectedIndex(data, 9, this.spCustomPoke3Chooser);
-
-		restoreStates(data[11], this.pmsRandomTotalRB, this.pmsRandomTypeRB,
-				this.pmsUnchangedRB, this.pmsMetronomeOnlyRB, this.pms4MovesCB);
-
-		// changed 160
-		restoreStates(data[12], this.tpPowerLevelsCB, this.tpRandomRB,
-				this.tpRivalCarriesStarterCB, this.tpTypeThemedRB,
-				this.tpTypeWeightingCB, this.tpUnchangedRB,
-				this.tpNoLegendariesCB, this.tpNoEarlyShedinjaCB);
-
-		restoreStates(data[13], this.wpARCatchEmAllRB, this.wpArea11RB,
-				this.wpARNoneRB, this.wpARTypeThemedRB, this.wpGlobalRB,
-				this.wpRandomRB, this.wpUnchangedRB, this.wpUseTimeCB);
-
-		restoreStates(data[14], this.wpCatchRateCB, this.wpNoLegendariesCB,
-				this.wpARSimilarStrengthRB, this.wpHeldItemsCB);
-
-		restoreStates(data[15], this.stpUnchangedRB, this.stpRandomL4LRB,
-				this.stpRandomTotalRB);
-
-		restoreStates(data[16], this.thcRandomTotalRB, this.thcRandomTypeRB,
-				this.thcUnchangedRB, this.tmmRandomRB, this.tmmUnchangedRB,
-				this.tmLearningSanityCB, this.tmKeepFieldMovesCB,
-				this.thcFullRB);
-
-		restoreStates(data[17], this.mtcRandomTotalRB, this.mtcRandomTypeRB,
-				this.mtcUnchangedRB, this.mtmRandomRB, this.mtmUnchangedRB,
-				this.mtLearningSanityCB, this.mtKeepFieldMovesCB,
-				this.mtcFullRB);
-
-		// new 150
-		restoreStates(data[18], this.igtBothRB, this.igtGivenOnlyRB,
-				this.igtRandomItemCB, this.igtRandomIVsCB,
-				this.igtRandomNicknameCB, this.igtRandomOTCB,
-				this.igtUnchangedRB);
-		restoreStates(data[19], this.fiRandomRB, this.fiShuffleRB,
-				this.fiUnchangedRB);
-
-		// gen restrictions
-		int genlim = readFullInt(data, 20);
-		if (genlim == 0) {
+		this.pbsChangesRandomEvosRB
+				.setSelected(settings.baseStatisticsMod == BaseStatisticsMod.RANDOM_FOLLOW_EVOLUTIONS);
+		this.pbsChangesRandomTotalRB
+				.setSelected(settings.baseStatisticsMod == BaseStatisticsMod.RANDOM_COMPLETELY);
+		this.pbsChangesShuffleRB
+				.setSelected(settings.baseStatisticsMod == BaseStatisticsMod.SHUFFLE);
+		this.pbsChangesUnchangedRB
+				.setSelected(settings.baseStatisticsMod == BaseStatisticsMod.UNCHANGED);
+		this.paUnchangedRB
+				.setSelected(settings.abilitiesMod == AbilitiesMod.UNCHANGED);
+		this.paRandomizeRB
+				.setSelected(settings.abilitiesMod == AbilitiesMod.RANDOMIZE);
+		this.paWonderGuardCB.setSelected(settings.allowWonderGuard);
+		this.pbsStandardEXPCurvesCB.setSelected(settings.standardizeEXPCurves);
+
+		this.ptRandomFollowEvosRB
+				.setSelected(settings.typesMod == TypesMod.RANDOM_FOLLOW_EVOLUTIONS);
+		this.ptRandomTotalRB
+				.setSelected(settings.typesMod == TypesMod.COMPLETELY_RANDOM);
+		this.ptUnchangedRB.setSelected(settings.typesMod == TypesMod.UNCHANGED);
+		this.codeTweaksCB.setSelected(settings.useCodeTweaks);
+		this.raceModeCB.setSelected(settings.raceMode);
+		this.randomizeHollowsCB.setSelected(settings.randomizeHiddenHollows);
+		this.brokenMovesCB.setSelected(settings.blockBrokenMoves);
+		this.pokeLimitCB.setSelected(settings.limitPokemon);
+
+		this.goCondenseEvosCheckBox.setSelected(settings.makeEvolutionsEasier);
+
+		this.spCustomRB
+				.setSelected(settings.startersMod == StartersMod.CUSTOM);
+		this.spRandomRB
+				.setSelected(settings.startersMod == StartersMod.COMPLETELY_RANDOM);
+		this.spUnchangedRB
+				.setSelected(settings.startersMod == StartersMod.UNCHANGED);
+		this.spRandom2EvosRB
+				.setSelected(settings.startersMod == StartersMod.RANDOM_WITH_TWO_EVOLUTIONS);
+		this.spHeldItemsCB.setSelected(settings.randomizeStartersHeldItems);
+
+		restoreSelectedIndex(settings.customStarters[0],
+				this.spCustomPoke1Chooser);
+		restoreSelectedIndex(settings.customStarters[1],
+				this.spCustomPoke2Chooser);
+		restoreSelectedIndex(settings.customStarters[2],
+				this.spCustomPoke3Chooser);
+
+		this.pmsRandomTotalRB
+				.setSelected(settings.movesetsMod == MovesetsMod.COMPLETELY_RANDOM);
+		this.pmsRandomTypeRB
+				.setSelected(settings.movesetsMod == MovesetsMod.RANDOM_PREFER_SAME_TYPE);
+		this.pmsUnchangedRB
+				.setSelected(settings.movesetsMod == MovesetsMod.UNCHANGED);
+		this.pmsMetronomeOnlyRB
+				.setSelected(settings.movesetsMod == MovesetsMod.METRONOME_ONLY);
+		this.pms4MovesCB.setSelected(settings.startWithFourMoves);
+
+		this.tpPowerLevelsCB
+				.setSelected(settings.trainersUsePokemonOfSimilarStrength);
+		this.tpRandomRB
+				.setSelected(settings.trainersMod == TrainersMod.RANDOM);
+		this.tpRivalCarriesStarterCB
+				.setSelected(settings.rivalCarriesStarterThroughout);
+		this.tpTypeThemedRB
+				.setSelected(settings.trainersMod == TrainersMod.TYPE_THEMED);
+		this.tpTypeWeightingCB
+				.setSelected(settings.trainersMatchTypingDistribution);
+		this.tpUnchangedRB
+				.setSelected(settings.trainersMod == TrainersMod.UNCHANGED);
+		this.tpNoLegendariesCB.setSelected(settings.trainersBlockLegendaries);
+		this.tpNoEarlyShedinjaCB
+				.setSelected(settings.trainersBlockEarlyWonderGuard);
+
+		this.wpARCatchEmAllRB
+				.setSelected(settings.wildPokemonRestrictionMod == WildPokemonRestrictionMod.CATCH_EM_ALL);
+		this.wpArea11RB
+				.setSelected(settings.wildPokemonMod == WildPokemonMod.AREA_MAPPING);
+		this.wpARNoneRB
+				.setSelected(settings.wildPokemonRestrictionMod == WildPokemonRestrictionMod.NONE);
+		this.wpARTypeThemedRB
+				.setSelected(settings.wildPokemonRestrictionMod == WildPokemonRestrictionMod.TYPE_THEME_AREAS);
+		this.wpGlobalRB
+				.setSelected(settings.wildPokemonMod == WildPokemonMod.GLOBAL_MAPPING);
+		this.wpRandomRB
+				.setSelected(settings.wildPokemonMod == WildPokemonMod.RANDOM);
+		this.wpUnchangedRB
+				.setSelected(settings.wildPokemonMod == WildPokemonMod.UNCHANGED);
+		this.wpUseTimeCB.setSelected(settings.useTimeBasedEncounters);
+		this.wpCatchRateCB.setSelected(settings.useMinimumCatchRate);
+		this.wpNoLegendariesCB.setSelected(settings.blockWildLegendaries);
+		this.wpARSimilarStrengthRB
+				.setSelected(settings.wildPokemonRestrictionMod == WildPokemonRestrictionMod.SIMILAR_STRENGTH);
+		this.wpHeldItemsCB
+				.setSelected(settings.randomizeWildPokemonHeldItems);
+
+		this.stpUnchangedRB
+				.setSelected(settings.staticPokemonMod == StaticPokemonMod.UNCHANGED);
+		this.stpRandomL4LRB
+				.setSelected(settings.staticPokemonMod == StaticPokemonMod.RANDOM_MATCHING);
+		this.stpRandomTotalRB
+				.setSelected(settings.staticPokemonMod == StaticPokemonMod.COMPLETELY_RANDOM);
+
+		restoreCompatibilityMod(settings.tmsHmsCompatibilityMod,
+				this.thcUnchangedRB, this.thcRandomTotalRB,
+				this.thcRandomTypeRB, this.thcFullRB);
+		this.tmmRandomRB.setSelected(settings.tmsMod == MovesMod.RANDOM);
+		this.tmmUnchangedRB.setSelected(settings.tmsMod == MovesMod.UNCHANGED);
+		this.tmLearningSanityCB.setSelected(settings.tmLevelUpMoveSanity);
+		this.tmKeepFieldMovesCB.setSelected(settings.keepFieldMoveTMs);
+
+		restoreCompatibilityMod(settings.moveTutorsCompatibilityMod,
+				this.mtcUnchangedRB, this.mtcRandomTotalRB,
+				this.mtcRandomTypeRB, this.mtcFullRB);
+		this.mtmRandomRB
+				.setSelected(settings.moveTutorMovesMod == MovesMod.RANDOM);
+		this.mtmUnchangedRB
+				.setSelected(settings.moveTutorMovesMod == MovesMod.UNCHANGED);
+		this.mtLearningSanityCB.setSelected(settings.tutorLevelUpMoveSanity);
+		this.mtKeepFieldMovesCB.setSelected(settings.keepFieldMoveTutors);
+
+		this.igtBothRB
+				.setSelected(settings.inGameTradesMod == InGameTradesMod.RANDOMIZE_GIVEN_AND_REQUESTED);
+		this.igtGivenOnlyRB
+				.setSelected(settings.inGameTradesMod == InGameTradesMod.RANDOMIZE_GIVEN_ONLY);
+		this.igtUnchangedRB
+				.setSelected(settings.inGameTradesMod == InGameTradesMod.UNCHANGED);
+		this.igtRandomItemCB.setSelected(settings.randomizeInGameTradesItems);
+		this.igtRandomIVsCB.setSelected(settings.randomizeInGameTradesIVs);
+		this.igtRandomNicknameCB
+				.setSelected(settings.randomizeInGameTradesNicknames);
+		this.igtRandomOTCB.setSelected(settings.randomizeInGameTradesOTs);
+
+		this.fiRandomRB
+				.setSelected(settings.fieldItemsMod == FieldItemsMod.RANDOM);
+		this.fiShuffleRB
+				.setSelected(settings.fieldItemsMod == FieldItemsMod.SHUFFLE);
+		this.fiUnchangedRB
+				.setSelected(settings.fieldItemsMod == FieldItemsMod.UNCHANGED);
+
+		// gen restrictions (copied, since limitToGen changes them)
+		if (settings.currentRestrictions == null) {
 			this.currentRestrictions = null;
 		} else {
-			this.currentRestrictions = new GenRestrictions(genlim);
+			this.currentRestrictions = new GenRestrictions(
+					settings.currentRestrictions.toInt());
 			this.currentRestrictions.limitToGen(this.romHandler
 					.generationOfPokemon());
 		}
 
-		int codetweaks = readFullInt(data, 24);
-		this.currentCodeTweaks = codetweaks
+		this.currentCodeTweaks = settings.currentCodeTweaks
 				& this.romHandler.codeTweaksAvailable();
 		updateCodeTweaksButtonText();
 		// Sanity override
@@ -1437,661 +1573,86 @@ public class RandomizerGUI extends javax.swing.JFrame {
 		this.enableOrDisableSubControls();
 
 		// Name data is ignored here - we should've used it earlier.
-		return true;
+	}
+
+	// Fix or add extension: the patch format's if the patch filter is
+	// selected, the ROM's otherwise
+	private File fixSaveFilename(File fh) {
+		String extension = this.romHandler.getDefaultExtension();
+		if (romSaveChooser.getFileFilter() instanceof PatchFileFilter) {
+			extension = this.romHandler.patchFormat().extension();
+		}
+		List<String> extensions = new ArrayList<String>(Arrays.asList("sgb",
+				"gbc", "gba", "nds", "ips", "bps"));
+		extensions.remove(extension);
+		return FileFunctions.fixFilename(fh, extension, extensions);
+	}
+
+	private boolean isPatchFilename(String filename) {
+		return filename.toLowerCase().endsWith(
+				"." + this.romHandler.patchFormat().extension());
 	}
 
 	private void performRandomization(final String filename, final long seed,
 			byte[] trainerClasses, byte[] trainerNames, byte[] nicknames) {
 
 		final boolean raceMode = raceModeCB.isSelected();
-		int checkValue = 0;
 		final long startTime = System.currentTimeMillis();
 		// Setup verbose log
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		String nl = System.getProperty("line.separator");
-		try {
-			verboseLog = new PrintStream(baos, false, "UTF-8");
-		} catch (UnsupportedEncodingException e) {
-			verboseLog = new PrintStream(baos);
-		}
-		try {
-			// limit pokemon?
-			if (this.pokeLimitCB.isSelected()) {
-				romHandler.setPokemonPool(currentRestrictions);
-				romHandler.removeEvosForPokemonPool();
-			}
-
-			// Update type effectiveness in RBY?
-			if (romHandler instanceof Gen1RomHandler
-					&& this.goUpdateTypesCheckBox.isSelected()) {
-				romHandler.fixTypeEffectiveness();
-			}
-
-			// Move updates
-			if (this.goUpdateMovesCheckBox.isSelected()) {
-				romHandler.initMoveUpdates();
-				if (!(romHandler instanceof Gen5RomHandler)) {
-					romHandler.updateMovesToGen5();
-				}
-				if (!this.goUpdateMovesLegacyCheckBox.isSelected()) {
-					romHandler.updateMovesToGen6();
-				}
-				romHandler.printMoveUpdates();
-			}
-
-			List<Move> moves = romHandler.getMoves();
-
-			// Trade evolutions removal
-			if (this.goRemoveTradeEvosCheckBox.isSelected()) {
-				romHandler.removeTradeEvolutions(!this.pmsUnchangedRB
-						.isSelected());
-			}
-
-			// Easier evolutions
-			if (this.goCondenseEvosCheckBox.isSelected()) {
-				romHandler.condenseLevelEvolutions(40, 30);
-			}
-
-			// Camel case?
-			if (!(romHandler instanceof Gen5RomHandler)
-					&& !(romHandler instanceof Gen4RomHandler)
-					&& this.goLowerCaseNamesCheckBox.isSelected()) {
-				romHandler.applyCamelCaseNames();
-			}
-
-			// National dex gen3?
-			if (romHandler instanceof Gen3RomHandler
-					&& this.goNationalDexCheckBox.isSelected()) {
-				romHandler.patchForNationalDex();
-			}
-
-			// Code Tweaks?
-			if (romHandler.codeTweaksAvailable() != 0) {
-				int ctavailable = romHandler.codeTweaksAvailable();
-				if ((ctavailable & CodeTweaks.BW_EXP_PATCH) > 0
-						&& (currentCodeTweaks & CodeTweaks.BW_EXP_PATCH) > 0) {
-					romHandler.applyBWEXPPatch();
-				}
-
-				if ((ctavailable & CodeTweaks.FIX_CRIT_RATE) > 0
-						&& (currentCodeTweaks & CodeTweaks.FIX_CRIT_RATE) > 0) {
-					romHandler.applyCritRatePatch();
-				}
-
-				if ((ctavailable & CodeTweaks.NERF_X_ACCURACY) > 0
-						&& (currentCodeTweaks & CodeTweaks.NERF_X_ACCURACY) > 0) {
-					romHandler.applyXAccNerfPatch();
-				}
-
-				if ((ctavailable & CodeTweaks.FASTEST_TEXT) > 0
-						&& (currentCodeTweaks & CodeTweaks.FASTEST_TEXT) > 0) {
-					romHandler.applyFastestTextPatch();
-				}
-			}
-
-			// Hollows?
-			if (romHandler.hasHiddenHollowPokemon()
-					&& this.randomizeHollowsCB.isSelected()) {
-				romHandler.randomizeHiddenHollowPokemon();
-			}
-
-			List<Pokemon> allPokes = romHandler.getPokemon();
-
-			// Base stats changing
-			if (this.pbsChangesShuffleRB.isSelected()) {
-				romHandler.shufflePokemonStats();
-			} else if (this.pbsChangesRandomEvosRB.isSelected()) {
-				romHandler.randomizePokemonStats(true);
-			} else if (this.pbsChangesRandomTotalRB.isSelected()) {
-				romHandler.randomizePokemonStats(false);
-			}
-
-			if (this.pbsStandardEXPCurvesCB.isSelected()) {
-				romHandler.standardizeEXPCurves();
-			}
-
-			// Abilities? (new 1.0.2)
-			if (this.romHandler.abilitiesPerPokemon() > 0
-					&& this.paRandomizeRB.isSelected()) {
-				romHandler
-						.randomizeAbilities(this.paWonderGuardCB.isSelected());
-			}
-
-			// Pokemon Types
-			if (this.ptRandomFollowEvosRB.isSelected()) {
-				romHandler.randomizePokemonTypes(true);
-			} else if (this.ptRandomTotalRB.isSelected()) {
-				romHandler.randomizePokemonTypes(false);
-			}
-
-			// Wild Held Items?
-			String[] itemNames = romHandler.getItemNames();
-			if (this.wpHeldItemsCB.isSelected()) {
-				romHandler.randomizeWildHeldItems();
-			}
-
-			// Log base stats & types if changed at all
-			if (this.pbsChangesUnchangedRB.isSelected()
-					&& this.ptUnchangedRB.isSelected()
-					&& this.paUnchangedRB.isSelected()
-					&& this.wpHeldItemsCB.isSelected() == false) {
-				verboseLog.println("Pokemon base stats & type: unchanged" + nl);
-			} else {
-				verboseLog.println("--Pokemon Base Stats & Types--");
-				if (romHandler instanceof Gen1RomHandler) {
-					verboseLog
-							.println("NUM|NAME      |TYPE             |  HP| ATK| DEF| SPE|SPEC");
-					for (Pokemon pkmn : allPokes) {
-						if (pkmn != null) {
-							String typeString = pkmn.primaryType == null ? "NULL"
-									: pkmn.primaryType.toString();
-							if (pkmn.secondaryType != null) {
-								typeString += "/"
-										+ (pkmn.secondaryType == null ? "NULL"
-												: pkmn.secondaryType.toString());
-							}
-							verboseLog.printf(
-									"%3d|%-10s|%-17s|%4d|%4d|%4d|%4d|%4d" + nl,
-									pkmn.number, pkmn.name, typeString,
-									pkmn.hp, pkmn.attack, pkmn.defense,
-									pkmn.speed, pkmn.special);
-						}
-
-					}
-				} else {
-					verboseLog
-							.print("NUM|NAME      |TYPE             |  HP| ATK| DEF| SPE|SATK|SDEF");
-					int abils = romHandler.abilitiesPerPokemon();
-					for (int i = 0; i < abils; i++) {
-						verboseLog.print("|ABILITY" + (i + 1) + "    ");
-					}
-					verboseLog.print("|ITEM");
-					verboseLog.println();
-					for (Pokemon pkmn : allPokes) {
-						if (pkmn != null) {
-							String typeString = pkmn.primaryType.toString();
-							if (pkmn.secondaryType != null) {
-								typeString += "/"
-										+ pkmn.secondaryType.toString();
-							}
-							verboseLog.printf(
-									"%3d|%-10s|%-17s|%4d|%4d|%4d|%4d|%4d|%4d",
-									pkmn.number, pkmn.name, typeString,
-									pkmn.hp, pkmn.attack, pkmn.defense,
-									pkmn.speed, pkmn.spatk, pkmn.spdef);
-							if (abils > 0) {
-								verboseLog.printf("|%-12s|%-12s",
-										romHandler.abilityName(pkmn.ability1),
-										romHandler.abilityName(pkmn.ability2));
-								if (abils > 2) {
-									verboseLog.printf("|%-12s", romHandler
-											.abilityName(pkmn.ability3));
-								}
-							}
-							verboseLog.print("|");
-							if (pkmn.guaranteedHeldItem > 0) {
-								verboseLog
-										.print(itemNames[pkmn.guaranteedHeldItem]
-												+ " (100%)");
-							} else {
-								int itemCount = 0;
-								if (pkmn.commonHeldItem > 0) {
-									itemCount++;
-									verboseLog
-											.print(itemNames[pkmn.commonHeldItem]
-													+ " (common)");
-								}
-								if (pkmn.rareHeldItem > 0) {
-									if (itemCount > 0) {
-										verboseLog.print(", ");
-									}
-									itemCount++;
-									verboseLog
-											.print(itemNames[pkmn.rareHeldItem]
-													+ " (rare)");
-								}
-								if (pkmn.darkGrassHeldItem > 0) {
-									if (itemCount > 0) {
-										verboseLog.print(", ");
-									}
-									itemCount++;
-									verboseLog
-											.print(itemNames[pkmn.darkGrassHeldItem]
-													+ " (dark grass only)");
-								}
-							}
-							verboseLog.println();
-						}
-
-					}
-				}
-				if (raceMode) {
-					for (Pokemon pkmn : allPokes) {
-						if (pkmn != null) {
-							checkValue = addToCV(checkValue, pkmn.hp,
-									pkmn.attack, pkmn.defense, pkmn.speed,
-									pkmn.spatk, pkmn.spdef, pkmn.ability1,
-									pkmn.ability2, pkmn.ability3);
-						}
-					}
-				}
-				verboseLog.println();
-			}
-
-			// Starter Pokemon
-			// Applied after type to update the strings correctly based on new
-			// types
-			if (romHandler.canChangeStarters()) {
-				if (this.spCustomRB.isSelected()) {
-					verboseLog.println("--Custom Starters--");
-					Pokemon pkmn1 = allPokes.get(this.spCustomPoke1Chooser
-							.getSelectedIndex() + 1);
-					verboseLog.println("Set starter 1 to " + pkmn1.name);
-					Pokemon pkmn2 = allPokes.get(this.spCustomPoke2Chooser
-							.getSelectedIndex() + 1);
-					verboseLog.println("Set starter 2 to " + pkmn2.name);
-					if (romHandler.isYellow()) {
-						romHandler.setStarters(Arrays.asList(pkmn1, pkmn2));
-					} else {
-						Pokemon pkmn3 = allPokes.get(this.spCustomPoke3Chooser
-								.getSelectedIndex() + 1);
-						verboseLog.println("Set starter 3 to " + pkmn3.name);
-						romHandler.setStarters(Arrays.asList(pkmn1, pkmn2,
-								pkmn3));
-					}
-					verboseLog.println();
-
-				} else if (this.spRandomRB.isSelected()) {
-					// Randomise
-					verboseLog.println("--Random Starters--");
-					int starterCount = 3;
-					if (romHandler.isYellow()) {
-						starterCount = 2;
-					}
-					List<Pokemon> starters = new ArrayList<Pokemon>();
-					for (int i = 0; i < starterCount; i++) {
-						Pokemon pkmn = romHandler.randomPokemon();
-						while (starters.contains(pkmn)) {
-							pkmn = romHandler.randomPokemon();
-						}
-						verboseLog.println("Set starter " + (i + 1) + " to "
-								+ pkmn.name);
-						starters.add(pkmn);
-					}
-					romHandler.setStarters(starters);
-					verboseLog.println();
-				} else if (this.spRandom2EvosRB.isSelected()) {
-					// Randomise
-					verboseLog.println("--Random 2-Evolution Starters--");
-					int starterCount = 3;
-					if (romHandler.isYellow()) {
-						starterCount = 2;
-					}
-					List<Pokemon> starters = new ArrayList<Pokemon>();
-					for (int i = 0; i < starterCount; i++) {
-						Pokemon pkmn = romHandler.random2EvosPokemon();
-						while (starters.contains(pkmn)) {
-							pkmn = romHandler.random2EvosPokemon();
-						}
-						verboseLog.println("Set starter " + (i + 1) + " to "
-								+ pkmn.name);
-						starters.add(pkmn);
-					}
-					romHandler.setStarters(starters);
-					verboseLog.println();
-				}
-				if (this.spHeldItemsCB.isSelected()
-						&& (romHandler instanceof Gen1RomHandler) == false) {
-					romHandler.randomizeStarterHeldItems();
-				}
-			}
-
-			// Movesets
-			boolean noBrokenMoves = this.brokenMovesCB.isSelected();
-			boolean forceFourLv1s = romHandler.supportsFourStartingMoves()
-					&& this.pms4MovesCB.isSelected();
-			if (this.pmsRandomTypeRB.isSelected()) {
-				romHandler.randomizeMovesLearnt(true, noBrokenMoves,
-						forceFourLv1s);
-			} else if (this.pmsRandomTotalRB.isSelected()) {
-				romHandler.randomizeMovesLearnt(false, noBrokenMoves,
-						forceFourLv1s);
-			}
-
-			// Show the new movesets if applicable
-			if (this.pmsUnchangedRB.isSelected()) {
-				verboseLog.println("Pokemon Movesets: Unchanged." + nl);
-			} else if (this.pmsMetronomeOnlyRB.isSelected()) {
-				verboseLog.println("Pokemon Movesets: Metronome Only." + nl);
-			} else {
-				verboseLog.println("--Pokemon Movesets--");
-				List<String> movesets = new ArrayList<String>();
-				Map<Pokemon, List<MoveLearnt>> moveData = romHandler
-						.getMovesLearnt();
-				for (Pokemon pkmn : moveData.keySet()) {
-					StringBuilder sb = new StringBuilder();
-					sb.append(String.format("%03d %-10s : ", pkmn.number,
-							pkmn.name));
-					List<MoveLearnt> data = moveData.get(pkmn);
-					boolean first = true;
-					for (MoveLearnt ml : data) {
-						if (!first) {
-							sb.append(", ");
-						}
-
-						sb.append(moves.get(ml.move).name + " at level "
-								+ ml.level);
-						first = false;
-					}
-					movesets.add(sb.toString());
-				}
-				Collections.sort(movesets);
-				for (String moveset : movesets) {
-					verboseLog.println(moveset);
-				}
-				verboseLog.println();
-			}
-
-			// Trainer Pokemon
-			if (this.tpRandomRB.isSelected()) {
-				romHandler.randomizeTrainerPokes(
-						this.tpRivalCarriesStarterCB.isSelected(),
-						this.tpPowerLevelsCB.isSelected(),
-						this.tpNoLegendariesCB.isSelected(),
-						this.tpNoEarlyShedinjaCB.isSelected());
-			} else if (this.tpTypeThemedRB.isSelected()) {
-				romHandler.typeThemeTrainerPokes(
-						this.tpRivalCarriesStarterCB.isSelected(),
-						this.tpPowerLevelsCB.isSelected(),
-						this.tpTypeWeightingCB.isSelected(),
-						this.tpNoLegendariesCB.isSelected(),
-						this.tpNoEarlyShedinjaCB.isSelected());
-			}
-
-			// Trainer names & class names randomization
-			// done before trainer log to add proper names
-
-			if (this.tcnRandomizeCB.isSelected()) {
-				romHandler.randomizeTrainerClassNames(trainerClasses);
-			}
-
-			if (this.tnRandomizeCB.isSelected()) {
-				romHandler.randomizeTrainerNames(trainerNames);
-			}
-
-			if (this.tpUnchangedRB.isSelected()) {
-				verboseLog.println("Trainers: Unchanged." + nl);
-			} else {
-				verboseLog.println("--Trainers Pokemon--");
-				List<Trainer> trainers = romHandler.getTrainers();
-				int idx = 0;
-				for (Trainer t : trainers) {
-					idx++;
-					verboseLog.print("#" + idx + " ");
-					if (t.fullDisplayName != null) {
-						verboseLog.print("(" + t.fullDisplayName + ")");
-					} else if (t.name != null) {
-						verboseLog.print("(" + t.name + ")");
-					}
-					if (t.offset != idx && t.offset != 0) {
-						verboseLog.printf("@%X", t.offset);
-					}
-					verboseLog.print(" - ");
-					boolean first = true;
-					for (TrainerPokemon tpk : t.pokemon) {
-						if (!first) {
-							verboseLog.print(", ");
-						}
-						verboseLog.print(tpk.pokemon.name + " Lv" + tpk.level);
-						first = false;
-					}
-					verboseLog.println();
-				}
-				verboseLog.println();
-			}
-
-			// Apply metronome only mode now that trainers have been dealt with
-			if (pmsMetronomeOnlyRB.isSelected()) {
-				romHandler.metronomeOnlyMode();
-			}
-
-			if (raceMode) {
-				List<Trainer> trainers = romHandler.getTrainers();
-				for (Trainer t : trainers) {
-					for (TrainerPokemon tpk : t.pokemon) {
-						checkValue = addToCV(checkValue, tpk.level,
-								tpk.pokemon.number);
-					}
-				}
-			}
-
-			// Wild Pokemon
-			// actually call this code (Kappa)
-			if (this.wpCatchRateCB.isSelected()) {
-				if (romHandler instanceof Gen5RomHandler) {
-					romHandler.minimumCatchRate(50, 25);
-				} else {
-					romHandler.minimumCatchRate(75, 37);
-				}
-			}
-			if (this.wpRandomRB.isSelected()) {
-				romHandler.randomEncounters(this.wpUseTimeCB.isSelected(),
-						this.wpARCatchEmAllRB.isSelected(),
-						this.wpARTypeThemedRB.isSelected(),
-						this.wpARSimilarStrengthRB.isSelected(),
-						this.wpNoLegendariesCB.isSelected());
-			} else if (this.wpArea11RB.isSelected()) {
-				romHandler.area1to1Encounters(this.wpUseTimeCB.isSelected(),
-						this.wpARCatchEmAllRB.isSelected(),
-						this.wpARTypeThemedRB.isSelected(),
-						this.wpARSimilarStrengthRB.isSelected(),
-						this.wpNoLegendariesCB.isSelected());
-			} else if (this.wpGlobalRB.isSelected()) {
-				romHandler.game1to1Encounters(this.wpUseTimeCB.isSelected(),
-						this.wpARSimilarStrengthRB.isSelected(),
-						this.wpNoLegendariesCB.isSelected());
-			}
-
-			if (this.wpUnchangedRB.isSelected()) {
-				verboseLog.println("Wild Pokemon: Unchanged." + nl);
-			} else {
-				verboseLog.println("--Wild Pokemon--");
-				List<EncounterSet> encounters = romHandler
-						.getEncounters(this.wpUseTimeCB.isSelected());
-				int idx = 0;
-				for (EncounterSet es : encounters) {
-					idx++;
-					verboseLog.print("Set #" + idx + " ");
-					if (es.displayName != null) {
-						verboseLog.print("- " + es.displayName + " ");
-					}
-					verboseLog.print("(rate=" + es.rate + ")");
-					verboseLog.print(" - ");
-					boolean first = true;
-					for (Encounter e : es.encounters) {
-						if (!first) {
-							verboseLog.print(", ");
-						}
-						verboseLog.print(e.pokemon.name + " Lv");
-						if (e.maxLevel > 0 && e.maxLevel != e.level) {
-							verboseLog.print("s " + e.level + "-" + e.maxLevel);
-						} else {
-							verboseLog.print(e.level);
-						}
-						first = false;
-					}
-					verboseLog.println();
-				}
-				verboseLog.println();
-			}
-
-			if (raceMode) {
-				List<EncounterSet> encounters = romHandler
-						.getEncounters(this.wpUseTimeCB.isSelected());
-				for (EncounterSet es : encounters) {
-					for (Encounter e : es.encounters) {
-						checkValue = addToCV(checkValue, e.level,
-								e.pokemon.number);
-					}
-				}
-			}
-
-			// Static Pokemon
-
-			if (romHandler.canChangeStaticPokemon()) {
-				List<Pokemon> oldStatics = romHandler.getStaticPokemon();
-				if (this.stpRandomL4LRB.isSelected()) {
-					romHandler.randomizeStaticPokemon(true);
-				} else if (this.stpRandomTotalRB.isSelected()) {
-					romHandler.randomizeStaticPokemon(false);
-				}
-				List<Pokemon> newStatics = romHandler.getStaticPokemon();
-				if (this.stpUnchangedRB.isSelected()) {
-					verboseLog.println("Static Pokemon: Unchanged." + nl);
-				} else {
-					verboseLog.println("--Static Pokemon--");
-					Map<Pokemon, Integer> seenPokemon = new TreeMap<Pokemon, Integer>();
-					for (int i = 0; i < oldStatics.size(); i++) {
-						Pokemon oldP = oldStatics.get(i);
-						Pokemon newP = newStatics.get(i);
-						if (raceMode) {
-							checkValue = addToCV(checkValue, newP.number);
-						}
-						verboseLog.print(oldP.name);
-						if (seenPokemon.containsKey(oldP)) {
-							int amount = seenPokemon.get(oldP);
-							verboseLog.print("(" + (++amount) + ")");
-							seenPokemon.put(oldP, amount);
-						} else {
-							seenPokemon.put(oldP, 1);
-						}
-						verboseLog.println(" => " + newP.name);
-					}
-					verboseLog.println();
-				}
-			}
-
-			// TMs
-			if (!pmsMetronomeOnlyRB.isSelected()
-					&& this.tmmRandomRB.isSelected()) {
-				romHandler.randomizeTMMoves(noBrokenMoves,
-						this.tmKeepFieldMovesCB.isSelected());
-				verboseLog.println("--TM Moves--");
-				List<Integer> tmMoves = romHandler.getTMMoves();
-				for (int i = 0; i < tmMoves.size(); i++) {
-					verboseLog.printf("TM%02d %s" + nl, i + 1,
-							moves.get(tmMoves.get(i)).name);
-					if (raceMode) {
-						checkValue = addToCV(checkValue, tmMoves.get(i));
-					}
-				}
-				verboseLog.println();
-			} else if (pmsMetronomeOnlyRB.isSelected()) {
-				verboseLog.println("TM Moves: Metronome Only." + nl);
-			} else {
-				verboseLog.println("TM Moves: Unchanged." + nl);
-			}
-
-			// TM/HM compatibility
-			if (this.thcRandomTypeRB.isSelected()) {
-				romHandler.randomizeTMHMCompatibility(true);
-			} else if (this.thcRandomTotalRB.isSelected()) {
-				romHandler.randomizeTMHMCompatibility(false);
-			} else if (this.thcFullRB.isSelected()) {
-				romHandler.fullTMHMCompatibility();
-			}
-
-			if (this.tmLearningSanityCB.isSelected()) {
-				romHandler.ensureTMCompatSanity();
+		// (streamed to a temp file until the user decides whether to keep
+		// it; race mode never offers it, so don't write it at all)
+		FileLogSink fileLog = null;
+		if (raceMode) {
+			verboseLog = new NullLogSink();
+		} else {
+			try {
+				File tempLog = File.createTempFile("pkrandom", ".log");
+				tempLog.deleteOnExit();
+				fileLog = new FileLogSink(tempLog);
+				verboseLog = fileLog;
+			} catch (IOException e) {
+				verboseLog = new NullLogSink();
 			}
-
-			// Move Tutors (new 1.0.3)
-			if (this.romHandler.hasMoveTutors()) {
-				if (!pmsMetronomeOnlyRB.isSelected()
-						&& this.mtmRandomRB.isSelected()) {
-					List<Integer> oldMtMoves = romHandler.getMoveTutorMoves();
-					romHandler.randomizeMoveTutorMoves(noBrokenMoves,
-							this.mtKeepFieldMovesCB.isSelected());
-					verboseLog.println("--Move Tutor Moves--");
-					List<Integer> newMtMoves = romHandler.getMoveTutorMoves();
-					for (int i = 0; i < newMtMoves.size(); i++) {
-						verboseLog.printf("%s => %s" + nl,
-								moves.get(oldMtMoves.get(i)).name,
-								moves.get(newMtMoves.get(i)).name);
-						if (raceMode) {
-							checkValue = addToCV(checkValue, newMtMoves.get(i));
-						}
-					}
-					verboseLog.println();
-				} else if (pmsMetronomeOnlyRB.isSelected()) {
-					verboseLog
-							.println("Move Tutor Moves: Metronome Only." + nl);
-				} else {
-					verboseLog.println("Move Tutor Moves: Unchanged." + nl);
-				}
-
-				// Compatibility
-				if (this.mtcRandomTypeRB.isSelected()) {
-					romHandler.randomizeMoveTutorCompatibility(true);
-				} else if (this.mtcRandomTotalRB.isSelected()) {
-					romHandler.randomizeMoveTutorCompatibility(false);
-				} else if (this.mtcFullRB.isSelected()) {
-					romHandler.fullMoveTutorCompatibility();
-				}
-
-				if (this.mtLearningSanityCB.isSelected()) {
-					romHandler.ensureMoveTutorCompatSanity();
-				}
+		}
+		final FileLogSink logFile = fileLog;
+		// the structured spoiler, if asked for, goes next to the ROM or
+		// patch; like the log, never in race mode
+		SpoilerWriter spoiler = null;
+		if (spoilerFormat != null && !raceMode) {
+			try {
+				spoiler = spoilerFormat.newWriter(new File(filename + "."
+						+ spoilerFormat.extension()));
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(this,
+						bundle.getString("RandomizerGUI.spoilerSaveFailed"));
 			}
-
-			// In-game trades
-			List<IngameTrade> oldTrades = romHandler.getIngameTrades();
-			if (this.igtGivenOnlyRB.isSelected()) {
-				romHandler.randomizeIngameTrades(false, nicknames,
-						this.igtRandomNicknameCB.isSelected(), trainerNames,
-						this.igtRandomOTCB.isSelected(),
-						this.igtRandomIVsCB.isSelected(),
-						this.igtRandomItemCB.isSelected());
-			} else if (this.igtBothRB.isSelected()) {
-				romHandler.randomizeIngameTrades(true, nicknames,
-						this.igtRandomNicknameCB.isSelected(), trainerNames,
-						this.igtRandomOTCB.isSelected(),
-						this.igtRandomIVsCB.isSelected(),
-						this.igtRandomItemCB.isSelected());
+		}
+		try {
+			Randomizer randomizer = new Randomizer(createSettingsFromState(),
+					romHandler);
+			if (spoiler != null) {
+				randomizer.exportSpoiler(spoiler);
 			}
-
-			if (!this.igtUnchangedRB.isSelected()) {
-				verboseLog.println("--In-Game Trades--");
-				List<IngameTrade> newTrades = romHandler.getIngameTrades();
-				int size = oldTrades.size();
-				for (int i = 0; i < size; i++) {
-					IngameTrade oldT = oldTrades.get(i);
-					IngameTrade newT = newTrades.get(i);
-					verboseLog.printf(
-							"Trading %s for %s the %s has become trading %s for %s the %s"
-									+ nl, oldT.requestedPokemon.name,
-							oldT.nickname, oldT.givenPokemon.name,
-							newT.requestedPokemon.name, newT.nickname,
-							newT.givenPokemon.name);
+			final int finishedCV;
+			try {
+				finishedCV = randomizer.randomize(verboseLog, trainerClasses,
+						trainerNames, nicknames);
+			} finally {
+				if (spoiler != null) {
+					spoiler.close();
 				}
-				verboseLog.println();
 			}
-
-			// Field Items
-			if (this.fiShuffleRB.isSelected()) {
-				romHandler.shuffleFieldItems();
-			} else if (this.fiRandomRB.isSelected()) {
-				romHandler.randomizeFieldItems();
+			if (spoiler != null && spoiler.checkError()) {
+				JOptionPane.showMessageDialog(this,
+						bundle.getString("RandomizerGUI.spoilerSaveFailed"));
 			}
-
-			// Signature...
-			romHandler.applySignature();
+			final List<StageMetrics> stageMetrics = randomizer
+					.getStageMetrics();
 
 			// Save
-			final int finishedCV = checkValue;
 			opDialog = new OperationDialog(
 					bundle.getString("RandomizerGUI.savingText"), this, true);
-			Thread t = new Thread() {
+			runInBackground(new Runnable() {
 				@Override
 				public void run() {
 					SwingUtilities.invokeLater(new Runnable() {
@@ -2102,7 +1663,11 @@ public class RandomizerGUI extends javax.swing.JFrame {
 					});
 					boolean succeededSave = false;
 					try {
-						RandomizerGUI.this.romHandler.saveRom(filename);
+						if (isPatchFilename(filename)) {
+							RandomizerGUI.this.romHandler.savePatch(filename);
+						} else {
+							RandomizerGUI.this.romHandler.saveRom(filename);
+						}
 						succeededSave = true;
 					} catch (Exception ex) {
 						long time = System.currentTimeMillis();
@@ -2146,13 +1711,17 @@ public class RandomizerGUI extends javax.swing.JFrame {
 										+ "ms");
 								verboseLog.println("RNG Calls: "
 										+ RandomSource.callsSinceSeed());
+								for (StageMetrics metrics : stageMetrics) {
+									if (metrics.ran) {
+										verboseLog.println(metrics.toString());
+									}
+								}
 								verboseLog
 										.println("------------------------------------------------------------------");
 
 								// Log?
 								verboseLog.close();
-								byte[] out = baos.toByteArray();
-								verboseLog = System.out;
+								verboseLog = new ConsoleLogSink();
 
 								if (raceMode) {
 									JOptionPane.showMessageDialog(
@@ -2168,13 +1737,22 @@ public class RandomizerGUI extends javax.swing.JFrame {
 											JOptionPane.YES_NO_OPTION);
 									if (response == JOptionPane.YES_OPTION) {
 										try {
+											if (logFile == null) {
+												throw new IOException(
+														"log was not written");
+											}
+											if (logFile.checkError()) {
+												logFile.delete();
+												throw new IOException(
+														"log was not written");
+											}
 											FileOutputStream fos = new FileOutputStream(
 													filename + ".log");
-											fos.write(0xEF);
-											fos.write(0xBB);
-											fos.write(0xBF);
-											fos.write(out);
-											fos.close();
+											try {
+												logFile.copyTo(fos, true);
+											} finally {
+												fos.close();
+											}
 										} catch (IOException e) {
 											JOptionPane.showMessageDialog(
 													RandomizerGUI.this,
@@ -2188,12 +1766,15 @@ public class RandomizerGUI extends javax.swing.JFrame {
 														filename));
 									}
 								}
+								if (logFile != null) {
+									logFile.delete();
+								}
 								if (presetMode) {
 									JOptionPane.showMessageDialog(
 											RandomizerGUI.this,
 											bundle.getString("RandomizerGUI.randomizationDone"));
 									// Done
-									RandomizerGUI.this.romHandler = null;
+									RandomizerGUI.this.releaseRomHandler();
 									initialFormState();
 								} else {
 									// Compile a config string
@@ -2203,7 +1784,7 @@ public class RandomizerGUI extends javax.swing.JFrame {
 											seed, configString);
 
 									// Done
-									RandomizerGUI.this.romHandler = null;
+									RandomizerGUI.this.releaseRomHandler();
 									initialFormState();
 								}
 							}
@@ -2213,15 +1794,17 @@ public class RandomizerGUI extends javax.swing.JFrame {
 							@Override
 							public void run() {
 								RandomizerGUI.this.opDialog.setVisible(false);
-								verboseLog = System.out;
-								RandomizerGUI.this.romHandler = null;
+								verboseLog = new ConsoleLogSink();
+								if (logFile != null) {
+									logFile.delete();
+								}
+								RandomizerGUI.this.releaseRomHandler();
 								initialFormState();
 							}
 						});
 					}
 				}
-			};
-			t.start();
+			});
 		} catch (Exception ex) {
 			long time = System.currentTimeMillis();
 			try {
@@ -2231,8 +1814,11 @@ public class RandomizerGUI extends javax.swing.JFrame {
 				System.setErr(ps);
 				ex.printStackTrace();
 				verboseLog.close();
-				byte[] out = baos.toByteArray();
-				System.err.print(new String(out, "UTF-8"));
+				if (logFile != null) {
+					ps.flush();
+					logFile.copyTo(ps, false);
+					logFile.delete();
+				}
 				System.setErr(e1);
 				ps.close();
 				JOptionPane.showMessageDialog(this, String.format(
@@ -2252,19 +1838,14 @@ public class RandomizerGUI extends javax.swing.JFrame {
 			// Apply it
 			long seed = pld.getSeed();
 			String config = pld.getConfigString();
+			releaseRomHandler();
 			this.romHandler = pld.getROM();
 			this.romLoaded();
 			this.restoreFrom(config);
 			romSaveChooser.setSelectedFile(null);
 			int returnVal = romSaveChooser.showSaveDialog(this);
 			if (returnVal == JFileChooser.APPROVE_OPTION) {
-				File fh = romSaveChooser.getSelectedFile();
-				// Fix or add extension
-				List<String> extensions = new ArrayList<String>(Arrays.asList(
-						"sgb", "gbc", "gba", "nds"));
-				extensions.remove(this.romHandler.getDefaultExtension());
-				fh = FileFunctions.fixFilename(fh,
-						this.romHandler.getDefaultExtension(), extensions);
+				File fh = fixSaveFilename(romSaveChooser.getSelectedFile());
 				boolean allowed = true;
 				if (this.romHandler instanceof AbstractDSRomHandler) {
 					String currentFN = this.romHandler.loadedFilename();
@@ -2282,12 +1863,12 @@ public class RandomizerGUI extends javax.swing.JFrame {
 							pld.getTrainerClasses(), pld.getTrainerNames(),
 							pld.getNicknames());
 				} else {
-					this.romHandler = null;
+					releaseRomHandler();
 					initialFormState();
 				}
 
 			} else {
-				this.romHandler = null;
+				releaseRomHandler();
 				initialFormState();
 			}
 		}
@@ -2297,28 +1878,22 @@ public class RandomizerGUI extends javax.swing.JFrame {
 	// helper methods
 
 	private boolean checkOtherCRC(byte[] data, int byteIndex, int switchIndex,
-			String filename, int offsetInData) {
+			String filename, int crc) {
 		// If the switch at data[byteIndex].switchIndex is on,
-		// then check that the CRC at
-		// data[offsetInData] ... data[offsetInData+3]
-		// matches the CRC of filename.
+		// then check that crc matches the CRC of filename.
 		// If not, return false.
 		// If any other case, return true.
 		int switches = data[byteIndex] & 0xFF;
 		if (((switches >> switchIndex) & 0x01) == 0x01) {
 			// have to check the CRC
-			int crc = readFullInt(data, offsetInData);
-
-			if (getFileChecksum(filename) != crc) {
+			if (Checksums.configFileChecksum(filename) != crc) {
 				return false;
 			}
 		}
 		return true;
 	}
 
-	private void restoreSelectedIndex(byte[] data, int offset,
-			JComboBox comboBox) {
-		int selIndex = (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+	private void restoreSelectedIndex(int selIndex, JComboBox comboBox) {
 		if (comboBox.getModel().getSize() > selIndex) {
 			comboBox.setSelectedIndex(selIndex);
 		} else if (this.spCustomRB.isSelected()) {
@@ -2327,46 +1902,13 @@ public class RandomizerGUI extends javax.swing.JFrame {
 		}
 	}
 
-	private void restoreStates(byte b, AbstractButton... switches) {
-		int value = b & 0xFF;
-		for (int i = 0; i < switches.length; i++) {
-			int realValue = (value >> i) & 0x01;
-			switches[i].setSelected(realValue == 0x01);
-		}
-	}
-
-	private int readFullInt(byte[] data, int offset) {
-		ByteBuffer buf = ByteBuffer.allocate(4).put(data, offset, 4);
-		buf.rewind();
-		return buf.getInt();
-	}
-
-	private void writeFullInt(ByteArrayOutputStream baos, int checksum)
-			throws IOException {
-		byte[] crc = ByteBuffer.allocate(4).putInt(checksum).array();
-		baos.write(crc);
-
-	}
-
-	private void writePokemonIndex(ByteArrayOutputStream baos,
-			JComboBox comboBox) {
-		baos.write(comboBox.getSelectedIndex() & 0xFF);
-		baos.write((comboBox.getSelectedIndex() >> 8) & 0xFF);
-
-	}
-
-	private int makeByteSelected(AbstractButton... switches) {
-		if (switches.length > 8) {
-			// No can do
-			return 0;
-		}
-		int initial = 0;
-		int state = 1;
-		for (AbstractButton b : switches) {
-			initial |= b.isSelected() ? state : 0;
-			state *= 2;
-		}
-		return initial;
+	private void restoreCompatibilityMod(CompatibilityMod mod,
+			AbstractButton unchanged, AbstractButton randomTotal,
+			AbstractButton randomType, AbstractButton full) {
+		unchanged.setSelected(mod == CompatibilityMod.UNCHANGED);
+		randomTotal.setSelected(mod == CompatibilityMod.COMPLETELY_RANDOM);
+		randomType.setSelected(mod == CompatibilityMod.RANDOM_PREFER_TYPE);
+		full.setSelected(mod == CompatibilityMod.FULL);
 	}
 
 	private int addToCV(int checkValue, int... values) {
@@ -2426,6 +1968,17 @@ public class RandomizerGUI extends javax.swing.JFrame {
 			toggleAutoUpdatesMenuItem.setText(bundle
 					.getString("RandomizerGUI.enableAutoUpdate"));
 		}
+		// offer the next format round, then off again
+		if (spoilerFormat == null) {
+			spoilerExportMenuItem.setText(bundle
+					.getString("RandomizerGUI.exportSpoilersJson"));
+		} else if (spoilerFormat == SpoilerFormat.JSON_LINES) {
+			spoilerExportMenuItem.setText(bundle
+					.getString("RandomizerGUI.exportSpoilersBinary"));
+		} else {
+			spoilerExportMenuItem.setText(bundle
+					.getString("RandomizerGUI.stopExportingSpoilers"));
+		}
 		updateSettingsMenu.show(updateSettingsButton, 0,
 				updateSettingsButton.getHeight());
 	}// GEN-LAST:event_updateSettingsButtonActionPerformed
@@ -2448,6 +2001,26 @@ public class RandomizerGUI extends javax.swing.JFrame {
 		new UpdateCheckThread(this, true).start();
 	}// GEN-LAST:event_manualUpdateMenuItemActionPerformed
 
+	private void spoilerExportMenuItemActionPerformed(
+			java.awt.event.ActionEvent evt) {// GEN-FIRST:event_spoilerExportMenuItemActionPerformed
+		if (spoilerFormat == null) {
+			spoilerFormat = SpoilerFormat.JSON_LINES;
+		} else if (spoilerFormat == SpoilerFormat.JSON_LINES) {
+			spoilerFormat = SpoilerFormat.BINARY;
+		} else {
+			spoilerFormat = null;
+		}
+		if (spoilerFormat != null) {
+			JOptionPane.showMessageDialog(this, String.format(
+					bundle.getString("RandomizerGUI.spoilerExportEnabled"),
+					spoilerFormat.extension()));
+		} else {
+			JOptionPane.showMessageDialog(this,
+					bundle.getString("RandomizerGUI.spoilerExportDisabled"));
+		}
+		attemptWriteConfig();
+	}// GEN-LAST:event_spoilerExportMenuItemActionPerformed
+
 	private void loadQSButtonActionPerformed(java.awt.event.ActionEvent evt) {// GEN-FIRST:event_loadQSButtonActionPerformed
 		if (this.romHandler == null) {
 			return;
@@ -2778,15 +2351,7 @@ public class RandomizerGUI extends javax.swing.JFrame {
 			private static final long serialVersionUID = 3244234325234511L;
 
 			public void approveSelection() {
-				File fh = getSelectedFile();
-				// Fix or add extension
-				List<String> extensions = new ArrayList<String>(Arrays.asList(
-						"sgb", "gbc", "gba", "nds"));
-				extensions.remove(RandomizerGUI.this.romHandler
-						.getDefaultExtension());
-				fh = FileFunctions.fixFilename(fh,
-						RandomizerGUI.this.romHandler.getDefaultExtension(),
-						extensions);
+				File fh = fixSaveFilename(getSelectedFile());
 				if (fh.exists() && getDialogType() == SAVE_DIALOG) {
 					int result = JOptionPane.showConfirmDialog(this,
 							"The file exists, overwrite?", "Existing file",
@@ -2818,6 +2383,7 @@ public class RandomizerGUI extends javax.swing.JFrame {
 		updateSettingsMenu = new javax.swing.JPopupMenu();
 		toggleAutoUpdatesMenuItem = new javax.swing.JMenuItem();
 		manualUpdateMenuItem = new javax.swing.JMenuItem();
+		spoilerExportMenuItem = new javax.swing.JMenuItem();
 		generalOptionsPanel = new javax.swing.JPanel();
 		goUpdateTypesCheckBox = new javax.swing.JCheckBox();
 		goUpdateMovesCheckBox = new javax.swing.JCheckBox();
@@ -2974,6 +2540,16 @@ public class RandomizerGUI extends javax.swing.JFrame {
 				});
 		updateSettingsMenu.add(manualUpdateMenuItem);
 
+		spoilerExportMenuItem.setText(bundle
+				.getString("RandomizerGUI.spoilerExportMenuItem.text")); // NOI18N
+		spoilerExportMenuItem
+				.addActionListener(new java.awt.event.ActionListener() {
+					public void actionPerformed(java.awt.event.ActionEvent evt) {
+						spoilerExportMenuItemActionPerformed(evt);
+					}
+				});
+		updateSettingsMenu.add(spoilerExportMenuItem);
+
 		setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
 		setTitle(bundle.getString("RandomizerGUI.title")); // NOI18N
 
@@ -5584,6 +5160,7 @@ public class RandomizerGUI extends javax.swing.JFrame {
 	private javax.swing.JRadioButton spRandom2EvosRB;
 	private javax.swing.JRadioButton spRandomRB;
 	private javax.swing.JRadioButton spUnchangedRB;
+	private javax.swing.JMenuItem spoilerExportMenuItem;
 	private javax.swing.ButtonGroup starterPokemonButtonGroup;
 	private javax.swing.JPanel starterPokemonPanel;
 	private javax.swing.ButtonGroup staticPokemonButtonGroup;
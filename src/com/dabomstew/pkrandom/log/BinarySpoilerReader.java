@@ -0,0 +1,177 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  BinarySpoilerReader.java - reads spoiler records back from their      --*/
+/*--                             binary form.                               --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads what BinarySpoilerWriter wrote, replaying each record into another
+ * SpoilerWriter (e.g. a JsonLinesSpoilerWriter to get the JSON form back).
+ */
+public class BinarySpoilerReader {
+
+	private InputStream in;
+	private List<String> strings = new ArrayList<String>();
+
+	public BinarySpoilerReader(InputStream is) throws IOException {
+		this.in = new BufferedInputStream(is, 64 * 1024);
+		byte[] magic = new byte[BinarySpoilerWriter.MAGIC.length];
+		for (int i = 0; i < magic.length; i++) {
+			magic[i] = (byte) read();
+		}
+		if (!Arrays.equals(magic, BinarySpoilerWriter.MAGIC)) {
+			throw new IOException("not a binary spoiler file");
+		}
+		int version = read();
+		if (version != BinarySpoilerWriter.VERSION) {
+			throw new IOException("unknown binary spoiler version " + version);
+		}
+	}
+
+	/**
+	 * Replay the next record into to.
+	 * 
+	 * @return false at the end of the stream
+	 */
+	public boolean next(SpoilerWriter to) throws IOException {
+		int tag = in.read();
+		if (tag < 0) {
+			return false;
+		}
+		if (tag != BinarySpoilerWriter.RECORD) {
+			throw new IOException("expected a record, got tag " + tag);
+		}
+		to.beginRecord(string());
+		// what each open END closes, innermost last
+		StringBuilder open = new StringBuilder("R");
+		while (open.length() > 0) {
+			tag = read();
+			switch (tag) {
+			case BinarySpoilerWriter.END:
+				char closing = open.charAt(open.length() - 1);
+				open.setLength(open.length() - 1);
+				if (closing == 'R') {
+					to.endRecord();
+				} else if (closing == 'L') {
+					to.endList();
+				} else {
+					to.endItem();
+				}
+				break;
+			case BinarySpoilerWriter.INT:
+				String name = string();
+				int zigzag = varint();
+				to.field(name, (zigzag >>> 1) ^ -(zigzag & 1));
+				break;
+			case BinarySpoilerWriter.STRING:
+				name = string();
+				to.field(name, string());
+				break;
+			case BinarySpoilerWriter.LIST:
+				to.beginList(string());
+				open.append('L');
+				break;
+			case BinarySpoilerWriter.ITEM:
+				if (open.charAt(open.length() - 1) != 'L') {
+					throw new IOException("item outside a list");
+				}
+				to.beginItem();
+				open.append('I');
+				break;
+			default:
+				throw new IOException("bad tag " + tag);
+			}
+		}
+		return true;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private String string() throws IOException {
+		int index = varint();
+		if (index < strings.size()) {
+			return strings.get(index);
+		}
+		if (index > strings.size()) {
+			throw new IOException("bad string reference " + index);
+		}
+		byte[] utf8 = new byte[varint()];
+		for (int i = 0; i < utf8.length; i++) {
+			utf8[i] = (byte) read();
+		}
+		String s = new String(utf8, "UTF-8");
+		strings.add(s);
+		return s;
+	}
+
+	private int varint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = read();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("varint too long");
+	}
+
+	private int read() throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException("binary spoiler cut short");
+		}
+		return b;
+	}
+
+	/**
+	 * Usage: BinarySpoilerReader file
+	 * 
+	 * Prints the file as JSON lines.
+	 */
+	public static void main(String[] args) throws IOException {
+		BinarySpoilerReader reader = new BinarySpoilerReader(
+				new FileInputStream(args[0]));
+		JsonLinesSpoilerWriter writer = new JsonLinesSpoilerWriter(System.out);
+		try {
+			while (reader.next(writer)) {
+				// keep going
+			}
+		} finally {
+			reader.close();
+			writer.close();
+		}
+	}
+
+}
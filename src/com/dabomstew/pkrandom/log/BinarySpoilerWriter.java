@@ -0,0 +1,181 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  BinarySpoilerWriter.java - writes spoiler records in a compact        --*/
+/*--                             binary form.                               --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary form of the same records JsonLinesSpoilerWriter writes.
+ * The stream starts with the magic bytes "PKSP" and a version byte, then is
+ * a series of tags:
+ * 
+ * <pre>
+ * 1 RECORD kind       start a record
+ * 2 END               end the innermost record, list or item
+ * 3 INT name value    value is a zigzag varint
+ * 4 STRING name value
+ * 5 LIST name         start a list
+ * 6 ITEM              start an item in the current list
+ * </pre>
+ * 
+ * Every string (kinds, field names and values) is a varint n: n less than
+ * the number of strings seen so far refers back to string n, and n equal to
+ * it is followed by a varint byte length and that many bytes of UTF-8, and
+ * becomes the next string. Names repeat constantly in spoiler data, so
+ * after the first few records nearly every string is one or two bytes.
+ * BinarySpoilerReader reads it back.
+ */
+public class BinarySpoilerWriter extends SpoilerWriter {
+
+	static final byte[] MAGIC = { 'P', 'K', 'S', 'P' };
+	static final int VERSION = 1;
+
+	static final int RECORD = 1, END = 2, INT = 3, STRING = 4, LIST = 5,
+			ITEM = 6;
+
+	private OutputStream out;
+	private Map<String, Integer> strings = new HashMap<String, Integer>();
+	private boolean failed;
+
+	public BinarySpoilerWriter(OutputStream os) throws IOException {
+		this.out = new BufferedOutputStream(os, 64 * 1024);
+		out.write(MAGIC);
+		out.write(VERSION);
+	}
+
+	@Override
+	public boolean checkError() {
+		return failed;
+	}
+
+	@Override
+	public void beginRecord(String kind) {
+		tag(RECORD);
+		string(kind);
+	}
+
+	@Override
+	public void endRecord() {
+		tag(END);
+	}
+
+	@Override
+	public void field(String name, int value) {
+		tag(INT);
+		string(name);
+		varint((value << 1) ^ (value >> 31));
+	}
+
+	@Override
+	public void field(String name, String value) {
+		if (value != null) {
+			tag(STRING);
+			string(name);
+			string(value);
+		}
+	}
+
+	@Override
+	public void beginList(String name) {
+		tag(LIST);
+		string(name);
+	}
+
+	@Override
+	public void endList() {
+		tag(END);
+	}
+
+	@Override
+	public void beginItem() {
+		tag(ITEM);
+	}
+
+	@Override
+	public void endItem() {
+		tag(END);
+	}
+
+	@Override
+	public void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				failed = true;
+			}
+			out = null;
+		}
+	}
+
+	private void tag(int tag) {
+		write(tag);
+	}
+
+	private void string(String s) {
+		Integer index = strings.get(s);
+		if (index != null) {
+			varint(index);
+			return;
+		}
+		varint(strings.size());
+		strings.put(s, strings.size());
+		byte[] utf8;
+		try {
+			utf8 = s.getBytes("UTF-8");
+		} catch (IOException e) {
+			// every JVM has UTF-8
+			throw new RuntimeException(e);
+		}
+		varint(utf8.length);
+		for (byte b : utf8) {
+			write(b);
+		}
+	}
+
+	private void varint(int value) {
+		while ((value & ~0x7F) != 0) {
+			write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		write(value);
+	}
+
+	private void write(int b) {
+		if (out == null || failed) {
+			return;
+		}
+		try {
+			out.write(b);
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+
+}
@@ -1,7 +1,7 @@
-package com.dabomstew.pkrandom.pokemon;
+package com.dabomstew.pkrandom.log;
 
 /*----------------------------------------------------------------------------*/
-/*--  MoveLearnt.java - represents a move learnt by a Pokemon at a level.   --*/
+/*--  ConsoleLogSink.java - sends the log to standard output.               --*/
 /*--  																		--*/
 /*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
 /*--  Pokemon and any associated names and the like are						--*/
@@ -23,13 +23,17 @@ package com.dabomstew.pkrandom.pokemon;
 /*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
 /*----------------------------------------------------------------------------*/
 
-public class MoveLearnt {
 
-	public int move;
-	public int level;
-	
-	public String toString() {
-		return "move "+move+" at level "+level;
+public class ConsoleLogSink extends LogSink {
+
+	@Override
+	public void print(String text) {
+		System.out.print(text);
+	}
+
+	@Override
+	public void println() {
+		System.out.println();
 	}
 
 }
@@ -0,0 +1,131 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  FileLogSink.java - streams the log as UTF-8 text into a file.         --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes the log through a buffer straight to disk, so it never has to be
+ * held in memory as a whole. The file starts with a UTF-8 byte order mark,
+ * like the logs the GUI has always saved.
+ */
+public class FileLogSink extends LogSink {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String nl = System.getProperty("line.separator");
+
+	private File file;
+	private Writer out;
+	private boolean failed;
+
+	public FileLogSink(File file) throws IOException {
+		this.file = file;
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+		this.out = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"),
+				BUFFER_SIZE);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * True if a write failed at some point, like PrintStream.checkError().
+	 */
+	@Override
+	public boolean checkError() {
+		return failed;
+	}
+
+	/**
+	 * Copy the log, which must be closed first, to os. The byte order mark is
+	 * only included if includeBOM is set.
+	 */
+	public void copyTo(OutputStream os, boolean includeBOM) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			if (!includeBOM) {
+				fis.skip(3);
+			}
+			byte[] buf = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = fis.read(buf)) > 0) {
+				os.write(buf, 0, read);
+			}
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Close the log and remove its file.
+	 */
+	public void delete() {
+		close();
+		file.delete();
+	}
+
+	@Override
+	public void print(String text) {
+		write(text);
+	}
+
+	@Override
+	public void println() {
+		write(nl);
+	}
+
+	@Override
+	public void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				failed = true;
+			}
+			out = null;
+		}
+	}
+
+	private void write(String text) {
+		if (out == null || failed) {
+			return;
+		}
+		try {
+			out.write(text);
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+
+}
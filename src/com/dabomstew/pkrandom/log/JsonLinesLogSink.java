@@ -0,0 +1,149 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  JsonLinesLogSink.java - writes the log as one JSON object per line,   --*/
+/*--                          for tools that process many runs.             --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Each finished log line becomes {"line":n,"section":"...","text":"..."}
+ * followed by a newline. section is the most recent "--Heading--" line seen
+ * (empty before the first one), so a consumer can pick out e.g. trainer
+ * changes without parsing the whole text log.
+ */
+public class JsonLinesLogSink extends LogSink {
+
+	private Writer out;
+	private StringBuilder current = new StringBuilder();
+	private StringBuilder json = new StringBuilder();
+	private String section = "";
+	private int lineNumber;
+	private boolean failed;
+
+	public JsonLinesLogSink(OutputStream os) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"),
+				64 * 1024);
+	}
+
+	@Override
+	public boolean checkError() {
+		return failed;
+	}
+
+	@Override
+	public void print(String text) {
+		// multi-line strings become several records
+		int start = 0;
+		int nlPos;
+		while ((nlPos = text.indexOf('\n', start)) >= 0) {
+			int end = nlPos;
+			if (end > start && text.charAt(end - 1) == '\r') {
+				end--;
+			}
+			current.append(text, start, end);
+			println();
+			start = nlPos + 1;
+		}
+		current.append(text, start, text.length());
+	}
+
+	@Override
+	public void println() {
+		String text = current.toString();
+		current.setLength(0);
+		if (text.startsWith("--") && text.endsWith("--") && text.length() > 4) {
+			section = text.substring(2, text.length() - 2);
+		}
+		lineNumber++;
+		json.setLength(0);
+		json.append("{\"line\":").append(lineNumber).append(",\"section\":");
+		appendString(json, section);
+		json.append(",\"text\":");
+		appendString(json, text);
+		json.append("}\n");
+		if (out == null || failed) {
+			return;
+		}
+		try {
+			out.write(json.toString());
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+
+	@Override
+	public void close() {
+		if (current.length() > 0) {
+			println();
+		}
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				failed = true;
+			}
+			out = null;
+		}
+	}
+
+	/**
+	 * Append s as a JSON string literal.
+	 */
+	static void appendString(StringBuilder json, String s) {
+		json.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		json.append('"');
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  JsonLinesSpoilerWriter.java - writes spoiler records as JSON          --*/
+/*--                                lines.                                  --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Each record becomes one line of JSON, {"kind":"...",fields...}, with
+ * lists as arrays of objects.
+ */
+public class JsonLinesSpoilerWriter extends SpoilerWriter {
+
+	private Writer out;
+	private StringBuilder json = new StringBuilder();
+	// whether the innermost object or array has nothing in it yet
+	private boolean empty;
+	private boolean failed;
+
+	public JsonLinesSpoilerWriter(OutputStream os) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"),
+				64 * 1024);
+	}
+
+	@Override
+	public boolean checkError() {
+		return failed;
+	}
+
+	@Override
+	public void beginRecord(String kind) {
+		json.setLength(0);
+		json.append("{\"kind\":");
+		JsonLinesLogSink.appendString(json, kind);
+		empty = false;
+	}
+
+	@Override
+	public void endRecord() {
+		json.append("}\n");
+		if (out == null || failed) {
+			return;
+		}
+		try {
+			out.write(json.toString());
+		} catch (IOException e) {
+			failed = true;
+		}
+	}
+
+	@Override
+	public void field(String name, int value) {
+		name(name);
+		json.append(value);
+	}
+
+	@Override
+	public void field(String name, String value) {
+		if (value != null) {
+			name(name);
+			JsonLinesLogSink.appendString(json, value);
+		}
+	}
+
+	@Override
+	public void beginList(String name) {
+		name(name);
+		json.append('[');
+		empty = true;
+	}
+
+	@Override
+	public void endList() {
+		json.append(']');
+		empty = false;
+	}
+
+	@Override
+	public void beginItem() {
+		if (!empty) {
+			json.append(',');
+		}
+		json.append('{');
+		empty = true;
+	}
+
+	@Override
+	public void endItem() {
+		json.append('}');
+		empty = false;
+	}
+
+	@Override
+	public void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				failed = true;
+			}
+			out = null;
+		}
+	}
+
+	private void name(String name) {
+		if (!empty) {
+			json.append(',');
+		}
+		JsonLinesLogSink.appendString(json, name);
+		json.append(':');
+		empty = false;
+	}
+
+}
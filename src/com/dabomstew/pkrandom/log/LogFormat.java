@@ -0,0 +1,86 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  LogFormat.java - the file formats a verbose log can be saved in.      --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * How a verbose log is written to a file: the plain text the GUI saves, or
+ * one JSON object per line (see JsonLinesLogSink) for tools that process
+ * the logs of many runs.
+ */
+public enum LogFormat {
+
+	TEXT("text", "log") {
+		@Override
+		public LogSink newSink(File file) throws IOException {
+			return new FileLogSink(file);
+		}
+	},
+	JSON_LINES("json", "log.jsonl") {
+		@Override
+		public LogSink newSink(File file) throws IOException {
+			return new JsonLinesLogSink(new FileOutputStream(file));
+		}
+	};
+
+	private final String key;
+	private final String extension;
+
+	private LogFormat(String key, String extension) {
+		this.key = key;
+		this.extension = extension;
+	}
+
+	/**
+	 * The short name this format is asked for by, e.g. in a daemon SUBMIT.
+	 */
+	public String key() {
+		return key;
+	}
+
+	public String extension() {
+		return extension;
+	}
+
+	/**
+	 * The format with the given key (in any case), or null if there's none.
+	 */
+	public static LogFormat forKey(String key) {
+		for (LogFormat format : values()) {
+			if (format.key.equalsIgnoreCase(key)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A sink writing to file, which is created or emptied.
+	 */
+	public abstract LogSink newSink(File file) throws IOException;
+
+}
@@ -0,0 +1,76 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  LogSink.java - where the verbose randomization log goes.              --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+
+/**
+ * Destination for the verbose log written during randomization. Text goes in
+ * with the same print/println/printf calls as a PrintStream, and sinks decide
+ * what to do with each finished line.
+ *
+ * Anything expensive to build should go through printf, or be guarded by
+ * isEnabled(), so it costs nothing when the log is being thrown away.
+ */
+public abstract class LogSink {
+
+	/**
+	 * Whether anything written here is kept. Callers can skip building log
+	 * text entirely when this is false.
+	 */
+	public boolean isEnabled() {
+		return true;
+	}
+
+	public abstract void print(String text);
+
+	public void print(int value) {
+		print(String.valueOf(value));
+	}
+
+	public abstract void println();
+
+	public void println(String line) {
+		print(line);
+		println();
+	}
+
+	public void printf(String format, Object... args) {
+		if (isEnabled()) {
+			print(String.format(format, args));
+		}
+	}
+
+	/**
+	 * True if a write failed at some point; sinks that write somewhere stop
+	 * writing then rather than throw.
+	 */
+	public boolean checkError() {
+		return false;
+	}
+
+	public void close() {
+		// DEFAULT: nothing to release
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  SpoilerFormat.java - the file formats a structured spoiler can be     --*/
+/*--                       saved in.                                        --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * How a structured spoiler (see SpoilerExport) is written to a file: JSON
+ * lines, easy for any tool to read, or the compact binary form that
+ * BinarySpoilerReader reads back, for indexing many runs.
+ */
+public enum SpoilerFormat {
+
+	JSON_LINES("json", "spoiler.jsonl") {
+		@Override
+		SpoilerWriter newWriter(OutputStream out) throws IOException {
+			return new JsonLinesSpoilerWriter(out);
+		}
+	},
+	BINARY("binary", "spoiler.bin") {
+		@Override
+		SpoilerWriter newWriter(OutputStream out) throws IOException {
+			return new BinarySpoilerWriter(out);
+		}
+	};
+
+	private final String key;
+	private final String extension;
+
+	private SpoilerFormat(String key, String extension) {
+		this.key = key;
+		this.extension = extension;
+	}
+
+	/**
+	 * The short name this format is asked for by, e.g. in a daemon SUBMIT.
+	 */
+	public String key() {
+		return key;
+	}
+
+	public String extension() {
+		return extension;
+	}
+
+	/**
+	 * The format with the given key (in any case), or null if there's none.
+	 */
+	public static SpoilerFormat forKey(String key) {
+		for (SpoilerFormat format : values()) {
+			if (format.key.equalsIgnoreCase(key)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A writer to file, which is created or emptied. Closing the writer
+	 * closes the file.
+	 */
+	public SpoilerWriter newWriter(File file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			return newWriter(out);
+		} catch (IOException ex) {
+			out.close();
+			throw ex;
+		}
+	}
+
+	abstract SpoilerWriter newWriter(OutputStream out) throws IOException;
+
+}
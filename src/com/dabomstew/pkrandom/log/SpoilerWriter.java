@@ -0,0 +1,70 @@
+package com.dabomstew.pkrandom.log;
+
+/*----------------------------------------------------------------------------*/
+/*--  SpoilerWriter.java - destination for structured spoiler               --*/
+/*--                       records.                                         --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+/**
+ * Destination for structured spoiler data: a stream of records, each with a
+ * kind and named fields, where a field can also be a list of items that
+ * have fields of their own. Calls must nest properly:
+ * 
+ * <pre>
+ * beginRecord("moveset");
+ * field("pokemon", 1);
+ * beginList("moves");
+ * beginItem(); field("move", 33); field("level", 1); endItem();
+ * endList();
+ * endRecord();
+ * </pre>
+ * 
+ * Null strings are left out. Like LogSink, a writer that fails stops
+ * writing and reports it through checkError() rather than throwing.
+ */
+public abstract class SpoilerWriter {
+
+	public abstract void beginRecord(String kind);
+
+	public abstract void endRecord();
+
+	public abstract void field(String name, int value);
+
+	public abstract void field(String name, String value);
+
+	public abstract void beginList(String name);
+
+	public abstract void endList();
+
+	public abstract void beginItem();
+
+	public abstract void endItem();
+
+	public boolean checkError() {
+		return false;
+	}
+
+	public void close() {
+		// DEFAULT: nothing to release
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.dabomstew.pkrandom.newnds;
+
+/*----------------------------------------------------------------------------*/
+/*--  DiskExtractionStore.java - keeps extracted files in a private         --*/
+/*--                             temp directory.                            --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes each entry to its own file in a directory created just for this
+ * store, so several ROMs (or several copies of the randomizer) never touch
+ * each other's files. close() deletes the files and the directory; any store
+ * still open when the JVM exits is closed by a shutdown hook.
+ */
+public class DiskExtractionStore extends ExtractionStore {
+
+	private static final Set<DiskExtractionStore> openStores = new HashSet<DiskExtractionStore>();
+	private static boolean hookInstalled = false;
+
+	private File directory;
+	private Map<String, File> files = new HashMap<String, File>();
+	private int nextFile = 0;
+
+	/**
+	 * Create a fresh directory inside root, named prefix plus something
+	 * unique.
+	 */
+	public DiskExtractionStore(File root, String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, "", root);
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Couldn't create temp directory " + dir);
+		}
+		this.directory = dir;
+		register(this);
+	}
+
+	public synchronized File getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return files.containsKey(key);
+	}
+
+	@Override
+	public synchronized byte[] get(String key) throws IOException {
+		File file = files.get(key);
+		if (file == null) {
+			return null;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] data = new byte[(int) raf.length()];
+			raf.readFully(data);
+			return data;
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Override
+	public synchronized void put(String key, byte[] data) throws IOException {
+		if (directory == null) {
+			throw new IOException("Extraction store has been closed");
+		}
+		File file = files.get(key);
+		if (file == null) {
+			file = new File(directory, String.format("%06d.bin", nextFile++));
+			files.put(key, file);
+		}
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(data);
+		} finally {
+			fos.close();
+		}
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		File file = files.remove(key);
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (directory == null) {
+			return;
+		}
+		for (File file : files.values()) {
+			file.delete();
+		}
+		files.clear();
+		directory.delete();
+		directory = null;
+		synchronized (openStores) {
+			openStores.remove(this);
+		}
+	}
+
+	private static void register(DiskExtractionStore store) {
+		synchronized (openStores) {
+			openStores.add(store);
+			if (!hookInstalled) {
+				hookInstalled = true;
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() {
+						DiskExtractionStore[] left;
+						synchronized (openStores) {
+							left = openStores
+									.toArray(new DiskExtractionStore[0]);
+						}
+						for (DiskExtractionStore store : left) {
+							store.close();
+						}
+					}
+				});
+			}
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.dabomstew.pkrandom.newnds;
+
+/*----------------------------------------------------------------------------*/
+/*--  ExtractionStore.java - where an NDSRom keeps the files it has         --*/
+/*--                         extracted or changed.                          --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.IOException;
+
+/**
+ * Holds the contents of files, overlays and the ARM9 once they've been read
+ * out of a ROM, keyed by name. Stores hand out copies, so callers can change
+ * what they get back freely and put() it back when they want the change
+ * kept.
+ *
+ * Each NDSRom owns its store and closes it when it is disposed, so nothing
+ * is shared between ROMs open at the same time.
+ */
+public abstract class ExtractionStore {
+
+	public abstract boolean contains(String key);
+
+	/**
+	 * A copy of the data stored under key, or null if there is none.
+	 */
+	public abstract byte[] get(String key) throws IOException;
+
+	/**
+	 * Store a copy of data under key, replacing whatever was there.
+	 */
+	public abstract void put(String key, byte[] data) throws IOException;
+
+	public abstract void remove(String key);
+
+	/**
+	 * Throw away everything held, including anything on disk. The store
+	 * can't be used afterwards.
+	 */
+	public abstract void close();
+
+}
@@ -0,0 +1,151 @@
+package com.dabomstew.pkrandom.newnds;
+
+/*----------------------------------------------------------------------------*/
+/*--  MemoryExtractionStore.java - keeps extracted files in memory, on or   --*/
+/*--                               off the Java heap, up to a budget.       --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps entries in memory, either as heap arrays or as direct ByteBuffers
+ * outside the heap. Once the entries add up to more than the budget, the
+ * least recently used ones are moved to the overflow store until they fit
+ * again. Entries bigger than the whole budget go straight to the overflow
+ * store.
+ *
+ * With no overflow store the budget is ignored and everything stays in
+ * memory, since there's nowhere else to put it.
+ */
+public class MemoryExtractionStore extends ExtractionStore {
+
+	private boolean offHeap;
+	private long budget;
+	private long used;
+	private ExtractionStore overflow;
+	// byte[] or ByteBuffer, in least to most recently used order
+	private LinkedHashMap<String, Object> entries = new LinkedHashMap<String, Object>(
+			16, 0.75f, true);
+
+	public MemoryExtractionStore() {
+		this(false, Long.MAX_VALUE, null);
+	}
+
+	public MemoryExtractionStore(boolean offHeap, long budget,
+			ExtractionStore overflow) {
+		this.offHeap = offHeap;
+		this.budget = budget;
+		this.overflow = overflow;
+	}
+
+	public synchronized long getMemoryUsed() {
+		return used;
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return entries.containsKey(key)
+				|| (overflow != null && overflow.contains(key));
+	}
+
+	@Override
+	public synchronized byte[] get(String key) throws IOException {
+		Object entry = entries.get(key);
+		if (entry != null) {
+			return copyOut(entry);
+		}
+		return overflow == null ? null : overflow.get(key);
+	}
+
+	@Override
+	public synchronized void put(String key, byte[] data) throws IOException {
+		remove(key);
+		if (overflow != null && data.length > budget) {
+			overflow.put(key, data);
+			return;
+		}
+		Object entry;
+		if (offHeap) {
+			ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+			buf.put(data);
+			entry = buf;
+		} else {
+			entry = data.clone();
+		}
+		entries.put(key, entry);
+		used += data.length;
+		if (overflow != null) {
+			Iterator<Map.Entry<String, Object>> eldest = entries.entrySet()
+					.iterator();
+			while (used > budget) {
+				Map.Entry<String, Object> victim = eldest.next();
+				byte[] evicted = copyOut(victim.getValue());
+				overflow.put(victim.getKey(), evicted);
+				used -= evicted.length;
+				eldest.remove();
+			}
+		}
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		Object entry = entries.remove(key);
+		if (entry != null) {
+			used -= length(entry);
+		} else if (overflow != null) {
+			overflow.remove(key);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		// direct buffers are freed once they're unreachable
+		entries.clear();
+		used = 0;
+		if (overflow != null) {
+			overflow.close();
+		}
+	}
+
+	private static byte[] copyOut(Object entry) {
+		if (entry instanceof ByteBuffer) {
+			ByteBuffer buf = ((ByteBuffer) entry).duplicate();
+			buf.clear();
+			byte[] data = new byte[buf.capacity()];
+			buf.get(data);
+			return data;
+		}
+		return ((byte[]) entry).clone();
+	}
+
+	private static int length(Object entry) {
+		if (entry instanceof ByteBuffer) {
+			return ((ByteBuffer) entry).capacity();
+		}
+		return ((byte[]) entry).length;
+	}
+
+}
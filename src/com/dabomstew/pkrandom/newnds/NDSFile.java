@@ -1,8 +1,5 @@
 package com.dabomstew.pkrandom.newnds;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
@@ -33,90 +30,52 @@ public class NDSFile {
 	public int offset, size;
 	public int fileID;
 	public String fullPath;
-	public Extracted status = Extracted.NOT;
-	public String extFilename;
-	public byte[] data;
+	private boolean extracted = false;
+	// only modified files are written out from the store at save time
+	private boolean modified = false;
 
 	public NDSFile(NDSRom parent) {
 		this.parent = parent;
 	}
 
+	private String storeKey() {
+		return "file_" + fileID;
+	}
+
+	// everything that reads the ROM file or changes our state locks the
+	// parent, which owns the file position
 	public byte[] getContents() throws IOException {
-		if (this.status == Extracted.NOT) {
-			// extract file
-			parent.reopenROM();
-			RandomAccessFile rom = parent.getBaseRom();
-			byte[] buf = new byte[this.size];
-			rom.seek(this.offset);
-			rom.readFully(buf);
-			if (parent.isWritingEnabled()) {
-				// make a file
-				String tmpDir = parent.getTmpFolder();
-				String tmpFilename = fullPath.replaceAll("[^A-Za-z0-9_]+", "");
-				this.extFilename = tmpFilename;
-				File tmpFile = new File(tmpDir + extFilename);
-				FileOutputStream fos = new FileOutputStream(tmpFile);
-				fos.write(buf);
-				fos.close();
-				tmpFile.deleteOnExit();
-				this.status = Extracted.TO_FILE;
-				this.data = null;
+		synchronized (parent) {
+			if (!extracted) {
+				// extract file
+				parent.reopenROM();
+				RandomAccessFile rom = parent.getBaseRom();
+				byte[] buf = new byte[this.size];
+				rom.seek(this.offset);
+				rom.readFully(buf);
+				parent.getStore().put(storeKey(), buf);
+				extracted = true;
 				return buf;
 			} else {
-				this.status = Extracted.TO_RAM;
-				this.data = buf;
-				byte[] newcopy = new byte[buf.length];
-				System.arraycopy(buf, 0, newcopy, 0, buf.length);
-				return newcopy;
+				return parent.getStore().get(storeKey());
 			}
-		} else if (this.status == Extracted.TO_RAM) {
-			byte[] newcopy = new byte[this.data.length];
-			System.arraycopy(this.data, 0, newcopy, 0, this.data.length);
-			return newcopy;
-		} else {
-			String tmpDir = parent.getTmpFolder();
-			FileInputStream fis = new FileInputStream(tmpDir + this.extFilename);
-			byte[] file = new byte[fis.available()];
-			fis.read(file);
-			fis.close();
-			return file;
 		}
 	}
 
 	public void writeOverride(byte[] data) throws IOException {
-		if (status == Extracted.NOT) {
-			// temp extract
-			getContents();
-		}
-		if (status == Extracted.TO_FILE) {
-			String tmpDir = parent.getTmpFolder();
-			FileOutputStream fos = new FileOutputStream(new File(tmpDir
-					+ this.extFilename));
-			fos.write(data);
-			fos.close();
-		} else {
-			if (this.data.length == data.length) {
-				// copy new in
-				System.arraycopy(data, 0, this.data, 0, data.length);
-			} else {
-				// make new array
-				this.data = null;
-				this.data = new byte[data.length];
-				System.arraycopy(data, 0, this.data, 0, data.length);
-			}
+		synchronized (parent) {
+			parent.getStore().put(storeKey(), data);
+			extracted = true;
+			modified = true;
 		}
 	}
 
 	// returns null if no override
 	public byte[] getOverrideContents() throws IOException {
-		if (status == Extracted.NOT) {
+		if (!modified) {
 			return null;
 		}
 		return getContents();
 	}
 
-	private enum Extracted {
-		NOT, TO_FILE, TO_RAM;
-	}
-
 }
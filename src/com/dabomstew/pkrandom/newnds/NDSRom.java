@@ -1,16 +1,17 @@
 package com.dabomstew.pkrandom.newnds;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import com.dabomstew.pkrandom.RomFunctions;
+import com.dabomstew.pkrandom.delta.FileImageWriter;
+import com.dabomstew.pkrandom.delta.ImageWriter;
+import com.dabomstew.pkrandom.delta.PatchApplier;
+import com.dabomstew.pkrandom.delta.PatchResult;
 import com.dabomstew.pkrandom.gui.RandomizerGUI;
 
 import cuecompressors.BLZCoder;
@@ -42,46 +43,138 @@ public class NDSRom {
 	private RandomAccessFile baseRom;
 	private boolean romOpen;
 	private Map<String, NDSFile> files;
-	private Map<Integer, NDSFile> filesByID;
-	private Map<Integer, NDSY9Entry> arm9overlaysByFileID;
+	// indexed by file ID, null where there's no entry
+	private NDSFile[] filesByID;
+	private NDSY9Entry[] arm9overlaysByFileID;
 	private NDSY9Entry[] arm9overlays;
+	private byte[] header;
 	private byte[] fat;
-	private String tmpFolder;
-	private boolean writingEnabled;
+	private ExtractionStore store;
 	private boolean arm9_open, arm9_changed, arm9_has_footer;
 	private boolean arm9_compressed;
 	private int arm9_szmode, arm9_szoffset;
 	private byte[] arm9_footer;
-	private byte[] arm9_ramstored;
 
 	private static final int arm9_align = 0x1FF, arm7_align = 0x1FF;
 	private static final int fnt_align = 0x1FF, fat_align = 0x1FF;
 	private static final int banner_align = 0x1FF, file_align = 0x1FF;
+	// extracted data held in memory before spilling to a temp directory
+	private static final long DEFAULT_MEMORY_BUDGET = 32 * 1024 * 1024;
+	private static final String ARM9_KEY = "arm9";
+	// everything readFileSystem, save and getARM9 need from the header
+	private static final int HEADER_SIZE = 0x180;
 
 	public NDSRom(String filename) throws IOException {
+		this(filename, defaultStore(filename));
+	}
+
+	/**
+	 * Open a ROM, keeping whatever gets extracted from it in store. The ROM
+	 * takes ownership of the store and closes it in dispose().
+	 */
+	public NDSRom(String filename, ExtractionStore store) throws IOException {
 		this.romFilename = filename;
+		this.store = store;
 		this.baseRom = new RandomAccessFile(filename, "r");
 		this.romOpen = true;
-		// TMP folder?
-		String rawFilename = new File(filename).getName();
-		String dataFolder = "tmp_"
-				+ rawFilename.substring(0, rawFilename.lastIndexOf('.'));
-		// remove nonsensical chars
-		dataFolder = dataFolder.replaceAll("[^A-Za-z0-9_]+", "");
-		File tmpFolder = new File(RandomizerGUI.getRootPath() + dataFolder);
-		tmpFolder.mkdir();
-		if (tmpFolder.canWrite()) {
-			writingEnabled = true;
-			this.tmpFolder = RandomizerGUI.getRootPath() + dataFolder
-					+ File.separator;
-			tmpFolder.deleteOnExit();
-		} else {
-			writingEnabled = false;
-		}
 		readFileSystem();
 		arm9_open = false;
 		arm9_changed = false;
-		arm9_ramstored = null;
+	}
+
+	/**
+	 * A fresh copy of a ROM that's already been opened, as it is in the
+	 * file. The tables from the header, FNT and FAT, and the decoded ARM9 if
+	 * original has read it, are taken from original rather than read and
+	 * parsed again; everything else is read from the file as needed.
+	 * original mustn't have been changed.
+	 */
+	public NDSRom(NDSRom original) throws IOException {
+		this.romFilename = original.romFilename;
+		this.store = defaultStore(romFilename);
+		this.romOpen = false;
+		synchronized (original) {
+			if (original.arm9_changed) {
+				throw new IllegalArgumentException("original has changed");
+			}
+			header = original.header;
+			fat = original.fat;
+			files = new HashMap<String, NDSFile>();
+			filesByID = new NDSFile[original.filesByID.length];
+			for (NDSFile of : original.filesByID) {
+				if (of == null) {
+					continue;
+				}
+				NDSFile nf = new NDSFile(this);
+				nf.offset = of.offset;
+				nf.size = of.size;
+				nf.fullPath = of.fullPath;
+				nf.fileID = of.fileID;
+				files.put(nf.fullPath, nf);
+				filesByID[nf.fileID] = nf;
+			}
+			arm9overlays = new NDSY9Entry[original.arm9overlays.length];
+			arm9overlaysByFileID = new NDSY9Entry[filesByID.length];
+			for (NDSY9Entry oo : original.arm9overlays) {
+				NDSY9Entry overlay = new NDSY9Entry(this);
+				overlay.offset = oo.offset;
+				overlay.size = oo.size;
+				overlay.original_size = oo.original_size;
+				overlay.fileID = oo.fileID;
+				overlay.overlay_id = oo.overlay_id;
+				overlay.ram_address = oo.ram_address;
+				overlay.ram_size = oo.ram_size;
+				overlay.bss_size = oo.bss_size;
+				overlay.static_start = oo.static_start;
+				overlay.static_end = oo.static_end;
+				overlay.compressed_size = oo.compressed_size;
+				overlay.compress_flag = oo.compress_flag;
+				arm9overlays[overlay.overlay_id] = overlay;
+				arm9overlaysByFileID[overlay.fileID] = overlay;
+			}
+			if (original.arm9_open) {
+				arm9_open = true;
+				arm9_has_footer = original.arm9_has_footer;
+				arm9_footer = original.arm9_footer;
+				arm9_compressed = original.arm9_compressed;
+				arm9_szmode = original.arm9_szmode;
+				arm9_szoffset = original.arm9_szoffset;
+				store.put(ARM9_KEY, original.store.get(ARM9_KEY));
+			}
+		}
+		arm9_changed = false;
+	}
+
+	/**
+	 * The game code from the header.
+	 */
+	public String getCode() {
+		char[] code = new char[4];
+		for (int i = 0; i < 4; i++) {
+			code[i] = (char) (header[0x0C + i] & 0xFF);
+		}
+		return new String(code);
+	}
+
+	// Memory up to DEFAULT_MEMORY_BUDGET, then a temp directory of our own
+	// next to the randomizer if we can write there, else memory only.
+	private static ExtractionStore defaultStore(String filename) {
+		String rawFilename = new File(filename).getName();
+		int dot = rawFilename.lastIndexOf('.');
+		String prefix = "tmp_"
+				+ (dot > 0 ? rawFilename.substring(0, dot) : rawFilename);
+		// remove nonsensical chars
+		prefix = prefix.replaceAll("[^A-Za-z0-9_]+", "") + "_";
+		try {
+			DiskExtractionStore disk = new DiskExtractionStore(new File(
+					RandomizerGUI.getRootPath()), prefix);
+			return new MemoryExtractionStore(false, DEFAULT_MEMORY_BUDGET,
+					disk);
+		} catch (IOException e) {
+			return new MemoryExtractionStore();
+		} catch (SecurityException e) {
+			return new MemoryExtractionStore();
+		}
 	}
 
 	public void reopenROM() throws IOException {
@@ -99,74 +192,64 @@ public class NDSRom {
 		}
 	}
 
+	/**
+	 * Close the ROM and throw away everything extracted from it. Nothing can
+	 * be read or saved afterwards.
+	 */
+	public void dispose() throws IOException {
+		closeROM();
+		store.close();
+	}
+
 	private void readFileSystem() throws IOException {
-		baseRom.seek(0x40);
-		int fntOffset = readFromFile(baseRom, 4);
-		readFromFile(baseRom, 4); // fntSize not needed
-		int fatOffset = readFromFile(baseRom, 4);
-		int fatSize = readFromFile(baseRom, 4);
-
-		// Read full FAT table
-		baseRom.seek(fatOffset);
-		fat = new byte[fatSize];
-		baseRom.readFully(fat);
-
-		Map<Integer, String> directoryPaths = new HashMap<Integer, String>();
-		directoryPaths.put(0xF000, "");
-		int dircount = readFromFile(baseRom, fntOffset + 0x6, 2);
+		// Header, FNT, FAT and overlay table are each pulled in with a single
+		// read and parsed from memory.
+		header = readBlock(0, HEADER_SIZE);
+		int fntOffset = readFromByteArr(header, 0x40, 4);
+		int fntSize = readFromByteArr(header, 0x44, 4);
+		int fatOffset = readFromByteArr(header, 0x48, 4);
+		int fatSize = readFromByteArr(header, 0x4C, 4);
+
+		fat = readBlock(fatOffset, fatSize);
+		byte[] fnt = readBlock(fntOffset, fntSize);
+		int filecount = fat.length / 8;
 		files = new HashMap<String, NDSFile>();
-		filesByID = new HashMap<Integer, NDSFile>();
+		filesByID = new NDSFile[filecount];
 
-		// read fnt table
-		baseRom.seek(fntOffset);
+		// read fnt main table
+		int dircount = readFromByteArr(fnt, 0x6, 2);
 		int[] subTableOffsets = new int[dircount];
 		int[] firstFileIDs = new int[dircount];
 		int[] parentDirIDs = new int[dircount];
 		for (int i = 0; i < dircount && i < 0x1000; i++) {
-			subTableOffsets[i] = readFromFile(baseRom, 4) + fntOffset;
-			firstFileIDs[i] = readFromFile(baseRom, 2);
-			parentDirIDs[i] = readFromFile(baseRom, 2);
+			subTableOffsets[i] = readFromByteArr(fnt, i * 8, 4);
+			firstFileIDs[i] = readFromByteArr(fnt, i * 8 + 4, 2);
+			parentDirIDs[i] = readFromByteArr(fnt, i * 8 + 6, 2);
 		}
 
 		// get dirnames
 		String[] directoryNames = new String[dircount];
-		Map<Integer, String> filenames = new TreeMap<Integer, String>();
-		Map<Integer, Integer> fileDirectories = new HashMap<Integer, Integer>();
+		String[] filenames = new String[filecount];
+		int[] fileDirectories = new int[filecount];
 		for (int i = 0; i < dircount && i < 0x1000; i++) {
-			firstPassDirectory(i, subTableOffsets[i], firstFileIDs[i],
+			firstPassDirectory(fnt, i, subTableOffsets[i], firstFileIDs[i],
 					directoryNames, filenames, fileDirectories);
 		}
 
-		// get full dirnames
+		// get full dirnames, each built once from its parent's
+		String[] directoryPaths = new String[dircount];
+		directoryPaths[0] = "";
 		for (int i = 1; i < dircount && i < 0x1000; i++) {
-			String dirname = directoryNames[i];
-			if (dirname != null) {
-				String fullDirName = "";
-				int curDir = i;
-				while (dirname != null && !dirname.isEmpty()) {
-					if (!fullDirName.isEmpty()) {
-						fullDirName = "/" + fullDirName;
-					}
-					fullDirName = dirname + fullDirName;
-					int parentDir = parentDirIDs[curDir];
-					if (parentDir >= 0xF001 && parentDir <= 0xFFFF) {
-						curDir = parentDir - 0xF000;
-						dirname = directoryNames[curDir];
-					} else {
-						break;
-					}
-				}
-				directoryPaths.put(i + 0xF000, fullDirName);
-			} else {
-				directoryPaths.put(i + 0xF000, "");
-			}
+			directoryPath(i, directoryNames, parentDirIDs, directoryPaths);
 		}
 
 		// parse files
-		for (int fileID : filenames.keySet()) {
-			String filename = filenames.get(fileID);
-			int directory = fileDirectories.get(fileID);
-			String dirPath = directoryPaths.get(directory + 0xF000);
+		for (int fileID = 0; fileID < filecount; fileID++) {
+			String filename = filenames[fileID];
+			if (filename == null) {
+				continue;
+			}
+			String dirPath = directoryPaths[fileDirectories[fileID]];
 			String fullFilename = filename;
 			if (!dirPath.isEmpty()) {
 				fullFilename = dirPath + "/" + filename;
@@ -179,18 +262,16 @@ public class NDSRom {
 			nf.fullPath = fullFilename;
 			nf.fileID = fileID;
 			files.put(fullFilename, nf);
-			filesByID.put(fileID, nf);
+			filesByID[fileID] = nf;
 		}
 
 		// arm9 overlays
-		int arm9_ovl_table_offset = readFromFile(baseRom, 0x50, 4);
-		int arm9_ovl_table_size = readFromFile(baseRom, 0x54, 4);
+		int arm9_ovl_table_offset = readFromByteArr(header, 0x50, 4);
+		int arm9_ovl_table_size = readFromByteArr(header, 0x54, 4);
 		int arm9_ovl_count = arm9_ovl_table_size / 32;
-		byte[] y9table = new byte[arm9_ovl_table_size];
+		byte[] y9table = readBlock(arm9_ovl_table_offset, arm9_ovl_table_size);
 		arm9overlays = new NDSY9Entry[arm9_ovl_count];
-		arm9overlaysByFileID = new HashMap<Integer, NDSY9Entry>();
-		baseRom.seek(arm9_ovl_table_offset);
-		baseRom.readFully(y9table);
+		arm9overlaysByFileID = new NDSY9Entry[filecount];
 
 		// parse overlays
 		for (int i = 0; i < arm9_ovl_count; i++) {
@@ -211,25 +292,70 @@ public class NDSRom {
 			overlay.compressed_size = readFromByteArr(y9table, i * 32 + 28, 3);
 			overlay.compress_flag = y9table[i * 32 + 31] & 0xFF;
 			arm9overlays[i] = overlay;
-			arm9overlaysByFileID.put(fileID, overlay);
+			arm9overlaysByFileID[fileID] = overlay;
+		}
+	}
+
+	private byte[] readBlock(int offset, int size) throws IOException {
+		byte[] block = new byte[size];
+		baseRom.seek(offset);
+		baseRom.readFully(block);
+		return block;
+	}
+
+	private String directoryPath(int dir, String[] directoryNames,
+			int[] parentDirIDs, String[] directoryPaths) {
+		if (directoryPaths[dir] != null) {
+			return directoryPaths[dir];
+		}
+		String dirname = directoryNames[dir];
+		if (dirname == null || dirname.isEmpty()) {
+			directoryPaths[dir] = "";
+			return "";
+		}
+		// provisional, in case of a parent loop
+		directoryPaths[dir] = dirname;
+		int parentDir = parentDirIDs[dir];
+		if (parentDir >= 0xF001 && parentDir <= 0xFFFF
+				&& parentDir - 0xF000 < directoryNames.length) {
+			String parentPath = directoryPath(parentDir - 0xF000,
+					directoryNames, parentDirIDs, directoryPaths);
+			if (!parentPath.isEmpty()) {
+				directoryPaths[dir] = parentPath + "/" + dirname;
+			}
 		}
+		return directoryPaths[dir];
 	}
 
 	public void saveTo(String filename) throws IOException {
-		this.reopenROM();
+		ImageWriter out = new FileImageWriter(romFilename, filename);
+		try {
+			save(out);
+		} finally {
+			out.close();
+		}
+	}
 
-		// Initialise new ROM
-		RandomAccessFile fNew = new RandomAccessFile(filename, "rw");
+	/**
+	 * Lay out the ROM as it now stands and hand it to out: everything that
+	 * hasn't been changed is copied from the original file, so a patch writer
+	 * only has to store the changed files, the new tables and the header.
+	 */
+	public void save(ImageWriter out) throws IOException {
+		this.reopenROM();
 
-		int headersize = readFromFile(this.baseRom, 0x84, 4);
-		this.baseRom.seek(0);
-		copy(this.baseRom, fNew, headersize);
+		// the header is written last, once all the offsets are known; the
+		// rest of the header area is copied as is
+		int headersize = readFromByteArr(header, 0x84, 4);
+		if (headersize > HEADER_SIZE) {
+			out.copy(HEADER_SIZE, HEADER_SIZE, headersize - HEADER_SIZE);
+		}
 
 		// arm9
-		int arm9_offset = ((int) (fNew.getFilePointer() + arm9_align))
-				& (~arm9_align);
-		int old_arm9_offset = readFromFile(this.baseRom, 0x20, 4);
-		int arm9_size = readFromFile(this.baseRom, 0x2C, 4);
+		int arm9_offset = (headersize + arm9_align) & (~arm9_align);
+		int old_arm9_offset = readFromByteArr(header, 0x20, 4);
+		int arm9_size = readFromByteArr(header, 0x2C, 4);
+		int arm9_end;
 		if (arm9_open && arm9_changed) {
 			// custom arm9
 			byte[] newARM9 = getARM9();
@@ -244,22 +370,22 @@ public class NDSRom {
 			}
 			arm9_size = newARM9.length;
 			// copy new arm9
-			fNew.seek(arm9_offset);
-			fNew.write(newARM9);
+			out.write(arm9_offset, newARM9, 0, newARM9.length);
+			arm9_end = arm9_offset + newARM9.length;
 			// footer?
 			if (arm9_has_footer) {
-				fNew.write(arm9_footer);
+				out.write(arm9_end, arm9_footer, 0, arm9_footer.length);
+				arm9_end += arm9_footer.length;
 			}
 
 		} else {
 			// copy arm9+footer
-			this.baseRom.seek(old_arm9_offset);
-			fNew.seek(arm9_offset);
-			copy(this.baseRom, fNew, arm9_size + 12);
+			out.copy(old_arm9_offset, arm9_offset, arm9_size + 12);
+			arm9_end = arm9_offset + arm9_size + 12;
 		}
 
 		// arm9 ovl
-		int arm9_ovl_offset = (int) fNew.getFilePointer();
+		int arm9_ovl_offset = arm9_end;
 		int arm9_ovl_size = arm9overlays.length * 32;
 
 		// don't actually write arm9 ovl yet
@@ -267,46 +393,37 @@ public class NDSRom {
 		// arm7
 		int arm7_offset = ((int) (arm9_ovl_offset + arm9_ovl_size + arm7_align))
 				& (~arm7_align);
-		int old_arm7_offset = readFromFile(this.baseRom, 0x30, 4);
-		int arm7_size = readFromFile(this.baseRom, 0x3C, 4);
+		int old_arm7_offset = readFromByteArr(header, 0x30, 4);
+		int arm7_size = readFromByteArr(header, 0x3C, 4);
 		// copy arm7
-		this.baseRom.seek(old_arm7_offset);
-		fNew.seek(arm7_offset);
-		copy(this.baseRom, fNew, arm7_size);
+		out.copy(old_arm7_offset, arm7_offset, arm7_size);
 
 		// arm7 ovl
-		int arm7_ovl_offset = (int) fNew.getFilePointer();
-		int old_arm7_ovl_offset = readFromFile(this.baseRom, 0x58, 4);
-		int arm7_ovl_size = readFromFile(this.baseRom, 0x5C, 4);
+		int arm7_ovl_offset = arm7_offset + arm7_size;
+		int old_arm7_ovl_offset = readFromByteArr(header, 0x58, 4);
+		int arm7_ovl_size = readFromByteArr(header, 0x5C, 4);
 
 		// copy arm7 ovl
-		this.baseRom.seek(old_arm7_ovl_offset);
-		fNew.seek(arm7_ovl_offset);
-		copy(this.baseRom, fNew, arm7_ovl_size);
+		out.copy(old_arm7_ovl_offset, arm7_ovl_offset, arm7_ovl_size);
 
 		// banner
-		int banner_offset = ((int) (fNew.getFilePointer() + banner_align))
+		int banner_offset = (arm7_ovl_offset + arm7_ovl_size + banner_align)
 				& (~banner_align);
-		int old_banner_offset = readFromFile(this.baseRom, 0x68, 4);
+		int old_banner_offset = readFromByteArr(header, 0x68, 4);
 		int banner_size = 0x840;
 		// copy banner
-		this.baseRom.seek(old_banner_offset);
-		fNew.seek(banner_offset);
-		copy(this.baseRom, fNew, banner_size);
+		out.copy(old_banner_offset, banner_offset, banner_size);
 
 		// filename table (doesn't change)
-		int fnt_offset = ((int) (fNew.getFilePointer() + fnt_align))
+		int fnt_offset = (banner_offset + banner_size + fnt_align)
 				& (~fnt_align);
-		int old_fnt_offset = readFromFile(this.baseRom, 0x40, 4);
-		int fnt_size = readFromFile(this.baseRom, 0x44, 4);
+		int old_fnt_offset = readFromByteArr(header, 0x40, 4);
+		int fnt_size = readFromByteArr(header, 0x44, 4);
 		// copy fnt
-		this.baseRom.seek(old_fnt_offset);
-		fNew.seek(fnt_offset);
-		copy(this.baseRom, fNew, fnt_size);
+		out.copy(old_fnt_offset, fnt_offset, fnt_size);
 
 		// make space for the FAT table
-		int fat_offset = ((int) (fNew.getFilePointer() + fat_align))
-				& (~fat_align);
+		int fat_offset = (fnt_offset + fnt_size + fat_align) & (~fat_align);
 		int fat_size = fat.length;
 
 		// Now for actual files
@@ -320,25 +437,24 @@ public class NDSRom {
 			int offset_of_file = (base_offset + file_align) & (~file_align);
 			int file_len = 0;
 			boolean copiedCustom = false;
-			if (filesByID.containsKey(fid)) {
-				byte[] customContents = filesByID.get(fid)
-						.getOverrideContents();
+			if (filesByID[fid] != null) {
+				byte[] customContents = filesByID[fid].getOverrideContents();
 				if (customContents != null) {
 					// copy custom
-					fNew.seek(offset_of_file);
-					fNew.write(customContents);
+					out.write(offset_of_file, customContents, 0,
+							customContents.length);
 					copiedCustom = true;
 					file_len = customContents.length;
 				}
 			}
-			if (arm9overlaysByFileID.containsKey(fid)) {
-				NDSY9Entry entry = arm9overlaysByFileID.get(fid);
+			if (arm9overlaysByFileID[fid] != null) {
+				NDSY9Entry entry = arm9overlaysByFileID[fid];
 				int overlay_id = entry.overlay_id;
 				byte[] customContents = entry.getOverrideContents();
 				if (customContents != null) {
 					// copy custom
-					fNew.seek(offset_of_file);
-					fNew.write(customContents);
+					out.write(offset_of_file, customContents, 0,
+							customContents.length);
 					copiedCustom = true;
 					file_len = customContents.length;
 				}
@@ -363,9 +479,7 @@ public class NDSRom {
 				int file_starts = readFromByteArr(fat, fid * 8, 4);
 				int file_ends = readFromByteArr(fat, fid * 8 + 4, 4);
 				file_len = file_ends - file_starts;
-				this.baseRom.seek(file_starts);
-				fNew.seek(offset_of_file);
-				copy(this.baseRom, fNew, file_len);
+				out.copy(file_starts, offset_of_file, file_len);
 			}
 			// write to new FAT
 			writeToByteArr(newfat, fid * 8, 4, offset_of_file);
@@ -375,22 +489,17 @@ public class NDSRom {
 		}
 
 		// write new FAT table
-		fNew.seek(fat_offset);
-		fNew.write(newfat);
+		out.write(fat_offset, newfat, 0, newfat.length);
 
 		// write y9 table
-		fNew.seek(arm9_ovl_offset);
-		fNew.write(y9table);
+		out.write(arm9_ovl_offset, y9table, 0, y9table.length);
 
 		// tidy up ending
 		// base_offset is the end of the last file
 		int newfilesize = base_offset;
 		newfilesize = (newfilesize + 3) & ~3;
 		int application_end_offset = newfilesize;
-		if (newfilesize != base_offset) {
-			fNew.seek(newfilesize - 1);
-			fNew.write(0);
-		}
+		int imageLength = newfilesize;
 
 		// calculate device capacity;
 		newfilesize |= newfilesize >> 16;
@@ -411,50 +520,33 @@ public class NDSRom {
 		int devicecap = ((devcap < 0) ? 0 : devcap);
 
 		// Update offsets in ROM header
-		writeToFile(fNew, 0x20, 4, arm9_offset);
-		writeToFile(fNew, 0x2C, 4, arm9_size);
-		writeToFile(fNew, 0x30, 4, arm7_offset);
-		writeToFile(fNew, 0x3C, 4, arm7_size);
-		writeToFile(fNew, 0x40, 4, fnt_offset);
-		writeToFile(fNew, 0x48, 4, fat_offset);
-		writeToFile(fNew, 0x50, 4, arm9_ovl_offset);
-		writeToFile(fNew, 0x58, 4, arm7_ovl_offset);
-		writeToFile(fNew, 0x68, 4, banner_offset);
-		writeToFile(fNew, 0x80, 4, application_end_offset);
-		writeToFile(fNew, 0x14, 1, devicecap);
+		byte[] newHeader = header.clone();
+		writeToByteArr(newHeader, 0x20, 4, arm9_offset);
+		writeToByteArr(newHeader, 0x2C, 4, arm9_size);
+		writeToByteArr(newHeader, 0x30, 4, arm7_offset);
+		writeToByteArr(newHeader, 0x3C, 4, arm7_size);
+		writeToByteArr(newHeader, 0x40, 4, fnt_offset);
+		writeToByteArr(newHeader, 0x48, 4, fat_offset);
+		writeToByteArr(newHeader, 0x50, 4, arm9_ovl_offset);
+		writeToByteArr(newHeader, 0x58, 4, arm7_ovl_offset);
+		writeToByteArr(newHeader, 0x68, 4, banner_offset);
+		writeToByteArr(newHeader, 0x80, 4, application_end_offset);
+		writeToByteArr(newHeader, 0x14, 1, devicecap);
 
 		// Update header CRC
-		fNew.seek(0);
-		byte[] headerForCRC = new byte[0x15E];
-		fNew.readFully(headerForCRC);
-		short crc = CRC16.calculate(headerForCRC, 0, 0x15E);
-		writeToFile(fNew, 0x15E, 2, (crc & 0xFFFF));
+		short crc = CRC16.calculate(newHeader, 0, 0x15E);
+		writeToByteArr(newHeader, 0x15E, 2, (crc & 0xFFFF));
+		out.write(0, newHeader, 0, newHeader.length);
 
 		// done
-		fNew.close();
+		out.finish(imageLength);
 		closeROM();
 	}
 
-	private void copy(RandomAccessFile from, RandomAccessFile to, int bytes)
-			throws IOException {
-		int sizeof_copybuf = Math.min(256 * 1024, bytes);
-		byte[] copybuf = new byte[sizeof_copybuf];
-		while (bytes > 0) {
-			int size2 = (bytes >= sizeof_copybuf) ? sizeof_copybuf : bytes;
-			int read = from.read(copybuf, 0, size2);
-			to.write(copybuf, 0, read);
-			bytes -= read;
-		}
-		copybuf = null;
-	}
-
 	// returns null if file doesn't exist
 	public byte[] getFile(String filename) throws IOException {
-		if (files.containsKey(filename)) {
-			return files.get(filename).getContents();
-		} else {
-			return null;
-		}
+		NDSFile file = files.get(filename);
+		return file == null ? null : file.getContents();
 	}
 
 	public byte[] getOverlay(int number) throws IOException {
@@ -465,12 +557,12 @@ public class NDSRom {
 		}
 	}
 
-	public byte[] getARM9() throws IOException {
+	public synchronized byte[] getARM9() throws IOException {
 		if (!arm9_open) {
 			arm9_open = true;
 			this.reopenROM();
-			int arm9_offset = readFromFile(this.baseRom, 0x20, 4);
-			int arm9_size = readFromFile(this.baseRom, 0x2C, 4);
+			int arm9_offset = readFromByteArr(header, 0x20, 4);
+			int arm9_size = readFromByteArr(header, 0x2C, 4);
 			byte[] arm9 = new byte[arm9_size];
 			this.baseRom.seek(arm9_offset);
 			this.baseRom.readFully(arm9);
@@ -534,45 +626,25 @@ public class NDSRom {
 			}
 
 			if (arm9_compressed) {
-				arm9 = new BLZCoder(null).BLZ_DecodePub(arm9, "arm9.bin");
+				arm9 = BLZCoder.BLZ_DecodeBytes(arm9);
+				if (arm9 == null) {
+					throw new IOException("Bad compressed data in arm9.bin");
+				}
 			}
 
 			// Now actually make the copy or w/e
-			if (writingEnabled) {
-				File arm9file = new File(tmpFolder + "arm9.bin");
-				FileOutputStream fos = new FileOutputStream(arm9file);
-				fos.write(arm9);
-				fos.close();
-				arm9file.deleteOnExit();
-				this.arm9_ramstored = null;
-				return arm9;
-			} else {
-				this.arm9_ramstored = arm9;
-				byte[] newcopy = new byte[arm9.length];
-				System.arraycopy(arm9, 0, newcopy, 0, arm9.length);
-				return newcopy;
-			}
+			store.put(ARM9_KEY, arm9);
+			return arm9;
 		} else {
-			if (writingEnabled) {
-				FileInputStream fis = new FileInputStream(tmpFolder
-						+ "arm9.bin");
-				byte[] file = new byte[fis.available()];
-				fis.read(file);
-				fis.close();
-				return file;
-			} else {
-				byte[] newcopy = new byte[this.arm9_ramstored.length];
-				System.arraycopy(this.arm9_ramstored, 0, newcopy, 0,
-						this.arm9_ramstored.length);
-				return newcopy;
-			}
+			return store.get(ARM9_KEY);
 		}
 	}
 
 	// returns null if file doesn't exist
 	public void writeFile(String filename, byte[] data) throws IOException {
-		if (files.containsKey(filename)) {
-			files.get(filename).writeOverride(data);
+		NDSFile file = files.get(filename);
+		if (file != null) {
+			file.writeOverride(data);
 		}
 	}
 
@@ -582,69 +654,87 @@ public class NDSRom {
 		}
 	}
 
-	public void writeARM9(byte[] arm9) throws IOException {
+	public synchronized void writeARM9(byte[] arm9) throws IOException {
 		if (!arm9_open) {
 			getARM9();
 		}
 		arm9_changed = true;
-		if (writingEnabled) {
-			FileOutputStream fos = new FileOutputStream(new File(tmpFolder
-					+ "arm9.bin"));
-			fos.write(arm9);
-			fos.close();
-		} else {
-			if (this.arm9_ramstored.length == arm9.length) {
-				// copy new in
-				System.arraycopy(arm9, 0, this.arm9_ramstored, 0, arm9.length);
-			} else {
-				// make new array
-				this.arm9_ramstored = null;
-				this.arm9_ramstored = new byte[arm9.length];
-				System.arraycopy(arm9, 0, this.arm9_ramstored, 0, arm9.length);
-			}
+		store.put(ARM9_KEY, arm9);
+	}
+
+	// Apply an IPS or BPS patch made against one file, overlay or the arm9.
+	// The patched file can be a different length. Nothing is written unless
+	// the result is OK; returns null if file doesn't exist
+
+	public PatchResult patchFile(String filename, byte[] patch)
+			throws IOException {
+		byte[] contents = getFile(filename);
+		if (contents == null) {
+			return null;
+		}
+		PatchResult result = PatchApplier.apply(contents, patch);
+		if (result.succeeded()) {
+			writeFile(filename, result.image);
+		}
+		return result;
+	}
+
+	public PatchResult patchOverlay(int number, byte[] patch)
+			throws IOException {
+		byte[] contents = getOverlay(number);
+		if (contents == null) {
+			return null;
+		}
+		PatchResult result = PatchApplier.apply(contents, patch);
+		if (result.succeeded()) {
+			writeOverlay(number, result.image);
+		}
+		return result;
+	}
+
+	public synchronized PatchResult patchARM9(byte[] patch) throws IOException {
+		PatchResult result = PatchApplier.apply(getARM9(), patch);
+		if (result.succeeded()) {
+			writeARM9(result.image);
 		}
+		return result;
 	}
 
-	private void firstPassDirectory(int dir, int subTableOffset,
-			int firstFileID, String[] directoryNames,
-			Map<Integer, String> filenames,
-			Map<Integer, Integer> fileDirectories) throws IOException {
+	private void firstPassDirectory(byte[] fnt, int dir, int subTableOffset,
+			int firstFileID, String[] directoryNames, String[] filenames,
+			int[] fileDirectories) throws IOException {
 		// read subtable
-		baseRom.seek(subTableOffset);
+		int pos = subTableOffset;
 		while (true) {
-			int control = baseRom.read();
+			int control = fnt[pos++] & 0xFF;
 			if (control == 0x00) {
 				// done
 				break;
 			}
 			int namelen = control & 0x7F;
-			byte[] rawname = new byte[namelen];
-			baseRom.readFully(rawname);
-			String name = new String(rawname, "US-ASCII");
+			String name = new String(fnt, pos, namelen, "US-ASCII");
+			pos += namelen;
 			if ((control & 0x80) > 0x00) {
 				// sub-directory
-				int subDirectoryID = readFromFile(baseRom, 2);
+				int subDirectoryID = readFromByteArr(fnt, pos, 2);
+				pos += 2;
 				directoryNames[subDirectoryID - 0xF000] = name;
 			} else {
 				int fileID = firstFileID++;
-				filenames.put(fileID, name);
-				fileDirectories.put(fileID, dir);
+				filenames[fileID] = name;
+				fileDirectories[fileID] = dir;
 			}
 		}
 	}
 
 	// Helper methods to get variable-size ints out of files
 
-	public String getTmpFolder() {
-		return tmpFolder;
-	}
-
 	public RandomAccessFile getBaseRom() {
 		return baseRom;
 	}
 
-	public boolean isWritingEnabled() {
-		return writingEnabled;
+	ExtractionStore getStore() {
+		return store;
 	}
 
 	public int readFromByteArr(byte[] data, int offset, int size) {
@@ -1,8 +1,5 @@
 package com.dabomstew.pkrandom.newnds;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
@@ -40,17 +37,28 @@ public class NDSY9Entry {
 	public int static_start, static_end;
 	public int compressed_size;
 	public int compress_flag;
-	public Extracted status = Extracted.NOT;
-	public String extFilename;
-	public byte[] data;
+	private boolean extracted = false;
 	private boolean decompressed_data = false;
+	// only modified overlays are re-encoded and written out at save time
+	private boolean modified = false;
 
 	public NDSY9Entry(NDSRom parent) {
 		this.parent = parent;
 	}
 
+	private String storeKey() {
+		return "overlay_" + overlay_id;
+	}
+
+	// locks the parent like NDSFile does
 	public byte[] getContents() throws IOException {
-		if (this.status == Extracted.NOT) {
+		synchronized (parent) {
+			return readContents();
+		}
+	}
+
+	private byte[] readContents() throws IOException {
+		if (!extracted) {
 			// extract file
 			parent.reopenROM();
 			RandomAccessFile rom = parent.getBaseRom();
@@ -61,73 +69,36 @@ public class NDSY9Entry {
 			if (compress_flag != 0
 					&& this.original_size == this.compressed_size
 					&& this.compressed_size != 0) {
-				buf = new BLZCoder(null).BLZ_DecodePub(buf, "overlay "
-						+ overlay_id);
+				buf = BLZCoder.BLZ_DecodeBytes(buf);
+				if (buf == null) {
+					throw new IOException("Bad compressed data in overlay "
+							+ overlay_id);
+				}
 				decompressed_data = true;
 			}
-			if (parent.isWritingEnabled()) {
-				// make a file
-				String tmpDir = parent.getTmpFolder();
-				String fullPath = String.format("overlay_%04d", overlay_id);
-				String tmpFilename = fullPath.replaceAll("[^A-Za-z0-9_]+", "");
-				this.extFilename = tmpFilename;
-				File tmpFile = new File(tmpDir + extFilename);
-				FileOutputStream fos = new FileOutputStream(tmpFile);
-				fos.write(buf);
-				fos.close();
-				tmpFile.deleteOnExit();
-				this.status = Extracted.TO_FILE;
-				this.data = null;
-				return buf;
-			} else {
-				this.status = Extracted.TO_RAM;
-				this.data = buf;
-				byte[] newcopy = new byte[buf.length];
-				System.arraycopy(buf, 0, newcopy, 0, buf.length);
-				return newcopy;
-			}
-		} else if (this.status == Extracted.TO_RAM) {
-			byte[] newcopy = new byte[this.data.length];
-			System.arraycopy(this.data, 0, newcopy, 0, this.data.length);
-			return newcopy;
+			parent.getStore().put(storeKey(), buf);
+			extracted = true;
+			return buf;
 		} else {
-			String tmpDir = parent.getTmpFolder();
-			FileInputStream fis = new FileInputStream(tmpDir + this.extFilename);
-			byte[] file = new byte[fis.available()];
-			fis.read(file);
-			fis.close();
-			return file;
+			return parent.getStore().get(storeKey());
 		}
 	}
 
 	public void writeOverride(byte[] data) throws IOException {
-		if (status == Extracted.NOT) {
-			// temp extract
-			getContents();
-		}
-		size = data.length;
-		if (status == Extracted.TO_FILE) {
-			String tmpDir = parent.getTmpFolder();
-			FileOutputStream fos = new FileOutputStream(new File(tmpDir
-					+ this.extFilename));
-			fos.write(data);
-			fos.close();
-		} else {
-			if (this.data.length == data.length) {
-				// copy new in
-				System.arraycopy(data, 0, this.data, 0, data.length);
-			} else {
-				// make new array
-				this.data = null;
-				this.data = new byte[data.length];
-				System.arraycopy(data, 0, this.data, 0, data.length);
+		synchronized (parent) {
+			if (!extracted) {
+				// sets decompressed_data
+				readContents();
 			}
+			size = data.length;
+			modified = true;
+			parent.getStore().put(storeKey(), data);
 		}
 	}
 
 	// returns null if no override
 	public byte[] getOverrideContents() throws IOException {
-		if (status == Extracted.NOT) {
+		if (!modified) {
 			return null;
 		}
 		byte[] buf = getContents();
@@ -140,8 +111,4 @@ public class NDSY9Entry {
 		return buf;
 	}
 
-	private enum Extracted {
-		NOT, TO_FILE, TO_RAM;
-	}
-
 }
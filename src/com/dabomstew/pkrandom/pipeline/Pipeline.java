@@ -0,0 +1,397 @@
+package com.dabomstew.pkrandom.pipeline;
+
+/*----------------------------------------------------------------------------*/
+/*--  Pipeline.java - an ordered, timed list of                             --*/
+/*--                  randomization stages.                                 --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import com.dabomstew.pkrandom.RandomSource;
+import com.dabomstew.pkrandom.SplitRandom;
+
+/**
+ * An ordered list of stages, run one after another with each stage timed.
+ * 
+ * Stages can be switched off or moved, but only past stages they don't
+ * conflict with, so the tables each stage sees are the same as in the
+ * original order. Switching off a stage that draws random numbers does
+ * change what later stages draw.
+ * 
+ * runConcurrently gives every stage its own random stream, derived from a
+ * seed and the stage's name (see SplitRandom), and runs stages that share
+ * no game data at the same time. Results then depend only on the seed, not
+ * on timing or on which other stages there are, but they aren't the same
+ * as a sequential run with that seed.
+ */
+public class Pipeline {
+
+	private static final ThreadMXBean threads = ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * Told when a table's contents are final.
+	 */
+	public interface TableListener {
+		void tableFinished(Table table, RandomizationContext context);
+	}
+
+	private List<Stage> stages;
+	private Set<String> disabled = new HashSet<String>();
+	private TableListener tableListener;
+
+	public Pipeline(List<Stage> stages) {
+		this.stages = new ArrayList<Stage>(stages);
+	}
+
+	public List<Stage> getStages() {
+		return Collections.unmodifiableList(stages);
+	}
+
+	public Stage getStage(String name) {
+		return stages.get(indexOf(name));
+	}
+
+	/**
+	 * Don't run the named stage, whatever the settings say.
+	 */
+	public void disable(String name) {
+		indexOf(name);
+		disabled.add(name);
+	}
+
+	/**
+	 * Tell listener about each table as soon as the last stage that writes
+	 * it has run (or been skipped), while the rest of the run carries on.
+	 * LOG and RANDOM aren't reported. In runConcurrently the listener is
+	 * called on the calling thread while other stages may be running, but
+	 * none of them write the finished table.
+	 */
+	public void setTableListener(TableListener listener) {
+		this.tableListener = listener;
+	}
+
+	/**
+	 * Disable every stage that doesn't go into the final state of tables:
+	 * the stages that write them, and the earlier stages those depend on,
+	 * and so on. The storage tables (CODE, TEXT, FREE_SPACE) a stage writes
+	 * don't pull in their earlier writers, since no stage's choices depend
+	 * on what it overwrites there; LOG and RANDOM never count.
+	 * 
+	 * Only meaningful for runs with per-stage random streams. In a normal
+	 * run, skipping a stage shifts the random numbers of every later one.
+	 */
+	public void disableAllExceptFor(Set<Table> tables) {
+		Set<Table> needed = EnumSet.noneOf(Table.class);
+		needed.addAll(tables);
+		for (int i = stages.size() - 1; i >= 0; i--) {
+			Stage stage = stages.get(i);
+			if (!writesAny(stage, needed)) {
+				disabled.add(stage.getName());
+				continue;
+			}
+			needed.addAll(stage.getReads());
+			for (Table table : stage.getWrites()) {
+				if (table != Table.CODE && table != Table.TEXT
+						&& table != Table.FREE_SPACE) {
+					needed.add(table);
+				}
+			}
+			needed.remove(Table.LOG);
+			needed.remove(Table.RANDOM);
+		}
+	}
+
+	private static boolean writesAny(Stage stage, Set<Table> tables) {
+		for (Table table : stage.getWrites()) {
+			if (table != Table.LOG && table != Table.RANDOM
+					&& tables.contains(table)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the named stage could be moved to just before target without
+	 * passing a stage it conflicts with.
+	 */
+	public boolean canMoveBefore(String name, String target) {
+		int from = indexOf(name);
+		int to = indexOf(target);
+		Stage stage = stages.get(from);
+		int lo = Math.min(from + 1, to);
+		int hi = Math.max(from, to);
+		for (int i = lo; i < hi; i++) {
+			if (stages.get(i).conflictsWith(stage)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void moveBefore(String name, String target) {
+		if (name.equals(target)) {
+			return;
+		}
+		if (!canMoveBefore(name, target)) {
+			throw new IllegalArgumentException("can't move " + name
+					+ " before " + target + " without reordering dependencies");
+		}
+		Stage stage = stages.remove(indexOf(name));
+		stages.add(indexOf(target), stage);
+	}
+
+	/**
+	 * Run every stage in order on this thread. If the thread is interrupted,
+	 * no further stages are started and a CancellationException is thrown.
+	 */
+	public List<StageMetrics> run(RandomizationContext context) {
+		return runInOrder(context, false, 0);
+	}
+
+	/**
+	 * Run every stage in order on this thread, each with the random stream
+	 * runConcurrently would give it, so the result is the same as
+	 * runConcurrently's without needing another thread. Interrupts are
+	 * handled as in run.
+	 */
+	public List<StageMetrics> runWithStreams(RandomizationContext context,
+			long seed) {
+		return runInOrder(context, true, seed);
+	}
+
+	private List<StageMetrics> runInOrder(RandomizationContext context,
+			boolean ownStreams, long seed) {
+		List<StageMetrics> metrics = new ArrayList<StageMetrics>(
+				stages.size());
+		int[] lastWriters = lastWriters();
+		for (int i = 0; i < stages.size(); i++) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException("randomization cancelled");
+			}
+			metrics.add(runStage(stages.get(i), context, ownStreams, seed));
+			tablesFinished(i, lastWriters, context);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Run every stage on executor, each with its own random stream, starting
+	 * a stage as soon as every earlier stage it conflicts with is done. If a
+	 * stage throws, nothing new is started and the exception is rethrown
+	 * once the stages already running have finished. Interrupting the
+	 * calling thread does the same with a CancellationException.
+	 * 
+	 * @return metrics for each stage, in pipeline order
+	 */
+	public List<StageMetrics> runConcurrently(
+			final RandomizationContext context, final long seed,
+			ExecutorService executor) {
+		int count = stages.size();
+		List<List<Integer>> dependents = new ArrayList<List<Integer>>(count);
+		int[] waitingOn = new int[count];
+		for (int i = 0; i < count; i++) {
+			dependents.add(new ArrayList<Integer>());
+			for (int j = 0; j < i; j++) {
+				if (stages.get(j).conflictsWithOwnStreams(stages.get(i))) {
+					dependents.get(j).add(i);
+					waitingOn[i]++;
+				}
+			}
+		}
+
+		int[] lastWriters = lastWriters();
+		final StageMetrics[] metrics = new StageMetrics[count];
+		CompletionService<Integer> finished = new ExecutorCompletionService<Integer>(
+				executor);
+		int running = 0;
+		for (int i = 0; i < count; i++) {
+			if (waitingOn[i] == 0) {
+				submit(finished, i, context, seed, metrics);
+				running++;
+			}
+		}
+		Throwable failure = null;
+		boolean interrupted = false;
+		while (running > 0) {
+			int done;
+			try {
+				done = finished.take().get();
+			} catch (ExecutionException ex) {
+				if (failure == null) {
+					failure = ex.getCause();
+				}
+				running--;
+				continue;
+			} catch (InterruptedException ex) {
+				// wait for the running stages so none outlive the call
+				interrupted = true;
+				if (failure == null) {
+					failure = new CancellationException(
+							"randomization cancelled");
+				}
+				continue;
+			}
+			running--;
+			if (failure != null) {
+				continue;
+			}
+			try {
+				tablesFinished(done, lastWriters, context);
+			} catch (RuntimeException ex) {
+				failure = ex;
+				continue;
+			}
+			for (int next : dependents.get(done)) {
+				if (--waitingOn[next] == 0) {
+					submit(finished, next, context, seed, metrics);
+					running++;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new RuntimeException(failure);
+		}
+		List<StageMetrics> result = new ArrayList<StageMetrics>(count);
+		Collections.addAll(result, metrics);
+		return result;
+	}
+
+	// index of the last stage writing each table, or -1
+	private int[] lastWriters() {
+		int[] lastWriters = new int[Table.values().length];
+		Arrays.fill(lastWriters, -1);
+		for (int i = 0; i < stages.size(); i++) {
+			for (Table table : stages.get(i).getWrites()) {
+				lastWriters[table.ordinal()] = i;
+			}
+		}
+		return lastWriters;
+	}
+
+	private void tablesFinished(int index, int[] lastWriters,
+			RandomizationContext context) {
+		if (tableListener == null) {
+			return;
+		}
+		for (Table table : stages.get(index).getWrites()) {
+			if (lastWriters[table.ordinal()] == index && table != Table.LOG
+					&& table != Table.RANDOM) {
+				tableListener.tableFinished(table, context);
+			}
+		}
+	}
+
+	/**
+	 * The seed of a stage's random stream in runConcurrently.
+	 */
+	public static long streamSeed(long seed, String stageName) {
+		return SplitRandom.keyedSeed(seed, stageName);
+	}
+
+	private void submit(CompletionService<Integer> finished, final int index,
+			final RandomizationContext context, final long seed,
+			final StageMetrics[] metrics) {
+		finished.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				metrics[index] = runStage(stages.get(index), context, true,
+						seed);
+				return index;
+			}
+		});
+	}
+
+	private StageMetrics runStage(Stage stage, RandomizationContext context,
+			boolean ownStream, long seed) {
+		boolean enabled = !disabled.contains(stage.getName())
+				&& stage.isEnabled(context);
+		long bytesBefore = allocatedBytes();
+		int callsBefore = RandomSource.callsSinceSeed();
+		int streamCalls = 0;
+		if (ownStream) {
+			RandomSource.beginStream(streamSeed(seed, stage.getName()));
+		}
+		long start = System.nanoTime();
+		try {
+			if (enabled) {
+				stage.run(context);
+			} else {
+				stage.skipped(context);
+			}
+		} finally {
+			if (ownStream) {
+				streamCalls = RandomSource.endStream();
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		long bytesAfter = allocatedBytes();
+		return new StageMetrics(stage.getName(), enabled, nanos,
+				bytesBefore < 0 ? -1 : bytesAfter - bytesBefore,
+				ownStream ? streamCalls : RandomSource.callsSinceSeed()
+						- callsBefore);
+	}
+
+	private int indexOf(String name) {
+		for (int i = 0; i < stages.size(); i++) {
+			if (stages.get(i).getName().equals(name)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("no stage called " + name);
+	}
+
+	private static long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported()
+					&& sunThreads.isThreadAllocatedMemoryEnabled()) {
+				return sunThreads.getThreadAllocatedBytes(Thread
+						.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.dabomstew.pkrandom.pipeline;
+
+/*----------------------------------------------------------------------------*/
+/*--  RandomizationContext.java - state shared by the stages of             --*/
+/*--                              one randomization run.                    --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.log.LogSink;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * Everything the stages of one run share: the ROM, the settings, the log
+ * and the race mode check value.
+ */
+public class RandomizationContext {
+
+	public final RomHandler romHandler;
+	public final Settings settings;
+	public final LogSink log;
+
+	// custom supplement file contents, or null to use the built-in ones
+	public final byte[] trainerClasses;
+	public final byte[] trainerNames;
+	public final byte[] nicknames;
+
+	private int checkValue;
+
+	public RandomizationContext(RomHandler romHandler, Settings settings,
+			LogSink log, byte[] trainerClasses, byte[] trainerNames,
+			byte[] nicknames) {
+		this.romHandler = romHandler;
+		this.settings = settings;
+		this.log = log;
+		this.trainerClasses = trainerClasses;
+		this.trainerNames = trainerNames;
+		this.nicknames = nicknames;
+	}
+
+	public void addToCheckValue(int... values) {
+		for (int value : values) {
+			checkValue = Integer.rotateLeft(checkValue, 3);
+			checkValue ^= value;
+		}
+	}
+
+	public int getCheckValue() {
+		return checkValue;
+	}
+
+}
@@ -0,0 +1,446 @@
+package com.dabomstew.pkrandom.pipeline;
+
+/*----------------------------------------------------------------------------*/
+/*--  SpoilerExport.java - streams the final state of each table            --*/
+/*--                       to a SpoilerWriter.                              --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.List;
+
+import com.dabomstew.pkrandom.log.SpoilerWriter;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
+import com.dabomstew.pkrandom.pokemon.Encounter;
+import com.dabomstew.pkrandom.pokemon.EncounterSet;
+import com.dabomstew.pkrandom.pokemon.Evolution;
+import com.dabomstew.pkrandom.pokemon.IngameTrade;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
+import com.dabomstew.pkrandom.pokemon.Move;
+import com.dabomstew.pkrandom.pokemon.Pokemon;
+import com.dabomstew.pkrandom.pokemon.Trainer;
+import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * Writes the final state of each table to a SpoilerWriter as soon as the
+ * pipeline is done with it (see Pipeline.setTableListener), so a spoiler
+ * streams out while the run goes on instead of being scraped from the text
+ * log afterwards. Record kinds, one per table:
+ * 
+ * <pre>
+ * rom               name, code (first, before any table)
+ * move              per move: number, name, type, power, pp, accuracy
+ * evolution         per evolution: from, to, type, extraInfo
+ * stats             per Pokemon: base stats
+ * expCurve          per Pokemon
+ * abilities         per Pokemon: ability1-3 and their names
+ * types             per Pokemon: primary, secondary
+ * heldItems         per Pokemon: wild held items
+ * starters          pokemon list
+ * starterHeldItems  items list
+ * moveset           per Pokemon: moves list of move and level
+ * trainer           per trainer: index, tag, trainerClass, team list
+ * trainerClassNames names list
+ * trainerNames      names list
+ * catchRate         per Pokemon
+ * encounterSet      per set: index, name, rate, encounters list
+ * staticPokemon     pokemon list
+ * tmMoves           moves list, in TM order
+ * tmCompatibility   per Pokemon: tms list of the TM/HM numbers it learns
+ * tutorMoves        moves list, in tutor order
+ * tutorCompatibility per Pokemon: tutors list
+ * trade             per trade: requested, given, nickname, otName, otId,
+ *                   item
+ * fieldItems        items list; fieldTMs the same for TMs on the ground
+ * </pre>
+ * 
+ * Pokemon, moves and items are written as their number plus a name field
+ * alongside (pokemon and pokemonName, and so on).
+ */
+public class SpoilerExport implements Pipeline.TableListener {
+
+	private final SpoilerWriter out;
+	private boolean started;
+
+	public SpoilerExport(SpoilerWriter out) {
+		this.out = out;
+	}
+
+	@Override
+	public synchronized void tableFinished(Table table,
+			RandomizationContext context) {
+		RomHandler romHandler = context.romHandler;
+		if (!started) {
+			started = true;
+			out.beginRecord("rom");
+			out.field("name", romHandler.getROMName());
+			out.field("code", romHandler.getROMCode());
+			out.endRecord();
+		}
+		switch (table) {
+		case MOVES:
+			writeMoves(romHandler);
+			break;
+		case EVOLUTIONS:
+			writeEvolutions(romHandler);
+			break;
+		case BASE_STATS:
+		case EXP_CURVES:
+		case ABILITIES:
+		case TYPES:
+		case WILD_HELD_ITEMS:
+		case CATCH_RATES:
+			writePokemon(romHandler, table);
+			break;
+		case STARTERS:
+			if (romHandler.canChangeStarters()) {
+				writePokemonList("starters", romHandler.getStarters());
+			}
+			break;
+		case STARTER_HELD_ITEMS:
+			writeItemList(romHandler, "starterHeldItems",
+					romHandler.getStarterHeldItems());
+			break;
+		case MOVESETS:
+			writeMovesets(romHandler);
+			break;
+		case TRAINER_POKEMON:
+			writeTrainers(romHandler);
+			break;
+		case TRAINER_CLASS_NAMES:
+			writeNames("trainerClassNames", romHandler.getTrainerClassNames());
+			break;
+		case TRAINER_NAMES:
+			writeNames("trainerNames", romHandler.getTrainerNames());
+			break;
+		case ENCOUNTERS:
+			writeEncounters(romHandler,
+					context.settings.useTimeBasedEncounters);
+			break;
+		case STATIC_POKEMON:
+			if (romHandler.canChangeStaticPokemon()) {
+				writePokemonList("staticPokemon",
+						romHandler.getStaticPokemon());
+			}
+			break;
+		case TM_MOVES:
+			writeMoveList(romHandler, "tmMoves", romHandler.getTMMoves());
+			break;
+		case TM_COMPATIBILITY:
+			writeCompatibility(romHandler, "tmCompatibility", "tms",
+					romHandler.getTMHMCompatibility());
+			break;
+		case TUTOR_MOVES:
+			if (romHandler.hasMoveTutors()) {
+				writeMoveList(romHandler, "tutorMoves",
+						romHandler.getMoveTutorMoves());
+			}
+			break;
+		case TUTOR_COMPATIBILITY:
+			if (romHandler.hasMoveTutors()) {
+				writeCompatibility(romHandler, "tutorCompatibility",
+						"tutors", romHandler.getMoveTutorCompatibility());
+			}
+			break;
+		case TRADES:
+			writeTrades(romHandler);
+			break;
+		case FIELD_ITEMS:
+			writeItemList(romHandler, "fieldItems",
+					romHandler.getRegularFieldItems());
+			writeItemList(romHandler, "fieldTMs",
+					romHandler.getCurrentFieldTMs());
+			break;
+		default:
+			// nothing a spoiler needs: storage, the pool, names (which go
+			// out with whatever they name), and so on
+			break;
+		}
+	}
+
+	private void writeMoves(RomHandler romHandler) {
+		for (Move move : romHandler.getMoves()) {
+			if (move == null) {
+				continue;
+			}
+			out.beginRecord("move");
+			out.field("number", move.number);
+			out.field("name", move.name);
+			out.field("type", move.type == null ? null : move.type.toString());
+			out.field("power", move.power);
+			out.field("pp", move.pp);
+			out.field("accuracy", (int) Math.round(move.hitratio));
+			out.endRecord();
+		}
+	}
+
+	private void writeEvolutions(RomHandler romHandler) {
+		for (Evolution evo : romHandler.getEvolutions()) {
+			out.beginRecord("evolution");
+			out.field("from", evo.from);
+			out.field("to", evo.to);
+			out.field("type", evo.type.toString());
+			out.field("extraInfo", evo.extraInfo);
+			out.endRecord();
+		}
+	}
+
+	private void writePokemon(RomHandler romHandler, Table table) {
+		String[] itemNames = romHandler.getItemNames();
+		for (Pokemon pkmn : romHandler.getPokemon()) {
+			if (pkmn == null) {
+				continue;
+			}
+			switch (table) {
+			case BASE_STATS:
+				out.beginRecord("stats");
+				pokemonField("pokemon", pkmn);
+				out.field("hp", pkmn.hp);
+				out.field("attack", pkmn.attack);
+				out.field("defense", pkmn.defense);
+				out.field("spatk", pkmn.spatk);
+				out.field("spdef", pkmn.spdef);
+				out.field("speed", pkmn.speed);
+				out.field("special", pkmn.special);
+				break;
+			case EXP_CURVES:
+				out.beginRecord("expCurve");
+				pokemonField("pokemon", pkmn);
+				out.field("curve", pkmn.growthCurve == null ? null
+						: pkmn.growthCurve.toString());
+				break;
+			case ABILITIES:
+				out.beginRecord("abilities");
+				pokemonField("pokemon", pkmn);
+				abilityField(romHandler, "ability1", pkmn.ability1);
+				abilityField(romHandler, "ability2", pkmn.ability2);
+				abilityField(romHandler, "ability3", pkmn.ability3);
+				break;
+			case TYPES:
+				out.beginRecord("types");
+				pokemonField("pokemon", pkmn);
+				out.field("primary", pkmn.primaryType == null ? null
+						: pkmn.primaryType.toString());
+				out.field("secondary", pkmn.secondaryType == null ? null
+						: pkmn.secondaryType.toString());
+				break;
+			case WILD_HELD_ITEMS:
+				out.beginRecord("heldItems");
+				pokemonField("pokemon", pkmn);
+				itemField(itemNames, "guaranteed", pkmn.guaranteedHeldItem);
+				itemField(itemNames, "common", pkmn.commonHeldItem);
+				itemField(itemNames, "rare", pkmn.rareHeldItem);
+				itemField(itemNames, "darkGrass", pkmn.darkGrassHeldItem);
+				break;
+			default:
+				out.beginRecord("catchRate");
+				pokemonField("pokemon", pkmn);
+				out.field("catchRate", pkmn.catchRate);
+				break;
+			}
+			out.endRecord();
+		}
+	}
+
+	private void writeMovesets(RomHandler romHandler) {
+		List<Pokemon> pokemon = romHandler.getPokemon();
+		List<Move> moves = romHandler.getMoves();
+		Learnsets learnsets = romHandler.getMovesLearnt();
+		for (int pk = 1; pk <= learnsets.pokemonCount(); pk++) {
+			if (!learnsets.hasSet(pk) || pk >= pokemon.size()) {
+				continue;
+			}
+			out.beginRecord("moveset");
+			pokemonField("pokemon", pokemon.get(pk));
+			out.beginList("moves");
+			for (int i = 0; i < learnsets.size(pk); i++) {
+				out.beginItem();
+				moveField(moves, "move", learnsets.move(pk, i));
+				out.field("level", learnsets.level(pk, i));
+				out.endItem();
+			}
+			out.endList();
+			out.endRecord();
+		}
+	}
+
+	private void writeTrainers(RomHandler romHandler) {
+		int index = 0;
+		for (Trainer t : romHandler.getTrainers()) {
+			out.beginRecord("trainer");
+			out.field("index", index++);
+			out.field("tag", t.tag);
+			out.field("trainerClass", t.trainerclass);
+			out.beginList("team");
+			for (TrainerPokemon tp : t.pokemon) {
+				out.beginItem();
+				pokemonField("pokemon", tp.pokemon);
+				out.field("level", tp.level);
+				out.endItem();
+			}
+			out.endList();
+			out.endRecord();
+		}
+	}
+
+	private void writeEncounters(RomHandler romHandler, boolean useTime) {
+		int index = 0;
+		for (EncounterSet es : romHandler.getEncounters(useTime)) {
+			out.beginRecord("encounterSet");
+			out.field("index", index++);
+			out.field("name", es.displayName);
+			out.field("rate", es.rate);
+			out.beginList("encounters");
+			for (Encounter enc : es.encounters) {
+				out.beginItem();
+				pokemonField("pokemon", enc.pokemon);
+				out.field("level", enc.level);
+				if (enc.maxLevel > 0) {
+					out.field("maxLevel", enc.maxLevel);
+				}
+				out.endItem();
+			}
+			out.endList();
+			out.endRecord();
+		}
+	}
+
+	private void writeCompatibility(RomHandler romHandler, String kind,
+			String listName, CompatibilityMatrix compat) {
+		List<Pokemon> pokemon = romHandler.getPokemon();
+		int count = Math.min(compat.pokemonCount(), pokemon.size() - 1);
+		for (int pk = 1; pk <= count; pk++) {
+			out.beginRecord(kind);
+			pokemonField("pokemon", pokemon.get(pk));
+			out.beginList(listName);
+			for (int col = 1; col <= compat.columnCount(); col++) {
+				if (compat.get(pk, col)) {
+					out.beginItem();
+					out.field("number", col);
+					out.endItem();
+				}
+			}
+			out.endList();
+			out.endRecord();
+		}
+	}
+
+	private void writeTrades(RomHandler romHandler) {
+		String[] itemNames = romHandler.getItemNames();
+		for (IngameTrade trade : romHandler.getIngameTrades()) {
+			out.beginRecord("trade");
+			out.field("id", trade.id);
+			pokemonField("requested", trade.requestedPokemon);
+			pokemonField("given", trade.givenPokemon);
+			out.field("nickname", trade.nickname);
+			out.field("otName", trade.otName);
+			out.field("otId", trade.otId);
+			itemField(itemNames, "item", trade.item);
+			out.endRecord();
+		}
+	}
+
+	private void writePokemonList(String kind, List<Pokemon> pokemon) {
+		out.beginRecord(kind);
+		out.beginList("pokemon");
+		for (Pokemon pkmn : pokemon) {
+			out.beginItem();
+			pokemonField("pokemon", pkmn);
+			out.endItem();
+		}
+		out.endList();
+		out.endRecord();
+	}
+
+	private void writeMoveList(RomHandler romHandler, String kind,
+			List<Integer> moveNumbers) {
+		List<Move> moves = romHandler.getMoves();
+		out.beginRecord(kind);
+		out.beginList("moves");
+		for (int move : moveNumbers) {
+			out.beginItem();
+			moveField(moves, "move", move);
+			out.endItem();
+		}
+		out.endList();
+		out.endRecord();
+	}
+
+	private void writeItemList(RomHandler romHandler, String kind,
+			List<Integer> items) {
+		String[] itemNames = romHandler.getItemNames();
+		out.beginRecord(kind);
+		out.beginList("items");
+		for (int item : items) {
+			out.beginItem();
+			itemField(itemNames, "item", item);
+			out.endItem();
+		}
+		out.endList();
+		out.endRecord();
+	}
+
+	private void writeNames(String kind, List<String> names) {
+		out.beginRecord(kind);
+		out.beginList("names");
+		for (String name : names) {
+			out.beginItem();
+			out.field("name", name);
+			out.endItem();
+		}
+		out.endList();
+		out.endRecord();
+	}
+
+	private void pokemonField(String name, Pokemon pkmn) {
+		if (pkmn == null) {
+			return;
+		}
+		out.field(name, pkmn.number);
+		out.field(name + "Name", pkmn.name);
+	}
+
+	private void moveField(List<Move> moves, String name, int move) {
+		out.field(name, move);
+		if (move > 0 && move < moves.size() && moves.get(move) != null) {
+			out.field(name + "Name", moves.get(move).name);
+		}
+	}
+
+	private void itemField(String[] itemNames, String name, int item) {
+		if (item == 0) {
+			return;
+		}
+		out.field(name, item);
+		if (item > 0 && item < itemNames.length) {
+			out.field(name + "Name", itemNames[item]);
+		}
+	}
+
+	private void abilityField(RomHandler romHandler, String name, int ability) {
+		if (ability == 0) {
+			return;
+		}
+		out.field(name, ability);
+		out.field(name + "Name", romHandler.abilityName(ability));
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.dabomstew.pkrandom.pipeline;
+
+/*----------------------------------------------------------------------------*/
+/*--  Stage.java - one step of a randomization run.                         --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * One step of a randomization run, along with the tables it reads and
+ * writes. Stages that draw random numbers write RANDOM, so they keep their
+ * relative order and a seed always gives the same result. When each stage
+ * draws from a stream of its own instead, RANDOM stops mattering and stages
+ * only need to be ordered by the game data they share.
+ */
+public abstract class Stage {
+
+	private final String name;
+	private final Set<Table> reads;
+	private final Set<Table> writes;
+
+	protected Stage(String name, Set<Table> reads, Set<Table> writes) {
+		this.name = name;
+		this.reads = Collections.unmodifiableSet(reads);
+		this.writes = Collections.unmodifiableSet(writes);
+	}
+
+	public static Set<Table> tables(Table... tables) {
+		Set<Table> set = EnumSet.noneOf(Table.class);
+		Collections.addAll(set, tables);
+		return set;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Set<Table> getReads() {
+		return reads;
+	}
+
+	public Set<Table> getWrites() {
+		return writes;
+	}
+
+	/**
+	 * Whether the settings ask for this stage at all. Defaults to always.
+	 */
+	public boolean isEnabled(RandomizationContext context) {
+		return true;
+	}
+
+	public abstract void run(RandomizationContext context);
+
+	/**
+	 * Called instead of run() when the stage isn't enabled, for stages that
+	 * still log something (usually "unchanged") in that case.
+	 */
+	public void skipped(RandomizationContext context) {
+		// DEFAULT: nothing
+	}
+
+	/**
+	 * Whether running this and other in the opposite order could change the
+	 * result, i.e. one of them writes something the other reads or writes.
+	 */
+	public boolean conflictsWith(Stage other) {
+		return conflictsWith(other, true);
+	}
+
+	/**
+	 * Same as conflictsWith, but for runs where every stage has its own
+	 * random stream, so sharing RANDOM doesn't count.
+	 */
+	public boolean conflictsWithOwnStreams(Stage other) {
+		return conflictsWith(other, false);
+	}
+
+	private boolean conflictsWith(Stage other, boolean sharedRandom) {
+		return overlaps(writes, other.reads, sharedRandom)
+				|| overlaps(writes, other.writes, sharedRandom)
+				|| overlaps(reads, other.writes, sharedRandom);
+	}
+
+	private static boolean overlaps(Set<Table> a, Set<Table> b,
+			boolean sharedRandom) {
+		for (Table table : a) {
+			if (table == Table.RANDOM && !sharedRandom) {
+				continue;
+			}
+			if (b.contains(table)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.dabomstew.pkrandom.pipeline;
+
+/*----------------------------------------------------------------------------*/
+/*--  StageMetrics.java - time, allocation and RNG use of                   --*/
+/*--                      one stage.                                        --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+/**
+ * What one stage of a run cost: wall time, bytes allocated on the running
+ * thread (-1 where the JVM can't tell us) and random numbers drawn.
+ */
+public class StageMetrics {
+
+	public final String stage;
+	public final boolean ran;
+	public final long nanos;
+	public final long allocatedBytes;
+	public final int rngCalls;
+
+	public StageMetrics(String stage, boolean ran, long nanos,
+			long allocatedBytes, int rngCalls) {
+		this.stage = stage;
+		this.ran = ran;
+		this.nanos = nanos;
+		this.allocatedBytes = allocatedBytes;
+		this.rngCalls = rngCalls;
+	}
+
+	@Override
+	public String toString() {
+		if (!ran) {
+			return String.format("%-26s skipped", stage);
+		}
+		return String.format("%-26s %9.3fms %12s bytes %7d RNG calls",
+				stage, nanos / 1000000.0,
+				allocatedBytes < 0 ? "?" : String.valueOf(allocatedBytes),
+				rngCalls);
+	}
+
+}
@@ -0,0 +1,1123 @@
+package com.dabomstew.pkrandom.pipeline;
+
+/*----------------------------------------------------------------------------*/
+/*--  StandardStages.java - the stages of a normal                          --*/
+/*--                        randomization run.                              --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.dabomstew.pkrandom.CodeTweaks;
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.Settings.AbilitiesMod;
+import com.dabomstew.pkrandom.Settings.BaseStatisticsMod;
+import com.dabomstew.pkrandom.Settings.CompatibilityMod;
+import com.dabomstew.pkrandom.Settings.FieldItemsMod;
+import com.dabomstew.pkrandom.Settings.InGameTradesMod;
+import com.dabomstew.pkrandom.Settings.MovesMod;
+import com.dabomstew.pkrandom.Settings.MovesetsMod;
+import com.dabomstew.pkrandom.Settings.StartersMod;
+import com.dabomstew.pkrandom.Settings.StaticPokemonMod;
+import com.dabomstew.pkrandom.Settings.TrainersMod;
+import com.dabomstew.pkrandom.Settings.TypesMod;
+import com.dabomstew.pkrandom.Settings.WildPokemonMod;
+import com.dabomstew.pkrandom.Settings.WildPokemonRestrictionMod;
+import com.dabomstew.pkrandom.log.LogSink;
+import com.dabomstew.pkrandom.pokemon.Encounter;
+import com.dabomstew.pkrandom.pokemon.EncounterSet;
+import com.dabomstew.pkrandom.pokemon.IngameTrade;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
+import com.dabomstew.pkrandom.pokemon.Move;
+import com.dabomstew.pkrandom.pokemon.Pokemon;
+import com.dabomstew.pkrandom.pokemon.Trainer;
+import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
+import com.dabomstew.pkrandom.romhandlers.Gen1RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen3RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen4RomHandler;
+import com.dabomstew.pkrandom.romhandlers.Gen5RomHandler;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * The stages of a normal randomization run, in the order the randomizer has
+ * always done them in. Each one only does anything if the settings ask for
+ * it, and writes the same log output as before.
+ */
+public class StandardStages {
+
+	private static final String nl = System.getProperty("line.separator");
+
+	public static List<Stage> create() {
+		List<Stage> stages = new ArrayList<Stage>();
+
+		// Always set up the pool here, rather than leaving the handler to do
+		// it the first time some other stage needs it, so stages running side
+		// by side never race to build it.
+		stages.add(new Stage("pokemonPool", Stage.tables(Table.EVOLUTIONS),
+				Stage.tables(Table.POKEMON_POOL, Table.EVOLUTIONS)) {
+			@Override
+			public void run(RandomizationContext ctx) {
+				if (ctx.settings.limitPokemon) {
+					ctx.romHandler
+							.setPokemonPool(ctx.settings.currentRestrictions);
+					ctx.romHandler.removeEvosForPokemonPool();
+				} else {
+					ctx.romHandler.setPokemonPool(null);
+				}
+			}
+		});
+
+		// Update type effectiveness in RBY?
+		stages.add(new Stage("typeEffectiveness", Stage.tables(),
+				Stage.tables(Table.TYPE_CHART, Table.LOG)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler instanceof Gen1RomHandler
+						&& ctx.settings.updateTypeEffectiveness;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.fixTypeEffectiveness();
+			}
+		});
+
+		stages.add(new Stage("moveUpdates", Stage.tables(), Stage.tables(
+				Table.MOVES, Table.LOG)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.updateMoves;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				RomHandler romHandler = ctx.romHandler;
+				romHandler.initMoveUpdates();
+				if (!(romHandler instanceof Gen5RomHandler)) {
+					romHandler.updateMovesToGen5();
+				}
+				if (!ctx.settings.updateMovesLegacy) {
+					romHandler.updateMovesToGen6();
+				}
+				romHandler.printMoveUpdates();
+			}
+		});
+
+		stages.add(new Stage("tradeEvolutions", Stage.tables(
+				Table.POKEMON_POOL, Table.MOVES, Table.MOVESETS,
+				Table.POKEMON_NAMES), Stage.tables(Table.EVOLUTIONS,
+				Table.LOG)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.removeTradeEvolutions;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler
+						.removeTradeEvolutions(ctx.settings.movesetsMod != MovesetsMod.UNCHANGED);
+			}
+		});
+
+		stages.add(new Stage("easierEvolutions", Stage
+				.tables(Table.POKEMON_NAMES), Stage.tables(Table.EVOLUTIONS,
+				Table.LOG)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.makeEvolutionsEasier;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.condenseLevelEvolutions(40, 30);
+			}
+		});
+
+		stages.add(new Stage("lowerCaseNames", Stage.tables(),
+				Stage.tables(Table.POKEMON_NAMES)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return !(ctx.romHandler instanceof Gen5RomHandler)
+						&& !(ctx.romHandler instanceof Gen4RomHandler)
+						&& ctx.settings.lowerCasePokemonNames;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.applyCamelCaseNames();
+			}
+		});
+
+		stages.add(new Stage("nationalDex", Stage.tables(), Stage.tables(
+				Table.CODE, Table.FREE_SPACE, Table.LOG)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler instanceof Gen3RomHandler
+						&& ctx.settings.nationalDexAtStart;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.patchForNationalDex();
+			}
+		});
+
+		stages.add(new Stage("codeTweaks", Stage.tables(), Stage
+				.tables(Table.CODE)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.codeTweaksAvailable() != 0;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				RomHandler romHandler = ctx.romHandler;
+				int ctavailable = romHandler.codeTweaksAvailable();
+				int selected = ctx.settings.currentCodeTweaks;
+				if ((ctavailable & CodeTweaks.BW_EXP_PATCH) > 0
+						&& (selected & CodeTweaks.BW_EXP_PATCH) > 0) {
+					romHandler.applyBWEXPPatch();
+				}
+
+				if ((ctavailable & CodeTweaks.FIX_CRIT_RATE) > 0
+						&& (selected & CodeTweaks.FIX_CRIT_RATE) > 0) {
+					romHandler.applyCritRatePatch();
+				}
+
+				if ((ctavailable & CodeTweaks.NERF_X_ACCURACY) > 0
+						&& (selected & CodeTweaks.NERF_X_ACCURACY) > 0) {
+					romHandler.applyXAccNerfPatch();
+				}
+
+				if ((ctavailable & CodeTweaks.FASTEST_TEXT) > 0
+						&& (selected & CodeTweaks.FASTEST_TEXT) > 0) {
+					romHandler.applyFastestTextPatch();
+				}
+			}
+		});
+
+		stages.add(new Stage("hiddenHollows", Stage.tables(
+				Table.POKEMON_POOL), Stage.tables(Table.HIDDEN_HOLLOWS,
+				Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.hasHiddenHollowPokemon()
+						&& ctx.settings.randomizeHiddenHollows;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.randomizeHiddenHollowPokemon();
+			}
+		});
+
+		// Following evolutions clears carryStats on the shared Evolution
+		// objects as it goes, which types and abilities read back through
+		// getBasicOrNoCopyPokemon, so this writes EVOLUTIONS too.
+		stages.add(new Stage("baseStats", Stage.tables(Table.POKEMON_POOL,
+				Table.EVOLUTIONS), Stage.tables(Table.BASE_STATS,
+				Table.EVOLUTIONS, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.baseStatisticsMod != BaseStatisticsMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				switch (ctx.settings.baseStatisticsMod) {
+				case SHUFFLE:
+					ctx.romHandler.shufflePokemonStats();
+					break;
+				case RANDOM_FOLLOW_EVOLUTIONS:
+					ctx.romHandler.randomizePokemonStats(true);
+					break;
+				case RANDOM_COMPLETELY:
+					ctx.romHandler.randomizePokemonStats(false);
+					break;
+				default:
+					break;
+				}
+			}
+		});
+
+		stages.add(new Stage("expCurves", Stage.tables(Table.EVOLUTIONS),
+				Stage.tables(Table.EXP_CURVES)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.standardizeEXPCurves;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.standardizeEXPCurves();
+			}
+		});
+
+		stages.add(new Stage("abilities", Stage.tables(Table.POKEMON_POOL,
+				Table.EVOLUTIONS), Stage.tables(Table.ABILITIES,
+				Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.abilitiesPerPokemon() > 0
+						&& ctx.settings.abilitiesMod == AbilitiesMod.RANDOMIZE;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler
+						.randomizeAbilities(ctx.settings.allowWonderGuard);
+			}
+		});
+
+		stages.add(new Stage("types", Stage.tables(Table.POKEMON_POOL,
+				Table.EVOLUTIONS), Stage.tables(Table.TYPES, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.typesMod != TypesMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler
+						.randomizePokemonTypes(ctx.settings.typesMod == TypesMod.RANDOM_FOLLOW_EVOLUTIONS);
+			}
+		});
+
+		stages.add(new Stage("wildHeldItems", Stage.tables(Table.POKEMON_POOL),
+				Stage.tables(Table.WILD_HELD_ITEMS, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.randomizeWildPokemonHeldItems;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.randomizeWildHeldItems();
+			}
+		});
+
+		stages.add(new Stage("logPokemon", Stage.tables(Table.BASE_STATS,
+				Table.TYPES, Table.ABILITIES, Table.WILD_HELD_ITEMS,
+				Table.POKEMON_NAMES), Stage.tables(Table.LOG)) {
+			@Override
+			public void run(RandomizationContext ctx) {
+				logPokemon(ctx);
+			}
+		});
+
+		// Applied after type to update the strings correctly based on new
+		// types
+		stages.add(new Stage("starters", Stage.tables(Table.POKEMON_POOL,
+				Table.EVOLUTIONS, Table.TYPES, Table.POKEMON_NAMES), Stage
+				.tables(Table.STARTERS,
+				Table.CODE, Table.TEXT, Table.LOG, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.canChangeStarters()
+						&& ctx.settings.startersMod != StartersMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				randomizeStarters(ctx);
+			}
+		});
+
+		stages.add(new Stage("starterHeldItems", Stage.tables(), Stage
+				.tables(Table.STARTER_HELD_ITEMS, Table.CODE, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.canChangeStarters()
+						&& ctx.settings.randomizeStartersHeldItems
+						&& !(ctx.romHandler instanceof Gen1RomHandler);
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.randomizeStarterHeldItems();
+			}
+		});
+
+		// Gen 1/2 keep evolutions and movesets in one block, rewritten whole
+		stages.add(new Stage("movesets", Stage.tables(Table.POKEMON_POOL,
+				Table.EVOLUTIONS, Table.MOVES, Table.TYPES), Stage.tables(
+				Table.MOVESETS, Table.FREE_SPACE, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.movesetsMod == MovesetsMod.RANDOM_PREFER_SAME_TYPE
+						|| ctx.settings.movesetsMod == MovesetsMod.COMPLETELY_RANDOM;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				boolean forceFourLv1s = ctx.romHandler
+						.supportsFourStartingMoves()
+						&& ctx.settings.startWithFourMoves;
+				ctx.romHandler.randomizeMovesLearnt(
+						ctx.settings.movesetsMod == MovesetsMod.RANDOM_PREFER_SAME_TYPE,
+						ctx.settings.blockBrokenMoves, forceFourLv1s);
+			}
+		});
+
+		stages.add(new Stage("logMovesets", Stage.tables(Table.MOVES,
+				Table.MOVESETS, Table.POKEMON_NAMES), Stage.tables(Table.LOG)) {
+			@Override
+			public void run(RandomizationContext ctx) {
+				logMovesets(ctx);
+			}
+		});
+
+		stages.add(new Stage("trainerPokemon", Stage.tables(
+				Table.POKEMON_POOL, Table.EVOLUTIONS, Table.BASE_STATS,
+				Table.TYPES, Table.ABILITIES, Table.STARTERS), Stage.tables(
+				Table.TRAINER_POKEMON, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.trainersMod != TrainersMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				Settings settings = ctx.settings;
+				if (settings.trainersMod == TrainersMod.RANDOM) {
+					ctx.romHandler.randomizeTrainerPokes(
+							settings.rivalCarriesStarterThroughout,
+							settings.trainersUsePokemonOfSimilarStrength,
+							settings.trainersBlockLegendaries,
+							settings.trainersBlockEarlyWonderGuard);
+				} else {
+					ctx.romHandler.typeThemeTrainerPokes(
+							settings.rivalCarriesStarterThroughout,
+							settings.trainersUsePokemonOfSimilarStrength,
+							settings.trainersMatchTypingDistribution,
+							settings.trainersBlockLegendaries,
+							settings.trainersBlockEarlyWonderGuard);
+				}
+			}
+		});
+
+		// Trainer names & class names randomization
+		// done before trainer log to add proper names
+		// Gen 1/2 keep trainer names in with the trainers' Pokemon
+		stages.add(new Stage("trainerClassNames", Stage
+				.tables(Table.TRAINER_POKEMON), Stage.tables(
+				Table.TRAINER_CLASS_NAMES, Table.TEXT, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.randomizeTrainerClassNames;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.randomizeTrainerClassNames(ctx.trainerClasses);
+			}
+		});
+
+		stages.add(new Stage("trainerNames", Stage
+				.tables(Table.TRAINER_POKEMON), Stage.tables(
+				Table.TRAINER_NAMES, Table.TEXT, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.randomizeTrainerNames;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.randomizeTrainerNames(ctx.trainerNames);
+			}
+		});
+
+		stages.add(new Stage("logTrainers", Stage.tables(
+				Table.TRAINER_POKEMON, Table.TRAINER_CLASS_NAMES,
+				Table.TRAINER_NAMES, Table.POKEMON_NAMES), Stage
+				.tables(Table.LOG)) {
+			@Override
+			public void run(RandomizationContext ctx) {
+				logTrainers(ctx);
+			}
+		});
+
+		// Apply metronome only mode now that trainers have been dealt with
+		stages.add(new Stage("metronomeOnly", Stage.tables(Table.EVOLUTIONS),
+				Stage.tables(Table.MOVES, Table.MOVESETS,
+						Table.TRAINER_POKEMON, Table.TM_MOVES,
+						Table.TUTOR_MOVES, Table.CODE, Table.TEXT,
+						Table.FREE_SPACE, Table.LOG)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.movesetsMod == MovesetsMod.METRONOME_ONLY;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.metronomeOnlyMode();
+			}
+		});
+
+		stages.add(new Stage("catchRates", Stage.tables(), Stage
+				.tables(Table.CATCH_RATES)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.useMinimumCatchRate;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				if (ctx.romHandler instanceof Gen5RomHandler) {
+					ctx.romHandler.minimumCatchRate(50, 25);
+				} else {
+					ctx.romHandler.minimumCatchRate(75, 37);
+				}
+			}
+		});
+
+		// Abilities for the battle trapper ban
+		stages.add(new Stage("wildPokemon", Stage.tables(Table.POKEMON_POOL,
+				Table.BASE_STATS, Table.TYPES, Table.ABILITIES), Stage.tables(
+				Table.ENCOUNTERS, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.wildPokemonMod != WildPokemonMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				randomizeWildPokemon(ctx);
+			}
+		});
+
+		stages.add(new Stage("logWildPokemon", Stage.tables(
+				Table.ENCOUNTERS, Table.POKEMON_NAMES), Stage
+				.tables(Table.LOG)) {
+			@Override
+			public void run(RandomizationContext ctx) {
+				logWildPokemon(ctx);
+			}
+		});
+
+		stages.add(new Stage("staticPokemon", Stage.tables(
+				Table.POKEMON_POOL, Table.BASE_STATS, Table.POKEMON_NAMES),
+				Stage.tables(Table.STATIC_POKEMON, Table.CODE, Table.LOG,
+						Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.canChangeStaticPokemon()
+						&& ctx.settings.staticPokemonMod != StaticPokemonMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				randomizeStaticPokemon(ctx);
+			}
+
+			@Override
+			public void skipped(RandomizationContext ctx) {
+				if (ctx.romHandler.canChangeStaticPokemon()) {
+					ctx.log.println("Static Pokemon: Unchanged." + nl);
+				}
+			}
+		});
+
+		stages.add(new Stage("tmMoves", Stage.tables(Table.MOVES), Stage
+				.tables(Table.TM_MOVES, Table.CODE, Table.TEXT,
+						Table.FREE_SPACE, Table.LOG, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.movesetsMod != MovesetsMod.METRONOME_ONLY
+						&& ctx.settings.tmsMod == MovesMod.RANDOM;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				randomizeTMMoves(ctx);
+			}
+
+			@Override
+			public void skipped(RandomizationContext ctx) {
+				if (ctx.settings.movesetsMod == MovesetsMod.METRONOME_ONLY) {
+					ctx.log.println("TM Moves: Metronome Only." + nl);
+				} else {
+					ctx.log.println("TM Moves: Unchanged." + nl);
+				}
+			}
+		});
+
+		stages.add(new Stage("tmCompatibility", Stage.tables(
+				Table.POKEMON_POOL, Table.TYPES, Table.MOVES, Table.TM_MOVES),
+				Stage.tables(Table.TM_COMPATIBILITY, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.tmsHmsCompatibilityMod != CompatibilityMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				switch (ctx.settings.tmsHmsCompatibilityMod) {
+				case RANDOM_PREFER_TYPE:
+					ctx.romHandler.randomizeTMHMCompatibility(true);
+					break;
+				case COMPLETELY_RANDOM:
+					ctx.romHandler.randomizeTMHMCompatibility(false);
+					break;
+				case FULL:
+					ctx.romHandler.fullTMHMCompatibility();
+					break;
+				default:
+					break;
+				}
+			}
+		});
+
+		stages.add(new Stage("tmCompatibilitySanity", Stage.tables(
+				Table.MOVESETS, Table.TM_MOVES), Stage
+				.tables(Table.TM_COMPATIBILITY)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.tmLevelUpMoveSanity;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.ensureTMCompatSanity();
+			}
+		});
+
+		stages.add(new Stage("tutorMoves", Stage.tables(Table.MOVES), Stage
+				.tables(Table.TUTOR_MOVES, Table.CODE, Table.TEXT,
+						Table.FREE_SPACE, Table.LOG, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.hasMoveTutors()
+						&& ctx.settings.movesetsMod != MovesetsMod.METRONOME_ONLY
+						&& ctx.settings.moveTutorMovesMod == MovesMod.RANDOM;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				randomizeTutorMoves(ctx);
+			}
+
+			@Override
+			public void skipped(RandomizationContext ctx) {
+				if (!ctx.romHandler.hasMoveTutors()) {
+					return;
+				}
+				if (ctx.settings.movesetsMod == MovesetsMod.METRONOME_ONLY) {
+					ctx.log.println("Move Tutor Moves: Metronome Only." + nl);
+				} else {
+					ctx.log.println("Move Tutor Moves: Unchanged." + nl);
+				}
+			}
+		});
+
+		stages.add(new Stage("tutorCompatibility", Stage.tables(
+				Table.POKEMON_POOL, Table.TYPES, Table.MOVES,
+				Table.TUTOR_MOVES), Stage.tables(Table.TUTOR_COMPATIBILITY,
+				Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.hasMoveTutors()
+						&& ctx.settings.moveTutorsCompatibilityMod != CompatibilityMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				switch (ctx.settings.moveTutorsCompatibilityMod) {
+				case RANDOM_PREFER_TYPE:
+					ctx.romHandler.randomizeMoveTutorCompatibility(true);
+					break;
+				case COMPLETELY_RANDOM:
+					ctx.romHandler.randomizeMoveTutorCompatibility(false);
+					break;
+				case FULL:
+					ctx.romHandler.fullMoveTutorCompatibility();
+					break;
+				default:
+					break;
+				}
+			}
+		});
+
+		stages.add(new Stage("tutorCompatibilitySanity", Stage.tables(
+				Table.MOVESETS, Table.TUTOR_MOVES), Stage
+				.tables(Table.TUTOR_COMPATIBILITY)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.romHandler.hasMoveTutors()
+						&& ctx.settings.tutorLevelUpMoveSanity;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.ensureMoveTutorCompatSanity();
+			}
+		});
+
+		stages.add(new Stage("inGameTrades", Stage.tables(
+				Table.POKEMON_POOL, Table.POKEMON_NAMES), Stage.tables(
+				Table.TRADES, Table.TEXT, Table.LOG, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.inGameTradesMod != InGameTradesMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				randomizeInGameTrades(ctx);
+			}
+		});
+
+		stages.add(new Stage("fieldItems", Stage.tables(), Stage.tables(
+				Table.FIELD_ITEMS, Table.CODE, Table.RANDOM)) {
+			@Override
+			public boolean isEnabled(RandomizationContext ctx) {
+				return ctx.settings.fieldItemsMod != FieldItemsMod.UNCHANGED;
+			}
+
+			@Override
+			public void run(RandomizationContext ctx) {
+				if (ctx.settings.fieldItemsMod == FieldItemsMod.SHUFFLE) {
+					ctx.romHandler.shuffleFieldItems();
+				} else {
+					ctx.romHandler.randomizeFieldItems();
+				}
+			}
+		});
+
+		// Gen 1 and 3 pick a random intro Pokemon here
+		stages.add(new Stage("signature", Stage.tables(Table.POKEMON_POOL),
+				Stage.tables(Table.CODE, Table.RANDOM)) {
+			@Override
+			public void run(RandomizationContext ctx) {
+				ctx.romHandler.applySignature();
+			}
+		});
+
+		return stages;
+	}
+
+	private static void logPokemon(RandomizationContext ctx) {
+		RomHandler romHandler = ctx.romHandler;
+		Settings settings = ctx.settings;
+		LogSink log = ctx.log;
+		// Log base stats & types if changed at all
+		if (settings.baseStatisticsMod == BaseStatisticsMod.UNCHANGED
+				&& settings.typesMod == TypesMod.UNCHANGED
+				&& settings.abilitiesMod == AbilitiesMod.UNCHANGED
+				&& !settings.randomizeWildPokemonHeldItems) {
+			log.println("Pokemon base stats & type: unchanged" + nl);
+			return;
+		}
+		List<Pokemon> allPokes = romHandler.getPokemon();
+		String[] itemNames = romHandler.getItemNames();
+		log.println("--Pokemon Base Stats & Types--");
+		if (romHandler instanceof Gen1RomHandler) {
+			log.println("NUM|NAME      |TYPE             |  HP| ATK| DEF| SPE|SPEC");
+			for (Pokemon pkmn : allPokes) {
+				if (pkmn != null) {
+					String typeString = pkmn.primaryType == null ? "NULL"
+							: pkmn.primaryType.toString();
+					if (pkmn.secondaryType != null) {
+						typeString += "/"
+								+ (pkmn.secondaryType == null ? "NULL"
+										: pkmn.secondaryType.toString());
+					}
+					log.printf("%3d|%-10s|%-17s|%4d|%4d|%4d|%4d|%4d" + nl,
+							pkmn.number, pkmn.name, typeString, pkmn.hp,
+							pkmn.attack, pkmn.defense, pkmn.speed,
+							pkmn.special);
+				}
+
+			}
+		} else {
+			log.print("NUM|NAME      |TYPE             |  HP| ATK| DEF| SPE|SATK|SDEF");
+			int abils = romHandler.abilitiesPerPokemon();
+			for (int i = 0; i < abils; i++) {
+				log.print("|ABILITY" + (i + 1) + "    ");
+			}
+			log.print("|ITEM");
+			log.println();
+			for (Pokemon pkmn : allPokes) {
+				if (pkmn != null) {
+					String typeString = pkmn.primaryType.toString();
+					if (pkmn.secondaryType != null) {
+						typeString += "/" + pkmn.secondaryType.toString();
+					}
+					log.printf("%3d|%-10s|%-17s|%4d|%4d|%4d|%4d|%4d|%4d",
+							pkmn.number, pkmn.name, typeString, pkmn.hp,
+							pkmn.attack, pkmn.defense, pkmn.speed,
+							pkmn.spatk, pkmn.spdef);
+					if (abils > 0) {
+						log.printf("|%-12s|%-12s",
+								romHandler.abilityName(pkmn.ability1),
+								romHandler.abilityName(pkmn.ability2));
+						if (abils > 2) {
+							log.printf("|%-12s",
+									romHandler.abilityName(pkmn.ability3));
+						}
+					}
+					log.print("|");
+					if (pkmn.guaranteedHeldItem > 0) {
+						log.print(itemNames[pkmn.guaranteedHeldItem]
+								+ " (100%)");
+					} else {
+						int itemCount = 0;
+						if (pkmn.commonHeldItem > 0) {
+							itemCount++;
+							log.print(itemNames[pkmn.commonHeldItem]
+									+ " (common)");
+						}
+						if (pkmn.rareHeldItem > 0) {
+							if (itemCount > 0) {
+								log.print(", ");
+							}
+							itemCount++;
+							log.print(itemNames[pkmn.rareHeldItem] + " (rare)");
+						}
+						if (pkmn.darkGrassHeldItem > 0) {
+							if (itemCount > 0) {
+								log.print(", ");
+							}
+							itemCount++;
+							log.print(itemNames[pkmn.darkGrassHeldItem]
+									+ " (dark grass only)");
+						}
+					}
+					log.println();
+				}
+
+			}
+		}
+		if (settings.raceMode) {
+			for (Pokemon pkmn : allPokes) {
+				if (pkmn != null) {
+					ctx.addToCheckValue(pkmn.hp, pkmn.attack, pkmn.defense,
+							pkmn.speed, pkmn.spatk, pkmn.spdef, pkmn.ability1,
+							pkmn.ability2, pkmn.ability3);
+				}
+			}
+		}
+		log.println();
+	}
+
+	private static void randomizeStarters(RandomizationContext ctx) {
+		RomHandler romHandler = ctx.romHandler;
+		Settings settings = ctx.settings;
+		LogSink log = ctx.log;
+		List<Pokemon> allPokes = romHandler.getPokemon();
+		if (settings.startersMod == StartersMod.CUSTOM) {
+			log.println("--Custom Starters--");
+			Pokemon pkmn1 = allPokes.get(settings.customStarters[0] + 1);
+			log.println("Set starter 1 to " + pkmn1.name);
+			Pokemon pkmn2 = allPokes.get(settings.customStarters[1] + 1);
+			log.println("Set starter 2 to " + pkmn2.name);
+			if (romHandler.isYellow()) {
+				romHandler.setStarters(Arrays.asList(pkmn1, pkmn2));
+			} else {
+				Pokemon pkmn3 = allPokes.get(settings.customStarters[2] + 1);
+				log.println("Set starter 3 to " + pkmn3.name);
+				romHandler.setStarters(Arrays.asList(pkmn1, pkmn2, pkmn3));
+			}
+			log.println();
+			return;
+		}
+
+		boolean twoEvos = settings.startersMod == StartersMod.RANDOM_WITH_TWO_EVOLUTIONS;
+		log.println(twoEvos ? "--Random 2-Evolution Starters--"
+				: "--Random Starters--");
+		int starterCount = 3;
+		if (romHandler.isYellow()) {
+			starterCount = 2;
+		}
+		List<Pokemon> starters = new ArrayList<Pokemon>();
+		for (int i = 0; i < starterCount; i++) {
+			Pokemon pkmn = twoEvos ? romHandler.random2EvosPokemon()
+					: romHandler.randomPokemon();
+			while (starters.contains(pkmn)) {
+				pkmn = twoEvos ? romHandler.random2EvosPokemon() : romHandler
+						.randomPokemon();
+			}
+			log.println("Set starter " + (i + 1) + " to " + pkmn.name);
+			starters.add(pkmn);
+		}
+		romHandler.setStarters(starters);
+		log.println();
+	}
+
+	private static void logMovesets(RandomizationContext ctx) {
+		RomHandler romHandler = ctx.romHandler;
+		LogSink log = ctx.log;
+		// Show the new movesets if applicable
+		if (ctx.settings.movesetsMod == MovesetsMod.UNCHANGED) {
+			log.println("Pokemon Movesets: Unchanged." + nl);
+		} else if (ctx.settings.movesetsMod == MovesetsMod.METRONOME_ONLY) {
+			log.println("Pokemon Movesets: Metronome Only." + nl);
+		} else if (log.isEnabled()) {
+			log.println("--Pokemon Movesets--");
+			List<Pokemon> allPokes = romHandler.getPokemon();
+			List<Move> moves = romHandler.getMoves();
+			List<String> movesets = new ArrayList<String>();
+			Learnsets moveData = romHandler.getMovesLearnt();
+			for (int pk = 1; pk <= moveData.pokemonCount(); pk++) {
+				if (!moveData.hasSet(pk)) {
+					continue;
+				}
+				Pokemon pkmn = allPokes.get(pk);
+				StringBuilder sb = new StringBuilder();
+				sb.append(String.format("%03d %-10s : ", pkmn.number,
+						pkmn.name));
+				for (int i = 0; i < moveData.size(pk); i++) {
+					if (i > 0) {
+						sb.append(", ");
+					}
+
+					sb.append(moves.get(moveData.move(pk, i)).name
+							+ " at level " + moveData.level(pk, i));
+				}
+				movesets.add(sb.toString());
+			}
+			Collections.sort(movesets);
+			for (String moveset : movesets) {
+				log.println(moveset);
+			}
+			log.println();
+		}
+	}
+
+	private static void logTrainers(RandomizationContext ctx) {
+		LogSink log = ctx.log;
+		List<Trainer> trainers = null;
+		if (ctx.settings.trainersMod == TrainersMod.UNCHANGED) {
+			log.println("Trainers: Unchanged." + nl);
+		} else {
+			log.println("--Trainers Pokemon--");
+			trainers = ctx.romHandler.getTrainers();
+			int idx = 0;
+			for (Trainer t : trainers) {
+				idx++;
+				log.print("#" + idx + " ");
+				if (t.fullDisplayName != null) {
+					log.print("(" + t.fullDisplayName + ")");
+				} else if (t.name != null) {
+					log.print("(" + t.name + ")");
+				}
+				if (t.offset != idx && t.offset != 0) {
+					log.printf("@%X", t.offset);
+				}
+				log.print(" - ");
+				boolean first = true;
+				for (TrainerPokemon tpk : t.pokemon) {
+					if (!first) {
+						log.print(", ");
+					}
+					log.print(tpk.pokemon.name + " Lv" + tpk.level);
+					first = false;
+				}
+				log.println();
+			}
+			log.println();
+		}
+
+		// metronome only mode, which runs after this, leaves trainer levels
+		// and Pokemon alone, so the check value can be taken here
+		if (ctx.settings.raceMode) {
+			if (trainers == null) {
+				trainers = ctx.romHandler.getTrainers();
+			}
+			for (Trainer t : trainers) {
+				for (TrainerPokemon tpk : t.pokemon) {
+					ctx.addToCheckValue(tpk.level, tpk.pokemon.number);
+				}
+			}
+		}
+	}
+
+	private static void randomizeWildPokemon(RandomizationContext ctx) {
+		Settings settings = ctx.settings;
+		boolean catchEmAll = settings.wildPokemonRestrictionMod == WildPokemonRestrictionMod.CATCH_EM_ALL;
+		boolean typeThemed = settings.wildPokemonRestrictionMod == WildPokemonRestrictionMod.TYPE_THEME_AREAS;
+		boolean similarStrength = settings.wildPokemonRestrictionMod == WildPokemonRestrictionMod.SIMILAR_STRENGTH;
+		switch (settings.wildPokemonMod) {
+		case RANDOM:
+			ctx.romHandler.randomEncounters(settings.useTimeBasedEncounters,
+					catchEmAll, typeThemed, similarStrength,
+					settings.blockWildLegendaries);
+			break;
+		case AREA_MAPPING:
+			ctx.romHandler.area1to1Encounters(
+					settings.useTimeBasedEncounters, catchEmAll, typeThemed,
+					similarStrength, settings.blockWildLegendaries);
+			break;
+		case GLOBAL_MAPPING:
+			ctx.romHandler.game1to1Encounters(
+					settings.useTimeBasedEncounters, similarStrength,
+					settings.blockWildLegendaries);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private static void logWildPokemon(RandomizationContext ctx) {
+		LogSink log = ctx.log;
+		boolean useTime = ctx.settings.useTimeBasedEncounters;
+		if (ctx.settings.wildPokemonMod == WildPokemonMod.UNCHANGED) {
+			log.println("Wild Pokemon: Unchanged." + nl);
+		} else {
+			log.println("--Wild Pokemon--");
+			List<EncounterSet> encounters = ctx.romHandler
+					.getEncounters(useTime);
+			int idx = 0;
+			for (EncounterSet es : encounters) {
+				idx++;
+				log.print("Set #" + idx + " ");
+				if (es.displayName != null) {
+					log.print("- " + es.displayName + " ");
+				}
+				log.print("(rate=" + es.rate + ")");
+				log.print(" - ");
+				boolean first = true;
+				for (Encounter e : es.encounters) {
+					if (!first) {
+						log.print(", ");
+					}
+					log.print(e.pokemon.name + " Lv");
+					if (e.maxLevel > 0 && e.maxLevel != e.level) {
+						log.print("s " + e.level + "-" + e.maxLevel);
+					} else {
+						log.print(e.level);
+					}
+					first = false;
+				}
+				log.println();
+			}
+			log.println();
+		}
+
+		if (ctx.settings.raceMode) {
+			List<EncounterSet> encounters = ctx.romHandler
+					.getEncounters(useTime);
+			for (EncounterSet es : encounters) {
+				for (Encounter e : es.encounters) {
+					ctx.addToCheckValue(e.level, e.pokemon.number);
+				}
+			}
+		}
+	}
+
+	private static void randomizeStaticPokemon(RandomizationContext ctx) {
+		RomHandler romHandler = ctx.romHandler;
+		LogSink log = ctx.log;
+		List<Pokemon> oldStatics = romHandler.getStaticPokemon();
+		romHandler
+				.randomizeStaticPokemon(ctx.settings.staticPokemonMod == StaticPokemonMod.RANDOM_MATCHING);
+		List<Pokemon> newStatics = romHandler.getStaticPokemon();
+		log.println("--Static Pokemon--");
+		Map<Pokemon, Integer> seenPokemon = new TreeMap<Pokemon, Integer>();
+		for (int i = 0; i < oldStatics.size(); i++) {
+			Pokemon oldP = oldStatics.get(i);
+			Pokemon newP = newStatics.get(i);
+			if (ctx.settings.raceMode) {
+				ctx.addToCheckValue(newP.number);
+			}
+			log.print(oldP.name);
+			if (seenPokemon.containsKey(oldP)) {
+				int amount = seenPokemon.get(oldP);
+				log.print("(" + (++amount) + ")");
+				seenPokemon.put(oldP, amount);
+			} else {
+				seenPokemon.put(oldP, 1);
+			}
+			log.println(" => " + newP.name);
+		}
+		log.println();
+	}
+
+	private static void randomizeTMMoves(RandomizationContext ctx) {
+		RomHandler romHandler = ctx.romHandler;
+		LogSink log = ctx.log;
+		romHandler.randomizeTMMoves(ctx.settings.blockBrokenMoves,
+				ctx.settings.keepFieldMoveTMs);
+		log.println("--TM Moves--");
+		List<Move> moves = romHandler.getMoves();
+		List<Integer> tmMoves = romHandler.getTMMoves();
+		for (int i = 0; i < tmMoves.size(); i++) {
+			log.printf("TM%02d %s" + nl, i + 1, moves.get(tmMoves.get(i)).name);
+			if (ctx.settings.raceMode) {
+				ctx.addToCheckValue(tmMoves.get(i));
+			}
+		}
+		log.println();
+	}
+
+	private static void randomizeTutorMoves(RandomizationContext ctx) {
+		RomHandler romHandler = ctx.romHandler;
+		LogSink log = ctx.log;
+		List<Integer> oldMtMoves = romHandler.getMoveTutorMoves();
+		romHandler.randomizeMoveTutorMoves(ctx.settings.blockBrokenMoves,
+				ctx.settings.keepFieldMoveTutors);
+		log.println("--Move Tutor Moves--");
+		List<Move> moves = romHandler.getMoves();
+		List<Integer> newMtMoves = romHandler.getMoveTutorMoves();
+		for (int i = 0; i < newMtMoves.size(); i++) {
+			log.printf("%s => %s" + nl, moves.get(oldMtMoves.get(i)).name,
+					moves.get(newMtMoves.get(i)).name);
+			if (ctx.settings.raceMode) {
+				ctx.addToCheckValue(newMtMoves.get(i));
+			}
+		}
+		log.println();
+	}
+
+	private static void randomizeInGameTrades(RandomizationContext ctx) {
+		RomHandler romHandler = ctx.romHandler;
+		Settings settings = ctx.settings;
+		LogSink log = ctx.log;
+		List<IngameTrade> oldTrades = romHandler.getIngameTrades();
+		romHandler
+				.randomizeIngameTrades(
+						settings.inGameTradesMod == InGameTradesMod.RANDOMIZE_GIVEN_AND_REQUESTED,
+						ctx.nicknames, settings.randomizeInGameTradesNicknames,
+						ctx.trainerNames, settings.randomizeInGameTradesOTs,
+						settings.randomizeInGameTradesIVs,
+						settings.randomizeInGameTradesItems);
+
+		log.println("--In-Game Trades--");
+		List<IngameTrade> newTrades = romHandler.getIngameTrades();
+		int size = oldTrades.size();
+		for (int i = 0; i < size; i++) {
+			IngameTrade oldT = oldTrades.get(i);
+			IngameTrade newT = newTrades.get(i);
+			log.printf(
+					"Trading %s for %s the %s has become trading %s for %s the %s"
+							+ nl, oldT.requestedPokemon.name, oldT.nickname,
+					oldT.givenPokemon.name, newT.requestedPokemon.name,
+					newT.nickname, newT.givenPokemon.name);
+		}
+		log.println();
+	}
+
+}
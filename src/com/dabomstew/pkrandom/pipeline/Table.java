@@ -0,0 +1,50 @@
+package com.dabomstew.pkrandom.pipeline;
+
+/*----------------------------------------------------------------------------*/
+/*--  Table.java - data randomization stages read                           --*/
+/*--               and write.                                               --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+/**
+ * The pieces of game data randomization stages read and write. Two stages
+ * that don't write anything the other one touches can run in either order.
+ */
+public enum Table {
+
+	POKEMON_POOL, TYPE_CHART, MOVES, EVOLUTIONS, POKEMON_NAMES, CODE,
+	HIDDEN_HOLLOWS, BASE_STATS, EXP_CURVES, ABILITIES, TYPES,
+	WILD_HELD_ITEMS, CATCH_RATES, STARTERS, STARTER_HELD_ITEMS, MOVESETS,
+	TRAINER_POKEMON, TRAINER_CLASS_NAMES, TRAINER_NAMES, ENCOUNTERS,
+	STATIC_POKEMON, TM_MOVES, TM_COMPATIBILITY, TUTOR_MOVES,
+	TUTOR_COMPATIBILITY, TRADES, FIELD_ITEMS,
+
+	// Storage several kinds of data share: the games' text banks, and the
+	// free space new data gets moved into when it outgrows its old spot.
+	// CODE also covers event scripts and overlays, which hold starters,
+	// static Pokemon, field items and TMs in some games.
+	TEXT, FREE_SPACE,
+
+	// Not game data, but ordered the same way: the verbose log (and race
+	// mode check value), and the shared random number sequence.
+	LOG, RANDOM
+
+}
@@ -0,0 +1,172 @@
+package com.dabomstew.pkrandom.pokemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  CompatibilityMatrix.java - packed TM/HM or move tutor compatibility	--*/
+/*--                            flags for every Pokemon in a game.          --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.Arrays;
+
+import com.dabomstew.pkrandom.RandomSource;
+
+/**
+ * One row of bits per Pokemon (indexed by Pokemon number, row 0 unused) and
+ * one column per TM/HM or move tutor (1-based, same as the old boolean[]
+ * flags). Bit n of a row is column n+1, which is also the bit order the games
+ * store these in, so rows can be copied to and from ROM bytes directly.
+ */
+public class CompatibilityMatrix {
+
+	private int pokemonCount;
+	private int columnCount;
+	private int wordsPerRow;
+	private long[] bits;
+
+	public CompatibilityMatrix(int pokemonCount, int columnCount) {
+		this.pokemonCount = pokemonCount;
+		this.columnCount = columnCount;
+		this.wordsPerRow = Math.max(1, (columnCount + 63) / 64);
+		this.bits = new long[(pokemonCount + 1) * wordsPerRow];
+	}
+
+	public int pokemonCount() {
+		return pokemonCount;
+	}
+
+	public int columnCount() {
+		return columnCount;
+	}
+
+	public boolean get(int pokemon, int column) {
+		int bit = column - 1;
+		return (bits[pokemon * wordsPerRow + (bit >>> 6)] & (1L << bit)) != 0;
+	}
+
+	public void set(int pokemon, int column, boolean value) {
+		int bit = column - 1;
+		int word = pokemon * wordsPerRow + (bit >>> 6);
+		if (value) {
+			bits[word] |= 1L << bit;
+		} else {
+			bits[word] &= ~(1L << bit);
+		}
+	}
+
+	/**
+	 * Read up to 64 consecutive columns starting at firstColumn, as bits
+	 * (firstColumn is the lowest bit). Columns past the end read as 0.
+	 */
+	public long getBits(int pokemon, int firstColumn, int count) {
+		int bit = firstColumn - 1;
+		count = Math.min(count, columnCount - bit);
+		if (count <= 0) {
+			return 0;
+		}
+		int base = pokemon * wordsPerRow;
+		int word = bit >>> 6;
+		int shift = bit & 63;
+		long value = bits[base + word] >>> shift;
+		if (shift != 0 && shift + count > 64) {
+			value |= bits[base + word + 1] << (64 - shift);
+		}
+		return count == 64 ? value : value & ((1L << count) - 1);
+	}
+
+	/**
+	 * Write up to 64 consecutive columns starting at firstColumn. Bits for
+	 * columns past the end are dropped.
+	 */
+	public void setBits(int pokemon, int firstColumn, int count, long value) {
+		int bit = firstColumn - 1;
+		count = Math.min(count, columnCount - bit);
+		if (count <= 0) {
+			return;
+		}
+		long mask = count == 64 ? -1L : (1L << count) - 1;
+		value &= mask;
+		int base = pokemon * wordsPerRow;
+		int word = bit >>> 6;
+		int shift = bit & 63;
+		bits[base + word] = (bits[base + word] & ~(mask << shift))
+				| (value << shift);
+		if (shift != 0 && shift + count > 64) {
+			long highMask = mask >>> (64 - shift);
+			bits[base + word + 1] = (bits[base + word + 1] & ~highMask)
+					| (value >>> (64 - shift));
+		}
+	}
+
+	public int getByte(int pokemon, int byteIndex) {
+		return (int) getBits(pokemon, byteIndex * 8 + 1, 8);
+	}
+
+	/**
+	 * Load a row from byteCount bytes of game data at offset.
+	 */
+	public void decodeRow(int pokemon, byte[] data, int offset, int byteCount) {
+		for (int j = 0; j < byteCount; j++) {
+			setBits(pokemon, j * 8 + 1, 8, data[offset + j] & 0xFF);
+		}
+	}
+
+	/**
+	 * Write a row into byteCount bytes of game data at offset.
+	 */
+	public void encodeRow(int pokemon, byte[] data, int offset, int byteCount) {
+		for (int j = 0; j < byteCount; j++) {
+			data[offset + j] = (byte) getByte(pokemon, j);
+		}
+	}
+
+	/**
+	 * Set every column of every Pokemon to value.
+	 */
+	public void fill(boolean value) {
+		if (!value) {
+			Arrays.fill(bits, 0L);
+			return;
+		}
+		int lastWordBits = columnCount - (wordsPerRow - 1) * 64;
+		long lastWord = lastWordBits == 64 ? -1L : (1L << lastWordBits) - 1;
+		for (int pk = 1; pk <= pokemonCount; pk++) {
+			int base = pk * wordsPerRow;
+			Arrays.fill(bits, base, base + wordsPerRow - 1, -1L);
+			bits[base + wordsPerRow - 1] = lastWord;
+		}
+	}
+
+	/**
+	 * Give a Pokemon column n with chance probabilities[n], rolling one random
+	 * number per column in column order.
+	 */
+	public void randomizeRow(int pokemon, double[] probabilities) {
+		int base = pokemon * wordsPerRow;
+		Arrays.fill(bits, base, base + wordsPerRow, 0L);
+		for (int col = 1; col <= columnCount; col++) {
+			if (RandomSource.random() < probabilities[col]) {
+				int bit = col - 1;
+				bits[base + (bit >>> 6)] |= 1L << bit;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+package com.dabomstew.pkrandom.pokemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  Learnsets.java - the level-up movesets of every Pokemon in a game,    --*/
+/*--                  packed into flat primitive arrays.                    --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.Arrays;
+
+/**
+ * Level-up movesets for every Pokemon, indexed by Pokemon number (Pokemon
+ * without a moveset in the game have none here either). Each set is a run of
+ * (move, level) pairs in one shared short[], found through a per-Pokemon
+ * offset and size, so loading a game's sets doesn't allocate per entry.
+ *
+ * Sets can be edited in place. Growing a set that isn't the last one stored
+ * moves it to the end of the array; the old space is simply left behind.
+ */
+public class Learnsets {
+
+	private int pokemonCount;
+	// start of each Pokemon's set, in entries; -1 if it has no set
+	private int[] offsets;
+	private int[] sizes;
+	// move, level, move, level, ...
+	private short[] data;
+	// entries in use (including ones left behind by moved sets)
+	private int used;
+
+	public Learnsets(int pokemonCount) {
+		this(pokemonCount, pokemonCount * 16);
+	}
+
+	public Learnsets(int pokemonCount, int expectedEntries) {
+		this.pokemonCount = pokemonCount;
+		this.offsets = new int[pokemonCount + 1];
+		this.sizes = new int[pokemonCount + 1];
+		this.data = new short[Math.max(expectedEntries, 16) * 2];
+		Arrays.fill(offsets, -1);
+	}
+
+	public int pokemonCount() {
+		return pokemonCount;
+	}
+
+	public boolean hasSet(int pokemon) {
+		return offsets[pokemon] >= 0;
+	}
+
+	public int size(int pokemon) {
+		return sizes[pokemon];
+	}
+
+	public int move(int pokemon, int index) {
+		return data[(offsets[pokemon] + index) * 2] & 0xFFFF;
+	}
+
+	public int level(int pokemon, int index) {
+		return data[(offsets[pokemon] + index) * 2 + 1] & 0xFFFF;
+	}
+
+	public void setMove(int pokemon, int index, int move) {
+		data[(offsets[pokemon] + index) * 2] = (short) move;
+	}
+
+	public void setLevel(int pokemon, int index, int level) {
+		data[(offsets[pokemon] + index) * 2 + 1] = (short) level;
+	}
+
+	/**
+	 * Give a Pokemon a new, empty set, replacing any it had.
+	 */
+	public void startSet(int pokemon) {
+		offsets[pokemon] = used;
+		sizes[pokemon] = 0;
+	}
+
+	/**
+	 * Append a move to the end of a Pokemon's set, starting one if needed.
+	 */
+	public void add(int pokemon, int move, int level) {
+		if (offsets[pokemon] < 0) {
+			startSet(pokemon);
+		} else if (offsets[pokemon] + sizes[pokemon] != used) {
+			relocate(pokemon, 0);
+		}
+		ensureCapacity(used + 1);
+		data[used * 2] = (short) move;
+		data[used * 2 + 1] = (short) level;
+		used++;
+		sizes[pokemon]++;
+	}
+
+	/**
+	 * Put count copies of (move, level) at the front of a Pokemon's set.
+	 */
+	public void insertAtFront(int pokemon, int count, int move, int level) {
+		if (count <= 0) {
+			return;
+		}
+		if (offsets[pokemon] < 0) {
+			startSet(pokemon);
+		}
+		relocate(pokemon, count);
+		int base = offsets[pokemon] * 2;
+		for (int i = 0; i < count; i++) {
+			data[base + i * 2] = (short) move;
+			data[base + i * 2 + 1] = (short) level;
+		}
+	}
+
+	/**
+	 * Cut a Pokemon's set down to its first newSize moves.
+	 */
+	public void truncate(int pokemon, int newSize) {
+		if (newSize < sizes[pokemon]) {
+			sizes[pokemon] = newSize;
+		}
+	}
+
+	/**
+	 * The level a Pokemon learns move at, or 0 if it doesn't.
+	 */
+	public int levelLearnt(int pokemon, int move) {
+		int size = sizes[pokemon];
+		for (int i = 0; i < size; i++) {
+			if (move(pokemon, i) == move) {
+				return level(pokemon, i);
+			}
+		}
+		return 0;
+	}
+
+	// copy a set to the end of the array with gap free entries in front
+	private void relocate(int pokemon, int gap) {
+		int size = sizes[pokemon];
+		ensureCapacity(used + gap + size);
+		System.arraycopy(data, offsets[pokemon] * 2, data, (used + gap) * 2,
+				size * 2);
+		offsets[pokemon] = used;
+		sizes[pokemon] = size + gap;
+		used += gap + size;
+	}
+
+	private void ensureCapacity(int entries) {
+		if (entries * 2 > data.length) {
+			data = Arrays.copyOf(data,
+					Math.max(entries * 2, data.length + data.length / 2));
+		}
+	}
+
+}
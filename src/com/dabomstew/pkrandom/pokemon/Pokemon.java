@@ -48,9 +48,19 @@ public class Pokemon implements Comparable<Pokemon> {
 	
 	public ExpCurve growthCurve;
 
+	// Cached stat totals, -1 = not yet calculated.
+	// Anything that changes the base stats after loading must call
+	// statsChanged() so these are recalculated.
+	private int cachedBST = -1, cachedBSTForPowerLevels = -1;
+
 	public Pokemon() {
 	}
 
+	public void statsChanged() {
+		cachedBST = -1;
+		cachedBSTForPowerLevels = -1;
+	}
+
 	public void shuffleStats() {
 		List<Integer> stats = Arrays.asList(hp, attack, defense, spatk, spdef,
 				speed);
@@ -66,6 +76,7 @@ public class Pokemon implements Comparable<Pokemon> {
 		
 		// make special the average of spatk and spdef
 		special = (int) Math.ceil((spatk + spdef) / 2.0f);
+		statsChanged();
 
 		// Copy special from a random one of spatk or spdef
 //		if (RandomSource.random() < 0.5) {
@@ -119,6 +130,7 @@ public class Pokemon implements Comparable<Pokemon> {
 			// Fix up special too
 			special = (int) Math.ceil((spatk + spdef) / 2.0f);
 		}
+		statsChanged();
 
 		// Check for something we can't store
 		if (hp > 255 || attack > 255 || defense > 255 || spatk > 255
@@ -149,19 +161,27 @@ public class Pokemon implements Comparable<Pokemon> {
 				Math.max(1, Math.round(evolvesFrom.spdef * bstRatio)));
 
 		special = (int) Math.ceil((spatk + spdef) / 2.0f);
+		statsChanged();
 	}
 
 	public int bst() {
-		return hp + attack + defense + spatk + spdef + speed;
+		if (cachedBST == -1) {
+			cachedBST = hp + attack + defense + spatk + spdef + speed;
+		}
+		return cachedBST;
 	}
 
 	public int bstForPowerLevels() {
-		// Take into account Shedinja's purposefully nerfed HP
-		if (number == 292) {
-			return (attack + defense + spatk + spdef + speed) * 6 / 5;
-		} else {
-			return hp + attack + defense + spatk + spdef + speed;
+		if (cachedBSTForPowerLevels == -1) {
+			// Take into account Shedinja's purposefully nerfed HP
+			if (number == 292) {
+				cachedBSTForPowerLevels = (attack + defense + spatk
+						+ spdef + speed) * 6 / 5;
+			} else {
+				cachedBSTForPowerLevels = bst();
+			}
 		}
+		return cachedBSTForPowerLevels;
 	}
 
 	@Override
@@ -0,0 +1,97 @@
+package com.dabomstew.pkrandom.pokemon;
+
+/*----------------------------------------------------------------------------*/
+/*--  PowerLevelIndex.java - a pool of Pokemon sorted by power level, for	--*/
+/*--                        quick "similar strength" range lookups.       --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A snapshot of a Pokemon pool sorted by bstForPowerLevels().
+ *
+ * Range lookups give back the matching Pokemon in the order they appear in
+ * the original pool, so picking from the result consumes the same random
+ * numbers as a straight scan of the pool would. The snapshot doesn't notice
+ * later stat changes, so build it after stats have been randomized.
+ */
+public class PowerLevelIndex {
+
+	private List<Pokemon> pool;
+	// power levels, sorted ascending
+	private int[] powerLevels;
+	// position in pool of the Pokemon with powerLevels[i]
+	private int[] poolPositions;
+
+	public PowerLevelIndex(List<Pokemon> pool) {
+		this.pool = pool;
+		int size = pool.size();
+		// pack (power level, pool position) into one long so a single
+		// primitive sort orders by power and keeps pool order on ties
+		long[] packed = new long[size];
+		for (int i = 0; i < size; i++) {
+			packed[i] = ((long) pool.get(i).bstForPowerLevels() << 32) | i;
+		}
+		Arrays.sort(packed);
+		powerLevels = new int[size];
+		poolPositions = new int[size];
+		for (int i = 0; i < size; i++) {
+			powerLevels[i] = (int) (packed[i] >>> 32);
+			poolPositions[i] = (int) packed[i];
+		}
+	}
+
+	/**
+	 * Every Pokemon in the pool with a power level between minPower and
+	 * maxPower (both inclusive), in pool order.
+	 */
+	public List<Pokemon> inRange(int minPower, int maxPower) {
+		int start = firstAtLeast(minPower);
+		int end = firstAtLeast(maxPower + 1);
+		if (end <= start) {
+			return new ArrayList<Pokemon>();
+		}
+		int[] positions = Arrays.copyOfRange(poolPositions, start, end);
+		Arrays.sort(positions);
+		List<Pokemon> result = new ArrayList<Pokemon>(positions.length);
+		for (int pos : positions) {
+			result.add(pool.get(pos));
+		}
+		return result;
+	}
+
+	private int firstAtLeast(int power) {
+		int lo = 0, hi = powerLevels.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (powerLevels[mid] < power) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+}
@@ -23,11 +23,14 @@ package com.dabomstew.pkrandom.romhandlers;
 /*--  You should have received a copy of the GNU General Public License     --*/
 /*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
 /*----------------------------------------------------------------------------*/
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
 
+import com.dabomstew.pkrandom.delta.DeltaFormat;
+import com.dabomstew.pkrandom.delta.ImageWriter;
 import com.dabomstew.pkrandom.newnds.NDSRom;
 import com.dabomstew.pkrandom.pokemon.Type;
 
@@ -39,17 +42,13 @@ public abstract class AbstractDSRomHandler extends AbstractRomHandler {
 
 	@Override
 	public boolean detectRom(String filename) {
-		try {
-			FileInputStream fis = new FileInputStream(filename);
-			fis.skip(0x0C);
-			byte[] sig = new byte[4];
-			fis.read(sig);
-			fis.close();
-			String ndsCode = new String(sig, "US-ASCII");
-			return detectNDSRom(ndsCode);
-		} catch (Exception e) {
-			return false;
-		}
+		RomHeader header = RomHeader.read(filename);
+		return header != null && detectRom(header);
+	}
+
+	@Override
+	public boolean detectRom(RomHeader header) {
+		return detectNDSRom(header.gameCode(0x0C));
 	}
 
 	protected abstract boolean detectNDSRom(String ndsCode);
@@ -61,13 +60,38 @@ public abstract class AbstractDSRomHandler extends AbstractRomHandler {
 		}
 		// Load inner rom
 		try {
-			baseRom = new NDSRom(filename);
+			useInnerRom(filename, new NDSRom(filename));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return true;
+	}
+
+	/**
+	 * Load filename from a fresh copy of template, an NDSRom already opened
+	 * on it, so its file tables and ARM9 aren't read and parsed again (see
+	 * NDSRom(NDSRom)). template itself isn't changed, so it can be loaded
+	 * again.
+	 */
+	public boolean loadRom(String filename, NDSRom template) {
+		if (!detectNDSRom(template.getCode())) {
+			return false;
+		}
+		try {
+			useInnerRom(filename, new NDSRom(template));
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		return true;
+	}
+
+	private void useInnerRom(String filename, NDSRom rom) throws IOException {
+		if (baseRom != null) {
+			baseRom.dispose();
+		}
+		baseRom = rom;
 		loadedFN = filename;
 		loadedROM();
-		return true;
 	}
 
 	@Override
@@ -98,17 +122,63 @@ public abstract class AbstractDSRomHandler extends AbstractRomHandler {
 		return true;
 	}
 
+	@Override
+	public DeltaFormat patchFormat() {
+		// files move around when any of them change size
+		return DeltaFormat.BPS;
+	}
+
+	@Override
+	public boolean savePatch(String filename) {
+		savingROM();
+		try {
+			FileOutputStream fos = new FileOutputStream(filename);
+			try {
+				ImageWriter patch = patchFormat().newWriter(loadedFN, fos);
+				try {
+					baseRom.save(patch);
+				} finally {
+					patch.close();
+				}
+			} finally {
+				fos.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return true;
+	}
+
 	public void closeInnerRom() throws IOException {
 		baseRom.closeROM();
 	}
 
+	/**
+	 * Close the ROM and delete everything extracted from it. Call this once
+	 * the handler won't be used again.
+	 */
+	public void disposeInnerRom() throws IOException {
+		if (baseRom != null) {
+			baseRom.dispose();
+			baseRom = null;
+		}
+	}
+
 	@Override
 	public boolean canChangeStaticPokemon() {
 		return false;
 	}
 
 	public NARCContents readNARC(String subpath) throws IOException {
-		Map<String, byte[]> frames = readNitroFrames(subpath);
+		return parseNARC(this.readFile(subpath));
+	}
+
+	/**
+	 * Split a whole NARC file into its contents, without going through the
+	 * ROM. Returns null if the frames a NARC needs are missing.
+	 */
+	public NARCContents parseNARC(byte[] wholeFile) throws IOException {
+		Map<String, byte[]> frames = readNitroFrames(wholeFile);
 		if (!frames.containsKey("FATB") || !frames.containsKey("FNTB")
 				|| !frames.containsKey("FIMG")) {
 			System.err.println("Not a valid narc file");
@@ -157,7 +227,40 @@ public abstract class AbstractDSRomHandler extends AbstractRomHandler {
 		return narc;
 	}
 
+	/**
+	 * Set file index of narc to the first length bytes of data (appending it
+	 * if index is one past the end), unless it already holds exactly those
+	 * bytes. Returns whether the NARC changed.
+	 */
+	protected boolean updateNARCFile(NARCContents narc, int index,
+			byte[] data, int length) {
+		if (index < narc.files.size()) {
+			byte[] old = narc.files.get(index);
+			if (old.length == length) {
+				int i = 0;
+				while (i < length && old[i] == data[i]) {
+					i++;
+				}
+				if (i == length) {
+					return false;
+				}
+			}
+			narc.files.set(index, Arrays.copyOf(data, length));
+		} else {
+			narc.files.add(Arrays.copyOf(data, length));
+			narc.filenames.add(null);
+		}
+		return true;
+	}
+
 	public void writeNARC(String subpath, NARCContents narc) throws IOException {
+		this.writeFile(subpath, buildNARC(narc));
+	}
+
+	/**
+	 * Pack narc into a whole NARC file, the inverse of parseNARC.
+	 */
+	public byte[] buildNARC(NARCContents narc) throws IOException {
 		// Get bytes required for FIMG frame
 		int bytesRequired = 0;
 		for (byte[] file : narc.files) {
@@ -246,13 +349,11 @@ public abstract class AbstractDSRomHandler extends AbstractRomHandler {
 				fntbFrame.length);
 		System.arraycopy(fimgFrame, 0, nitroFile, 16 + fatbFrame.length
 				+ fntbFrame.length, fimgFrame.length);
-		this.writeFile(subpath, nitroFile);
+		return nitroFile;
 	}
 
-	private Map<String, byte[]> readNitroFrames(String filename)
+	private Map<String, byte[]> readNitroFrames(byte[] wholeFile)
 			throws IOException {
-		byte[] wholeFile = this.readFile(filename);
-
 		// Read the number of frames
 		int frameCount = readWord(wholeFile, 0x0E);
 
@@ -344,22 +445,6 @@ public abstract class AbstractDSRomHandler extends AbstractRomHandler {
 		baseRom.writeOverlay(number, data);
 	}
 
-	protected void readByteIntoFlags(byte[] data, boolean[] flags,
-			int offsetIntoFlags, int offsetIntoData) {
-		int thisByte = data[offsetIntoData] & 0xFF;
-		for (int i = 0; i < 8 && (i + offsetIntoFlags) < flags.length; i++) {
-			flags[offsetIntoFlags + i] = ((thisByte >> i) & 0x01) == 0x01;
-		}
-	}
-
-	protected byte getByteFromFlags(boolean[] flags, int offsetIntoFlags) {
-		int thisByte = 0;
-		for (int i = 0; i < 8 && (i + offsetIntoFlags) < flags.length; i++) {
-			thisByte |= (flags[offsetIntoFlags + i] ? 1 : 0) << i;
-		}
-		return (byte) thisByte;
-	}
-
 	protected int typeTMPaletteNumber(Type t) {
 		if (t == null) {
 			return 411; // CURSE
@@ -24,36 +24,58 @@ package com.dabomstew.pkrandom.romhandlers;
 /*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
 /*----------------------------------------------------------------------------*/
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+
+import com.dabomstew.pkrandom.RomFingerprint;
+import com.dabomstew.pkrandom.delta.DeltaFormat;
+import com.dabomstew.pkrandom.delta.ImageWriter;
 
 public abstract class AbstractGBRomHandler extends AbstractRomHandler {
 
 	protected byte[] rom;
 	private String loadedFN;
+	// the file as read, to find what's changed for a patch
+	private RomFingerprint loadedFingerprint;
 
 	public boolean detectRom(String filename) {
-		if (new File(filename).length() > 32 * 1024 * 1024) {
-			return false;
-		}
-		byte[] loaded = loadFile(filename);
-		if (loaded.length == 0) {
-			// nope
-			return false;
-		}
-		return detectRom(loaded);
+		RomHeader header = RomHeader.read(filename);
+		return header != null && detectRom(header);
 	}
 
 	@Override
 	public boolean loadRom(String filename) {
-		byte[] loaded = loadFile(filename);
+		return loadRom(filename, loadFile(filename), false);
+	}
+
+	/**
+	 * Load a ROM from a copy of filename's contents that's already in memory.
+	 * contents itself isn't changed, so it can be loaded again.
+	 */
+	public boolean loadRom(String filename, byte[] contents) {
+		return loadRom(filename, contents, true);
+	}
+
+	private boolean loadRom(String filename, byte[] loaded, boolean copy) {
+		if (loaded.length == 0) {
+			return false;
+		}
+		// taken before detecting, which can touch up the header, so a patch
+		// carries those bytes too
+		RomFingerprint fingerprint = new RomFingerprint(loaded);
+		if (copy) {
+			loaded = loaded.clone();
+		}
 		if (!detectRom(loaded)) {
 			return false;
 		}
 		this.rom = loaded;
 		loadedFN = filename;
+		loadedFingerprint = fingerprint;
 		loadedRom();
 		return true;
 	}
@@ -76,6 +98,33 @@ public abstract class AbstractGBRomHandler extends AbstractRomHandler {
 		}
 	}
 
+	@Override
+	public DeltaFormat patchFormat() {
+		return DeltaFormat.forImage(rom.length, false);
+	}
+
+	@Override
+	public boolean savePatch(String filename) {
+		savingRom();
+		try {
+			FileOutputStream fos = new FileOutputStream(filename);
+			try {
+				ImageWriter patch = patchFormat().newWriter(loadedFN, fos);
+				try {
+					loadedFingerprint.writeChanges(rom, loadedFN, patch);
+					patch.finish(rom.length);
+				} finally {
+					patch.close();
+				}
+			} finally {
+				fos.close();
+			}
+			return true;
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
 	@Override
 	public boolean canChangeStaticPokemon() {
 		return true;
@@ -89,32 +138,22 @@ public abstract class AbstractGBRomHandler extends AbstractRomHandler {
 
 	private byte[] loadFile(String filename) {
 		try {
+			if (new File(filename).length() > 32 * 1024 * 1024) {
+				return new byte[0];
+			}
 			FileInputStream fis = new FileInputStream(filename);
-			byte[] file = new byte[fis.available()];
-			fis.read(file);
-			fis.close();
-			return file;
+			try {
+				byte[] file = new byte[(int) fis.getChannel().size()];
+				new DataInputStream(fis).readFully(file);
+				return file;
+			} finally {
+				fis.close();
+			}
 		} catch (IOException ex) {
 			return new byte[0];
 		}
 	}
 
-	protected void readByteIntoFlags(boolean[] flags, int offsetIntoFlags,
-			int offsetIntoROM) {
-		int thisByte = rom[offsetIntoROM] & 0xFF;
-		for (int i = 0; i < 8 && (i + offsetIntoFlags) < flags.length; i++) {
-			flags[offsetIntoFlags + i] = ((thisByte >> i) & 0x01) == 0x01;
-		}
-	}
-
-	protected byte getByteFromFlags(boolean[] flags, int offsetIntoFlags) {
-		int thisByte = 0;
-		for (int i = 0; i < 8 && (i + offsetIntoFlags) < flags.length; i++) {
-			thisByte |= (flags[offsetIntoFlags + i] ? 1 : 0) << i;
-		}
-		return (byte) thisByte;
-	}
-	
 	protected int readWord(int offset) {
 		return readWord(rom, offset);
 	}
@@ -46,7 +46,9 @@ import javax.swing.JOptionPane;
 import com.dabomstew.pkrandom.FileFunctions;
 import com.dabomstew.pkrandom.RandomSource;
 import com.dabomstew.pkrandom.RomFunctions;
-import com.dabomstew.pkrandom.gui.RandomizerGUI;
+import com.dabomstew.pkrandom.log.LogSink;
+import com.dabomstew.pkrandom.log.NullLogSink;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
 import com.dabomstew.pkrandom.pokemon.Encounter;
 import com.dabomstew.pkrandom.pokemon.EncounterSet;
 import com.dabomstew.pkrandom.pokemon.Evolution;
@@ -54,9 +56,10 @@ import com.dabomstew.pkrandom.pokemon.ExpCurve;
 import com.dabomstew.pkrandom.pokemon.GenRestrictions;
 import com.dabomstew.pkrandom.pokemon.IngameTrade;
 import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
 import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
+import com.dabomstew.pkrandom.pokemon.PowerLevelIndex;
 import com.dabomstew.pkrandom.pokemon.Trainer;
 import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
 import com.dabomstew.pkrandom.pokemon.Type;
@@ -70,6 +73,9 @@ public abstract class AbstractRomHandler implements RomHandler {
 	private boolean restrictionsSet;
 	protected List<Pokemon> mainPokemonList;
 	protected List<Pokemon> noLegendaryList, onlyLegendaryList;
+	// this handler's own, so handlers randomizing side by side in one
+	// process don't write into each other's logs
+	private LogSink logSink = new NullLogSink();
 
 	/* Constructor */
 
@@ -569,10 +575,12 @@ public abstract class AbstractRomHandler implements RomHandler {
 			List<Pokemon> allowedPokes = noLegendaries ? new ArrayList<Pokemon>(
 					noLegendaryList) : new ArrayList<Pokemon>(mainPokemonList);
 			allowedPokes.removeAll(banned);
+			PowerLevelIndex allowedIndex = new PowerLevelIndex(allowedPokes);
 			for (EncounterSet area : currentEncounters) {
 				for (Encounter enc : area.encounters) {
 					enc.pokemon = pickWildPowerLvlReplacement(allowedPokes,
-							enc.pokemon, area.battleTrappersBanned, false, null);
+							allowedIndex, enc.pokemon,
+							area.battleTrappersBanned, false, null);
 				}
 			}
 		} else {
@@ -708,6 +716,7 @@ public abstract class AbstractRomHandler implements RomHandler {
 			List<Pokemon> allowedPokes = noLegendaries ? new ArrayList<Pokemon>(
 					noLegendaryList) : new ArrayList<Pokemon>(mainPokemonList);
 			allowedPokes.removeAll(banned);
+			PowerLevelIndex allowedIndex = new PowerLevelIndex(allowedPokes);
 			for (EncounterSet area : currentEncounters) {
 				// Poke-set
 				Set<Pokemon> inArea = pokemonInArea(area);
@@ -716,7 +725,8 @@ public abstract class AbstractRomHandler implements RomHandler {
 				List<Pokemon> usedPks = new ArrayList<Pokemon>();
 				for (Pokemon areaPk : inArea) {
 					Pokemon picked = pickWildPowerLvlReplacement(allowedPokes,
-							areaPk, area.battleTrappersBanned, false, usedPks);
+							allowedIndex, areaPk, area.battleTrappersBanned,
+							false, usedPks);
 					areaMap.put(areaPk, picked);
 					usedPks.add(picked);
 				}
@@ -780,8 +790,9 @@ public abstract class AbstractRomHandler implements RomHandler {
 					pickedRightP = remainingRight.get(0);
 				} else {
 					// pick on power level with the current one blocked
+					// (remainingRight shrinks every pick, so no index)
 					pickedRightP = pickWildPowerLvlReplacement(remainingRight,
-							pickedLeftP, false, true, null);
+							null, pickedLeftP, false, true, null);
 				}
 				remainingRight.remove(pickedRightP);
 				translateMap.put(pickedLeftP, pickedRightP);
@@ -835,7 +846,7 @@ public abstract class AbstractRomHandler implements RomHandler {
 					}
 					if (usePowerLevels) {
 						enc.pokemon = pickWildPowerLvlReplacement(pickable,
-								enc.pokemon, true, false, null);
+								null, enc.pokemon, true, false, null);
 					} else {
 						while (hasBattleTrappingAbility(enc.pokemon)) {
 							int picked = RandomSource.nextInt(pickable.size());
@@ -857,8 +868,10 @@ public abstract class AbstractRomHandler implements RomHandler {
 		checkPokemonRestrictions();
 		List<Trainer> currentTrainers = this.getTrainers();
 		cachedReplacementLists = new TreeMap<Type, List<Pokemon>>();
+		cachedReplacementIndexes = new TreeMap<Type, PowerLevelIndex>();
 		cachedAllList = noLegendaries ? new ArrayList<Pokemon>(noLegendaryList)
 				: new ArrayList<Pokemon>(mainPokemonList);
+		cachedAllIndex = null;
 
 		// Fully random is easy enough - randomize then worry about rival
 		// carrying starter at the end
@@ -890,8 +903,10 @@ public abstract class AbstractRomHandler implements RomHandler {
 		checkPokemonRestrictions();
 		List<Trainer> currentTrainers = this.getTrainers();
 		cachedReplacementLists = new TreeMap<Type, List<Pokemon>>();
+		cachedReplacementIndexes = new TreeMap<Type, PowerLevelIndex>();
 		cachedAllList = noLegendaries ? new ArrayList<Pokemon>(noLegendaryList)
 				: new ArrayList<Pokemon>(mainPokemonList);
+		cachedAllIndex = null;
 		typeWeightings = new TreeMap<Type, Integer>();
 		totalTypeWeighting = 0;
 
@@ -999,48 +1014,46 @@ public abstract class AbstractRomHandler implements RomHandler {
 	public void randomizeMovesLearnt(boolean typeThemed, boolean noBroken,
 			boolean forceFourStartingMoves) {
 		// Get current sets
-		Map<Pokemon, List<MoveLearnt>> movesets = this.getMovesLearnt();
+		Learnsets movesets = this.getMovesLearnt();
+		List<Pokemon> allPokes = this.getPokemon();
 		List<Integer> hms = this.getHMMoves();
 		@SuppressWarnings("unchecked")
 		List<Integer> banned = noBroken ? this.getGameBreakingMoves()
 				: Collections.EMPTY_LIST;
-		for (Pokemon pkmn : movesets.keySet()) {
+		for (int pk = 1; pk <= movesets.pokemonCount(); pk++) {
+			if (!movesets.hasSet(pk)) {
+				continue;
+			}
+			Pokemon pkmn = allPokes.get(pk);
 			Set<Integer> learnt = new TreeSet<Integer>();
-			List<MoveLearnt> moves = movesets.get(pkmn);
 			// 4 starting moves?
 			if (forceFourStartingMoves) {
 				int lv1count = 0;
-				for (MoveLearnt ml : moves) {
-					if (ml.level == 1) {
+				for (int i = 0; i < movesets.size(pk); i++) {
+					if (movesets.level(pk, i) == 1) {
 						lv1count++;
 					}
 				}
-				if (lv1count < 4) {
-					for (int i = 0; i < 4 - lv1count; i++) {
-						MoveLearnt fakeLv1 = new MoveLearnt();
-						fakeLv1.level = 1;
-						fakeLv1.move = 0;
-						moves.add(0, fakeLv1);
-					}
-				}
+				movesets.insertAtFront(pk, 4 - lv1count, 0, 1);
 			}
+			int size = movesets.size(pk);
 			// Last level 1 move should be replaced with a damaging one
 			int damagingMove = pickMove(pkmn, typeThemed, true, hms);
 			// Find last lv1 move
 			// lv1index ends up as the index of the first non-lv1 move
 			int lv1index = 0;
-			while (lv1index < moves.size() && moves.get(lv1index).level == 1) {
+			while (lv1index < size && movesets.level(pk, lv1index) == 1) {
 				lv1index++;
 			}
 			// last lv1 move is 1 before lv1index
 			if (lv1index == 0) {
 				lv1index++;
 			}
-			moves.get(lv1index - 1).move = damagingMove;
-			moves.get(lv1index - 1).level = 1; // just in case
+			movesets.setMove(pk, lv1index - 1, damagingMove);
+			movesets.setLevel(pk, lv1index - 1, 1); // just in case
 			learnt.add(damagingMove);
 			// Rest replace with randoms
-			for (int i = 0; i < moves.size(); i++) {
+			for (int i = 0; i < size; i++) {
 				if (i == (lv1index - 1)) {
 					continue;
 				}
@@ -1048,7 +1061,7 @@ public abstract class AbstractRomHandler implements RomHandler {
 				while (learnt.contains(picked) || banned.contains(picked)) {
 					picked = pickMove(pkmn, typeThemed, false, hms);
 				}
-				moves.get(i).move = picked;
+				movesets.setMove(pk, i, picked);
 				learnt.add(picked);
 			}
 		}
@@ -1063,16 +1076,13 @@ public abstract class AbstractRomHandler implements RomHandler {
 	public void metronomeOnlyMode() {
 
 		// movesets
-		Map<Pokemon, List<MoveLearnt>> movesets = this.getMovesLearnt();
+		Learnsets movesets = this.getMovesLearnt();
 
-		MoveLearnt metronomeML = new MoveLearnt();
-		metronomeML.level = 1;
-		metronomeML.move = METRONOME_MOVE;
-
-		for (List<MoveLearnt> ms : movesets.values()) {
-			if (ms != null && ms.size() > 0) {
-				ms.clear();
-				ms.add(metronomeML);
+		for (int pk = 1; pk <= movesets.pokemonCount(); pk++) {
+			if (movesets.size(pk) > 0) {
+				movesets.truncate(pk, 1);
+				movesets.setMove(pk, 0, METRONOME_MOVE);
+				movesets.setLevel(pk, 0, 1);
 			}
 		}
 
@@ -1209,34 +1219,10 @@ public abstract class AbstractRomHandler implements RomHandler {
 		// Get current compatibility
 		// new: increase HM chances if required early on
 		List<Integer> requiredEarlyOn = this.getEarlyRequiredHMMoves();
-		Map<Pokemon, boolean[]> compat = this.getTMHMCompatibility();
+		CompatibilityMatrix compat = this.getTMHMCompatibility();
 		List<Integer> tmHMs = new ArrayList<Integer>(this.getTMMoves());
 		tmHMs.addAll(this.getHMMoves());
-		List<Move> moveData = this.getMoves();
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compat.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			for (int i = 1; i <= tmHMs.size(); i++) {
-				int move = tmHMs.get(i - 1);
-				Move mv = moveData.get(move);
-				double probability = 0.5;
-				if (preferSameType) {
-					if (pkmn.primaryType.equals(mv.type)
-							|| (pkmn.secondaryType != null && pkmn.secondaryType
-									.equals(mv.type))) {
-						probability = 0.9;
-					} else if (mv.type != null && mv.type.equals(Type.NORMAL)) {
-						probability = 0.5;
-					} else {
-						probability = 0.25;
-					}
-				}
-				if (requiredEarlyOn.contains(move)) {
-					probability = Math.min(1.0, probability * 1.5);
-				}
-				flags[i] = (RandomSource.random() < probability);
-			}
-		}
+		randomizeCompatibility(compat, tmHMs, preferSameType, requiredEarlyOn);
 
 		// Set the new compatibility
 		this.setTMHMCompatibility(compat);
@@ -1244,13 +1230,8 @@ public abstract class AbstractRomHandler implements RomHandler {
 
 	@Override
 	public void fullTMHMCompatibility() {
-		Map<Pokemon, boolean[]> compat = this.getTMHMCompatibility();
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compat.entrySet()) {
-			boolean[] flags = compatEntry.getValue();
-			for (int i = 1; i < flags.length; i++) {
-				flags[i] = true;
-			}
-		}
+		CompatibilityMatrix compat = this.getTMHMCompatibility();
+		compat.fill(true);
 		this.setTMHMCompatibility(compat);
 	}
 
@@ -1259,19 +1240,8 @@ public abstract class AbstractRomHandler implements RomHandler {
 		// if a pokemon learns a move in its moveset
 		// and there is a TM of that move, make sure
 		// that TM can be learned.
-		Map<Pokemon, boolean[]> compat = this.getTMHMCompatibility();
-		Map<Pokemon, List<MoveLearnt>> movesets = this.getMovesLearnt();
-		List<Integer> tmMoves = this.getTMMoves();
-		for (Pokemon pkmn : compat.keySet()) {
-			List<MoveLearnt> moveset = movesets.get(pkmn);
-			boolean[] pkmnCompat = compat.get(pkmn);
-			for (MoveLearnt ml : moveset) {
-				if (tmMoves.contains(ml.move)) {
-					int tmIndex = tmMoves.indexOf(ml.move);
-					pkmnCompat[tmIndex + 1] = true;
-				}
-			}
-		}
+		CompatibilityMatrix compat = this.getTMHMCompatibility();
+		ensureCompatibilityForMovesets(compat, this.getTMMoves());
 		this.setTMHMCompatibility(compat);
 	}
 
@@ -1320,30 +1290,9 @@ public abstract class AbstractRomHandler implements RomHandler {
 			return;
 		}
 		// Get current compatibility
-		Map<Pokemon, boolean[]> compat = this.getMoveTutorCompatibility();
+		CompatibilityMatrix compat = this.getMoveTutorCompatibility();
 		List<Integer> mts = this.getMoveTutorMoves();
-		List<Move> moveData = this.getMoves();
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compat.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			for (int i = 1; i <= mts.size(); i++) {
-				int move = mts.get(i - 1);
-				Move mv = moveData.get(move);
-				double probability = 0.5;
-				if (preferSameType) {
-					if (pkmn.primaryType.equals(mv.type)
-							|| (pkmn.secondaryType != null && pkmn.secondaryType
-									.equals(mv.type))) {
-						probability = 0.9;
-					} else if (mv.type != null && mv.type.equals(Type.NORMAL)) {
-						probability = 0.5;
-					} else {
-						probability = 0.25;
-					}
-				}
-				flags[i] = (RandomSource.random() < probability);
-			}
-		}
+		randomizeCompatibility(compat, mts, preferSameType, null);
 
 		// Set the new compatibility
 		this.setMoveTutorCompatibility(compat);
@@ -1355,13 +1304,8 @@ public abstract class AbstractRomHandler implements RomHandler {
 		if (!this.hasMoveTutors()) {
 			return;
 		}
-		Map<Pokemon, boolean[]> compat = this.getMoveTutorCompatibility();
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compat.entrySet()) {
-			boolean[] flags = compatEntry.getValue();
-			for (int i = 1; i < flags.length; i++) {
-				flags[i] = true;
-			}
-		}
+		CompatibilityMatrix compat = this.getMoveTutorCompatibility();
+		compat.fill(true);
 		this.setMoveTutorCompatibility(compat);
 	}
 
@@ -1373,21 +1317,69 @@ public abstract class AbstractRomHandler implements RomHandler {
 		// if a pokemon learns a move in its moveset
 		// and there is a tutor of that move, make sure
 		// that tutor can be learned.
-		Map<Pokemon, boolean[]> compat = this.getMoveTutorCompatibility();
-		Map<Pokemon, List<MoveLearnt>> movesets = this.getMovesLearnt();
-		List<Integer> mtMoves = this.getMoveTutorMoves();
-		for (Pokemon pkmn : compat.keySet()) {
-			List<MoveLearnt> moveset = movesets.get(pkmn);
-			boolean[] pkmnCompat = compat.get(pkmn);
-			for (MoveLearnt ml : moveset) {
-				if (mtMoves.contains(ml.move)) {
-					int mtIndex = mtMoves.indexOf(ml.move);
-					pkmnCompat[mtIndex + 1] = true;
+		CompatibilityMatrix compat = this.getMoveTutorCompatibility();
+		ensureCompatibilityForMovesets(compat, this.getMoveTutorMoves());
+		this.setMoveTutorCompatibility(compat);
+
+	}
+
+	private void randomizeCompatibility(CompatibilityMatrix compat,
+			List<Integer> columnMoves, boolean preferSameType,
+			List<Integer> boostedMoves) {
+		List<Pokemon> allPokes = this.getPokemon();
+		List<Move> moveData = this.getMoves();
+		int columns = compat.columnCount();
+		// Move types and boosts only depend on the column, work them out once
+		Type[] columnTypes = new Type[columns + 1];
+		boolean[] columnBoosted = new boolean[columns + 1];
+		for (int i = 1; i <= columns; i++) {
+			int move = columnMoves.get(i - 1);
+			columnTypes[i] = moveData.get(move).type;
+			columnBoosted[i] = boostedMoves != null
+					&& boostedMoves.contains(move);
+		}
+		double[] probabilities = new double[columns + 1];
+		for (int pk = 1; pk <= compat.pokemonCount(); pk++) {
+			Pokemon pkmn = allPokes.get(pk);
+			for (int i = 1; i <= columns; i++) {
+				Type moveType = columnTypes[i];
+				double probability = 0.5;
+				if (preferSameType) {
+					if (pkmn.primaryType.equals(moveType)
+							|| (pkmn.secondaryType != null && pkmn.secondaryType
+									.equals(moveType))) {
+						probability = 0.9;
+					} else if (moveType != null && moveType.equals(Type.NORMAL)) {
+						probability = 0.5;
+					} else {
+						probability = 0.25;
+					}
+				}
+				if (columnBoosted[i]) {
+					probability = Math.min(1.0, probability * 1.5);
 				}
+				probabilities[i] = probability;
 			}
+			compat.randomizeRow(pk, probabilities);
 		}
-		this.setMoveTutorCompatibility(compat);
+	}
 
+	private void ensureCompatibilityForMovesets(CompatibilityMatrix compat,
+			List<Integer> columnMoves) {
+		// move number => first column teaching it, 0 for none
+		int[] columnOfMove = new int[this.getMoves().size()];
+		for (int i = columnMoves.size(); i >= 1; i--) {
+			columnOfMove[columnMoves.get(i - 1)] = i;
+		}
+		Learnsets movesets = this.getMovesLearnt();
+		for (int pk = 1; pk <= compat.pokemonCount(); pk++) {
+			for (int i = 0; i < movesets.size(pk); i++) {
+				int column = columnOfMove[movesets.move(pk, i)];
+				if (column > 0) {
+					compat.set(pk, column, true);
+				}
+			}
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -1952,9 +1944,9 @@ public abstract class AbstractRomHandler implements RomHandler {
 		log("--Condensed Level Evolutions--");
 		List<Pokemon> allPokes = this.getPokemon();
 		for (Evolution evol : changedEvos) {
-			log(String.format("%s now evolves into %s at minimum level %d",
+			log("%s now evolves into %s at minimum level %d",
 					allPokes.get(evol.from).name, allPokes.get(evol.to).name,
-					evol.extraInfo));
+					evol.extraInfo);
 		}
 		logBlankLine();
 
@@ -2751,7 +2743,9 @@ public abstract class AbstractRomHandler implements RomHandler {
 	}
 
 	private Map<Type, List<Pokemon>> cachedReplacementLists;
+	private Map<Type, PowerLevelIndex> cachedReplacementIndexes;
 	private List<Pokemon> cachedAllList;
+	private PowerLevelIndex cachedAllIndex;
 
 	private Pokemon pickReplacement(Pokemon current, boolean usePowerLevels,
 			Type type, boolean noLegendaries, boolean wonderGuardAllowed) {
@@ -2765,6 +2759,20 @@ public abstract class AbstractRomHandler implements RomHandler {
 		}
 
 		if (usePowerLevels) {
+			// Sorted view of pickFrom for the range lookups below
+			PowerLevelIndex pickIndex;
+			if (type == null) {
+				if (cachedAllIndex == null) {
+					cachedAllIndex = new PowerLevelIndex(cachedAllList);
+				}
+				pickIndex = cachedAllIndex;
+			} else {
+				if (!cachedReplacementIndexes.containsKey(type)) {
+					cachedReplacementIndexes.put(type, new PowerLevelIndex(
+							pickFrom));
+				}
+				pickIndex = cachedReplacementIndexes.get(type);
+			}
 			// start with within 10% and add 5% either direction till we find
 			// something
 			int currentBST = current.bstForPowerLevels();
@@ -2774,11 +2782,10 @@ public abstract class AbstractRomHandler implements RomHandler {
 			int expandRounds = 0;
 			while (canPick.isEmpty()
 					|| (canPick.size() < 3 && expandRounds < 2)) {
-				for (Pokemon pk : pickFrom) {
-					if (pk.bstForPowerLevels() >= minTarget
-							&& pk.bstForPowerLevels() <= maxTarget
-							&& (wonderGuardAllowed || (pk.ability1 != WONDER_GUARD_INDEX
-									&& pk.ability2 != WONDER_GUARD_INDEX && pk.ability3 != WONDER_GUARD_INDEX))) {
+				for (Pokemon pk : pickIndex.inRange(minTarget, maxTarget)) {
+					if (wonderGuardAllowed
+							|| (pk.ability1 != WONDER_GUARD_INDEX
+									&& pk.ability2 != WONDER_GUARD_INDEX && pk.ability3 != WONDER_GUARD_INDEX)) {
 						canPick.add(pk);
 					}
 				}
@@ -2804,7 +2811,8 @@ public abstract class AbstractRomHandler implements RomHandler {
 	}
 
 	private Pokemon pickWildPowerLvlReplacement(List<Pokemon> pokemonPool,
-			Pokemon current, boolean banBattleTrappers, boolean banSamePokemon,
+			PowerLevelIndex poolIndex, Pokemon current,
+			boolean banBattleTrappers, boolean banSamePokemon,
 			List<Pokemon> usedUp) {
 		// start with within 10% and add 5% either direction till we find
 		// something
@@ -2814,10 +2822,9 @@ public abstract class AbstractRomHandler implements RomHandler {
 		List<Pokemon> canPick = new ArrayList<Pokemon>();
 		int expandRounds = 0;
 		while (canPick.isEmpty() || (canPick.size() < 3 && expandRounds < 2)) {
-			for (Pokemon pk : pokemonPool) {
-				if (pk.bstForPowerLevels() >= minTarget
-						&& pk.bstForPowerLevels() <= maxTarget
-						&& (!banBattleTrappers || !hasBattleTrappingAbility(pk))
+			for (Pokemon pk : powerLevelRange(pokemonPool, poolIndex,
+					minTarget, maxTarget)) {
+				if ((!banBattleTrappers || !hasBattleTrappingAbility(pk))
 						&& (!banSamePokemon || pk != current)
 						&& (usedUp == null || !usedUp.contains(pk))) {
 					canPick.add(pk);
@@ -2830,6 +2837,22 @@ public abstract class AbstractRomHandler implements RomHandler {
 		return canPick.get(RandomSource.nextInt(canPick.size()));
 	}
 
+	private List<Pokemon> powerLevelRange(List<Pokemon> pokemonPool,
+			PowerLevelIndex poolIndex, int minTarget, int maxTarget) {
+		if (poolIndex != null) {
+			return poolIndex.inRange(minTarget, maxTarget);
+		}
+		// No index for this pool, just scan it
+		List<Pokemon> inRange = new ArrayList<Pokemon>();
+		for (Pokemon pk : pokemonPool) {
+			int power = pk.bstForPowerLevels();
+			if (power >= minTarget && power <= maxTarget) {
+				inRange.add(pk);
+			}
+		}
+		return inRange;
+	}
+
 	private static final List<Integer> battleTrappingAbilities = Arrays.asList(
 			23, 42, 71);
 
@@ -2839,42 +2862,52 @@ public abstract class AbstractRomHandler implements RomHandler {
 				|| battleTrappingAbilities.contains(pokemon.ability3);
 	}
 
+	@Override
+	public void setLogSink(LogSink log) {
+		this.logSink = log == null ? new NullLogSink() : log;
+	}
+
 	/* Helper methods used by subclasses */
 
 	protected void log(String log) {
-		RandomizerGUI.verboseLog.println(log);
+		logSink.println(log);
+	}
+
+	protected void log(String format, Object... args) {
+		logSink.printf(format, args);
+		logSink.println();
 	}
 
 	protected void logBlankLine() {
-		RandomizerGUI.verboseLog.println();
+		logSink.println();
 	}
 
 	protected void logEvoChangeLevel(String pkFrom, String pkTo, int level) {
-		RandomizerGUI.verboseLog.printf("Made %s evolve into %s at level %d",
+		logSink.printf("Made %s evolve into %s at level %d",
 				pkFrom, pkTo, level);
-		RandomizerGUI.verboseLog.println();
+		logSink.println();
 	}
 
 	protected void logEvoChangeLevelWithItem(String pkFrom, String pkTo,
 			String itemName) {
-		RandomizerGUI.verboseLog.printf(
+		logSink.printf(
 				"Made %s evolve into %s by leveling up holding %s", pkFrom,
 				pkTo, itemName);
-		RandomizerGUI.verboseLog.println();
+		logSink.println();
 	}
 
 	protected void logEvoChangeStone(String pkFrom, String pkTo, String itemName) {
-		RandomizerGUI.verboseLog.printf("Made %s evolve into %s using a %s",
+		logSink.printf("Made %s evolve into %s using a %s",
 				pkFrom, pkTo, itemName);
-		RandomizerGUI.verboseLog.println();
+		logSink.println();
 	}
 
 	protected void logEvoChangeLevelWithPkmn(String pkFrom, String pkTo,
 			String otherRequired) {
-		RandomizerGUI.verboseLog.printf(
+		logSink.printf(
 				"Made %s evolve into %s by leveling up with %s in the party",
 				pkFrom, pkTo, otherRequired);
-		RandomizerGUI.verboseLog.println();
+		logSink.println();
 	}
 
 	/* Default Implementations */
@@ -39,6 +39,8 @@ import java.util.TreeMap;
 import com.dabomstew.pkrandom.CodeTweaks;
 import com.dabomstew.pkrandom.FileFunctions;
 import com.dabomstew.pkrandom.RomFunctions;
+import com.dabomstew.pkrandom.delta.PatchResult;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
 import com.dabomstew.pkrandom.pokemon.Encounter;
 import com.dabomstew.pkrandom.pokemon.EncounterSet;
 import com.dabomstew.pkrandom.pokemon.Evolution;
@@ -46,8 +48,8 @@ import com.dabomstew.pkrandom.pokemon.EvolutionType;
 import com.dabomstew.pkrandom.pokemon.ExpCurve;
 import com.dabomstew.pkrandom.pokemon.IngameTrade;
 import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
 import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
 import com.dabomstew.pkrandom.pokemon.Trainer;
 import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
@@ -160,21 +162,26 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 		private Map<Type, Integer> extraTypeReverse = new HashMap<Type, Integer>();
 
 		private int getValue(String key) {
-			if (!entries.containsKey(key)) {
-				entries.put(key, 0);
-			}
-			return entries.get(key);
+			Integer value = entries.get(key);
+			return value == null ? 0 : value;
 		}
 	}
 
-	private static List<RomEntry> roms;
 	private static ItemList allowedItems;
 
 	static {
-		loadROMInfo();
 		setupAllowedItems();
 	}
 
+	// Only parsed the first time a ROM could be one of ours
+	private static class RomInfo {
+		private static final List<RomEntry> roms = loadROMInfo();
+	}
+
+	private static List<RomEntry> roms() {
+		return RomInfo.roms;
+	}
+
 	private static class GameCornerPokemon {
 		private int[] offsets;
 
@@ -189,157 +196,134 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 		private String template;
 	}
 
-	private static void loadROMInfo() {
-		roms = new ArrayList<RomEntry>();
-		RomEntry current = null;
-		try {
-			Scanner sc = new Scanner(
-					FileFunctions.openConfig("gen1_offsets.ini"), "UTF-8");
-			while (sc.hasNextLine()) {
-				String q = sc.nextLine().trim();
-				if (q.contains("//")) {
-					q = q.substring(0, q.indexOf("//")).trim();
-				}
-				if (!q.isEmpty()) {
-					if (q.startsWith("[") && q.endsWith("]")) {
-						// New rom
-						current = new RomEntry();
-						current.name = q.substring(1, q.length() - 1);
-						roms.add(current);
-					} else {
-						String[] r = q.split("=", 2);
-						if (r.length == 1) {
-							System.err.println("invalid entry " + q);
-							continue;
+	private static List<RomEntry> loadROMInfo() {
+		List<RomEntry> roms = new ArrayList<RomEntry>();
+		for (OffsetsDatabase.Section section : OffsetsDatabase
+				.load("gen1_offsets.ini")) {
+			// New rom
+			RomEntry current = new RomEntry();
+			current.name = section.name;
+			roms.add(current);
+			for (String[] r : section.entries) {
+				// Static Pokemon?
+				if (r[0].equals("StaticPokemonGameCorner[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						int[] offs = new int[offsets.length];
+						int c = 0;
+						for (String off : offsets) {
+							offs[c++] = parseRIInt(off);
 						}
-						if (r[1].endsWith("\r\n")) {
-							r[1] = r[1].substring(0, r[1].length() - 2);
-						}
-						r[1] = r[1].trim();
-						r[0] = r[0].trim();
-						// Static Pokemon?
-						if (r[0].equals("StaticPokemonGameCorner[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								int[] offs = new int[offsets.length];
-								int c = 0;
-								for (String off : offsets) {
-									offs[c++] = parseRIInt(off);
-								}
-								GameCornerPokemon gc = new GameCornerPokemon();
-								gc.offsets = offs;
-								current.staticPokemonGameCorner.add(gc);
-							} else {
-								int offs = parseRIInt(r[1]);
-								GameCornerPokemon gc = new GameCornerPokemon();
-								gc.offsets = new int[] { offs };
-								current.staticPokemonGameCorner.add(gc);
-							}
-						} else if (r[0].equals("TMText[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] parts = r[1].substring(1,
-										r[1].length() - 1).split(",", 3);
-								TMTextEntry tte = new TMTextEntry();
-								tte.number = parseRIInt(parts[0]);
-								tte.offset = parseRIInt(parts[1]);
-								tte.template = parts[2];
-								current.tmTexts.add(tte);
-							}
-						} else if (r[0].equals("Game")) {
-							current.romName = r[1];
-						} else if (r[0].equals("Version")) {
-							current.version = parseRIInt(r[1]);
-						} else if (r[0].equals("NonJapanese")) {
-							current.nonJapanese = parseRIInt(r[1]);
-						} else if (r[0].equals("Type")) {
-							if (r[1].equalsIgnoreCase("Yellow")) {
-								current.isYellow = true;
+						GameCornerPokemon gc = new GameCornerPokemon();
+						gc.offsets = offs;
+						current.staticPokemonGameCorner.add(gc);
+					} else {
+						int offs = parseRIInt(r[1]);
+						GameCornerPokemon gc = new GameCornerPokemon();
+						gc.offsets = new int[] { offs };
+						current.staticPokemonGameCorner.add(gc);
+					}
+				} else if (r[0].equals("TMText[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] parts = r[1].substring(1,
+								r[1].length() - 1).split(",", 3);
+						TMTextEntry tte = new TMTextEntry();
+						tte.number = parseRIInt(parts[0]);
+						tte.offset = parseRIInt(parts[1]);
+						tte.template = parts[2];
+						current.tmTexts.add(tte);
+					}
+				} else if (r[0].equals("Game")) {
+					current.romName = r[1];
+				} else if (r[0].equals("Version")) {
+					current.version = parseRIInt(r[1]);
+				} else if (r[0].equals("NonJapanese")) {
+					current.nonJapanese = parseRIInt(r[1]);
+				} else if (r[0].equals("Type")) {
+					if (r[1].equalsIgnoreCase("Yellow")) {
+						current.isYellow = true;
+					} else {
+						current.isYellow = false;
+					}
+				} else if (r[0].equals("ExtraTableFile")) {
+					current.extraTableFile = r[1];
+				} else if (r[0].equals("CRCInHeader")) {
+					current.crcInHeader = parseRIInt(r[1]);
+				} else if (r[0].endsWith("Tweak")) {
+					current.codeTweaks.put(r[0], r[1]);
+				} else if (r[0].equals("ExtraTypes")) {
+					// remove the containers
+					r[1] = r[1].substring(1, r[1].length() - 1);
+					String[] parts = r[1].split(",");
+					for (String part : parts) {
+						String[] iParts = part.split("=");
+						int typeId = Integer.parseInt(iParts[0], 16);
+						String typeName = iParts[1].trim();
+						Type theType = Type.valueOf(typeName);
+						current.extraTypeLookup.put(typeId, theType);
+						current.extraTypeReverse.put(theType, typeId);
+					}
+				} else if (r[0].equals("CopyFrom")) {
+					for (RomEntry otherEntry : roms) {
+						if (r[1].equalsIgnoreCase(otherEntry.name)) {
+							// copy from here
+							boolean cSP = (current
+									.getValue("CopyStaticPokemon") == 1);
+							boolean cTT = (current
+									.getValue("CopyTMText") == 1);
+							current.arrayEntries
+									.putAll(otherEntry.arrayEntries);
+							current.entries.putAll(otherEntry.entries);
+							if (cSP) {
+								current.staticPokemonSingle
+										.addAll(otherEntry.staticPokemonSingle);
+								current.staticPokemonGameCorner
+										.addAll(otherEntry.staticPokemonGameCorner);
+								current.entries.put(
+										"StaticPokemonSupport", 1);
 							} else {
-								current.isYellow = false;
+								current.entries.put(
+										"StaticPokemonSupport", 0);
 							}
-						} else if (r[0].equals("ExtraTableFile")) {
-							current.extraTableFile = r[1];
-						} else if (r[0].equals("CRCInHeader")) {
-							current.crcInHeader = parseRIInt(r[1]);
-						} else if (r[0].endsWith("Tweak")) {
-							current.codeTweaks.put(r[0], r[1]);
-						} else if (r[0].equals("ExtraTypes")) {
-							// remove the containers
-							r[1] = r[1].substring(1, r[1].length() - 1);
-							String[] parts = r[1].split(",");
-							for (String part : parts) {
-								String[] iParts = part.split("=");
-								int typeId = Integer.parseInt(iParts[0], 16);
-								String typeName = iParts[1].trim();
-								Type theType = Type.valueOf(typeName);
-								current.extraTypeLookup.put(typeId, theType);
-								current.extraTypeReverse.put(theType, typeId);
-							}
-						} else if (r[0].equals("CopyFrom")) {
-							for (RomEntry otherEntry : roms) {
-								if (r[1].equalsIgnoreCase(otherEntry.name)) {
-									// copy from here
-									boolean cSP = (current
-											.getValue("CopyStaticPokemon") == 1);
-									boolean cTT = (current
-											.getValue("CopyTMText") == 1);
-									current.arrayEntries
-											.putAll(otherEntry.arrayEntries);
-									current.entries.putAll(otherEntry.entries);
-									if (cSP) {
-										current.staticPokemonSingle
-												.addAll(otherEntry.staticPokemonSingle);
-										current.staticPokemonGameCorner
-												.addAll(otherEntry.staticPokemonGameCorner);
-										current.entries.put(
-												"StaticPokemonSupport", 1);
-									} else {
-										current.entries.put(
-												"StaticPokemonSupport", 0);
-									}
-									if (cTT) {
-										current.tmTexts
-												.addAll(otherEntry.tmTexts);
-									}
-									current.extraTableFile = otherEntry.extraTableFile;
-								}
+							if (cTT) {
+								current.tmTexts
+										.addAll(otherEntry.tmTexts);
 							}
+							current.extraTableFile = otherEntry.extraTableFile;
+						}
+					}
+				} else {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						if (offsets.length == 1
+								&& offsets[0].trim().isEmpty()) {
+							current.arrayEntries.put(r[0], new int[0]);
 						} else {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								if (offsets.length == 1
-										&& offsets[0].trim().isEmpty()) {
-									current.arrayEntries.put(r[0], new int[0]);
-								} else {
-									int[] offs = new int[offsets.length];
-									int c = 0;
-									for (String off : offsets) {
-										offs[c++] = parseRIInt(off);
-									}
-									if (r[0].startsWith("StaticPokemon")) {
-										for (int off : offs) {
-											current.staticPokemonSingle
-													.add(off);
-										}
-									} else {
-										current.arrayEntries.put(r[0], offs);
-									}
+							int[] offs = new int[offsets.length];
+							int c = 0;
+							for (String off : offsets) {
+								offs[c++] = parseRIInt(off);
+							}
+							if (r[0].startsWith("StaticPokemon")) {
+								for (int off : offs) {
+									current.staticPokemonSingle
+											.add(off);
 								}
-
 							} else {
-								int offs = parseRIInt(r[1]);
-								current.entries.put(r[0], offs);
+								current.arrayEntries.put(r[0], offs);
 							}
 						}
+
+					} else {
+						int offs = parseRIInt(r[1]);
+						current.entries.put(r[0], offs);
 					}
 				}
 			}
-			sc.close();
-		} catch (FileNotFoundException e) {
 		}
-
+		return roms;
 	}
 
 	private static void setupAllowedItems() {
@@ -394,6 +378,14 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 		return checkRomEntry(rom) != null; // so it's OK if it's a valid ROM
 	}
 
+	@Override
+	public boolean detectRom(RomHeader header) {
+		if (header.fileLength < 524288 || header.fileLength > 2097152) {
+			return false; // size check
+		}
+		return checkRomEntry(header.data) != null;
+	}
+
 	@Override
 	public void loadedRom() {
 		romEntry = checkRomEntry(this.rom);
@@ -439,7 +431,7 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 		int nonjap = rom[0x14A] & 0xFF;
 		// Check for specific CRC first
 		int crcInHeader = ((rom[0x14E] & 0xFF) << 8) | (rom[0x14F] & 0xFF);
-		for (RomEntry re : roms) {
+		for (RomEntry re : roms()) {
 			if (romSig(rom, re.romName) && re.version == version
 					&& re.nonJapanese == nonjap
 					&& re.crcInHeader == crcInHeader) {
@@ -447,7 +439,7 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 			}
 		}
 		// Now check for non-specific-CRC entries
-		for (RomEntry re : roms) {
+		for (RomEntry re : roms()) {
 			if (romSig(rom, re.romName) && re.version == version
 					&& re.nonJapanese == nonjap && re.crcInHeader == -1) {
 				return re;
@@ -1548,8 +1540,8 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, List<MoveLearnt>> getMovesLearnt() {
-		Map<Pokemon, List<MoveLearnt>> movesets = new TreeMap<Pokemon, List<MoveLearnt>>();
+	public Learnsets getMovesLearnt() {
+		Learnsets movesets = new Learnsets(pokedexCount);
 		int pointersOffset = romEntry.getValue("PokemonMovesetsTableOffset");
 		int pokeStatsOffset = romEntry.getValue("PokemonStatsOffset");
 		int pkmnCount = romEntry.getValue("InternalPokemonCount");
@@ -1557,7 +1549,7 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 			int pointer = readWord(pointersOffset + (i - 1) * 2);
 			int realPointer = calculateOffset(bankOf(pointersOffset), pointer);
 			if (pokeRBYToNumTable[i] != 0) {
-				Pokemon pkmn = pokes[pokeRBYToNumTable[i]];
+				int pokeNum = pokeRBYToNumTable[i];
 				int statsOffset = 0;
 				if (pokeRBYToNumTable[i] == 151 && !romEntry.isYellow) {
 					// Mewww
@@ -1566,13 +1558,11 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 					statsOffset = (pokeRBYToNumTable[i] - 1) * 0x1C
 							+ pokeStatsOffset;
 				}
-				List<MoveLearnt> ourMoves = new ArrayList<MoveLearnt>();
+				movesets.startSet(pokeNum);
 				for (int delta = 0x0F; delta < 0x13; delta++) {
 					if (rom[statsOffset + delta] != 0x00) {
-						MoveLearnt learnt = new MoveLearnt();
-						learnt.level = 1;
-						learnt.move = moveRomToNumTable[rom[statsOffset + delta] & 0xFF];
-						ourMoves.add(learnt);
+						movesets.add(pokeNum,
+								moveRomToNumTable[rom[statsOffset + delta] & 0xFF], 1);
 					}
 				}
 				// Skip over evolution data
@@ -1587,20 +1577,18 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 				}
 				realPointer++;
 				while (rom[realPointer] != 0) {
-					MoveLearnt learnt = new MoveLearnt();
-					learnt.level = rom[realPointer] & 0xFF;
-					learnt.move = moveRomToNumTable[rom[realPointer + 1] & 0xFF];
-					ourMoves.add(learnt);
+					movesets.add(pokeNum,
+							moveRomToNumTable[rom[realPointer + 1] & 0xFF],
+							rom[realPointer] & 0xFF);
 					realPointer += 2;
 				}
-				movesets.put(pkmn, ourMoves);
 			}
 		}
 		return movesets;
 	}
 
 	@Override
-	public void setMovesLearnt(Map<Pokemon, List<MoveLearnt>> movesets) {
+	public void setMovesLearnt(Learnsets movesets) {
 		// new method for moves learnt
 		writeEvosAndMovesLearnt(null, movesets);
 	}
@@ -1721,34 +1709,24 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getTMHMCompatibility() {
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
+	public CompatibilityMatrix getTMHMCompatibility() {
+		CompatibilityMatrix compat = new CompatibilityMatrix(pokedexCount, 55);
 		int pokeStatsOffset = romEntry.getValue("PokemonStatsOffset");
 		for (int i = 1; i <= pokedexCount; i++) {
 			int baseStatsOffset = (romEntry.isYellow || i != 151) ? (pokeStatsOffset + (i - 1) * 0x1C)
 					: romEntry.getValue("MewStatsOffset");
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[56];
-			for (int j = 0; j < 7; j++) {
-				readByteIntoFlags(flags, j * 8 + 1, baseStatsOffset + 0x14 + j);
-			}
-			compat.put(pkmn, flags);
+			compat.decodeRow(i, rom, baseStatsOffset + 0x14, 7);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setTMHMCompatibility(Map<Pokemon, boolean[]> compatData) {
+	public void setTMHMCompatibility(CompatibilityMatrix compatData) {
 		int pokeStatsOffset = romEntry.getValue("PokemonStatsOffset");
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			int baseStatsOffset = (romEntry.isYellow || pkmn.number != 151) ? (pokeStatsOffset + (pkmn.number - 1) * 0x1C)
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
+			int baseStatsOffset = (romEntry.isYellow || i != 151) ? (pokeStatsOffset + (i - 1) * 0x1C)
 					: romEntry.getValue("MewStatsOffset");
-			for (int j = 0; j < 7; j++) {
-				rom[baseStatsOffset + 0x14 + j] = getByteFromFlags(flags,
-						j * 8 + 1);
-			}
+			compatData.encodeRow(i, rom, baseStatsOffset + 0x14, 7);
 		}
 	}
 
@@ -1768,12 +1746,12 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getMoveTutorCompatibility() {
-		return new TreeMap<Pokemon, boolean[]>();
+	public CompatibilityMatrix getMoveTutorCompatibility() {
+		return new CompatibilityMatrix(0, 0);
 	}
 
 	@Override
-	public void setMoveTutorCompatibility(Map<Pokemon, boolean[]> compatData) {
+	public void setMoveTutorCompatibility(CompatibilityMatrix compatData) {
 		// Do nothing
 	}
 
@@ -2052,12 +2030,18 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 			return false;
 		}
 
+		PatchResult result;
 		try {
-			FileFunctions.applyPatch(rom, patchName);
-			return true;
+			result = FileFunctions.applyPatch(rom, patchName);
 		} catch (IOException e) {
+			log("Couldn't read code tweak %s: %s", patchName, e);
 			return false;
 		}
+		if (!result.succeeded()) {
+			// the ROM is untouched; say why rather than quietly carry on
+			log("Code tweak %s was not applied: %s", patchName, result);
+		}
+		return result.succeeded();
 	}
 
 	@Override
@@ -2505,7 +2489,7 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 	}
 
 	private void writeEvosAndMovesLearnt(List<Evolution> evos,
-			Map<Pokemon, List<MoveLearnt>> movesets) {
+			Learnsets movesets) {
 		// we assume a few things here:
 		// 1) evos & moves learnt are stored directly after their pointer table
 		// 2) PokemonMovesetsExtraSpaceOffset is in the same bank, and
@@ -2559,7 +2543,6 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 				}
 			} else {
 				int pokeNum = pokeRBYToNumTable[i];
-				Pokemon pkmn = pokes[pokeNum];
 				ByteArrayOutputStream dataStream = new ByteArrayOutputStream();
 				// Evolutions
 				if (evos == null) {
@@ -2609,7 +2592,7 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 						dataStream.write(rom[movesOffset++] & 0xFF);
 					}
 				} else {
-					List<MoveLearnt> ourMoves = movesets.get(pkmn);
+					int moveCount = movesets.size(pokeNum);
 					int statsOffset = 0;
 					if (pokeNum == 151 && !romEntry.isYellow) {
 						// Mewww
@@ -2618,10 +2601,10 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 						statsOffset = (pokeNum - 1) * 0x1C + pokeStatsOffset;
 					}
 					int movenum = 0;
-					while (movenum < 4 && ourMoves.size() > movenum
-							&& ourMoves.get(movenum).level == 1) {
-						rom[statsOffset + 0x0F + movenum] = (byte) moveNumToRomTable[ourMoves
-								.get(movenum).move];
+					while (movenum < 4 && moveCount > movenum
+							&& movesets.level(pokeNum, movenum) == 1) {
+						rom[statsOffset + 0x0F + movenum] = (byte) moveNumToRomTable[movesets
+								.move(pokeNum, movenum)];
 						movenum++;
 					}
 					// Write out the rest of zeroes
@@ -2629,10 +2612,10 @@ public class Gen1RomHandler extends AbstractGBRomHandler {
 						rom[statsOffset + 0x0F + mn] = 0;
 					}
 					// Add the non level 1 moves to the data stream
-					while (movenum < ourMoves.size()) {
-						dataStream.write(ourMoves.get(movenum).level);
-						dataStream.write(moveNumToRomTable[ourMoves
-								.get(movenum).move]);
+					while (movenum < moveCount) {
+						dataStream.write(movesets.level(pokeNum, movenum));
+						dataStream.write(moveNumToRomTable[movesets.move(
+								pokeNum, movenum)]);
 						movenum++;
 					}
 				}
@@ -40,6 +40,8 @@ import com.dabomstew.pkrandom.CodeTweaks;
 import com.dabomstew.pkrandom.FileFunctions;
 import com.dabomstew.pkrandom.RandomSource;
 import com.dabomstew.pkrandom.RomFunctions;
+import com.dabomstew.pkrandom.delta.PatchResult;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
 import com.dabomstew.pkrandom.pokemon.Encounter;
 import com.dabomstew.pkrandom.pokemon.EncounterSet;
 import com.dabomstew.pkrandom.pokemon.Evolution;
@@ -47,8 +49,8 @@ import com.dabomstew.pkrandom.pokemon.EvolutionType;
 import com.dabomstew.pkrandom.pokemon.ExpCurve;
 import com.dabomstew.pkrandom.pokemon.IngameTrade;
 import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
 import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
 import com.dabomstew.pkrandom.pokemon.Trainer;
 import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
@@ -140,10 +142,8 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 		private Map<Integer, Integer> staticPokemonCopy = new TreeMap<Integer, Integer>();
 
 		private int getValue(String key) {
-			if (!entries.containsKey(key)) {
-				entries.put(key, 0);
-			}
-			return entries.get(key);
+			Integer value = entries.get(key);
+			return value == null ? 0 : value;
 		}
 	}
 
@@ -153,161 +153,145 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 		private String template;
 	}
 
-	private static List<RomEntry> roms;
 	private static ItemList allowedItems;
 
 	static {
-		loadROMInfo();
 		setupAllowedItems();
 	}
 
-	private static void loadROMInfo() {
-		roms = new ArrayList<RomEntry>();
-		RomEntry current = null;
-		try {
-			Scanner sc = new Scanner(
-					FileFunctions.openConfig("gen2_offsets.ini"), "UTF-8");
-			while (sc.hasNextLine()) {
-				String q = sc.nextLine().trim();
-				if (q.contains("//")) {
-					q = q.substring(0, q.indexOf("//")).trim();
-				}
-				if (!q.isEmpty()) {
-					if (q.startsWith("[") && q.endsWith("]")) {
-						// New rom
-						current = new RomEntry();
-						current.name = q.substring(1, q.length() - 1);
-						roms.add(current);
+	// Only parsed the first time a ROM could be one of ours
+	private static class RomInfo {
+		private static final List<RomEntry> roms = loadROMInfo();
+	}
+
+	private static List<RomEntry> roms() {
+		return RomInfo.roms;
+	}
+
+	private static List<RomEntry> loadROMInfo() {
+		List<RomEntry> roms = new ArrayList<RomEntry>();
+		for (OffsetsDatabase.Section section : OffsetsDatabase
+				.load("gen2_offsets.ini")) {
+			// New rom
+			RomEntry current = new RomEntry();
+			current.name = section.name;
+			roms.add(current);
+			for (String[] r : section.entries) {
+				// Static Pokemon?
+				if (r[0].equals("StaticPokemonGameCorner[]")) {
+					String[] offsets = r[1].substring(1,
+							r[1].length() - 1).split(",");
+					if (offsets.length != 2) {
+						continue;
+					}
+					int[] offs = new int[offsets.length];
+					int c = 0;
+					for (String off : offsets) {
+						offs[c++] = parseRIInt(off);
+					}
+					current.staticPokemonGameCorner.put(offs[0],
+							offs[1]);
+				} else if (r[0].equals("StaticPokemonCopy[]")) {
+					String[] offsets = r[1].substring(1,
+							r[1].length() - 1).split(",");
+					if (offsets.length != 2) {
+						continue;
+					}
+					int[] offs = new int[offsets.length];
+					int c = 0;
+					for (String off : offsets) {
+						offs[c++] = parseRIInt(off);
+					}
+					current.staticPokemonCopy.put(offs[0], offs[1]);
+				} else if (r[0].equals("TMText[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] parts = r[1].substring(1,
+								r[1].length() - 1).split(",", 3);
+						TMTextEntry tte = new TMTextEntry();
+						tte.number = parseRIInt(parts[0]);
+						tte.offset = parseRIInt(parts[1]);
+						tte.template = parts[2];
+						current.tmTexts.add(tte);
+					}
+				} else if (r[0].equals("Game")) {
+					current.romCode = r[1];
+				} else if (r[0].equals("Version")) {
+					current.version = parseRIInt(r[1]);
+				} else if (r[0].equals("NonJapanese")) {
+					current.nonJapanese = parseRIInt(r[1]);
+				} else if (r[0].equals("Type")) {
+					if (r[1].equalsIgnoreCase("Crystal")) {
+						current.isCrystal = true;
 					} else {
-						String[] r = q.split("=", 2);
-						if (r.length == 1) {
-							System.err.println("invalid entry " + q);
-							continue;
-						}
-						if (r[1].endsWith("\r\n")) {
-							r[1] = r[1].substring(0, r[1].length() - 2);
-						}
-						r[1] = r[1].trim();
-						r[0] = r[0].trim();
-						// Static Pokemon?
-						if (r[0].equals("StaticPokemonGameCorner[]")) {
-							String[] offsets = r[1].substring(1,
-									r[1].length() - 1).split(",");
-							if (offsets.length != 2) {
-								continue;
-							}
-							int[] offs = new int[offsets.length];
-							int c = 0;
-							for (String off : offsets) {
-								offs[c++] = parseRIInt(off);
+						current.isCrystal = false;
+					}
+				} else if (r[0].equals("ExtraTableFile")) {
+					current.extraTableFile = r[1];
+				} else if (r[0].equals("CRCInHeader")) {
+					current.crcInHeader = parseRIInt(r[1]);
+				} else if (r[0].endsWith("Tweak")) {
+					current.codeTweaks.put(r[0], r[1]);
+				} else if (r[0].equals("CopyFrom")) {
+					for (RomEntry otherEntry : roms) {
+						if (r[1].equalsIgnoreCase(otherEntry.name)) {
+							// copy from here
+							boolean cSP = (current
+									.getValue("CopyStaticPokemon") == 1);
+							boolean cTT = (current
+									.getValue("CopyTMText") == 1);
+							current.arrayEntries
+									.putAll(otherEntry.arrayEntries);
+							current.entries.putAll(otherEntry.entries);
+							if (cSP) {
+								current.staticPokemonSingle
+										.addAll(otherEntry.staticPokemonSingle);
+								current.staticPokemonGameCorner
+										.putAll(otherEntry.staticPokemonGameCorner);
+								current.staticPokemonCopy
+										.putAll(otherEntry.staticPokemonCopy);
+								current.entries.put(
+										"StaticPokemonSupport", 1);
+							} else {
+								current.entries.put(
+										"StaticPokemonSupport", 0);
 							}
-							current.staticPokemonGameCorner.put(offs[0],
-									offs[1]);
-						} else if (r[0].equals("StaticPokemonCopy[]")) {
-							String[] offsets = r[1].substring(1,
-									r[1].length() - 1).split(",");
-							if (offsets.length != 2) {
-								continue;
+							if (cTT) {
+								current.tmTexts
+										.addAll(otherEntry.tmTexts);
 							}
+							current.extraTableFile = otherEntry.extraTableFile;
+						}
+					}
+				} else {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						if (offsets.length == 1
+								&& offsets[0].trim().isEmpty()) {
+							current.arrayEntries.put(r[0], new int[0]);
+						} else {
 							int[] offs = new int[offsets.length];
 							int c = 0;
 							for (String off : offsets) {
 								offs[c++] = parseRIInt(off);
 							}
-							current.staticPokemonCopy.put(offs[0], offs[1]);
-						} else if (r[0].equals("TMText[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] parts = r[1].substring(1,
-										r[1].length() - 1).split(",", 3);
-								TMTextEntry tte = new TMTextEntry();
-								tte.number = parseRIInt(parts[0]);
-								tte.offset = parseRIInt(parts[1]);
-								tte.template = parts[2];
-								current.tmTexts.add(tte);
-							}
-						} else if (r[0].equals("Game")) {
-							current.romCode = r[1];
-						} else if (r[0].equals("Version")) {
-							current.version = parseRIInt(r[1]);
-						} else if (r[0].equals("NonJapanese")) {
-							current.nonJapanese = parseRIInt(r[1]);
-						} else if (r[0].equals("Type")) {
-							if (r[1].equalsIgnoreCase("Crystal")) {
-								current.isCrystal = true;
-							} else {
-								current.isCrystal = false;
-							}
-						} else if (r[0].equals("ExtraTableFile")) {
-							current.extraTableFile = r[1];
-						} else if (r[0].equals("CRCInHeader")) {
-							current.crcInHeader = parseRIInt(r[1]);
-						} else if (r[0].endsWith("Tweak")) {
-							current.codeTweaks.put(r[0], r[1]);
-						} else if (r[0].equals("CopyFrom")) {
-							for (RomEntry otherEntry : roms) {
-								if (r[1].equalsIgnoreCase(otherEntry.name)) {
-									// copy from here
-									boolean cSP = (current
-											.getValue("CopyStaticPokemon") == 1);
-									boolean cTT = (current
-											.getValue("CopyTMText") == 1);
-									current.arrayEntries
-											.putAll(otherEntry.arrayEntries);
-									current.entries.putAll(otherEntry.entries);
-									if (cSP) {
-										current.staticPokemonSingle
-												.addAll(otherEntry.staticPokemonSingle);
-										current.staticPokemonGameCorner
-												.putAll(otherEntry.staticPokemonGameCorner);
-										current.staticPokemonCopy
-												.putAll(otherEntry.staticPokemonCopy);
-										current.entries.put(
-												"StaticPokemonSupport", 1);
-									} else {
-										current.entries.put(
-												"StaticPokemonSupport", 0);
-									}
-									if (cTT) {
-										current.tmTexts
-												.addAll(otherEntry.tmTexts);
-									}
-									current.extraTableFile = otherEntry.extraTableFile;
-								}
-							}
-						} else {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								if (offsets.length == 1
-										&& offsets[0].trim().isEmpty()) {
-									current.arrayEntries.put(r[0], new int[0]);
-								} else {
-									int[] offs = new int[offsets.length];
-									int c = 0;
-									for (String off : offsets) {
-										offs[c++] = parseRIInt(off);
-									}
-									if (r[0].startsWith("StaticPokemon")) {
-										for (int off : offs) {
-											current.staticPokemonSingle
-													.add(off);
-										}
-									} else {
-										current.arrayEntries.put(r[0], offs);
-									}
+							if (r[0].startsWith("StaticPokemon")) {
+								for (int off : offs) {
+									current.staticPokemonSingle
+											.add(off);
 								}
 							} else {
-								int offs = parseRIInt(r[1]);
-								current.entries.put(r[0], offs);
+								current.arrayEntries.put(r[0], offs);
 							}
 						}
+					} else {
+						int offs = parseRIInt(r[1]);
+						current.entries.put(r[0], offs);
 					}
 				}
 			}
-			sc.close();
-		} catch (FileNotFoundException e) {
 		}
-
+		return roms;
 	}
 
 	private static void setupAllowedItems() {
@@ -368,6 +352,14 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 		return checkRomEntry(rom) != null; // so it's OK if it's a valid ROM
 	}
 
+	@Override
+	public boolean detectRom(RomHeader header) {
+		if (header.fileLength > 2097152) {
+			return false; // size check
+		}
+		return checkRomEntry(header.data) != null;
+	}
+
 	@Override
 	public void loadedRom() {
 		romEntry = checkRomEntry(this.rom);
@@ -400,7 +392,7 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 		int nonjap = rom[0x14A] & 0xFF;
 		// Check for specific CRC first
 		int crcInHeader = ((rom[0x14E] & 0xFF) << 8) | (rom[0x14F] & 0xFF);
-		for (RomEntry re : roms) {
+		for (RomEntry re : roms()) {
 			if (romSig(rom, re.romCode) && re.version == version
 					&& re.nonJapanese == nonjap
 					&& re.crcInHeader == crcInHeader) {
@@ -408,7 +400,7 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 			}
 		}
 		// Now check for non-specific-CRC entries
-		for (RomEntry re : roms) {
+		for (RomEntry re : roms()) {
 			if (romSig(rom, re.romCode) && re.version == version
 					&& re.nonJapanese == nonjap && re.crcInHeader == -1) {
 				return re;
@@ -1411,13 +1403,12 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, List<MoveLearnt>> getMovesLearnt() {
-		Map<Pokemon, List<MoveLearnt>> movesets = new TreeMap<Pokemon, List<MoveLearnt>>();
+	public Learnsets getMovesLearnt() {
+		Learnsets movesets = new Learnsets(251);
 		int pointersOffset = romEntry.getValue("PokemonMovesetsTableOffset");
 		for (int i = 1; i <= 251; i++) {
 			int pointer = readWord(pointersOffset + (i - 1) * 2);
 			int realPointer = calculateOffset(bankOf(pointersOffset), pointer);
-			Pokemon pkmn = pokes[i];
 			// Skip over evolution data
 			while (rom[realPointer] != 0) {
 				if (rom[realPointer] == 5) {
@@ -1426,22 +1417,19 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 					realPointer += 3;
 				}
 			}
-			List<MoveLearnt> ourMoves = new ArrayList<MoveLearnt>();
+			movesets.startSet(i);
 			realPointer++;
 			while (rom[realPointer] != 0) {
-				MoveLearnt learnt = new MoveLearnt();
-				learnt.level = rom[realPointer] & 0xFF;
-				learnt.move = rom[realPointer + 1] & 0xFF;
-				ourMoves.add(learnt);
+				movesets.add(i, rom[realPointer + 1] & 0xFF,
+						rom[realPointer] & 0xFF);
 				realPointer += 2;
 			}
-			movesets.put(pkmn, ourMoves);
 		}
 		return movesets;
 	}
 
 	@Override
-	public void setMovesLearnt(Map<Pokemon, List<MoveLearnt>> movesets) {
+	public void setMovesLearnt(Learnsets movesets) {
 		writeEvosAndMovesLearnt(null, movesets);
 	}
 
@@ -1568,36 +1556,29 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getTMHMCompatibility() {
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
+	public CompatibilityMatrix getTMHMCompatibility() {
+		CompatibilityMatrix compat = new CompatibilityMatrix(251, 57);
 		for (int i = 1; i <= 251; i++) {
 			int baseStatsOffset = romEntry.getValue("PokemonStatsOffset")
 					+ (i - 1) * 0x20;
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[58];
-			for (int j = 0; j < 8; j++) {
-				readByteIntoFlags(flags, j * 8 + 1, baseStatsOffset + 0x18 + j);
-			}
-			compat.put(pkmn, flags);
+			compat.decodeRow(i, rom, baseStatsOffset + 0x18, 8);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setTMHMCompatibility(Map<Pokemon, boolean[]> compatData) {
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
+	public void setTMHMCompatibility(CompatibilityMatrix compatData) {
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
 			int baseStatsOffset = romEntry.getValue("PokemonStatsOffset")
-					+ (pkmn.number - 1) * 0x20;
+					+ (i - 1) * 0x20;
 			for (int j = 0; j < 8; j++) {
 				if (!romEntry.isCrystal || j != 7) {
-					rom[baseStatsOffset + 0x18 + j] = getByteFromFlags(flags,
-							j * 8 + 1);
+					rom[baseStatsOffset + 0x18 + j] = (byte) compatData
+							.getByte(i, j);
 				} else {
 					// Move tutor data
 					// bits 1,2,3 of byte 7
-					int changedByte = getByteFromFlags(flags, j * 8 + 1) & 0xFF;
+					int changedByte = compatData.getByte(i, j);
 					int currentByte = rom[baseStatsOffset + 0x18 + j];
 					changedByte |= ((currentByte >> 1) & 0x01) << 1;
 					changedByte |= ((currentByte >> 2) & 0x01) << 2;
@@ -1660,40 +1641,32 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getMoveTutorCompatibility() {
+	public CompatibilityMatrix getMoveTutorCompatibility() {
 		if (!romEntry.isCrystal) {
-			return new TreeMap<Pokemon, boolean[]>();
+			return new CompatibilityMatrix(0, 0);
 		}
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
+		CompatibilityMatrix compat = new CompatibilityMatrix(251, 3);
 		for (int i = 1; i <= 251; i++) {
 			int baseStatsOffset = romEntry.getValue("PokemonStatsOffset")
 					+ (i - 1) * 0x20;
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[4];
 			int mtByte = rom[baseStatsOffset + 0x1F] & 0xFF;
-			for (int j = 1; j <= 3; j++) {
-				flags[j] = ((mtByte >> j) & 0x01) > 0;
-			}
-			compat.put(pkmn, flags);
+			// tutor flags are bits 1,2,3
+			compat.setBits(i, 1, 3, mtByte >> 1);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setMoveTutorCompatibility(Map<Pokemon, boolean[]> compatData) {
+	public void setMoveTutorCompatibility(CompatibilityMatrix compatData) {
 		if (!romEntry.isCrystal) {
 			return;
 		}
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
 			int baseStatsOffset = romEntry.getValue("PokemonStatsOffset")
-					+ (pkmn.number - 1) * 0x20;
+					+ (i - 1) * 0x20;
 			int origMtByte = rom[baseStatsOffset + 0x1F] & 0xFF;
 			int mtByte = origMtByte & 0x01;
-			for (int j = 1; j <= 3; j++) {
-				mtByte |= flags[j] ? (1 << j) : 0;
-			}
+			mtByte |= (int) compatData.getBits(i, 1, 3) << 1;
 			rom[baseStatsOffset + 0x1F] = (byte) mtByte;
 		}
 	}
@@ -2035,16 +2008,27 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public void applyBWEXPPatch() {
-		String patchName = romEntry.codeTweaks.get("BWXPTweak");
+		genericIPSPatch("BWXPTweak");
+	}
+
+	private boolean genericIPSPatch(String ctName) {
+		String patchName = romEntry.codeTweaks.get(ctName);
 		if (patchName == null) {
-			return;
+			return false;
 		}
 
+		PatchResult result;
 		try {
-			FileFunctions.applyPatch(rom, patchName);
+			result = FileFunctions.applyPatch(rom, patchName);
 		} catch (IOException e) {
-
+			log("Couldn't read code tweak %s: %s", patchName, e);
+			return false;
+		}
+		if (!result.succeeded()) {
+			// the ROM is untouched; say why rather than quietly carry on
+			log("Code tweak %s was not applied: %s", patchName, result);
 		}
+		return result.succeeded();
 	}
 	
 	@Override
@@ -2414,7 +2398,7 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 	}
 
 	private void writeEvosAndMovesLearnt(List<Evolution> evos,
-			Map<Pokemon, List<MoveLearnt>> movesets) {
+			Learnsets movesets) {
 		// this assumes that the evo/attack pointers & data
 		// are at the end of the bank
 		// which, in every clean G/S/C rom supported, they are
@@ -2510,10 +2494,9 @@ public class Gen2RomHandler extends AbstractGBRomHandler {
 					dataBlock[offsetInData++] = rom[movesOffset++];
 				}
 			} else {
-				List<MoveLearnt> moves = movesets.get(pokes[i]);
-				for (MoveLearnt ml : moves) {
-					dataBlock[offsetInData++] = (byte) ml.level;
-					dataBlock[offsetInData++] = (byte) ml.move;
+				for (int mv = 0; mv < movesets.size(i); mv++) {
+					dataBlock[offsetInData++] = (byte) movesets.level(i, mv);
+					dataBlock[offsetInData++] = (byte) movesets.move(i, mv);
 				}
 			}
 			// terminator
@@ -33,12 +33,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
+import com.dabomstew.pkrandom.BytePattern;
 import com.dabomstew.pkrandom.FileFunctions;
+import com.dabomstew.pkrandom.FreeSpaceAllocator;
 import com.dabomstew.pkrandom.RandomSource;
 import com.dabomstew.pkrandom.RomFunctions;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
 import com.dabomstew.pkrandom.pokemon.Encounter;
 import com.dabomstew.pkrandom.pokemon.EncounterSet;
 import com.dabomstew.pkrandom.pokemon.Evolution;
@@ -46,8 +48,8 @@ import com.dabomstew.pkrandom.pokemon.EvolutionType;
 import com.dabomstew.pkrandom.pokemon.ExpCurve;
 import com.dabomstew.pkrandom.pokemon.IngameTrade;
 import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
 import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
 import com.dabomstew.pkrandom.pokemon.Trainer;
 import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
@@ -130,11 +132,31 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		private List<StaticPokemon> staticPokemon = new ArrayList<StaticPokemon>();
 		private List<TMOrMTTextEntry> tmmtTexts = new ArrayList<TMOrMTTextEntry>();
 
-		private int getValue(String key) {
-			if (!entries.containsKey(key)) {
-				entries.put(key, 0);
+		private RomEntry() {
+		}
+
+		// Loading fills in offsets and reading the maps finds where the TM
+		// texts are, so each loaded ROM works on a copy of its entry and
+		// ROMs of the same game can be loaded side by side.
+		private RomEntry(RomEntry original) {
+			name = original.name;
+			romCode = original.romCode;
+			tableFile = original.tableFile;
+			version = original.version;
+			romType = original.romType;
+			copyStaticPokemon = original.copyStaticPokemon;
+			entries = new HashMap<String, Integer>(original.entries);
+			arrayEntries = original.arrayEntries;
+			staticPokemon = original.staticPokemon;
+			tmmtTexts = new ArrayList<TMOrMTTextEntry>();
+			for (TMOrMTTextEntry tte : original.tmmtTexts) {
+				tmmtTexts.add(tte.copy());
 			}
-			return entries.get(key);
+		}
+
+		private int getValue(String key) {
+			Integer value = entries.get(key);
+			return value == null ? 0 : value;
 		}
 	}
 
@@ -146,18 +168,38 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		private int actualOffset;
 		private String template;
 		private boolean isMoveTutor;
+
+		private TMOrMTTextEntry copy() {
+			TMOrMTTextEntry tte = new TMOrMTTextEntry();
+			tte.number = number;
+			tte.mapBank = mapBank;
+			tte.mapNumber = mapNumber;
+			tte.personNum = personNum;
+			tte.offsetInScript = offsetInScript;
+			tte.actualOffset = actualOffset;
+			tte.template = template;
+			tte.isMoveTutor = isMoveTutor;
+			return tte;
+		}
 	}
 
-	private static List<RomEntry> roms;
 	private static ItemList allowedItems;
 
 	private static final Type[] typeTable = constructTypeTable();
 
 	static {
-		loadROMInfo();
 		setupAllowedItems();
 	}
 
+	// Only parsed the first time a ROM could be one of ours
+	private static class RomInfo {
+		private static final List<RomEntry> roms = loadROMInfo();
+	}
+
+	private static List<RomEntry> roms() {
+		return RomInfo.roms;
+	}
+
 	private static Type[] constructTypeTable() {
 		Type[] table = new Type[256];
 		table[0x00] = Type.NORMAL;
@@ -180,152 +222,130 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		return table;
 	}
 
-	private static void loadROMInfo() {
-		roms = new ArrayList<RomEntry>();
-		RomEntry current = null;
-		try {
-			Scanner sc = new Scanner(
-					FileFunctions.openConfig("gen3_offsets.ini"), "UTF-8");
-			while (sc.hasNextLine()) {
-				String q = sc.nextLine().trim();
-				if (q.contains("//")) {
-					q = q.substring(0, q.indexOf("//")).trim();
-				}
-				if (!q.isEmpty()) {
-					if (q.startsWith("[") && q.endsWith("]")) {
-						// New rom
-						current = new RomEntry();
-						current.name = q.substring(1, q.length() - 1);
-						roms.add(current);
-					} else {
-						String[] r = q.split("=", 2);
-						if (r.length == 1) {
-							System.err.println("invalid entry " + q);
-							continue;
+	private static List<RomEntry> loadROMInfo() {
+		List<RomEntry> roms = new ArrayList<RomEntry>();
+		for (OffsetsDatabase.Section section : OffsetsDatabase
+				.load("gen3_offsets.ini")) {
+			// New rom
+			RomEntry current = new RomEntry();
+			current.name = section.name;
+			roms.add(current);
+			for (String[] r : section.entries) {
+				// Static Pokemon?
+				if (r[0].equals("StaticPokemon[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						int[] offs = new int[offsets.length];
+						int c = 0;
+						for (String off : offsets) {
+							offs[c++] = parseRIInt(off);
 						}
-						if (r[1].endsWith("\r\n")) {
-							r[1] = r[1].substring(0, r[1].length() - 2);
-						}
-						r[1] = r[1].trim();
-						// Static Pokemon?
-						if (r[0].equals("StaticPokemon[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								int[] offs = new int[offsets.length];
-								int c = 0;
-								for (String off : offsets) {
-									offs[c++] = parseRIInt(off);
-								}
-								current.staticPokemon.add(new StaticPokemon(
-										offs));
-							} else {
-								int offs = parseRIInt(r[1]);
-								current.staticPokemon.add(new StaticPokemon(
-										offs));
-							}
-						} else if (r[0].equals("TMText[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] parts = r[1].substring(1,
-										r[1].length() - 1).split(",", 6);
-								TMOrMTTextEntry tte = new TMOrMTTextEntry();
-								tte.number = parseRIInt(parts[0]);
-								tte.mapBank = parseRIInt(parts[1]);
-								tte.mapNumber = parseRIInt(parts[2]);
-								tte.personNum = parseRIInt(parts[3]);
-								tte.offsetInScript = parseRIInt(parts[4]);
-								tte.template = parts[5];
-								tte.isMoveTutor = false;
-								current.tmmtTexts.add(tte);
-							}
-						} else if (r[0].equals("MoveTutorText[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] parts = r[1].substring(1,
-										r[1].length() - 1).split(",", 6);
-								TMOrMTTextEntry tte = new TMOrMTTextEntry();
-								tte.number = parseRIInt(parts[0]);
-								tte.mapBank = parseRIInt(parts[1]);
-								tte.mapNumber = parseRIInt(parts[2]);
-								tte.personNum = parseRIInt(parts[3]);
-								tte.offsetInScript = parseRIInt(parts[4]);
-								tte.template = parts[5];
-								tte.isMoveTutor = true;
-								current.tmmtTexts.add(tte);
-							}
-						} else if (r[0].equals("Game")) {
-							current.romCode = r[1];
-						} else if (r[0].equals("Version")) {
-							current.version = parseRIInt(r[1]);
-						} else if (r[0].equals("Type")) {
-							if (r[1].equalsIgnoreCase("Ruby")) {
-								current.romType = RomType_Ruby;
-							} else if (r[1].equalsIgnoreCase("Sapp")) {
-								current.romType = RomType_Sapp;
-							} else if (r[1].equalsIgnoreCase("Em")) {
-								current.romType = RomType_Em;
-							} else if (r[1].equalsIgnoreCase("FRLG")) {
-								current.romType = RomType_FRLG;
+						current.staticPokemon.add(new StaticPokemon(
+								offs));
+					} else {
+						int offs = parseRIInt(r[1]);
+						current.staticPokemon.add(new StaticPokemon(
+								offs));
+					}
+				} else if (r[0].equals("TMText[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] parts = r[1].substring(1,
+								r[1].length() - 1).split(",", 6);
+						TMOrMTTextEntry tte = new TMOrMTTextEntry();
+						tte.number = parseRIInt(parts[0]);
+						tte.mapBank = parseRIInt(parts[1]);
+						tte.mapNumber = parseRIInt(parts[2]);
+						tte.personNum = parseRIInt(parts[3]);
+						tte.offsetInScript = parseRIInt(parts[4]);
+						tte.template = parts[5];
+						tte.isMoveTutor = false;
+						current.tmmtTexts.add(tte);
+					}
+				} else if (r[0].equals("MoveTutorText[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] parts = r[1].substring(1,
+								r[1].length() - 1).split(",", 6);
+						TMOrMTTextEntry tte = new TMOrMTTextEntry();
+						tte.number = parseRIInt(parts[0]);
+						tte.mapBank = parseRIInt(parts[1]);
+						tte.mapNumber = parseRIInt(parts[2]);
+						tte.personNum = parseRIInt(parts[3]);
+						tte.offsetInScript = parseRIInt(parts[4]);
+						tte.template = parts[5];
+						tte.isMoveTutor = true;
+						current.tmmtTexts.add(tte);
+					}
+				} else if (r[0].equals("Game")) {
+					current.romCode = r[1];
+				} else if (r[0].equals("Version")) {
+					current.version = parseRIInt(r[1]);
+				} else if (r[0].equals("Type")) {
+					if (r[1].equalsIgnoreCase("Ruby")) {
+						current.romType = RomType_Ruby;
+					} else if (r[1].equalsIgnoreCase("Sapp")) {
+						current.romType = RomType_Sapp;
+					} else if (r[1].equalsIgnoreCase("Em")) {
+						current.romType = RomType_Em;
+					} else if (r[1].equalsIgnoreCase("FRLG")) {
+						current.romType = RomType_FRLG;
+					} else {
+						System.err.println("unrecognised rom type: "
+								+ r[1]);
+					}
+				} else if (r[0].equals("TableFile")) {
+					current.tableFile = r[1];
+				} else if (r[0].equals("CopyStaticPokemon")) {
+					int csp = parseRIInt(r[1]);
+					current.copyStaticPokemon = (csp > 0);
+				} else if (r[0].equals("CopyFrom")) {
+					for (RomEntry otherEntry : roms) {
+						if (r[1].equalsIgnoreCase(otherEntry.name)) {
+							// copy from here
+							current.arrayEntries
+									.putAll(otherEntry.arrayEntries);
+							current.entries.putAll(otherEntry.entries);
+							boolean cTT = (current
+									.getValue("CopyTMText") == 1);
+							if (current.copyStaticPokemon) {
+								current.staticPokemon
+										.addAll(otherEntry.staticPokemon);
+								current.entries.put(
+										"StaticPokemonSupport", 1);
 							} else {
-								System.err.println("unrecognised rom type: "
-										+ r[1]);
+								current.entries.put(
+										"StaticPokemonSupport", 0);
 							}
-						} else if (r[0].equals("TableFile")) {
-							current.tableFile = r[1];
-						} else if (r[0].equals("CopyStaticPokemon")) {
-							int csp = parseRIInt(r[1]);
-							current.copyStaticPokemon = (csp > 0);
-						} else if (r[0].equals("CopyFrom")) {
-							for (RomEntry otherEntry : roms) {
-								if (r[1].equalsIgnoreCase(otherEntry.name)) {
-									// copy from here
-									current.arrayEntries
-											.putAll(otherEntry.arrayEntries);
-									current.entries.putAll(otherEntry.entries);
-									boolean cTT = (current
-											.getValue("CopyTMText") == 1);
-									if (current.copyStaticPokemon) {
-										current.staticPokemon
-												.addAll(otherEntry.staticPokemon);
-										current.entries.put(
-												"StaticPokemonSupport", 1);
-									} else {
-										current.entries.put(
-												"StaticPokemonSupport", 0);
-									}
-									if (cTT) {
-										current.tmmtTexts
-												.addAll(otherEntry.tmmtTexts);
-									}
-									current.tableFile = otherEntry.tableFile;
-								}
+							if (cTT) {
+								current.tmmtTexts
+										.addAll(otherEntry.tmmtTexts);
 							}
+							current.tableFile = otherEntry.tableFile;
+						}
+					}
+				} else {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						if (offsets.length == 1
+								&& offsets[0].trim().isEmpty()) {
+							current.arrayEntries.put(r[0], new int[0]);
 						} else {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								if (offsets.length == 1
-										&& offsets[0].trim().isEmpty()) {
-									current.arrayEntries.put(r[0], new int[0]);
-								} else {
-									int[] offs = new int[offsets.length];
-									int c = 0;
-									for (String off : offsets) {
-										offs[c++] = parseRIInt(off);
-									}
-									current.arrayEntries.put(r[0], offs);
-								}
-							} else {
-								int offs = parseRIInt(r[1]);
-								current.entries.put(r[0], offs);
+							int[] offs = new int[offsets.length];
+							int c = 0;
+							for (String off : offsets) {
+								offs[c++] = parseRIInt(off);
 							}
+							current.arrayEntries.put(r[0], offs);
 						}
+					} else {
+						int offs = parseRIInt(r[1]);
+						current.entries.put(r[0], offs);
 					}
 				}
 			}
-			sc.close();
-		} catch (FileNotFoundException e) {
 		}
-
+		return roms;
 	}
 
 	private static int parseRIInt(String off) {
@@ -441,6 +461,9 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 	private boolean mapLoadingDone;
 	private List<Integer> itemOffs;
 	private String[][] mapNames;
+	// decoded trainer names, dropped whenever the names are rewritten
+	private String[] trainerNameCache, trainerDisplayNameCache;
+	private FreeSpaceAllocator freeSpace;
 
 	private static final int RomType_Ruby = 0;
 	private static final int RomType_Sapp = 1;
@@ -449,10 +472,33 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public boolean detectRom(byte[] rom) {
-		if (rom.length != 8388608 && rom.length != 16777216
-				&& rom.length != 33554432) {
-			return false; // size check
+		if (!validSize(rom.length) || entryFor(rom) == null) {
+			return false;
+		}
+		// Wild Pokemon header
+		if (find(rom, "0348048009E00000FFFF0000") == -1) {
+			return false;
 		}
+		// Map Banks header
+		if (find(rom, "80180068890B091808687047") == -1) {
+			return false;
+		}
+		return true;
+	}
+
+	// Can't search for the wild Pokemon and map bank code in just the
+	// header, so loadRom still does that
+	@Override
+	public boolean detectRom(RomHeader header) {
+		return validSize(header.fileLength) && entryFor(header.data) != null;
+	}
+
+	private static boolean validSize(long length) {
+		return length == 8388608 || length == 16777216 || length == 33554432;
+	}
+
+	// only looks at the header, so works on a RomHeader's data too
+	private RomEntry entryFor(byte[] rom) {
 		// Special case for Emerald unofficial translation
 		if (romName(rom, "YJencrypted")) {
 			// give it a rom code so it can be detected
@@ -462,30 +508,17 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 			rom[0xAF] = 'T';
 			rom[0xBD] = 0x66;
 		}
-		// Wild Pokemon header
-		if (find(rom, "0348048009E00000FFFF0000") == -1) {
-			return false;
-		}
-		// Map Banks header
-		if (find(rom, "80180068890B091808687047") == -1) {
-			return false;
-		}
-		for (RomEntry re : roms) {
+		for (RomEntry re : roms()) {
 			if (romCode(rom, re.romCode) && (rom[0xBC] & 0xFF) == re.version) {
-				return true; // match
+				return re; // match
 			}
 		}
-		return false; // GBA rom we don't support yet
+		return null; // GBA rom we don't support yet
 	}
 
 	@Override
 	public void loadedRom() {
-		for (RomEntry re : roms) {
-			if (romCode(rom, re.romCode) && (rom[0xBC] & 0xFF) == re.version) {
-				romEntry = re;
-				break;
-			}
-		}
+		romEntry = new RomEntry(entryFor(rom));
 
 		tb = new String[256];
 		d = new HashMap<String, Byte>();
@@ -994,10 +1027,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public List<EncounterSet> getEncounters(boolean useTimeOfDay) {
-		if (!mapLoadingDone) {
-			preprocessMaps();
-			mapLoadingDone = true;
-		}
+		loadMaps();
 
 		int startOffs = romEntry.getValue("WildPokemon");
 		List<EncounterSet> encounterAreas = new ArrayList<EncounterSet>();
@@ -1144,20 +1174,30 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		int amount = romEntry.getValue("TrainerCount");
 		int entryLen = romEntry.getValue("TrainerEntrySize");
 		List<Trainer> theTrainers = new ArrayList<Trainer>();
-		List<String> tcnames = this.getTrainerClassNames();
+		if (trainerDisplayNameCache == null) {
+			List<String> tcnames = this.getTrainerClassNames();
+			trainerNameCache = new String[amount];
+			trainerDisplayNameCache = new String[amount];
+			for (int i = 1; i < amount; i++) {
+				int trOffset = baseOffset + i * entryLen;
+				int trainerclass = rom[trOffset + 1] & 0xFF;
+				trainerNameCache[i] = this.readVariableLengthString(trOffset + 4);
+				trainerDisplayNameCache[i] = tcnames.get(trainerclass) + " "
+						+ trainerNameCache[i];
+			}
+		}
 		for (int i = 1; i < amount; i++) {
 			int trOffset = baseOffset + i * entryLen;
 			Trainer tr = new Trainer();
 			tr.offset = trOffset;
-			int trainerclass = rom[trOffset + 1] & 0xFF;
 			tr.trainerclass = (rom[trOffset + 2] & 0x80) > 0 ? 1 : 0;
 
 			int pokeDataType = rom[trOffset] & 0xFF;
 			int numPokes = rom[trOffset + (entryLen - 8)] & 0xFF;
 			int pointerToPokes = readPointer(trOffset + (entryLen - 4));
 			tr.poketype = pokeDataType;
-			tr.name = this.readVariableLengthString(trOffset + 4);
-			tr.fullDisplayName = tcnames.get(trainerclass) + " " + tr.name;
+			tr.name = trainerNameCache[i];
+			tr.fullDisplayName = trainerDisplayNameCache[i];
 			// Pokemon data!
 			if (pokeDataType == 0) {
 				// blocks of 8 bytes
@@ -1526,8 +1566,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, List<MoveLearnt>> getMovesLearnt() {
-		Map<Pokemon, List<MoveLearnt>> movesets = new TreeMap<Pokemon, List<MoveLearnt>>();
+	public Learnsets getMovesLearnt() {
+		Learnsets movesets = new Learnsets(386);
 		int baseOffset = romEntry.getValue("PokemonMovesets");
 		for (int i = 1; i <= 411; i++) {
 			int offsToPtr = baseOffset + (i - 1) * 4;
@@ -1535,8 +1575,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 			if (i >= 252 && i <= 276) {
 				continue;
 			}
-			Pokemon pkmn = pokes[poke3GIndexToNum(i)];
-			List<MoveLearnt> moves = new ArrayList<MoveLearnt>();
+			int pokeNum = poke3GIndexToNum(i);
+			movesets.startSet(pokeNum);
 			while ((rom[moveDataLoc] & 0xFF) != 0xFF
 					|| (rom[moveDataLoc + 1] & 0xFF) != 0xFF) {
 				int move = (rom[moveDataLoc] & 0xFF);
@@ -1544,42 +1584,44 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 				if ((rom[moveDataLoc + 1] & 0x01) == 0x01) {
 					move += 256;
 				}
-				MoveLearnt ml = new MoveLearnt();
-				ml.level = level;
-				ml.move = move;
-				moves.add(ml);
+				movesets.add(pokeNum, move, level);
 				moveDataLoc += 2;
 			}
-			movesets.put(pkmn, moves);
 		}
 		return movesets;
 	}
 
 	@Override
-	public void setMovesLearnt(Map<Pokemon, List<MoveLearnt>> movesets) {
+	public void setMovesLearnt(Learnsets movesets) {
 		int baseOffset = romEntry.getValue("PokemonMovesets");
-		int fso = romEntry.getValue("FreeSpace");
+		// count pointers to each moveset (including the unused slots) so
+		// old sets are only freed once nothing points at them
+		Map<Integer, Integer> setUsers = new HashMap<Integer, Integer>();
+		for (int i = 1; i <= 411; i++) {
+			int moveDataLoc = readPointer(baseOffset + (i - 1) * 4);
+			Integer users = setUsers.get(moveDataLoc);
+			setUsers.put(moveDataLoc, users == null ? 1 : users + 1);
+		}
 		for (int i = 1; i <= 411; i++) {
 			int offsToPtr = baseOffset + (i - 1) * 4;
 			int moveDataLoc = readPointer(offsToPtr);
 			if (i >= 252 && i <= 276) {
 				continue;
 			}
-			Pokemon pkmn = pokes[poke3GIndexToNum(i)];
-			List<MoveLearnt> moves = movesets.get(pkmn);
+			int pokeNum = poke3GIndexToNum(i);
 			int mloc = moveDataLoc;
 			while ((rom[mloc] & 0xFF) != 0xFF || (rom[mloc + 1] & 0xFF) != 0xFF) {
 				mloc += 2;
 			}
-			int currentMoveCount = (mloc - moveDataLoc);
-			int newMoveCount = moves.size();
-			if (currentMoveCount <= newMoveCount) {
-				int looplimit = Math.min(currentMoveCount, newMoveCount);
+			int currentMoveCount = (mloc - moveDataLoc) / 2;
+			int newMoveCount = movesets.size(pokeNum);
+			if (newMoveCount <= currentMoveCount) {
+				int looplimit = newMoveCount;
 				for (int mv = 0; mv < looplimit; mv++) {
-					MoveLearnt ml = moves.get(mv);
-					rom[moveDataLoc] = (byte) (ml.move & 0xFF);
-					int levelPart = (ml.level << 1) & 0xFE;
-					if (ml.move > 255) {
+					int move = movesets.move(pokeNum, mv);
+					rom[moveDataLoc] = (byte) (move & 0xFF);
+					int levelPart = (movesets.level(pokeNum, mv) << 1) & 0xFE;
+					if (move > 255) {
 						levelPart++;
 					}
 					rom[moveDataLoc + 1] = (byte) levelPart;
@@ -1593,18 +1635,23 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 			} else {
 				// repoint!
 				int newBytesNeeded = newMoveCount * 2 + 4;
-				int writeSpace = RomFunctions.freeSpaceFinder(rom, (byte) 0xFF,
-						newBytesNeeded, fso);
-				if (writeSpace < fso) {
+				int writeSpace = freeSpace().allocate(newBytesNeeded);
+				if (writeSpace < 0) {
 					throw new RuntimeException("ROM is full");
 				}
 				writePointer(offsToPtr, writeSpace);
+				int users = setUsers.get(moveDataLoc) - 1;
+				setUsers.put(moveDataLoc, users);
+				if (users == 0) {
+					// old set (and its terminator) is now unused
+					freeSpace().free(moveDataLoc, mloc + 2 - moveDataLoc);
+				}
 				moveDataLoc = writeSpace;
 				for (int mv = 0; mv < newMoveCount; mv++) {
-					MoveLearnt ml = moves.get(mv);
-					rom[moveDataLoc] = (byte) (ml.move & 0xFF);
-					int levelPart = (ml.level << 1) & 0xFE;
-					if (ml.move > 255) {
+					int move = movesets.move(pokeNum, mv);
+					rom[moveDataLoc] = (byte) (move & 0xFF);
+					int levelPart = (movesets.level(pokeNum, mv) << 1) & 0xFE;
+					if (move > 255) {
 						levelPart++;
 					}
 					rom[moveDataLoc + 1] = (byte) levelPart;
@@ -1613,7 +1660,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 				// need a new terminator
 				rom[moveDataLoc] = (byte) 0xFF;
 				rom[moveDataLoc + 1] = (byte) 0xFF;
-				// for safety (the freespace finder should prevent the
+				// for safety (the allocator should prevent the
 				// terminator being overwritten but...)
 				rom[moveDataLoc + 2] = 0x00;
 				rom[moveDataLoc + 3] = 0x00;
@@ -1690,10 +1737,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public void setTMMoves(List<Integer> moveIndexes) {
-		if (!mapLoadingDone) {
-			preprocessMaps();
-			mapLoadingDone = true;
-		}
+		loadMaps();
 		int offset = romEntry.getValue("TmMoves");
 		for (int i = 1; i <= 50; i++) {
 			writeWord(offset + (i - 1) * 2, moveIndexes.get(i - 1));
@@ -1716,7 +1760,6 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 			}
 		}
 
-		int fsOffset = romEntry.getValue("FreeSpace");
 
 		// Item descriptions
 		if (romEntry.getValue("MoveDescriptions") > 0) {
@@ -1735,9 +1778,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 								limitPerLine, ssd);
 				// Find freespace
 				int fsBytesNeeded = translateString(newItemDesc).length + 1;
-				int newItemDescOffset = RomFunctions.freeSpaceFinder(rom,
-						(byte) 0xFF, fsBytesNeeded, fsOffset);
-				if (newItemDescOffset < fsOffset) {
+				int newItemDescOffset = freeSpace().allocate(fsBytesNeeded);
+				if (newItemDescOffset < 0) {
 					String nl = System.getProperty("line.separator");
 					log("Couldn't insert new item description." + nl);
 					return;
@@ -1770,9 +1812,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 				System.out.println("inserting " + newText);
 				// insert the new text into free space
 				int fsBytesNeeded = translateString(newText).length + 1;
-				int newOffset = RomFunctions.freeSpaceFinder(rom, (byte) 0xFF,
-						fsBytesNeeded, fsOffset);
-				if (newOffset < fsOffset) {
+				int newOffset = freeSpace().allocate(fsBytesNeeded);
+				if (newOffset < 0) {
 					String nl = System.getProperty("line.separator");
 					log("Couldn't insert new TM text." + nl);
 					return;
@@ -1818,31 +1859,22 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getTMHMCompatibility() {
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
+	public CompatibilityMatrix getTMHMCompatibility() {
+		CompatibilityMatrix compat = new CompatibilityMatrix(386, 58);
 		int offset = romEntry.getValue("PokemonTMHMCompat");
 		for (int i = 1; i <= 386; i++) {
 			int compatOffset = offset + (pokeNumTo3GIndex(i) - 1) * 8;
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[59];
-			for (int j = 0; j < 8; j++) {
-				readByteIntoFlags(flags, j * 8 + 1, compatOffset + j);
-			}
-			compat.put(pkmn, flags);
+			compat.decodeRow(i, rom, compatOffset, 8);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setTMHMCompatibility(Map<Pokemon, boolean[]> compatData) {
+	public void setTMHMCompatibility(CompatibilityMatrix compatData) {
 		int offset = romEntry.getValue("PokemonTMHMCompat");
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			int compatOffset = offset + (pokeNumTo3GIndex(pkmn.number) - 1) * 8;
-			for (int j = 0; j < 8; j++) {
-				rom[compatOffset + j] = getByteFromFlags(flags, j * 8 + 1);
-			}
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
+			int compatOffset = offset + (pokeNumTo3GIndex(i) - 1) * 8;
+			compatData.encodeRow(i, rom, compatOffset, 8);
 		}
 	}
 
@@ -1878,7 +1910,6 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		for (int i = 0; i < moveCount; i++) {
 			writeWord(offset + i * 2, moves.get(i));
 		}
-		int fsOffset = romEntry.getValue("FreeSpace");
 
 		// Move Tutor Text?
 		for (TMOrMTTextEntry tte : romEntry.tmmtTexts) {
@@ -1903,9 +1934,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 				System.out.println("inserting " + newText);
 				// insert the new text into free space
 				int fsBytesNeeded = translateString(newText).length + 1;
-				int newOffset = RomFunctions.freeSpaceFinder(rom, (byte) 0xFF,
-						fsBytesNeeded, fsOffset);
-				if (newOffset < fsOffset) {
+				int newOffset = freeSpace().allocate(fsBytesNeeded);
+				if (newOffset < 0) {
 					String nl = System.getProperty("line.separator");
 					log("Couldn't insert new Move Tutor text." + nl);
 					return;
@@ -1933,42 +1963,32 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getMoveTutorCompatibility() {
+	public CompatibilityMatrix getMoveTutorCompatibility() {
 		if (!hasMoveTutors()) {
-			return new TreeMap<Pokemon, boolean[]>();
+			return new CompatibilityMatrix(0, 0);
 		}
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
 		int moveCount = romEntry.getValue("MoveTutorMoves");
+		CompatibilityMatrix compat = new CompatibilityMatrix(386, moveCount);
 		int offset = romEntry.getValue("MoveTutorData") + moveCount * 2;
 		int bytesRequired = ((moveCount + 7) & ~7) / 8;
 		for (int i = 1; i <= 386; i++) {
 			int compatOffset = offset + pokeNumTo3GIndex(i) * moveCount;
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[moveCount + 1];
-			for (int j = 0; j < bytesRequired; j++) {
-				readByteIntoFlags(flags, j * 8 + 1, compatOffset + j);
-			}
-			compat.put(pkmn, flags);
+			compat.decodeRow(i, rom, compatOffset, bytesRequired);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setMoveTutorCompatibility(Map<Pokemon, boolean[]> compatData) {
+	public void setMoveTutorCompatibility(CompatibilityMatrix compatData) {
 		if (!hasMoveTutors()) {
 			return;
 		}
 		int moveCount = romEntry.getValue("MoveTutorMoves");
 		int offset = romEntry.getValue("MoveTutorData") + moveCount * 2;
 		int bytesRequired = ((moveCount + 7) & ~7) / 8;
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			int compatOffset = offset + pokeNumTo3GIndex(pkmn.number)
-					* bytesRequired;
-			for (int j = 0; j < bytesRequired; j++) {
-				rom[compatOffset + j] = getByteFromFlags(flags, j * 8 + 1);
-			}
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
+			int compatOffset = offset + pokeNumTo3GIndex(i) * bytesRequired;
+			compatData.encodeRow(i, rom, compatOffset, bytesRequired);
 		}
 	}
 
@@ -1997,18 +2017,16 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		if (hexString.length() % 2 != 0) {
 			return -3; // error
 		}
-		byte[] searchFor = new byte[hexString.length() / 2];
-		for (int i = 0; i < searchFor.length; i++) {
-			searchFor[i] = (byte) Integer.parseInt(
-					hexString.substring(i * 2, i * 2 + 2), 16);
-		}
-		List<Integer> found = RomFunctions.search(haystack, searchFor);
-		if (found.size() == 0) {
+		// "??" in the pattern matches any byte
+		BytePattern pattern = BytePattern.fromHex(hexString);
+		int found = pattern.findFirst(haystack);
+		if (found < 0) {
 			return -1; // not found
-		} else if (found.size() > 1) {
+		} else if (pattern.findFirst(haystack, found + pattern.length(),
+				haystack.length) >= 0) {
 			return -2; // not unique
 		} else {
-			return found.get(0);
+			return found;
 		}
 	}
 
@@ -2020,13 +2038,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		if (hexString.length() % 2 != 0) {
 			return new ArrayList<Integer>(); // error
 		}
-		byte[] searchFor = new byte[hexString.length() / 2];
-		for (int i = 0; i < searchFor.length; i++) {
-			searchFor[i] = (byte) Integer.parseInt(
-					hexString.substring(i * 2, i * 2 + 2), 16);
-		}
-		List<Integer> found = RomFunctions.search(haystack, searchFor);
-		return found;
+		return BytePattern.fromHex(hexString).findAll(haystack);
 	}
 
 	private void writeHexString(String hexString, int offset) {
@@ -2083,7 +2095,6 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 	public void patchForNationalDex() {
 		log("--Patching for National Dex at Start of Game--");
 		String nl = System.getProperty("line.separator");
-		int fso = romEntry.getValue("FreeSpace");
 		if (romEntry.romType == RomType_Ruby
 				|| romEntry.romType == RomType_Sapp) {
 			// Find the original pokedex script
@@ -2100,9 +2111,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 				return;
 			}
 			// Find free space for our new routine
-			int writeSpace = RomFunctions.freeSpaceFinder(rom, (byte) 0xFF, 44,
-					fso);
-			if (writeSpace < fso) {
+			int writeSpace = freeSpace().allocate(44);
+			if (writeSpace < 0) {
 				log("Patch unsuccessful." + nl);
 				// Somehow this ROM is full
 				return;
@@ -2122,9 +2132,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 				return;
 			}
 			// Find free space for our new routine
-			int writeSpace = RomFunctions.freeSpaceFinder(rom, (byte) 0xFF, 10,
-					fso);
-			if (writeSpace < fso) {
+			int writeSpace = freeSpace().allocate(10);
+			if (writeSpace < 0) {
 				// Somehow this ROM is full
 				log("Patch unsuccessful." + nl);
 				return;
@@ -2172,9 +2181,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 				return;
 			}
 			// Find free space for our new routine
-			int writeSpace = RomFunctions.freeSpaceFinder(rom, (byte) 0xFF, 27,
-					fso);
-			if (writeSpace < fso) {
+			int writeSpace = freeSpace().allocate(27);
+			if (writeSpace < 0) {
 				// Somehow this ROM is full
 				log("Patch unsuccessful." + nl);
 				return;
@@ -2188,6 +2196,14 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 		log("Patch successful!" + nl);
 	}
 
+	private FreeSpaceAllocator freeSpace() {
+		if (freeSpace == null) {
+			freeSpace = new FreeSpaceAllocator(rom, (byte) 0xFF,
+					romEntry.getValue("FreeSpace"));
+		}
+		return freeSpace;
+	}
+
 	public String pointerToHexString(int pointer) {
 		String hex = String.format("%08X", pointer + 0x08000000);
 		return new String(new char[] { hex.charAt(6), hex.charAt(7),
@@ -2369,6 +2385,8 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 			writeFixedLengthString(newName, baseOffset + i * entryLen + 4,
 					nameLen);
 		}
+		trainerNameCache = null;
+		trainerDisplayNameCache = null;
 
 	}
 
@@ -2411,6 +2429,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 			writeFixedLengthString(trainerClasses.next(), baseOffset + i
 					* length, length);
 		}
+		trainerDisplayNameCache = null;
 	}
 
 	@Override
@@ -2524,6 +2543,14 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	}
 
+	// synchronized as encounters, TMs and field items can all be first
+	private synchronized void loadMaps() {
+		if (!mapLoadingDone) {
+			preprocessMaps();
+			mapLoadingDone = true;
+		}
+	}
+
 	private void preprocessMaps() {
 		itemOffs = new ArrayList<Integer>();
 		int bankCount = romEntry.getValue("MapBankCount");
@@ -2672,10 +2699,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public List<Integer> getCurrentFieldTMs() {
-		if (!mapLoadingDone) {
-			preprocessMaps();
-			mapLoadingDone = true;
-		}
+		loadMaps();
 		List<Integer> fieldTMs = new ArrayList<Integer>();
 
 		for (int offset : itemOffs) {
@@ -2693,10 +2717,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public void setFieldTMs(List<Integer> fieldTMs) {
-		if (!mapLoadingDone) {
-			preprocessMaps();
-			mapLoadingDone = true;
-		}
+		loadMaps();
 		Iterator<Integer> iterTMs = fieldTMs.iterator();
 		int[] givenTMs = new int[512];
 
@@ -2719,10 +2740,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public List<Integer> getRegularFieldItems() {
-		if (!mapLoadingDone) {
-			preprocessMaps();
-			mapLoadingDone = true;
-		}
+		loadMaps();
 		List<Integer> fieldItems = new ArrayList<Integer>();
 
 		for (int offset : itemOffs) {
@@ -2737,10 +2755,7 @@ public class Gen3RomHandler extends AbstractGBRomHandler {
 
 	@Override
 	public void setRegularFieldItems(List<Integer> items) {
-		if (!mapLoadingDone) {
-			preprocessMaps();
-			mapLoadingDone = true;
-		}
+		loadMaps();
 		Iterator<Integer> iterItems = items.iterator();
 
 		for (int offset : itemOffs) {
@@ -23,7 +23,6 @@ package com.dabomstew.pkrandom.romhandlers;
 /*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
 /*----------------------------------------------------------------------------*/
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,15 +30,16 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.TreeMap;
 
 import thenewpoketext.PokeTextData;
 import thenewpoketext.TextToPoke;
 
-import com.dabomstew.pkrandom.FileFunctions;
+import com.dabomstew.pkrandom.BytePattern;
+import com.dabomstew.pkrandom.ParallelScanner;
 import com.dabomstew.pkrandom.RandomSource;
 import com.dabomstew.pkrandom.RomFunctions;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
 import com.dabomstew.pkrandom.pokemon.Encounter;
 import com.dabomstew.pkrandom.pokemon.EncounterSet;
 import com.dabomstew.pkrandom.pokemon.Evolution;
@@ -47,8 +47,8 @@ import com.dabomstew.pkrandom.pokemon.EvolutionType;
 import com.dabomstew.pkrandom.pokemon.ExpCurve;
 import com.dabomstew.pkrandom.pokemon.IngameTrade;
 import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
 import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
 import com.dabomstew.pkrandom.pokemon.Trainer;
 import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
@@ -137,146 +137,127 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 		private List<StaticPokemon> staticPokemon = new ArrayList<StaticPokemon>();
 
 		private int getInt(String key) {
-			if (!numbers.containsKey(key)) {
-				numbers.put(key, 0);
-			}
-			return numbers.get(key);
+			Integer value = numbers.get(key);
+			return value == null ? 0 : value;
 		}
 
 		private String getString(String key) {
-			if (!strings.containsKey(key)) {
-				strings.put(key, "");
-			}
-			return strings.get(key);
+			String value = strings.get(key);
+			return value == null ? "" : value;
 		}
 	}
 
-	private static List<RomEntry> roms;
 	private static ItemList allowedItems;
 
 	static {
-		loadROMInfo();
 		setupAllowedItems();
 	}
 
-	private static void loadROMInfo() {
-		roms = new ArrayList<RomEntry>();
-		RomEntry current = null;
-		try {
-			Scanner sc = new Scanner(
-					FileFunctions.openConfig("gen4_offsets.ini"), "UTF-8");
-			while (sc.hasNextLine()) {
-				String q = sc.nextLine().trim();
-				if (q.contains("//")) {
-					q = q.substring(0, q.indexOf("//")).trim();
-				}
-				if (!q.isEmpty()) {
-					if (q.startsWith("[") && q.endsWith("]")) {
-						// New rom
-						current = new RomEntry();
-						current.name = q.substring(1, q.length() - 1);
-						roms.add(current);
+	// Only parsed the first time a ROM could be one of ours
+	private static class RomInfo {
+		private static final List<RomEntry> roms = loadROMInfo();
+	}
+
+	private static List<RomEntry> roms() {
+		return RomInfo.roms;
+	}
+
+	private static List<RomEntry> loadROMInfo() {
+		List<RomEntry> roms = new ArrayList<RomEntry>();
+		for (OffsetsDatabase.Section section : OffsetsDatabase
+				.load("gen4_offsets.ini")) {
+			// New rom
+			RomEntry current = new RomEntry();
+			current.name = section.name;
+			roms.add(current);
+			for (String[] r : section.entries) {
+				if (r[0].equals("Game")) {
+					current.romCode = r[1];
+				} else if (r[0].equals("Type")) {
+					if (r[1].equalsIgnoreCase("DP")) {
+						current.romType = Type_DP;
+					} else if (r[1].equalsIgnoreCase("Plat")) {
+						current.romType = Type_Plat;
+					} else if (r[1].equalsIgnoreCase("HGSS")) {
+						current.romType = Type_HGSS;
 					} else {
-						String[] r = q.split("=", 2);
-						if (r.length == 1) {
-							System.err.println("invalid entry " + q);
-							continue;
-						}
-						if (r[1].endsWith("\r\n")) {
-							r[1] = r[1].substring(0, r[1].length() - 2);
-						}
-						r[1] = r[1].trim();
-						if (r[0].equals("Game")) {
-							current.romCode = r[1];
-						} else if (r[0].equals("Type")) {
-							if (r[1].equalsIgnoreCase("DP")) {
-								current.romType = Type_DP;
-							} else if (r[1].equalsIgnoreCase("Plat")) {
-								current.romType = Type_Plat;
-							} else if (r[1].equalsIgnoreCase("HGSS")) {
-								current.romType = Type_HGSS;
-							} else {
-								System.err.println("unrecognised rom type: "
-										+ r[1]);
-							}
-						} else if (r[0].equals("CopyFrom")) {
-							for (RomEntry otherEntry : roms) {
-								if (r[1].equalsIgnoreCase(otherEntry.romCode)) {
-									// copy from here
-									current.arrayEntries
-											.putAll(otherEntry.arrayEntries);
-									current.numbers.putAll(otherEntry.numbers);
-									current.strings.putAll(otherEntry.strings);
-									if (current.copyStaticPokemon) {
-										current.staticPokemon
-												.addAll(otherEntry.staticPokemon);
-										current.staticPokemonSupport = true;
-									} else {
-										current.staticPokemonSupport = false;
-									}
-								}
-							}
-						} else if (r[0].equals("StaticPokemon[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								int[] offs = new int[offsets.length];
-								int[] files = new int[offsets.length];
-								int c = 0;
-								for (String off : offsets) {
-									String[] parts = off.split("\\:");
-									files[c] = parseRIInt(parts[0]);
-									offs[c++] = parseRIInt(parts[1]);
-								}
-								StaticPokemon sp = new StaticPokemon();
-								sp.files = files;
-								sp.offsets = offs;
-								current.staticPokemon.add(sp);
+						System.err.println("unrecognised rom type: "
+								+ r[1]);
+					}
+				} else if (r[0].equals("CopyFrom")) {
+					for (RomEntry otherEntry : roms) {
+						if (r[1].equalsIgnoreCase(otherEntry.romCode)) {
+							// copy from here
+							current.arrayEntries
+									.putAll(otherEntry.arrayEntries);
+							current.numbers.putAll(otherEntry.numbers);
+							current.strings.putAll(otherEntry.strings);
+							if (current.copyStaticPokemon) {
+								current.staticPokemon
+										.addAll(otherEntry.staticPokemon);
+								current.staticPokemonSupport = true;
 							} else {
-								String[] parts = r[1].split("\\:");
-								int files = parseRIInt(parts[0]);
-								int offs = parseRIInt(parts[1]);
-								StaticPokemon sp = new StaticPokemon();
-								sp.files = new int[] { files };
-								sp.offsets = new int[] { offs };
+								current.staticPokemonSupport = false;
 							}
-						} else if (r[0].equals("StaticPokemonSupport")) {
-							int spsupport = parseRIInt(r[1]);
-							current.staticPokemonSupport = (spsupport > 0);
-						} else if (r[0].equals("CopyStaticPokemon")) {
-							int csp = parseRIInt(r[1]);
-							current.copyStaticPokemon = (csp > 0);
+						}
+					}
+				} else if (r[0].equals("StaticPokemon[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						int[] offs = new int[offsets.length];
+						int[] files = new int[offsets.length];
+						int c = 0;
+						for (String off : offsets) {
+							String[] parts = off.split("\\:");
+							files[c] = parseRIInt(parts[0]);
+							offs[c++] = parseRIInt(parts[1]);
+						}
+						StaticPokemon sp = new StaticPokemon();
+						sp.files = files;
+						sp.offsets = offs;
+						current.staticPokemon.add(sp);
+					} else {
+						String[] parts = r[1].split("\\:");
+						int files = parseRIInt(parts[0]);
+						int offs = parseRIInt(parts[1]);
+						StaticPokemon sp = new StaticPokemon();
+						sp.files = new int[] { files };
+						sp.offsets = new int[] { offs };
+					}
+				} else if (r[0].equals("StaticPokemonSupport")) {
+					int spsupport = parseRIInt(r[1]);
+					current.staticPokemonSupport = (spsupport > 0);
+				} else if (r[0].equals("CopyStaticPokemon")) {
+					int csp = parseRIInt(r[1]);
+					current.copyStaticPokemon = (csp > 0);
+				} else {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						if (offsets.length == 1
+								&& offsets[0].trim().isEmpty()) {
+							current.arrayEntries.put(r[0], new int[0]);
 						} else {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								if (offsets.length == 1
-										&& offsets[0].trim().isEmpty()) {
-									current.arrayEntries.put(r[0], new int[0]);
-								} else {
-									int[] offs = new int[offsets.length];
-									int c = 0;
-									for (String off : offsets) {
-										offs[c++] = parseRIInt(off);
-									}
-									current.arrayEntries.put(r[0], offs);
-								}
-							} else if (r[0].endsWith("Offset")
-									|| r[0].endsWith("Count")
-									|| r[0].endsWith("Number")) {
-								int offs = parseRIInt(r[1]);
-								current.numbers.put(r[0], offs);
-							} else {
-								current.strings.put(r[0], r[1]);
+							int[] offs = new int[offsets.length];
+							int c = 0;
+							for (String off : offsets) {
+								offs[c++] = parseRIInt(off);
 							}
+							current.arrayEntries.put(r[0], offs);
 						}
+					} else if (r[0].endsWith("Offset")
+							|| r[0].endsWith("Count")
+							|| r[0].endsWith("Number")) {
+						int offs = parseRIInt(r[1]);
+						current.numbers.put(r[0], offs);
+					} else {
+						current.strings.put(r[0], r[1]);
 					}
 				}
 			}
-			sc.close();
-		} catch (FileNotFoundException e) {
 		}
-
+		return roms;
 	}
 
 	private static int parseRIInt(String off) {
@@ -314,6 +295,9 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	private NARCContents msgNarc;
 	private NARCContents scriptNarc;
 	private NARCContents eventNarc;
+	// loaded on first use, written back on save if setTrainers changed them
+	private NARCContents trainerNarc, trainerPokeNarc;
+	private boolean trainersChanged;
 	private byte[] arm9;
 	private List<String> abilityNames;
 	private List<String> itemNames;
@@ -326,7 +310,7 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 
 	@Override
 	protected boolean detectNDSRom(String ndsCode) {
-		for (RomEntry re : roms) {
+		for (RomEntry re : roms()) {
 			if (ndsCode.equals(re.romCode)) {
 				this.romEntry = re;
 				return true; // match
@@ -477,6 +461,14 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 			writeNARC(romEntry.getString("Events"), eventNarc);
 		} catch (IOException e) {
 		}
+		if (trainersChanged) {
+			try {
+				writeNARC(romEntry.getString("TrainerData"), trainerNarc);
+				writeNARC(romEntry.getString("TrainerPokemon"),
+						trainerPokeNarc);
+			} catch (IOException e) {
+			}
+		}
 	}
 
 	private void saveMoves() {
@@ -583,14 +575,18 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 		return pokemonList;
 	}
 
+	// the bytes just after the HGSS starter list in the ARM9
+	private static final BytePattern hgssStarterTail = new BytePattern(
+			new byte[] { 0x03, 0x03, 0x1A, 0x12, 0x1, 0x23, 0x0, 0x0 });
+
 	@Override
 	public List<Pokemon> getStarters() {
 		if (romEntry.romType == Type_HGSS) {
-			List<Integer> tailOffsets = RomFunctions.search(arm9, new byte[] {
-					0x03, 0x03, 0x1A, 0x12, 0x1, 0x23, 0x0, 0x0 });
-			if (tailOffsets.size() == 1) {
+			int starterTail = ParallelScanner.findUnique(arm9,
+					hgssStarterTail);
+			if (starterTail >= 0) {
 				// Found starters
-				int starterOffset = tailOffsets.get(0) - 13;
+				int starterOffset = starterTail - 13;
 				int poke1 = readWord(arm9, starterOffset);
 				int poke2 = readWord(arm9, starterOffset + 4);
 				int poke3 = readWord(arm9, starterOffset + 8);
@@ -626,11 +622,11 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 			}
 		}
 		if (romEntry.romType == Type_HGSS) {
-			List<Integer> tailOffsets = RomFunctions.search(arm9, new byte[] {
-					0x03, 0x03, 0x1A, 0x12, 0x1, 0x23, 0x0, 0x0 });
-			if (tailOffsets.size() == 1) {
+			int starterTail = ParallelScanner.findUnique(arm9,
+					hgssStarterTail);
+			if (starterTail >= 0) {
 				// Found starters
-				int starterOffset = tailOffsets.get(0) - 13;
+				int starterOffset = starterTail - 13;
 				writeWord(arm9, starterOffset, newStarters.get(0).number);
 				writeWord(arm9, starterOffset + 4, newStarters.get(1).number);
 				writeWord(arm9, starterOffset + 8, newStarters.get(2).number);
@@ -1290,10 +1286,9 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	public List<Trainer> getTrainers() {
 		List<Trainer> allTrainers = new ArrayList<Trainer>();
 		try {
-			NARCContents trainers = this.readNARC(romEntry
-					.getString("TrainerData"));
-			NARCContents trpokes = this.readNARC(romEntry
-					.getString("TrainerPokemon"));
+			loadTrainerNARCs();
+			NARCContents trainers = trainerNarc;
+			NARCContents trpokes = trainerPokeNarc;
 			List<String> tclasses = this.getTrainerClassNames();
 			List<String> tnames = this.getTrainerNames();
 			int trainernum = trainers.files.size();
@@ -1359,6 +1354,14 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 		return allTrainers;
 	}
 
+	private void loadTrainerNARCs() throws IOException {
+		if (trainerNarc == null) {
+			trainerNarc = this.readNARC(romEntry.getString("TrainerData"));
+			trainerPokeNarc = this.readNARC(romEntry
+					.getString("TrainerPokemon"));
+		}
+	}
+
 	private void tagTrainersDP(List<Trainer> trs) {
 		// Gym Trainers
 		tag(trs, "GYM1", 0xf4, 0xf5);
@@ -1642,19 +1645,32 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	public void setTrainers(List<Trainer> trainerData) {
 		Iterator<Trainer> allTrainers = trainerData.iterator();
 		try {
-			NARCContents trainers = this.readNARC(romEntry
-					.getString("TrainerData"));
-			NARCContents trpokes = new NARCContents();
+			loadTrainerNARCs();
+			NARCContents trainers = trainerNarc;
+			NARCContents trpokes = trainerPokeNarc;
+			// Records are encoded into one buffer and only replace the
+			// existing file if they differ from it
+			byte[] trpoke = new byte[8];
+			boolean changed = false;
 			// empty entry
-			trpokes.files.add(new byte[] { 0, 0, 0, 0, 0, 0, 0, 0 });
+			changed |= updateNARCFile(trpokes, 0, trpoke, 8);
 			int trainernum = trainers.files.size();
+			while (trpokes.files.size() > trainernum) {
+				trpokes.files.remove(trpokes.files.size() - 1);
+				trpokes.filenames.remove(trpokes.filenames.size() - 1);
+				changed = true;
+			}
 			for (int i = 1; i < trainernum; i++) {
 				byte[] trainer = trainers.files.get(i);
 				Trainer tr = allTrainers.next();
 				tr.poketype = 0; // write as type 0 for no item/moves
-				trainer[0] = (byte) tr.poketype;
 				int numPokes = tr.pokemon.size();
-				trainer[3] = (byte) numPokes;
+				if (trainer[0] != (byte) tr.poketype
+						|| trainer[3] != (byte) numPokes) {
+					trainer[0] = (byte) tr.poketype;
+					trainer[3] = (byte) numPokes;
+					changed = true;
+				}
 
 				int bytesNeeded = 6 * numPokes;
 				if (romEntry.romType != Type_DP) {
@@ -1666,7 +1682,11 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 				if (tr.poketype >= 2) {
 					bytesNeeded += 2 * numPokes;
 				}
-				byte[] trpoke = new byte[bytesNeeded];
+				if (trpoke.length < bytesNeeded) {
+					trpoke = new byte[bytesNeeded];
+				} else {
+					Arrays.fill(trpoke, 0, bytesNeeded, (byte) 0);
+				}
 				int pokeOffs = 0;
 				Iterator<TrainerPokemon> tpokes = tr.pokemon.iterator();
 				for (int poke = 0; poke < numPokes; poke++) {
@@ -1691,10 +1711,9 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 						pokeOffs += 2;
 					}
 				}
-				trpokes.files.add(trpoke);
+				changed |= updateNARCFile(trpokes, i, trpoke, bytesNeeded);
 			}
-			this.writeNARC(romEntry.getString("TrainerData"), trainers);
-			this.writeNARC(romEntry.getString("TrainerPokemon"), trpokes);
+			trainersChanged |= changed;
 		} catch (IOException ex) {
 			// change this later
 			ex.printStackTrace();
@@ -1703,16 +1722,15 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, List<MoveLearnt>> getMovesLearnt() {
-		Map<Pokemon, List<MoveLearnt>> movesets = new TreeMap<Pokemon, List<MoveLearnt>>();
+	public Learnsets getMovesLearnt() {
+		Learnsets movesets = new Learnsets(493);
 		try {
 			NARCContents movesLearnt = this.readNARC(romEntry
 					.getString("PokemonMovesets"));
 			for (int i = 1; i <= 493; i++) {
-				Pokemon pkmn = pokes[i];
 				byte[] rom = movesLearnt.files.get(i);
 				int moveDataLoc = 0;
-				List<MoveLearnt> learnt = new ArrayList<MoveLearnt>();
+				movesets.startSet(i);
 				while ((rom[moveDataLoc] & 0xFF) != 0xFF
 						|| (rom[moveDataLoc + 1] & 0xFF) != 0xFF) {
 					int move = (rom[moveDataLoc] & 0xFF);
@@ -1720,13 +1738,9 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 					if ((rom[moveDataLoc + 1] & 0x01) == 0x01) {
 						move += 256;
 					}
-					MoveLearnt ml = new MoveLearnt();
-					ml.level = level;
-					ml.move = move;
-					learnt.add(ml);
+					movesets.add(i, move, level);
 					moveDataLoc += 2;
 				}
-				movesets.put(pkmn, learnt);
 			}
 		} catch (IOException e) {
 			// change this later
@@ -1736,9 +1750,7 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public void setMovesLearnt(Map<Pokemon, List<MoveLearnt>> movesets) {
-		// Get backup of movesets
-		Map<Pokemon, List<MoveLearnt>> oldSets = this.getMovesLearnt();
+	public void setMovesLearnt(Learnsets movesets) {
 		int[] extraLearnSets = new int[] { 7, 13, 13 };
 		// Build up a new NARC
 		NARCContents movesLearnt = new NARCContents();
@@ -1746,19 +1758,18 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 		byte[] blankSet = new byte[] { (byte) 0xFF, (byte) 0xFF, 0, 0 };
 		movesLearnt.files.add(blankSet);
 		for (int i = 1; i <= 493; i++) {
-			Pokemon pkmn = pokes[i];
-			List<MoveLearnt> learnt = movesets.get(pkmn);
-			int sizeNeeded = learnt.size() * 2 + 2;
+			int count = movesets.size(i);
+			int sizeNeeded = count * 2 + 2;
 			if ((sizeNeeded % 4) != 0) {
 				sizeNeeded += 2;
 			}
 			byte[] moveset = new byte[sizeNeeded];
 			int j = 0;
-			for (; j < learnt.size(); j++) {
-				MoveLearnt ml = learnt.get(j);
-				moveset[j * 2] = (byte) (ml.move & 0xFF);
-				int levelPart = (ml.level << 1) & 0xFE;
-				if (ml.move > 255) {
+			for (; j < count; j++) {
+				int move = movesets.move(i, j);
+				moveset[j * 2] = (byte) (move & 0xFF);
+				int levelPart = (movesets.level(i, j) << 1) & 0xFE;
+				if (move > 255) {
 					levelPart++;
 				}
 				moveset[j * 2 + 1] = (byte) levelPart;
@@ -2024,29 +2035,18 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getTMHMCompatibility() {
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
+	public CompatibilityMatrix getTMHMCompatibility() {
+		CompatibilityMatrix compat = new CompatibilityMatrix(493, 100);
 		for (int i = 1; i <= 493; i++) {
-			byte[] data = pokeNarc.files.get(i);
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[101];
-			for (int j = 0; j < 13; j++) {
-				readByteIntoFlags(data, flags, j * 8 + 1, 0x1C + j);
-			}
-			compat.put(pkmn, flags);
+			compat.decodeRow(i, pokeNarc.files.get(i), 0x1C, 13);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setTMHMCompatibility(Map<Pokemon, boolean[]> compatData) {
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			byte[] data = pokeNarc.files.get(pkmn.number);
-			for (int j = 0; j < 13; j++) {
-				data[0x1C + j] = getByteFromFlags(flags, j * 8 + 1);
-			}
+	public void setTMHMCompatibility(CompatibilityMatrix compatData) {
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
+			compatData.encodeRow(i, pokeNarc.files.get(i), 0x1C, 13);
 		}
 	}
 
@@ -2098,14 +2098,14 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getMoveTutorCompatibility() {
+	public CompatibilityMatrix getMoveTutorCompatibility() {
 		if (!hasMoveTutors()) {
-			return new TreeMap<Pokemon, boolean[]>();
+			return new CompatibilityMatrix(0, 0);
 		}
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
 		int amount = romEntry.getInt("MoveTutorCount");
 		int baseOffset = romEntry.getInt("MoveTutorCompatOffset");
 		int bytesPer = romEntry.getInt("MoveTutorCompatBytesCount");
+		CompatibilityMatrix compat = new CompatibilityMatrix(493, amount);
 		try {
 			byte[] mtcFile;
 			if (romEntry.romType == Type_HGSS) {
@@ -2115,13 +2115,8 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 						.getInt("MoveTutorCompatOvlNumber"));
 			}
 			for (int i = 1; i <= 493; i++) {
-				Pokemon pkmn = pokes[i];
-				boolean[] flags = new boolean[amount + 1];
-				for (int j = 0; j < bytesPer; j++) {
-					readByteIntoFlags(mtcFile, flags, j * 8 + 1, baseOffset
-							+ (i - 1) * bytesPer + j);
-				}
-				compat.put(pkmn, flags);
+				compat.decodeRow(i, mtcFile, baseOffset + (i - 1) * bytesPer,
+						bytesPer);
 			}
 		} catch (IOException e) {
 		}
@@ -2129,7 +2124,7 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public void setMoveTutorCompatibility(Map<Pokemon, boolean[]> compatData) {
+	public void setMoveTutorCompatibility(CompatibilityMatrix compatData) {
 		if (!hasMoveTutors()) {
 			return;
 		}
@@ -2144,19 +2139,15 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 				mtcFile = readOverlay(romEntry
 						.getInt("MoveTutorCompatOvlNumber"));
 			}
-			for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData
-					.entrySet()) {
-				Pokemon pkmn = compatEntry.getKey();
-				boolean[] flags = compatEntry.getValue();
+			for (int i = 1; i <= compatData.pokemonCount(); i++) {
 				for (int j = 0; j < bytesPer; j++) {
-					int offsHere = baseOffset + (pkmn.number - 1) * bytesPer
-							+ j;
+					int offsHere = baseOffset + (i - 1) * bytesPer + j;
 					if (j * 8 + 8 <= amount) {
 						// entirely new byte
-						mtcFile[offsHere] = getByteFromFlags(flags, j * 8 + 1);
+						mtcFile[offsHere] = (byte) compatData.getByte(i, j);
 					} else if (j * 8 < amount) {
 						// need some of the original byte
-						int newByte = getByteFromFlags(flags, j * 8 + 1) & 0xFF;
+						int newByte = compatData.getByte(i, j);
 						int oldByteParts = (mtcFile[offsHere] >>> (8 - amount + j * 8)) << (8 - amount + j * 8);
 						mtcFile[offsHere] = (byte) (newByte | oldByteParts);
 					}
@@ -2177,27 +2168,13 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 		if (hexString.length() % 2 != 0) {
 			return -3; // error
 		}
-		byte[] searchFor = new byte[hexString.length() / 2];
-		for (int i = 0; i < searchFor.length; i++) {
-			searchFor[i] = (byte) Integer.parseInt(
-					hexString.substring(i * 2, i * 2 + 2), 16);
-		}
-		List<Integer> found = RomFunctions.search(data, searchFor);
-		if (found.size() == 0) {
-			return -1; // not found
-		} else if (found.size() > 1) {
-			return -2; // not unique
-		} else {
-			return found.get(0);
-		}
+		// "??" in the pattern matches any byte
+		return ParallelScanner.findUnique(data, BytePattern.fromHex(hexString));
 	}
 
-	private boolean lastStringsCompressed = false;
-
 	private List<String> getStrings(int index) {
 		PokeTextData pt = new PokeTextData(msgNarc.files.get(index));
 		pt.decrypt();
-		lastStringsCompressed = pt.compressFlag;
 		return new ArrayList<String>(pt.strlist);
 	}
 
@@ -2322,7 +2299,7 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 
 	@Override
 	public void removeTradeEvolutions(boolean changeMoveEvos) {
-		Map<Pokemon, List<MoveLearnt>> movesets = this.getMovesLearnt();
+		Learnsets movesets = this.getMovesLearnt();
 		log("--Removing Trade Evolutions--");
 		List<Evolution> evos = this.getEvolutions();
 		List<Evolution> extraEvolutions = new ArrayList<Evolution>();
@@ -2365,14 +2342,8 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 			if (changeMoveEvos && evo.type == EvolutionType.LEVEL_WITH_MOVE) {
 				// read move
 				int move = evo.extraInfo;
-				int levelLearntAt = 1;
-				for (MoveLearnt ml : movesets.get(pokes[evo.from])) {
-					if (ml.move == move) {
-						levelLearntAt = ml.level;
-						break;
-					}
-				}
-				if (levelLearntAt == 1) {
+				int levelLearntAt = movesets.levelLearnt(evo.from, move);
+				if (levelLearntAt <= 1) {
 					// override for piloswine
 					levelLearntAt = 45;
 				}
@@ -2441,8 +2412,10 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 
 	@Override
 	public void setTrainerNames(List<String> trainerNames) {
-		List<String> oldTNames = getStrings(romEntry
-				.getInt("TrainerNamesTextOffset"));
+		int textOffset = romEntry.getInt("TrainerNamesTextOffset");
+		PokeTextData oldText = new PokeTextData(msgNarc.files.get(textOffset));
+		oldText.decrypt();
+		List<String> oldTNames = oldText.strlist;
 		List<String> newTNames = new ArrayList<String>(trainerNames);
 		for (int i = 0; i < newTNames.size(); i++) {
 			if (newTNames.get(i).contains("&")) {
@@ -2452,8 +2425,7 @@ public class Gen4RomHandler extends AbstractDSRomHandler {
 		newTNames.add(0, oldTNames.get(0)); // the 0-entry, preserve it
 
 		// rewrite, only compressed if they were compressed before
-		setStrings(romEntry.getInt("TrainerNamesTextOffset"), newTNames,
-				lastStringsCompressed);
+		setStrings(textOffset, newTNames, oldText.compressFlag);
 
 	}
 
@@ -24,7 +24,6 @@ package com.dabomstew.pkrandom.romhandlers;
 /*----------------------------------------------------------------------------*/
 
 import java.io.ByteArrayInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,14 +32,15 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.TreeMap;
 
 import pptxt.PPTxtHandler;
 
-import com.dabomstew.pkrandom.FileFunctions;
+import com.dabomstew.pkrandom.BytePattern;
+import com.dabomstew.pkrandom.ParallelScanner;
 import com.dabomstew.pkrandom.RandomSource;
 import com.dabomstew.pkrandom.RomFunctions;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
 import com.dabomstew.pkrandom.pokemon.Encounter;
 import com.dabomstew.pkrandom.pokemon.EncounterSet;
 import com.dabomstew.pkrandom.pokemon.Evolution;
@@ -48,8 +48,8 @@ import com.dabomstew.pkrandom.pokemon.EvolutionType;
 import com.dabomstew.pkrandom.pokemon.ExpCurve;
 import com.dabomstew.pkrandom.pokemon.IngameTrade;
 import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
 import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
 import com.dabomstew.pkrandom.pokemon.Trainer;
 import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
@@ -147,157 +147,138 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 		private List<StaticPokemon> staticPokemon = new ArrayList<StaticPokemon>();
 
 		private int getInt(String key) {
-			if (!numbers.containsKey(key)) {
-				numbers.put(key, 0);
-			}
-			return numbers.get(key);
+			Integer value = numbers.get(key);
+			return value == null ? 0 : value;
 		}
 
 		private String getString(String key) {
-			if (!strings.containsKey(key)) {
-				strings.put(key, "");
-			}
-			return strings.get(key);
+			String value = strings.get(key);
+			return value == null ? "" : value;
 		}
 	}
 
-	private static List<RomEntry> roms;
 	private static ItemList allowedItems;
 
 	static {
-		loadROMInfo();
 		setupAllowedItems();
 	}
 
-	private static void loadROMInfo() {
-		roms = new ArrayList<RomEntry>();
-		RomEntry current = null;
-		try {
-			Scanner sc = new Scanner(
-					FileFunctions.openConfig("gen5_offsets.ini"), "UTF-8");
-			while (sc.hasNextLine()) {
-				String q = sc.nextLine().trim();
-				if (q.contains("//")) {
-					q = q.substring(0, q.indexOf("//")).trim();
-				}
-				if (!q.isEmpty()) {
-					if (q.startsWith("[") && q.endsWith("]")) {
-						// New rom
-						current = new RomEntry();
-						current.name = q.substring(1, q.length() - 1);
-						roms.add(current);
+	// Only parsed the first time a ROM could be one of ours
+	private static class RomInfo {
+		private static final List<RomEntry> roms = loadROMInfo();
+	}
+
+	private static List<RomEntry> roms() {
+		return RomInfo.roms;
+	}
+
+	private static List<RomEntry> loadROMInfo() {
+		List<RomEntry> roms = new ArrayList<RomEntry>();
+		for (OffsetsDatabase.Section section : OffsetsDatabase
+				.load("gen5_offsets.ini")) {
+			// New rom
+			RomEntry current = new RomEntry();
+			current.name = section.name;
+			roms.add(current);
+			for (String[] r : section.entries) {
+				if (r[0].equals("Game")) {
+					current.romCode = r[1];
+				} else if (r[0].equals("Type")) {
+					if (r[1].equalsIgnoreCase("BW2")) {
+						current.romType = Type_BW2;
 					} else {
-						String[] r = q.split("=", 2);
-						if (r.length == 1) {
-							System.err.println("invalid entry " + q);
-							continue;
-						}
-						if (r[1].endsWith("\r\n")) {
-							r[1] = r[1].substring(0, r[1].length() - 2);
-						}
-						r[1] = r[1].trim();
-						if (r[0].equals("Game")) {
-							current.romCode = r[1];
-						} else if (r[0].equals("Type")) {
-							if (r[1].equalsIgnoreCase("BW2")) {
-								current.romType = Type_BW2;
-							} else {
-								current.romType = Type_BW;
-							}
-						} else if (r[0].equals("CopyFrom")) {
-							for (RomEntry otherEntry : roms) {
-								if (r[1].equalsIgnoreCase(otherEntry.romCode)) {
-									// copy from here
-									current.arrayEntries
-											.putAll(otherEntry.arrayEntries);
-									current.numbers.putAll(otherEntry.numbers);
-									current.strings.putAll(otherEntry.strings);
-									current.offsetArrayEntries
-											.putAll(otherEntry.offsetArrayEntries);
-									if (current.copyStaticPokemon) {
-										current.staticPokemon
-												.addAll(otherEntry.staticPokemon);
-										current.staticPokemonSupport = true;
-									} else {
-										current.staticPokemonSupport = false;
-									}
-								}
-							}
-						} else if (r[0].equals("StaticPokemon[]")) {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								int[] offs = new int[offsets.length];
-								int[] files = new int[offsets.length];
-								int c = 0;
-								for (String off : offsets) {
-									String[] parts = off.split("\\:");
-									files[c] = parseRIInt(parts[0]);
-									offs[c++] = parseRIInt(parts[1]);
-								}
-								StaticPokemon sp = new StaticPokemon();
-								sp.files = files;
-								sp.offsets = offs;
-								current.staticPokemon.add(sp);
+						current.romType = Type_BW;
+					}
+				} else if (r[0].equals("CopyFrom")) {
+					for (RomEntry otherEntry : roms) {
+						if (r[1].equalsIgnoreCase(otherEntry.romCode)) {
+							// copy from here
+							current.arrayEntries
+									.putAll(otherEntry.arrayEntries);
+							current.numbers.putAll(otherEntry.numbers);
+							current.strings.putAll(otherEntry.strings);
+							current.offsetArrayEntries
+									.putAll(otherEntry.offsetArrayEntries);
+							if (current.copyStaticPokemon) {
+								current.staticPokemon
+										.addAll(otherEntry.staticPokemon);
+								current.staticPokemonSupport = true;
 							} else {
-								String[] parts = r[1].split("\\:");
-								int files = parseRIInt(parts[0]);
-								int offs = parseRIInt(parts[1]);
-								StaticPokemon sp = new StaticPokemon();
-								sp.files = new int[] { files };
-								sp.offsets = new int[] { offs };
+								current.staticPokemonSupport = false;
 							}
-						} else if (r[0].equals("StaticPokemonSupport")) {
-							int spsupport = parseRIInt(r[1]);
-							current.staticPokemonSupport = (spsupport > 0);
-						} else if (r[0].equals("CopyStaticPokemon")) {
-							int csp = parseRIInt(r[1]);
-							current.copyStaticPokemon = (csp > 0);
-						} else if (r[0].startsWith("StarterOffsets")
-								|| r[0].equals("StaticPokemonFormValues")) {
-							String[] offsets = r[1].substring(1,
-									r[1].length() - 1).split(",");
-							OffsetWithinEntry[] offs = new OffsetWithinEntry[offsets.length];
+						}
+					}
+				} else if (r[0].equals("StaticPokemon[]")) {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						int[] offs = new int[offsets.length];
+						int[] files = new int[offsets.length];
+						int c = 0;
+						for (String off : offsets) {
+							String[] parts = off.split("\\:");
+							files[c] = parseRIInt(parts[0]);
+							offs[c++] = parseRIInt(parts[1]);
+						}
+						StaticPokemon sp = new StaticPokemon();
+						sp.files = files;
+						sp.offsets = offs;
+						current.staticPokemon.add(sp);
+					} else {
+						String[] parts = r[1].split("\\:");
+						int files = parseRIInt(parts[0]);
+						int offs = parseRIInt(parts[1]);
+						StaticPokemon sp = new StaticPokemon();
+						sp.files = new int[] { files };
+						sp.offsets = new int[] { offs };
+					}
+				} else if (r[0].equals("StaticPokemonSupport")) {
+					int spsupport = parseRIInt(r[1]);
+					current.staticPokemonSupport = (spsupport > 0);
+				} else if (r[0].equals("CopyStaticPokemon")) {
+					int csp = parseRIInt(r[1]);
+					current.copyStaticPokemon = (csp > 0);
+				} else if (r[0].startsWith("StarterOffsets")
+						|| r[0].equals("StaticPokemonFormValues")) {
+					String[] offsets = r[1].substring(1,
+							r[1].length() - 1).split(",");
+					OffsetWithinEntry[] offs = new OffsetWithinEntry[offsets.length];
+					int c = 0;
+					for (String off : offsets) {
+						String[] parts = off.split("\\:");
+						OffsetWithinEntry owe = new OffsetWithinEntry();
+						owe.entry = parseRIInt(parts[0]);
+						owe.offset = parseRIInt(parts[1]);
+						offs[c++] = owe;
+					}
+					current.offsetArrayEntries.put(r[0], offs);
+				} else {
+					if (r[1].startsWith("[") && r[1].endsWith("]")) {
+						String[] offsets = r[1].substring(1,
+								r[1].length() - 1).split(",");
+						if (offsets.length == 1
+								&& offsets[0].trim().isEmpty()) {
+							current.arrayEntries.put(r[0], new int[0]);
+						} else {
+							int[] offs = new int[offsets.length];
 							int c = 0;
 							for (String off : offsets) {
-								String[] parts = off.split("\\:");
-								OffsetWithinEntry owe = new OffsetWithinEntry();
-								owe.entry = parseRIInt(parts[0]);
-								owe.offset = parseRIInt(parts[1]);
-								offs[c++] = owe;
-							}
-							current.offsetArrayEntries.put(r[0], offs);
-						} else {
-							if (r[1].startsWith("[") && r[1].endsWith("]")) {
-								String[] offsets = r[1].substring(1,
-										r[1].length() - 1).split(",");
-								if (offsets.length == 1
-										&& offsets[0].trim().isEmpty()) {
-									current.arrayEntries.put(r[0], new int[0]);
-								} else {
-									int[] offs = new int[offsets.length];
-									int c = 0;
-									for (String off : offsets) {
-										offs[c++] = parseRIInt(off);
-									}
-									current.arrayEntries.put(r[0], offs);
-								}
-							} else if (r[0].endsWith("Offset")
-									|| r[0].endsWith("Count")
-									|| r[0].endsWith("Number")) {
-								int offs = parseRIInt(r[1]);
-								current.numbers.put(r[0], offs);
-							} else {
-								current.strings.put(r[0], r[1]);
+								offs[c++] = parseRIInt(off);
 							}
+							current.arrayEntries.put(r[0], offs);
 						}
+					} else if (r[0].endsWith("Offset")
+							|| r[0].endsWith("Count")
+							|| r[0].endsWith("Number")) {
+						int offs = parseRIInt(r[1]);
+						current.numbers.put(r[0], offs);
+					} else {
+						current.strings.put(r[0], r[1]);
 					}
 				}
 			}
-			sc.close();
-		} catch (FileNotFoundException e) {
 		}
-
+		return roms;
 	}
 
 	private static int parseRIInt(String off) {
@@ -347,10 +328,13 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 
 	private NARCContents pokeNarc, moveNarc, stringsNarc, storyTextNarc,
 			scriptNarc;
+	// loaded on first use, written back on save if setTrainers changed them
+	private NARCContents trainerNarc, trainerPokeNarc, driftveilNarc;
+	private boolean trainersChanged, driftveilChanged;
 
 	@Override
 	protected boolean detectNDSRom(String ndsCode) {
-		for (RomEntry re : roms) {
+		for (RomEntry re : roms()) {
 			if (ndsCode.equals(re.romCode)) {
 				this.romEntry = re;
 				return true; // match
@@ -498,6 +482,18 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 			writeNARC(romEntry.getString("Scripts"), scriptNarc);
 		} catch (IOException e) {
 		}
+		try {
+			if (trainersChanged) {
+				writeNARC(romEntry.getString("TrainerData"), trainerNarc);
+				writeNARC(romEntry.getString("TrainerPokemon"),
+						trainerPokeNarc);
+			}
+			if (driftveilChanged) {
+				writeNARC(romEntry.getString("DriftveilPokemon"),
+						driftveilNarc);
+			}
+		} catch (IOException e) {
+		}
 	}
 
 	private void saveMoves() {
@@ -1201,10 +1197,9 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 	public List<Trainer> getTrainers() {
 		List<Trainer> allTrainers = new ArrayList<Trainer>();
 		try {
-			NARCContents trainers = this.readNARC(romEntry
-					.getString("TrainerData"));
-			NARCContents trpokes = this.readNARC(romEntry
-					.getString("TrainerPokemon"));
+			loadTrainerNARCs();
+			NARCContents trainers = trainerNarc;
+			NARCContents trpokes = trainerPokeNarc;
 			int trainernum = trainers.files.size();
 			List<String> tclasses = this.getTrainerClassNames();
 			List<String> tnames = this.getTrainerNames();
@@ -1267,8 +1262,7 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 				tagTrainersBW(allTrainers);
 			} else {
 				if (!romEntry.getString("DriftveilPokemon").isEmpty()) {
-					NARCContents driftveil = this.readNARC(romEntry
-							.getString("DriftveilPokemon"));
+					NARCContents driftveil = driftveilNarc;
 					for (int trno = 0; trno < 2; trno++) {
 						Trainer tr = new Trainer();
 						tr.poketype = 3;
@@ -1299,6 +1293,19 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 		return allTrainers;
 	}
 
+	private void loadTrainerNARCs() throws IOException {
+		if (trainerNarc == null) {
+			trainerNarc = this.readNARC(romEntry.getString("TrainerData"));
+			trainerPokeNarc = this.readNARC(romEntry
+					.getString("TrainerPokemon"));
+			if (romEntry.romType == Type_BW2
+					&& !romEntry.getString("DriftveilPokemon").isEmpty()) {
+				driftveilNarc = this.readNARC(romEntry
+						.getString("DriftveilPokemon"));
+			}
+		}
+	}
+
 	private void tagTrainersBW(List<Trainer> trs) {
 		// We use different Gym IDs to cheat the system for the 3 n00bs
 		// Chili, Cress, and Cilan
@@ -1484,19 +1491,32 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 	public void setTrainers(List<Trainer> trainerData) {
 		Iterator<Trainer> allTrainers = trainerData.iterator();
 		try {
-			NARCContents trainers = this.readNARC(romEntry
-					.getString("TrainerData"));
-			NARCContents trpokes = new NARCContents();
+			loadTrainerNARCs();
+			NARCContents trainers = trainerNarc;
+			NARCContents trpokes = trainerPokeNarc;
+			// Records are encoded into one buffer and only replace the
+			// existing file if they differ from it
+			byte[] trpoke = new byte[8];
+			boolean changed = false;
 			// empty entry
-			trpokes.files.add(new byte[] { 0, 0, 0, 0, 0, 0, 0, 0 });
+			changed |= updateNARCFile(trpokes, 0, trpoke, 8);
 			int trainernum = trainers.files.size();
+			while (trpokes.files.size() > trainernum) {
+				trpokes.files.remove(trpokes.files.size() - 1);
+				trpokes.filenames.remove(trpokes.filenames.size() - 1);
+				changed = true;
+			}
 			for (int i = 1; i < trainernum; i++) {
 				byte[] trainer = trainers.files.get(i);
 				Trainer tr = allTrainers.next();
 				tr.poketype = 0; // write as type 0 for no item/moves
-				trainer[0] = (byte) tr.poketype;
 				int numPokes = tr.pokemon.size();
-				trainer[3] = (byte) numPokes;
+				if (trainer[0] != (byte) tr.poketype
+						|| trainer[3] != (byte) numPokes) {
+					trainer[0] = (byte) tr.poketype;
+					trainer[3] = (byte) numPokes;
+					changed = true;
+				}
 
 				int bytesNeeded = 8 * numPokes;
 				if (tr.poketype % 2 == 1) {
@@ -1505,7 +1525,11 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 				if (tr.poketype >= 2) {
 					bytesNeeded += 2 * numPokes;
 				}
-				byte[] trpoke = new byte[bytesNeeded];
+				if (trpoke.length < bytesNeeded) {
+					trpoke = new byte[bytesNeeded];
+				} else {
+					Arrays.fill(trpoke, 0, bytesNeeded, (byte) 0);
+				}
 				int pokeOffs = 0;
 				Iterator<TrainerPokemon> tpokes = tr.pokemon.iterator();
 				for (int poke = 0; poke < numPokes; poke++) {
@@ -1528,16 +1552,14 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 						pokeOffs += 8;
 					}
 				}
-				trpokes.files.add(trpoke);
+				changed |= updateNARCFile(trpokes, i, trpoke, bytesNeeded);
 			}
-			this.writeNARC(romEntry.getString("TrainerData"), trainers);
-			this.writeNARC(romEntry.getString("TrainerPokemon"), trpokes);
+			trainersChanged |= changed;
 			// Deal with PWT
 			if (romEntry.romType == Type_BW2
 					&& !romEntry.getString("DriftveilPokemon").isEmpty()) {
-				NARCContents driftveil = this.readNARC(romEntry
-						.getString("DriftveilPokemon"));
-				Map<Pokemon, List<MoveLearnt>> movesets = this.getMovesLearnt();
+				NARCContents driftveil = driftveilNarc;
+				Learnsets movesets = this.getMovesLearnt();
 				for (int trno = 0; trno < 2; trno++) {
 					Trainer tr = allTrainers.next();
 					Iterator<TrainerPokemon> tpks = tr.pokemon.iterator();
@@ -1551,20 +1573,20 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 						// pick 4 moves, based on moveset@25
 						int[] moves = new int[4];
 						int moveCount = 0;
-						List<MoveLearnt> set = movesets.get(tpk.pokemon);
-						for (int i = 0; i < set.size(); i++) {
-							MoveLearnt ml = set.get(i);
-							if (ml.level > 25) {
+						int pkNum = tpk.pokemon.number;
+						for (int i = 0; i < movesets.size(pkNum); i++) {
+							if (movesets.level(pkNum, i) > 25) {
 								break;
 							}
+							int move = movesets.move(pkNum, i);
 							// unconditional learn?
 							if (moveCount < 4) {
-								moves[moveCount++] = ml.move;
+								moves[moveCount++] = move;
 							} else {
 								// already knows?
 								boolean doTeach = true;
 								for (int j = 0; j < 4; j++) {
-									if (moves[j] == ml.move) {
+									if (moves[j] == move) {
 										doTeach = false;
 										break;
 									}
@@ -1574,7 +1596,7 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 									for (int j = 0; j < 3; j++) {
 										moves[j] = moves[j + 1];
 									}
-									moves[3] = ml.move;
+									moves[3] = move;
 								}
 							}
 						}
@@ -1584,8 +1606,7 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 						}
 					}
 				}
-				this.writeNARC(romEntry.getString("DriftveilPokemon"),
-						driftveil);
+				driftveilChanged = true;
 			}
 		} catch (IOException ex) {
 			// change this later
@@ -1594,27 +1615,21 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, List<MoveLearnt>> getMovesLearnt() {
-		Map<Pokemon, List<MoveLearnt>> movesets = new TreeMap<Pokemon, List<MoveLearnt>>();
+	public Learnsets getMovesLearnt() {
+		Learnsets movesets = new Learnsets(649);
 		try {
 			NARCContents movesLearnt = this.readNARC(romEntry
 					.getString("PokemonMovesets"));
 			for (int i = 1; i <= 649; i++) {
-				Pokemon pkmn = pokes[i];
 				byte[] movedata = movesLearnt.files.get(i);
 				int moveDataLoc = 0;
-				List<MoveLearnt> learnt = new ArrayList<MoveLearnt>();
+				movesets.startSet(i);
 				while (readWord(movedata, moveDataLoc) != 0xFFFF
 						|| readWord(movedata, moveDataLoc + 2) != 0xFFFF) {
-					int move = readWord(movedata, moveDataLoc);
-					int level = readWord(movedata, moveDataLoc + 2);
-					MoveLearnt ml = new MoveLearnt();
-					ml.level = level;
-					ml.move = move;
-					learnt.add(ml);
+					movesets.add(i, readWord(movedata, moveDataLoc),
+							readWord(movedata, moveDataLoc + 2));
 					moveDataLoc += 4;
 				}
-				movesets.put(pkmn, learnt);
 			}
 		} catch (IOException e) {
 			// change this later
@@ -1624,26 +1639,26 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public void setMovesLearnt(Map<Pokemon, List<MoveLearnt>> movesets) {
-		// Backup of movesets for later
-		Map<Pokemon, List<MoveLearnt>> oldSets = this.getMovesLearnt();
+	public void setMovesLearnt(Learnsets movesets) {
 		try {
 			NARCContents movesLearnt = readNARC(romEntry
 					.getString("PokemonMovesets"));
 			for (int i = 1; i <= 649; i++) {
-				Pokemon pkmn = pokes[i];
-				List<MoveLearnt> learnt = movesets.get(pkmn);
-				int sizeNeeded = learnt.size() * 4 + 4;
-				byte[] moveset = new byte[sizeNeeded];
+				int count = movesets.size(i);
+				int sizeNeeded = count * 4 + 4;
+				// overwrite the old file if the set is still the same size
+				byte[] moveset = movesLearnt.files.get(i);
+				if (moveset.length != sizeNeeded) {
+					moveset = new byte[sizeNeeded];
+					movesLearnt.files.set(i, moveset);
+				}
 				int j = 0;
-				for (; j < learnt.size(); j++) {
-					MoveLearnt ml = learnt.get(j);
-					writeWord(moveset, j * 4, ml.move);
-					writeWord(moveset, j * 4 + 2, ml.level);
+				for (; j < count; j++) {
+					writeWord(moveset, j * 4, movesets.move(i, j));
+					writeWord(moveset, j * 4 + 2, movesets.level(i, j));
 				}
 				writeWord(moveset, j * 4, 0xFFFF);
 				writeWord(moveset, j * 4 + 2, 0xFFFF);
-				movesLearnt.files.set(i, moveset);
 			}
 			// Save
 			this.writeNARC(romEntry.getString("PokemonMovesets"), movesLearnt);
@@ -1880,29 +1895,18 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getTMHMCompatibility() {
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
+	public CompatibilityMatrix getTMHMCompatibility() {
+		CompatibilityMatrix compat = new CompatibilityMatrix(649, 101);
 		for (int i = 1; i <= 649; i++) {
-			byte[] data = pokeNarc.files.get(i);
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[102];
-			for (int j = 0; j < 13; j++) {
-				readByteIntoFlags(data, flags, j * 8 + 1, 0x28 + j);
-			}
-			compat.put(pkmn, flags);
+			compat.decodeRow(i, pokeNarc.files.get(i), 0x28, 13);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setTMHMCompatibility(Map<Pokemon, boolean[]> compatData) {
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			byte[] data = pokeNarc.files.get(pkmn.number);
-			for (int j = 0; j < 13; j++) {
-				data[0x28 + j] = getByteFromFlags(flags, j * 8 + 1);
-			}
+	public void setTMHMCompatibility(CompatibilityMatrix compatData) {
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
+			compatData.encodeRow(i, pokeNarc.files.get(i), 0x28, 13);
 		}
 	}
 
@@ -1952,38 +1956,31 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 	}
 
 	@Override
-	public Map<Pokemon, boolean[]> getMoveTutorCompatibility() {
+	public CompatibilityMatrix getMoveTutorCompatibility() {
 		if (!hasMoveTutors()) {
-			return new TreeMap<Pokemon, boolean[]>();
+			return new CompatibilityMatrix(0, 0);
 		}
-		Map<Pokemon, boolean[]> compat = new TreeMap<Pokemon, boolean[]>();
+		CompatibilityMatrix compat = new CompatibilityMatrix(649, 60);
 		int[] countsPersonalOrder = new int[] { 15, 17, 13, 15 };
 		int[] countsMoveOrder = new int[] { 13, 15, 15, 17 };
 		int[] personalToMoveOrder = new int[] { 1, 3, 0, 2 };
 		for (int i = 1; i <= 649; i++) {
 			byte[] data = pokeNarc.files.get(i);
-			Pokemon pkmn = pokes[i];
-			boolean[] flags = new boolean[61];
 			for (int mt = 0; mt < 4; mt++) {
-				boolean[] mtflags = new boolean[countsPersonalOrder[mt] + 1];
-				for (int j = 0; j < 4; j++) {
-					readByteIntoFlags(data, mtflags, j * 8 + 1, 0x3C + mt * 4
-							+ j);
-				}
+				long mtflags = readLong(data, 0x3C + mt * 4) & 0xFFFFFFFFL;
 				int offsetOfThisData = 0;
 				for (int cmoIndex = 0; cmoIndex < personalToMoveOrder[mt]; cmoIndex++) {
 					offsetOfThisData += countsMoveOrder[cmoIndex];
 				}
-				System.arraycopy(mtflags, 1, flags, offsetOfThisData + 1,
-						countsPersonalOrder[mt]);
+				compat.setBits(i, offsetOfThisData + 1, countsPersonalOrder[mt],
+						mtflags);
 			}
-			compat.put(pkmn, flags);
 		}
 		return compat;
 	}
 
 	@Override
-	public void setMoveTutorCompatibility(Map<Pokemon, boolean[]> compatData) {
+	public void setMoveTutorCompatibility(CompatibilityMatrix compatData) {
 		if (!hasMoveTutors()) {
 			return;
 		}
@@ -1993,22 +1990,16 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 		int[] countsPersonalOrder = new int[] { 15, 17, 13, 15 };
 		int[] countsMoveOrder = new int[] { 13, 15, 15, 17 };
 		int[] personalToMoveOrder = new int[] { 1, 3, 0, 2 };
-		for (Map.Entry<Pokemon, boolean[]> compatEntry : compatData.entrySet()) {
-			Pokemon pkmn = compatEntry.getKey();
-			boolean[] flags = compatEntry.getValue();
-			byte[] data = pokeNarc.files.get(pkmn.number);
+		for (int i = 1; i <= compatData.pokemonCount(); i++) {
+			byte[] data = pokeNarc.files.get(i);
 			for (int mt = 0; mt < 4; mt++) {
 				int offsetOfThisData = 0;
 				for (int cmoIndex = 0; cmoIndex < personalToMoveOrder[mt]; cmoIndex++) {
 					offsetOfThisData += countsMoveOrder[cmoIndex];
 				}
-				boolean[] mtflags = new boolean[countsPersonalOrder[mt] + 1];
-				System.arraycopy(flags, offsetOfThisData + 1, mtflags, 1,
+				long mtflags = compatData.getBits(i, offsetOfThisData + 1,
 						countsPersonalOrder[mt]);
-				for (int j = 0; j < 4; j++) {
-					data[0x3C + mt * 4 + j] = getByteFromFlags(mtflags,
-							j * 8 + 1);
-				}
+				writeLong(data, 0x3C + mt * 4, (int) mtflags);
 			}
 		}
 	}
@@ -2017,19 +2008,8 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 		if (hexString.length() % 2 != 0) {
 			return -3; // error
 		}
-		byte[] searchFor = new byte[hexString.length() / 2];
-		for (int i = 0; i < searchFor.length; i++) {
-			searchFor[i] = (byte) Integer.parseInt(
-					hexString.substring(i * 2, i * 2 + 2), 16);
-		}
-		List<Integer> found = RomFunctions.search(data, searchFor);
-		if (found.size() == 0) {
-			return -1; // not found
-		} else if (found.size() > 1) {
-			return -2; // not unique
-		} else {
-			return found.get(0);
-		}
+		// "??" in the pattern matches any byte
+		return ParallelScanner.findUnique(data, BytePattern.fromHex(hexString));
 	}
 
 	private List<String> getStrings(boolean isStoryText, int index) {
@@ -2097,7 +2077,6 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 					}
 				}
 			}
-			logBlankLine();
 		} catch (IOException e) {
 			// can't do anything
 		}
@@ -2139,7 +2118,7 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 
 	@Override
 	public void removeTradeEvolutions(boolean changeMoveEvos) {
-		Map<Pokemon, List<MoveLearnt>> movesets = this.getMovesLearnt();
+		Learnsets movesets = this.getMovesLearnt();
 		log("--Removing Trade Evolutions--");
 		List<Evolution> evos = this.getEvolutions();
 		List<Evolution> extraEvolutions = new ArrayList<Evolution>();
@@ -2147,14 +2126,8 @@ public class Gen5RomHandler extends AbstractDSRomHandler {
 			if (changeMoveEvos && evo.type == EvolutionType.LEVEL_WITH_MOVE) {
 				// read move
 				int move = evo.extraInfo;
-				int levelLearntAt = 1;
-				for (MoveLearnt ml : movesets.get(pokes[evo.from])) {
-					if (ml.move == move) {
-						levelLearntAt = ml.level;
-						break;
-					}
-				}
-				if (levelLearntAt == 1) {
+				int levelLearntAt = movesets.levelLearnt(evo.from, move);
+				if (levelLearntAt <= 1) {
 					// override for piloswine
 					levelLearntAt = 45;
 				}
@@ -0,0 +1,240 @@
+package com.dabomstew.pkrandom.romhandlers;
+
+/*----------------------------------------------------------------------------*/
+/*--  OffsetsDatabase.java - the gen*_offsets.ini files, split into one     --*/
+/*--                         section of key/value pairs per ROM and cached  --*/
+/*--                         in binary form after the first run.            --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dabomstew.pkrandom.Checksums;
+import com.dabomstew.pkrandom.FileFunctions;
+import com.dabomstew.pkrandom.gui.RandomizerGUI;
+
+/**
+ * Reads an offsets file once per run and keeps it as a list of sections,
+ * one per [ROM] header, each holding its key=value lines in file order with
+ * comments and whitespace already stripped. The handlers build their ROM
+ * entries from these the first time they're asked about a ROM, so a run
+ * only pays for the generations it actually looks at.
+ * <p>
+ * The first run also writes the sections to a binary file next to the
+ * randomizer (gen1_offsets.ini becomes gen1_offsets.bin). Later runs read
+ * that instead of parsing the text, as long as its stored CRC still matches
+ * the config file. A missing, stale or damaged cache is simply rebuilt, and
+ * if the directory isn't writable every run parses the text as before.
+ */
+public class OffsetsDatabase {
+
+	public static class Section {
+		public final String name;
+		// {key, value} pairs, in file order
+		public final List<String[]> entries = new ArrayList<String[]>();
+
+		private Section(String name) {
+			this.name = name;
+		}
+	}
+
+	private static final Map<String, List<Section>> loaded = new HashMap<String, List<Section>>();
+
+	private static final int CACHE_MAGIC = 0x4F464653; // "OFFS"
+	private static final int CACHE_VERSION = 1;
+
+	/**
+	 * The sections of a config file, or an empty list if it's missing.
+	 */
+	public static synchronized List<Section> load(String filename) {
+		List<Section> sections = loaded.get(filename);
+		if (sections == null) {
+			try {
+				byte[] config = readConfig(filename);
+				int crc = Checksums.crc32(config);
+				File cache = cacheFile(filename);
+				sections = readCache(cache, crc);
+				if (sections == null) {
+					sections = parse(new String(config, "UTF-8"));
+					writeCache(cache, crc, sections);
+				}
+				sections = Collections.unmodifiableList(sections);
+			} catch (IOException ex) {
+				sections = Collections.emptyList();
+			}
+			loaded.put(filename, sections);
+		}
+		return sections;
+	}
+
+	private static byte[] readConfig(String filename) throws IOException {
+		InputStream in = FileFunctions.openConfig(filename);
+		if (in == null) {
+			throw new IOException("missing config file " + filename);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			int count;
+			while ((count = in.read(buf)) != -1) {
+				out.write(buf, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static File cacheFile(String filename) {
+		int dot = filename.lastIndexOf('.');
+		String base = dot > 0 ? filename.substring(0, dot) : filename;
+		return new File(RandomizerGUI.getRootPath(), base + ".bin");
+	}
+
+	// null if there's no usable cache for this version of the config
+	private static List<Section> readCache(File cache, int crc) {
+		if (!cache.isFile()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(cache)));
+			try {
+				if (in.readInt() != CACHE_MAGIC
+						|| in.readInt() != CACHE_VERSION
+						|| in.readInt() != crc) {
+					return null;
+				}
+				int sectionCount = in.readInt();
+				List<Section> sections = new ArrayList<Section>(sectionCount);
+				for (int i = 0; i < sectionCount; i++) {
+					Section section = new Section(in.readUTF());
+					int entryCount = in.readInt();
+					for (int j = 0; j < entryCount; j++) {
+						section.entries.add(new String[] { in.readUTF(),
+								in.readUTF() });
+					}
+					sections.add(section);
+				}
+				return sections;
+			} finally {
+				in.close();
+			}
+		} catch (IOException ex) {
+			return null;
+		} catch (SecurityException ex) {
+			return null;
+		}
+	}
+
+	// Best effort: written to a temp file first so a reader in another
+	// process never sees half a cache, and silently skipped if we can't.
+	private static void writeCache(File cache, int crc, List<Section> sections) {
+		File temp = null;
+		try {
+			temp = File.createTempFile(cache.getName(), ".tmp",
+					cache.getAbsoluteFile().getParentFile());
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(CACHE_MAGIC);
+				out.writeInt(CACHE_VERSION);
+				out.writeInt(crc);
+				out.writeInt(sections.size());
+				for (Section section : sections) {
+					out.writeUTF(section.name);
+					out.writeInt(section.entries.size());
+					for (String[] entry : section.entries) {
+						out.writeUTF(entry[0]);
+						out.writeUTF(entry[1]);
+					}
+				}
+			} finally {
+				out.close();
+			}
+			cache.delete();
+			if (temp.renameTo(cache)) {
+				temp = null;
+			}
+		} catch (IOException ex) {
+			// no cache this run
+		} catch (SecurityException ex) {
+			// no cache this run
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	// Plain indexOf scanning; this used to be a Scanner and a regex split
+	// per line, which was most of the cost of loading a handler class.
+	private static List<Section> parse(String text) {
+		List<Section> sections = new ArrayList<Section>();
+		Section current = null;
+		int pos = 0;
+		while (pos < text.length()) {
+			int end = text.indexOf('\n', pos);
+			if (end < 0) {
+				end = text.length();
+			}
+			String q = text.substring(pos, end).trim();
+			pos = end + 1;
+			int comment = q.indexOf("//");
+			if (comment >= 0) {
+				q = q.substring(0, comment).trim();
+			}
+			if (q.isEmpty()) {
+				continue;
+			}
+			if (q.startsWith("[") && q.endsWith("]")) {
+				// New rom
+				current = new Section(q.substring(1, q.length() - 1));
+				sections.add(current);
+				continue;
+			}
+			int equals = q.indexOf('=');
+			if (equals < 0 || current == null) {
+				System.err.println("invalid entry " + q);
+				continue;
+			}
+			current.entries.add(new String[] {
+					q.substring(0, equals).trim(),
+					q.substring(equals + 1).trim() });
+		}
+		return sections;
+	}
+
+}
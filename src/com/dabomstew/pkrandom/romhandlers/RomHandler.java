@@ -25,15 +25,17 @@ package com.dabomstew.pkrandom.romhandlers;
 /*----------------------------------------------------------------------------*/
 
 import java.util.List;
-import java.util.Map;
 
+import com.dabomstew.pkrandom.delta.DeltaFormat;
+import com.dabomstew.pkrandom.log.LogSink;
+import com.dabomstew.pkrandom.pokemon.CompatibilityMatrix;
 import com.dabomstew.pkrandom.pokemon.EncounterSet;
 import com.dabomstew.pkrandom.pokemon.Evolution;
 import com.dabomstew.pkrandom.pokemon.GenRestrictions;
 import com.dabomstew.pkrandom.pokemon.IngameTrade;
 import com.dabomstew.pkrandom.pokemon.ItemList;
+import com.dabomstew.pkrandom.pokemon.Learnsets;
 import com.dabomstew.pkrandom.pokemon.Move;
-import com.dabomstew.pkrandom.pokemon.MoveLearnt;
 import com.dabomstew.pkrandom.pokemon.Pokemon;
 import com.dabomstew.pkrandom.pokemon.Trainer;
 import com.dabomstew.pkrandom.pokemon.Type;
@@ -44,14 +46,29 @@ public interface RomHandler {
 
 	public boolean detectRom(String filename);
 
+	// The same check from just the start of the file (see RomIdentifier)
+
+	public boolean detectRom(RomHeader header);
+
 	// Basic load/save to filenames
 
 	public boolean loadRom(String filename);
 
 	public boolean saveRom(String filename);
 
+	// Save just the changes, as a patch against the file the ROM was loaded
+	// from, in the format patchFormat() picks for it
+
+	public DeltaFormat patchFormat();
+
+	public boolean savePatch(String filename);
+
 	public String loadedFilename();
 
+	// Where the verbose log goes (the randomizer sets this before a run)
+
+	public void setLogSink(LogSink log);
+
 	// Functionality
 	public boolean isInGame(Pokemon pkmn);
 
@@ -170,9 +187,9 @@ public interface RomHandler {
 
 	// Randomizer: moves learnt
 
-	public Map<Pokemon, List<MoveLearnt>> getMovesLearnt();
+	public Learnsets getMovesLearnt();
 
-	public void setMovesLearnt(Map<Pokemon, List<MoveLearnt>> movesets);
+	public void setMovesLearnt(Learnsets movesets);
 
 	public void randomizeMovesLearnt(boolean typeThemed, boolean noBroken,
 			boolean forceFourStartingMoves);
@@ -209,17 +226,17 @@ public interface RomHandler {
 
 	/**
 	 * Get TM/HM compatibility data from this rom. The result should contain a
-	 * boolean array for each Pokemon indexed as such:
+	 * row for each Pokemon (by number) with columns indexed as such:
 	 * 
-	 * 0: blank (false) / 1 - (getTMCount()) : TM compatibility /
+	 * 1 - (getTMCount()) : TM compatibility /
 	 * (getTMCount()+1) - (getTMCount()+getHMCount()) - HM compatibility
 	 * 
 	 * @return
 	 */
 
-	public Map<Pokemon, boolean[]> getTMHMCompatibility();
+	public CompatibilityMatrix getTMHMCompatibility();
 
-	public void setTMHMCompatibility(Map<Pokemon, boolean[]> compatData);
+	public void setTMHMCompatibility(CompatibilityMatrix compatData);
 
 	public void randomizeTMHMCompatibility(boolean preferSameType);
 
@@ -239,9 +256,9 @@ public interface RomHandler {
 
 	public void randomizeMoveTutorMoves(boolean noBroken, boolean preserveField);
 
-	public Map<Pokemon, boolean[]> getMoveTutorCompatibility();
+	public CompatibilityMatrix getMoveTutorCompatibility();
 
-	public void setMoveTutorCompatibility(Map<Pokemon, boolean[]> compatData);
+	public void setMoveTutorCompatibility(CompatibilityMatrix compatData);
 
 	public void randomizeMoveTutorCompatibility(boolean preferSameType);
 
@@ -0,0 +1,101 @@
+package com.dabomstew.pkrandom.romhandlers;
+
+/*----------------------------------------------------------------------------*/
+/*--  RomHeader.java - the first few hundred bytes of a ROM file,           --*/
+/*--                   enough to tell which game it is.                     --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The start of a ROM file plus its length, which is all the handlers need
+ * to decide whether a file is theirs: the Game Boy cartridge header ends at
+ * 0x150, the GBA game code and version are at 0xAC and 0xBC, and the DS game
+ * code is at 0x0C.
+ */
+public class RomHeader {
+
+	public static final int SIZE = 512;
+
+	/**
+	 * The first SIZE bytes of the file, zero-filled past the end of a short
+	 * file.
+	 */
+	public final byte[] data;
+	public final long fileLength;
+
+	public RomHeader(byte[] data, long fileLength) {
+		if (data.length < SIZE) {
+			byte[] padded = new byte[SIZE];
+			System.arraycopy(data, 0, padded, 0, data.length);
+			data = padded;
+		}
+		this.data = data;
+		this.fileLength = fileLength;
+	}
+
+	/**
+	 * Read the header of a file, or null if it can't be read.
+	 */
+	public static RomHeader read(String filename) {
+		try {
+			FileInputStream fis = new FileInputStream(filename);
+			try {
+				long length = fis.getChannel().size();
+				byte[] data = new byte[SIZE];
+				readFully(fis, data);
+				return new RomHeader(data, length);
+			} finally {
+				fis.close();
+			}
+		} catch (IOException ex) {
+			return null;
+		}
+	}
+
+	private static void readFully(InputStream in, byte[] buf)
+			throws IOException {
+		int pos = 0;
+		while (pos < buf.length) {
+			int read = in.read(buf, pos, buf.length - pos);
+			if (read < 0) {
+				break;
+			}
+			pos += read;
+		}
+	}
+
+	/**
+	 * The 4-character code at offset, as the DS and GBA headers store their
+	 * game codes.
+	 */
+	public String gameCode(int offset) {
+		char[] code = new char[4];
+		for (int i = 0; i < 4; i++) {
+			code[i] = (char) (data[offset + i] & 0xFF);
+		}
+		return new String(code);
+	}
+
+}
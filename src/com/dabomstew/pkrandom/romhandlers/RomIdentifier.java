@@ -0,0 +1,55 @@
+package com.dabomstew.pkrandom.romhandlers;
+
+/*----------------------------------------------------------------------------*/
+/*--  RomIdentifier.java - works out which handler a ROM file belongs       --*/
+/*--                       to from its header alone.                        --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+/**
+ * Picks the handler for a ROM file from one small read of its header, rather
+ * than letting every handler open (and the GB ones load) the whole file in
+ * turn. Each handler checks the header fields its games use: the Game Boy
+ * title, version and header checksum, the GBA game code and version byte,
+ * or the DS game code. The handler that matches has already resolved its
+ * ROM entry, and only reads the full file when loadRom is called.
+ */
+public class RomIdentifier {
+
+	/**
+	 * The first of handlers that recognises the file, or null if none do or
+	 * the file can't be read.
+	 */
+	public static RomHandler identify(String filename, RomHandler[] handlers) {
+		RomHeader header = RomHeader.read(filename);
+		return header == null ? null : identify(header, handlers);
+	}
+
+	public static RomHandler identify(RomHeader header, RomHandler[] handlers) {
+		for (RomHandler rh : handlers) {
+			if (rh.detectRom(header)) {
+				return rh;
+			}
+		}
+		return null;
+	}
+
+}
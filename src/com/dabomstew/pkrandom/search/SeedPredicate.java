@@ -0,0 +1,47 @@
+package com.dabomstew.pkrandom.search;
+
+/*----------------------------------------------------------------------------*/
+/*--  SeedPredicate.java - a condition a seed search looks for.             --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.Set;
+
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.pipeline.Table;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * Something a seed search wants to be true of a randomized ROM, checked
+ * against the handler's data model once the stages it depends on have run
+ * and before anything is saved.
+ */
+public interface SeedPredicate {
+
+	/**
+	 * The tables test looks at. The search only runs the stages that go
+	 * into these.
+	 */
+	Set<Table> getTables();
+
+	boolean test(RomHandler romHandler, Settings settings);
+
+}
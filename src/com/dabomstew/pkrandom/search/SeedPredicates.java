@@ -0,0 +1,150 @@
+package com.dabomstew.pkrandom.search;
+
+/*----------------------------------------------------------------------------*/
+/*--  SeedPredicates.java - the predicates seed searches come with.         --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.util.List;
+import java.util.Set;
+
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.pipeline.Stage;
+import com.dabomstew.pkrandom.pipeline.Table;
+import com.dabomstew.pkrandom.pokemon.Encounter;
+import com.dabomstew.pkrandom.pokemon.EncounterSet;
+import com.dabomstew.pkrandom.pokemon.Pokemon;
+import com.dabomstew.pkrandom.pokemon.Trainer;
+import com.dabomstew.pkrandom.pokemon.TrainerPokemon;
+import com.dabomstew.pkrandom.pokemon.Type;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * The predicates race organizers ask for most, and the names SeedSearch
+ * knows them by on its command line:
+ * 
+ * <pre>
+ * dual-type-starters          every starter has two types
+ * no-wild-legendary:AREA      no legendary in encounter set AREA (0-based,
+ *                             in the order the spoiler log lists them)
+ * gym-type:N:TYPE             every Pokemon of gym N's trainers is TYPE
+ * </pre>
+ */
+public class SeedPredicates {
+
+	public static SeedPredicate dualTypeStarters() {
+		return new SeedPredicate() {
+			@Override
+			public Set<Table> getTables() {
+				return Stage.tables(Table.STARTERS, Table.TYPES);
+			}
+
+			@Override
+			public boolean test(RomHandler romHandler, Settings settings) {
+				for (Pokemon pkmn : romHandler.getStarters()) {
+					if (pkmn.secondaryType == null) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	public static SeedPredicate noWildLegendary(final int area) {
+		return new SeedPredicate() {
+			@Override
+			public Set<Table> getTables() {
+				return Stage.tables(Table.ENCOUNTERS);
+			}
+
+			@Override
+			public boolean test(RomHandler romHandler, Settings settings) {
+				List<EncounterSet> areas = romHandler
+						.getEncounters(settings.useTimeBasedEncounters);
+				if (area >= areas.size()) {
+					return false;
+				}
+				for (Encounter enc : areas.get(area).encounters) {
+					if (enc.pokemon.isLegendary()) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	public static SeedPredicate gymType(int gym, final Type type) {
+		final String group = "GYM" + gym;
+		return new SeedPredicate() {
+			@Override
+			public Set<Table> getTables() {
+				return Stage.tables(Table.TRAINER_POKEMON, Table.TYPES);
+			}
+
+			@Override
+			public boolean test(RomHandler romHandler, Settings settings) {
+				boolean found = false;
+				for (Trainer t : romHandler.getTrainers()) {
+					if (t.tag == null
+							|| !(t.tag.equals(group) || t.tag
+									.startsWith(group + "-"))) {
+						continue;
+					}
+					for (TrainerPokemon tp : t.pokemon) {
+						if (tp.pokemon.primaryType != type
+								&& tp.pokemon.secondaryType != type) {
+							return false;
+						}
+						found = true;
+					}
+				}
+				return found;
+			}
+		};
+	}
+
+	/**
+	 * The predicate a name from the table above stands for.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if it isn't one
+	 */
+	public static SeedPredicate parse(String spec) {
+		String[] parts = spec.split(":");
+		try {
+			if (parts[0].equals("dual-type-starters") && parts.length == 1) {
+				return dualTypeStarters();
+			} else if (parts[0].equals("no-wild-legendary")
+					&& parts.length == 2) {
+				return noWildLegendary(Integer.parseInt(parts[1]));
+			} else if (parts[0].equals("gym-type") && parts.length == 3) {
+				return gymType(Integer.parseInt(parts[1]),
+						Type.valueOf(parts[2].toUpperCase()));
+			}
+		} catch (IllegalArgumentException ex) {
+			// bad number or type, same as any other bad spec
+		}
+		throw new IllegalArgumentException("unknown predicate " + spec);
+	}
+
+}
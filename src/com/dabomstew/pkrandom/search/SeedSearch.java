@@ -0,0 +1,300 @@
+package com.dabomstew.pkrandom.search;
+
+/*----------------------------------------------------------------------------*/
+/*--  SeedSearch.java - finds seeds whose randomized ROM meets              --*/
+/*--                    a set of conditions.                                --*/
+/*--  																		--*/
+/*--  Part of "Universal Pokemon Randomizer" by Dabomstew					--*/
+/*--  Pokemon and any associated names and the like are						--*/
+/*--  trademark and (C) Nintendo 1996-2012.									--*/
+/*--  																		--*/
+/*--  The custom code written here is licensed under the terms of the GPL:	--*/
+/*--                                                                        --*/
+/*--  This program is free software: you can redistribute it and/or modify  --*/
+/*--  it under the terms of the GNU General Public License as published by  --*/
+/*--  the Free Software Foundation, either version 3 of the License, or     --*/
+/*--  (at your option) any later version.                                   --*/
+/*--                                                                        --*/
+/*--  This program is distributed in the hope that it will be useful,       --*/
+/*--  but WITHOUT ANY WARRANTY; without even the implied warranty of        --*/
+/*--  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the          --*/
+/*--  GNU General Public License for more details.                          --*/
+/*--                                                                        --*/
+/*--  You should have received a copy of the GNU General Public License     --*/
+/*--  along with this program. If not, see <http://www.gnu.org/licenses/>.  --*/
+/*----------------------------------------------------------------------------*/
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dabomstew.pkrandom.Randomizer;
+import com.dabomstew.pkrandom.Settings;
+import com.dabomstew.pkrandom.daemon.RomCache;
+import com.dabomstew.pkrandom.log.JsonLinesSpoilerWriter;
+import com.dabomstew.pkrandom.log.NullLogSink;
+import com.dabomstew.pkrandom.pipeline.RandomizationContext;
+import com.dabomstew.pkrandom.pipeline.SpoilerExport;
+import com.dabomstew.pkrandom.pipeline.Stage;
+import com.dabomstew.pkrandom.pipeline.Table;
+import com.dabomstew.pkrandom.romhandlers.RomHandler;
+
+/**
+ * Tries seeds in order from firstSeed, each on a fresh copy of the ROM from
+ * a RomCache, running only the stages the predicates need (see
+ * Pipeline.disableAllExceptFor) and nothing is saved. Seeds are randomized
+ * with per-stage random streams, the way the daemon does it, since that's
+ * what makes skipping the other stages leave the rest unchanged; a seed
+ * found here gives the same result through the daemon. That only holds as
+ * long as the stages declare everything they read and write, which
+ * setVerify checks.
+ * 
+ * Loading a copy of the ROM per seed is cheap once the cache has a
+ * snapshot of it: the file or its parsed DS tables are already in memory,
+ * and loads on several threads don't wait for each other.
+ * 
+ * Threads take seeds one at a time. Once enough have matched no new seeds
+ * are handed out, but the ones in progress are finished, so the result is
+ * always the first matching seeds, whatever the timing.
+ */
+public class SeedSearch {
+
+	private final RomCache roms;
+	private final String romFilename;
+	private final Settings settings;
+	private final List<SeedPredicate> predicates;
+	private final Set<Table> tables = Stage.tables();
+	private final AtomicLong tried = new AtomicLong();
+	private volatile boolean verify;
+
+	public SeedSearch(RomCache roms, String romFilename, Settings settings,
+			List<SeedPredicate> predicates) {
+		this.roms = roms;
+		this.romFilename = romFilename;
+		this.settings = settings;
+		this.predicates = new ArrayList<SeedPredicate>(predicates);
+		for (SeedPredicate predicate : predicates) {
+			tables.addAll(predicate.getTables());
+		}
+	}
+
+	/**
+	 * Whether seed gives a ROM every predicate holds for.
+	 * 
+	 * @throws IOException
+	 *             if the ROM can't be read or isn't supported
+	 */
+	public boolean matches(long seed) throws IOException {
+		RomHandler handler = randomize(seed, true);
+		try {
+			tried.incrementAndGet();
+			if (verify) {
+				checkAgainstFullRun(seed, handler);
+			}
+			for (SeedPredicate predicate : predicates) {
+				if (!predicate.test(handler, settings)) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			roms.release(handler);
+		}
+	}
+
+	/**
+	 * Also run each seed tried through every stage on another copy of the
+	 * ROM, and fail with an IllegalStateException if the tables the
+	 * predicates look at don't come out the same as with only the stages
+	 * they need. It doubles the work, so it's for checking the stage
+	 * declarations rather than for searching.
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
+	// the caller releases the handler
+	private RomHandler randomize(long seed, boolean pruned) throws IOException {
+		RomHandler handler = roms.load(romFilename);
+		if (handler == null) {
+			throw new IOException("not a supported ROM: " + romFilename);
+		}
+		try {
+			Randomizer randomizer = new Randomizer(settings, handler);
+			if (pruned) {
+				randomizer.getPipeline().disableAllExceptFor(tables);
+			}
+			randomizer.useStageStreams(seed, 1);
+			randomizer.randomize(new NullLogSink(), null, null, null);
+			return handler;
+		} catch (RuntimeException ex) {
+			roms.release(handler);
+			throw ex;
+		}
+	}
+
+	private void checkAgainstFullRun(long seed, RomHandler pruned)
+			throws IOException {
+		RomHandler full = randomize(seed, false);
+		try {
+			if (!Arrays.equals(spoiler(pruned), spoiler(full))) {
+				throw new IllegalStateException("seed " + seed
+						+ ": skipping stages changed " + tables);
+			}
+		} finally {
+			roms.release(full);
+		}
+	}
+
+	// the tables the predicates look at, as spoiler records
+	private byte[] spoiler(RomHandler handler) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonLinesSpoilerWriter out = new JsonLinesSpoilerWriter(bytes);
+		SpoilerExport export = new SpoilerExport(out);
+		RandomizationContext context = new RandomizationContext(handler,
+				settings, new NullLogSink(), null, null, null);
+		for (Table table : tables) {
+			export.tableFinished(table, context);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * The first wanted seeds from firstSeed up to (not including) endSeed
+	 * that match, in order; fewer if there aren't that many.
+	 */
+	public List<Long> search(final long firstSeed, final long endSeed,
+			final int wanted, int threads) throws IOException,
+			InterruptedException {
+		if (wanted < 1 || threads < 1) {
+			throw new IllegalArgumentException("bad match or thread count");
+		}
+		final AtomicLong nextSeed = new AtomicLong(firstSeed);
+		final AtomicInteger found = new AtomicInteger();
+		final List<Long> matches = Collections
+				.synchronizedList(new ArrayList<Long>());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Void>> workers = new ArrayList<Future<Void>>();
+		try {
+			for (int i = 0; i < threads; i++) {
+				workers.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						while (found.get() < wanted) {
+							long seed = nextSeed.getAndIncrement();
+							if (seed >= endSeed) {
+								break;
+							}
+							if (matches(seed)) {
+								matches.add(seed);
+								found.incrementAndGet();
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException ex) {
+			found.set(wanted);
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			} else if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new RuntimeException(ex.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		List<Long> result = new ArrayList<Long>(matches);
+		Collections.sort(result);
+		return result.subList(0, Math.min(wanted, result.size()));
+	}
+
+	/**
+	 * Seeds randomized so far, over every search and matches call.
+	 */
+	public long getSeedsTried() {
+		return tried.get();
+	}
+
+	/**
+	 * Usage: SeedSearch [-t threads] [-k matches] [-s firstSeed] [-n seeds]
+	 * [-v] rom settings predicate...
+	 * 
+	 * See SeedPredicates for the predicates. Prints each matching seed on a
+	 * line of its own. -v checks each seed against a full run (see
+	 * setVerify).
+	 */
+	public static void main(String[] args) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int wanted = 1;
+		long firstSeed = 0;
+		long count = Long.MAX_VALUE;
+		boolean verify = false;
+		int arg = 0;
+		while (arg + 1 < args.length && args[arg].startsWith("-")) {
+			if (args[arg].equals("-v")) {
+				verify = true;
+				arg++;
+				continue;
+			}
+			String value = args[arg + 1];
+			if (args[arg].equals("-t")) {
+				threads = Integer.parseInt(value);
+			} else if (args[arg].equals("-k")) {
+				wanted = Integer.parseInt(value);
+			} else if (args[arg].equals("-s")) {
+				firstSeed = Long.parseLong(value);
+			} else if (args[arg].equals("-n")) {
+				count = Long.parseLong(value);
+			} else {
+				break;
+			}
+			arg += 2;
+		}
+		if (args.length - arg < 3) {
+			System.err.println("Usage: SeedSearch [-t threads] [-k matches]"
+					+ " [-s firstSeed] [-n seeds] [-v] rom settings"
+					+ " predicate...");
+			System.exit(2);
+		}
+		Settings settings = Settings.fromString(args[arg + 1]);
+		if (settings == null) {
+			System.err.println("bad settings string");
+			System.exit(2);
+		}
+		List<SeedPredicate> predicates = new ArrayList<SeedPredicate>();
+		for (int i = arg + 2; i < args.length; i++) {
+			predicates.add(SeedPredicates.parse(args[i]));
+		}
+		SeedSearch search = new SeedSearch(new RomCache(Long.MAX_VALUE),
+				args[arg], settings, predicates);
+		search.setVerify(verify);
+		long endSeed = count > Long.MAX_VALUE - firstSeed ? Long.MAX_VALUE
+				: firstSeed + count;
+		long start = System.currentTimeMillis();
+		List<Long> seeds = search.search(firstSeed, endSeed, wanted, threads);
+		for (long seed : seeds) {
+			System.out.println(seed);
+		}
+		System.err.printf("%d of %d wanted found in %d seeds, %d ms%n",
+				seeds.size(), wanted, search.getSeedsTried(),
+				System.currentTimeMillis() - start);
+	}
+
+}
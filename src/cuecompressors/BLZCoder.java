@@ -179,6 +179,91 @@ public class BLZCoder {
 		}
 	}
 
+	/**
+	 * Same result as BLZ_DecodePub, but decodes straight between byte arrays
+	 * without the int[] copies, the inverted working buffers or the console
+	 * output, and needs no BLZCoder instance. The compressed part is read and
+	 * the output written from the end backwards, which is what the two
+	 * BLZ_Invert calls in BLZ_Decode amount to. Returns null for data with a
+	 * bad header instead of exiting.
+	 */
+	public static byte[] BLZ_DecodeBytes(byte[] data) {
+		int pak_len = data.length;
+		int inc_len = (data[pak_len - 4] & 0xFF)
+				| ((data[pak_len - 3] & 0xFF) << 8)
+				| ((data[pak_len - 2] & 0xFF) << 16)
+				| ((data[pak_len - 1] & 0x7F) << 24);
+		if (inc_len < 1) {
+			// not coded
+			return data.clone();
+		}
+		if (pak_len < 8) {
+			return null;
+		}
+		int hdr_len = data[pak_len - 5] & 0xFF;
+		if (hdr_len < 8 || hdr_len > 0xB || pak_len <= hdr_len) {
+			return null;
+		}
+		int enc_len = (data[pak_len - 8] & 0xFF)
+				| ((data[pak_len - 7] & 0xFF) << 8)
+				| ((data[pak_len - 6] & 0xFF) << 16);
+		int dec_len = pak_len - enc_len;
+		int raw_len = dec_len + enc_len + inc_len;
+		if (raw_len > RAW_MAXIM) {
+			return null;
+		}
+		pak_len = enc_len - hdr_len;
+
+		byte[] raw_buffer = new byte[raw_len];
+		System.arraycopy(data, 0, raw_buffer, 0, dec_len);
+
+		// both cursors move down; the stop values are just below the
+		// uncompressed prefix
+		int pak = dec_len + pak_len - 1, pak_stop = dec_len - 1;
+		int raw = raw_len - 1, raw_stop = dec_len - 1;
+		int flags = 0, mask = 0;
+		while (raw > raw_stop) {
+			if ((mask = (mask >>> BLZ_SHIFT)) == 0) {
+				if (pak == pak_stop) {
+					break;
+				}
+				flags = data[pak--] & 0xFF;
+				mask = BLZ_MASK;
+			}
+
+			if ((flags & mask) == 0) {
+				if (pak == pak_stop) {
+					break;
+				}
+				raw_buffer[raw--] = data[pak--];
+			} else {
+				if (pak - 1 <= pak_stop) {
+					break;
+				}
+				int pos = (data[pak--] & 0xFF) << 8;
+				pos |= data[pak--] & 0xFF;
+				int len = (pos >>> 12) + BLZ_THRESHOLD + 1;
+				if (raw - len < raw_stop) {
+					len = raw - raw_stop;
+				}
+				pos = (pos & 0xFFF) + 3;
+				while ((len--) > 0) {
+					raw_buffer[raw] = raw_buffer[raw + pos];
+					raw--;
+				}
+			}
+		}
+
+		if (raw != raw_stop) {
+			// ran out of input; BLZ_Decode keeps the first bytes decoded
+			int decoded = dec_len + (raw_len - 1 - raw);
+			byte[] truncated = new byte[decoded];
+			System.arraycopy(raw_buffer, 0, truncated, 0, decoded);
+			return truncated;
+		}
+		return raw_buffer;
+	}
+
 	private BLZResult BLZ_Decode(byte[] data) {
 		int[] pak_buffer, raw_buffer;
 		int pak, raw, pak_end, raw_end;
@@ -324,14 +409,22 @@ public class BLZCoder {
 
 	public byte[] BLZ_EncodePub(byte[] data, boolean arm9, boolean best,
 			String reference) {
-		int mode = best ? BLZ_BEST : BLZ_NORMAL;
-		this.arm9 = arm9;
 		System.out.printf("- encoding '%s' (memory)", reference);
 		long startTime = System.currentTimeMillis();
-		BLZResult result = BLZ_Encode(data, mode);
+		byte[] retbuf = BLZ_EncodeBytes(data, arm9, best);
 		System.out.print(" - done, time="
 				+ (System.currentTimeMillis() - startTime) + "ms");
 		System.out.print("\n");
+		return retbuf;
+	}
+
+	/**
+	 * BLZ_EncodePub without the console output.
+	 */
+	public byte[] BLZ_EncodeBytes(byte[] data, boolean arm9, boolean best) {
+		int mode = best ? BLZ_BEST : BLZ_NORMAL;
+		this.arm9 = arm9;
+		BLZResult result = BLZ_Encode(data, mode);
 		if (result != null) {
 			byte[] retbuf = new byte[result.length];
 			for (int i = 0; i < result.length; i++) {